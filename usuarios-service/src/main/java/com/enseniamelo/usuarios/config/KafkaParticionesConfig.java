@@ -0,0 +1,42 @@
+package com.enseniamelo.usuarios.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.config.ListenerContainerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+
+/**
+ * Consumo particionado con el binder de Kafka (perfil {@code kafka}).
+ *
+ * Las particiones de cada destino se reparten entre las instancias del grupo y, dentro de una
+ * instancia, {@code ProcesadorEventos} procesa en paralelo las claves de una misma partición
+ * manteniendo el orden de cada clave. Eso confirma offsets fuera de orden y desde otros hilos:
+ * con {@code asyncAcks} el contenedor solo commitea un offset cuando todos los anteriores de la
+ * partición ya se confirmaron, así que un reinicio nunca salta un evento pendiente.
+ */
+@Configuration
+@ConditionalOnProperty(name = "usuarios.eventos.kafka.habilitado", havingValue = "true")
+public class KafkaParticionesConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KafkaParticionesConfig.class);
+
+    /**
+     * Solo toca los bindings con {@code ack-mode: MANUAL} (los de ProcesadorEventos); los
+     * consumidores por lotes y la invalidación de cache siguen con el acuse del binder.
+     */
+    @Bean
+    public ListenerContainerCustomizer<AbstractMessageListenerContainer<?, ?>> acusesAsincronos() {
+        return (contenedor, destino, grupo) -> {
+            ContainerProperties propiedades = contenedor.getContainerProperties();
+            if (propiedades.getAckMode() != ContainerProperties.AckMode.MANUAL) {
+                return;
+            }
+            propiedades.setAsyncAcks(true);
+            LOGGER.info("Acuses asíncronos habilitados para {} (grupo {})", destino, grupo);
+        };
+    }
+}
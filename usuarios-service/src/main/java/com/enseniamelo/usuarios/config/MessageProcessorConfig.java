@@ -1,20 +1,37 @@
 package com.enseniamelo.usuarios.config;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
 
 import com.enseniamelo.usuarios.dto.PerfilTutorDTO;
 import com.enseniamelo.usuarios.dto.UsuarioDTO;
 import com.enseniamelo.usuarios.dto.VerificarSolicitudDTO;
+import com.enseniamelo.usuarios.service.EventosEstacionadosService;
+import com.enseniamelo.usuarios.service.PerfilTutorLoteService;
 import com.enseniamelo.usuarios.service.PerfilTutorService;
+import com.enseniamelo.usuarios.service.UsuarioCache;
+import com.enseniamelo.usuarios.service.UsuarioLoteService;
 import com.enseniamelo.usuarios.service.UsuarioService;
+import com.enseniamelo.usuarios.service.VerificarSolicitudLoteService;
 import com.enseniamelo.usuarios.service.VerificarSolicitudService;
 import com.enseniamelo.usuarios.util.events.Event;
+import com.enseniamelo.usuarios.util.events.EventosDlq;
+import com.enseniamelo.usuarios.util.events.LoteEventos;
+import com.enseniamelo.usuarios.util.events.ProcesadorEventos;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Configuration
 public class MessageProcessorConfig {
@@ -24,49 +41,93 @@ public class MessageProcessorConfig {
     private final UsuarioService usuarioService;
     private final PerfilTutorService perfilTutorService;
     private final VerificarSolicitudService verificarSolicitudService;
+    private final UsuarioCache usuarioCache;
+    private final ProcesadorEventos procesadorEventos;
+    private final LoteEventos loteEventos;
+    private final UsuarioLoteService usuarioLoteService;
+    private final PerfilTutorLoteService perfilTutorLoteService;
+    private final VerificarSolicitudLoteService solicitudLoteService;
+    private final EventosEstacionadosService estacionadosService;
+    private final Duration retrasoReinvalidacion;
+    private final Duration timeoutLote;
 
     @Autowired
     public MessageProcessorConfig(
             UsuarioService usuarioService,
             PerfilTutorService perfilTutorService,
-            VerificarSolicitudService verificarSolicitudService) {
+            VerificarSolicitudService verificarSolicitudService,
+            UsuarioCache usuarioCache,
+            ProcesadorEventos procesadorEventos,
+            LoteEventos loteEventos,
+            UsuarioLoteService usuarioLoteService,
+            PerfilTutorLoteService perfilTutorLoteService,
+            VerificarSolicitudLoteService solicitudLoteService,
+            EventosEstacionadosService estacionadosService,
+            @Value("${usuarios.cache.retraso-reinvalidacion:2s}") Duration retrasoReinvalidacion,
+            @Value("${usuarios.eventos.lote.timeout:60s}") Duration timeoutLote) {
         this.usuarioService = usuarioService;
         this.perfilTutorService = perfilTutorService;
         this.verificarSolicitudService = verificarSolicitudService;
+        this.usuarioCache = usuarioCache;
+        this.procesadorEventos = procesadorEventos;
+        this.loteEventos = loteEventos;
+        this.usuarioLoteService = usuarioLoteService;
+        this.perfilTutorLoteService = perfilTutorLoteService;
+        this.solicitudLoteService = solicitudLoteService;
+        this.estacionadosService = estacionadosService;
+        this.retrasoReinvalidacion = retrasoReinvalidacion;
+        this.timeoutLote = timeoutLote;
     }
 
     // -------------------------------------------------------------------------
     // USUARIO (key = String id de Mongo)
     // -------------------------------------------------------------------------
     @Bean
-    public Consumer<Event<String, UsuarioDTO>> usuarioProcessor() {
-        return event -> {
+    public Function<Flux<Message<Event<String, UsuarioDTO>>>, Mono<Void>> usuarioProcessor() {
+        return procesadorEventos.crear("USUARIO", EventosDlq.USUARIOS, event -> {
             LOGGER.info("📨 [USUARIO] Evento: tipo={}, id={}",
                     event.getEventType(), event.getKey());
 
-            try {
-                switch (event.getEventType()) {
-                    case CREATE -> {
-                        LOGGER.info("Creando usuario");
-                        usuarioService.crearUsuario(event.getData()).block();
-                    }
-                    case DELETE -> {
-                        LOGGER.info("Eliminando usuario con id: {}", event.getKey());
-                        usuarioService.eliminarPorId(event.getKey()).block();
-                    }
-                    case UPDATE -> {
-                        LOGGER.info("Actualizando usuario con id: {}", event.getKey());
-                        usuarioService
-                                .actualizarUsuario(event.getKey(), event.getData())
-                                .block();
-                    }
-                    default -> LOGGER.warn("[USUARIO] Evento no soportado: {}", event.getEventType());
+            return switch (event.getEventType()) {
+                case CREATE -> {
+                    LOGGER.info("Creando usuario");
+                    yield usuarioService.crearUsuario(event.getData());
+                }
+                case DELETE -> {
+                    LOGGER.info("Eliminando usuario con id: {}", event.getKey());
+                    yield usuarioService.eliminarPorId(event.getKey());
                 }
-                LOGGER.info("[USUARIO] Completado");
-            } catch (Exception e) {
-                LOGGER.error("[USUARIO] Error: {}", e.getMessage(), e);
-                throw new RuntimeException("Error procesando evento de usuario", e);
+                case UPDATE -> {
+                    LOGGER.info("Actualizando usuario con id: {}", event.getKey());
+                    yield usuarioService.actualizarUsuario(event.getKey(), event.getData());
+                }
+                // Lo consume usuarioCacheInvalidacion en cada instancia
+                case INVALIDATE -> Mono.empty();
+                default -> noSoportado("USUARIO", event);
+            };
+        });
+    }
+
+    // -------------------------------------------------------------------------
+    // INVALIDACIÓN DE CACHE DE USUARIOS (binding sin grupo: llega a todas las instancias). Recibe
+    // los eventos de usuario y las invalidaciones que difunde UsuarioCache tras cada escritura
+    // -------------------------------------------------------------------------
+    @Bean
+    public Consumer<Event<String, UsuarioDTO>> usuarioCacheInvalidacion() {
+        return event -> {
+            String id = event.getKey();
+            String email = event.getData() != null ? event.getData().getEmail() : null;
+            LOGGER.debug("[USUARIO-CACHE] Invalidando id={}, email={}", id, email);
+
+            usuarioCache.invalidarLocal(id, email);
+            if (event.getEventType() == Event.Type.INVALIDATE) {
+                // Difundida por UsuarioCache después de la escritura: no hace falta la segunda pasada
+                return;
             }
+            // La instancia que procesa el evento puede escribir en Mongo después de esta
+            // invalidación; una segunda pasada descarta lo que se haya recargado entretanto
+            Mono.delay(retrasoReinvalidacion)
+                    .subscribe(t -> usuarioCache.invalidarLocal(id, email));
         };
     }
 
@@ -74,77 +135,102 @@ public class MessageProcessorConfig {
     // PERFIL TUTOR (key = String id de Mongo del perfil_tutor)
     // -------------------------------------------------------------------------
     @Bean
-    public Consumer<Event<String, PerfilTutorDTO>> tutorProcessor() {
-        return event -> {
+    public Function<Flux<Message<Event<String, PerfilTutorDTO>>>, Mono<Void>> tutorProcessor() {
+        return procesadorEventos.crear("TUTOR", EventosDlq.TUTORES, event -> {
             LOGGER.info("[TUTOR] Evento: tipo={}, id={}",
                     event.getEventType(), event.getKey());
 
-            try {
-                switch (event.getEventType()) {
-                    case CREATE -> {
-                        LOGGER.info("Creando perfil tutor");
-                        perfilTutorService.crearPerfilTutor(event.getData()).block();
-                    }
-                    case DELETE -> {
-                        LOGGER.info("Eliminando tutor con idPerfil: {}", event.getKey());
-                        perfilTutorService.eliminarPerfil(event.getKey()).block();
-                    }
-                    case UPDATE -> {
-                        LOGGER.info("Actualizando tutor con idPerfil: {}", event.getKey());
-                        perfilTutorService.actualizarPerfil(event.getKey(), event.getData()).block();
-                    }
-                    default -> LOGGER.warn("[TUTOR] Evento no soportado: {}", event.getEventType());
+            return switch (event.getEventType()) {
+                case CREATE -> {
+                    LOGGER.info("Creando perfil tutor");
+                    yield perfilTutorService.crearPerfilTutor(event.getData());
                 }
-                LOGGER.info("[TUTOR] Completado");
-            } catch (Exception e) {
-                LOGGER.error("[TUTOR] Error: {}", e.getMessage(), e);
-                throw new RuntimeException("Error procesando evento de tutor", e);
-            }
-        };
+                case DELETE -> {
+                    LOGGER.info("Eliminando tutor con idPerfil: {}", event.getKey());
+                    yield perfilTutorService.eliminarPerfil(event.getKey());
+                }
+                case UPDATE -> {
+                    LOGGER.info("Actualizando tutor con idPerfil: {}", event.getKey());
+                    yield perfilTutorService.actualizarPerfil(event.getKey(), event.getData());
+                }
+                default -> noSoportado("TUTOR", event);
+            };
+        });
     }
 
     // -------------------------------------------------------------------------
     // SOLICITUD VERIFICACIÓN (key = String id de Mongo de verificar_solicitud)
     // -------------------------------------------------------------------------
     @Bean
-    public Consumer<Event<String, VerificarSolicitudDTO>> solicitudProcessor() {
-        return event -> {
+    public Function<Flux<Message<Event<String, VerificarSolicitudDTO>>>, Mono<Void>> solicitudProcessor() {
+        return procesadorEventos.crear("SOLICITUD", EventosDlq.SOLICITUDES, event -> {
             LOGGER.info("[SOLICITUD] Evento: tipo={}, id={}",
                     event.getEventType(), event.getKey());
 
-            try {
-                String id = event.getKey();
-
-                switch (event.getEventType()) {
-                    case CREATE -> {
-                        LOGGER.info("Creando solicitud de verificación");
-                        verificarSolicitudService.crearSolicitud(event.getData()).block();
-                    }
-                    case APPROVE_REQUEST -> {
-                        VerificarSolicitudDTO aprobar = event.getData();
-                        LOGGER.info("Aprobando solicitud: {}", id);
-                        verificarSolicitudService
-                                .aprobarSolicitud(id, aprobar.getComentario())
-                                .block();
-                    }
-                    case REJECT_REQUEST -> {
-                        VerificarSolicitudDTO rechazar = event.getData();
-                        LOGGER.info("Rechazando solicitud: {}", id);
-                        verificarSolicitudService
-                                .rechazarSolicitud(id, rechazar.getComentario())
-                                .block();
-                    }
-                    case DELETE -> {
-                        LOGGER.info("Eliminando solicitud: {}", id);
-                        verificarSolicitudService.eliminarSolicitud(id).block();
-                    }
-                    default -> LOGGER.warn("[SOLICITUD] Evento no soportado: {}", event.getEventType());
+            String id = event.getKey();
+            return switch (event.getEventType()) {
+                case CREATE -> {
+                    LOGGER.info("Creando solicitud de verificación");
+                    yield verificarSolicitudService.crearSolicitud(event.getData());
                 }
-                LOGGER.info("[SOLICITUD] Completado");
-            } catch (Exception e) {
-                LOGGER.error("[SOLICITUD] Error: {}", e.getMessage(), e);
-                throw new RuntimeException("Error procesando evento de solicitud", e);
-            }
+                case APPROVE_REQUEST -> {
+                    LOGGER.info("Aprobando solicitud: {}", id);
+                    yield verificarSolicitudService.aprobarSolicitud(id, event.getData().getComentario());
+                }
+                case REJECT_REQUEST -> {
+                    LOGGER.info("Rechazando solicitud: {}", id);
+                    yield verificarSolicitudService.rechazarSolicitud(id, event.getData().getComentario());
+                }
+                case DELETE -> {
+                    LOGGER.info("Eliminando solicitud: {}", id);
+                    yield verificarSolicitudService.eliminarSolicitud(id);
+                }
+                default -> noSoportado("SOLICITUD", event);
+            };
+        });
+    }
+
+    // -------------------------------------------------------------------------
+    // MODO LOTE (perfil "lote"): reprocesos y rellenos. Cada lote se aplica con un bulkWrite y
+    // el binder lo confirma cuando termina; los eventos que fallan de a uno van a la DLQ. Comparten
+    // el registro de eventos aplicados con los consumidores de a uno del mismo destino
+    // -------------------------------------------------------------------------
+    @Bean
+    public Consumer<List<Event<String, UsuarioDTO>>> usuarioLoteProcessor() {
+        return eventos -> {
+            LOGGER.info("[USUARIO-LOTE] Lote de {} eventos", eventos.size());
+            loteEventos.aplicarSinDuplicados("USUARIO", eventos, usuarioLoteService::aplicar).block(timeoutLote);
+        };
+    }
+
+    @Bean
+    public Consumer<List<Event<String, PerfilTutorDTO>>> tutorLoteProcessor() {
+        return eventos -> {
+            LOGGER.info("[TUTOR-LOTE] Lote de {} eventos", eventos.size());
+            loteEventos.aplicarSinDuplicados("TUTOR", eventos, perfilTutorLoteService::aplicar).block(timeoutLote);
+        };
+    }
+
+    @Bean
+    public Consumer<List<Event<String, VerificarSolicitudDTO>>> solicitudLoteProcessor() {
+        return eventos -> {
+            LOGGER.info("[SOLICITUD-LOTE] Lote de {} eventos", eventos.size());
+            loteEventos.aplicarSinDuplicados("SOLICITUD", eventos, solicitudLoteService::aplicar).block(timeoutLote);
         };
     }
+
+    // -------------------------------------------------------------------------
+    // ESTACIONAMIENTO: consume las DLQ de los tres destinos y guarda cada evento para que un
+    // administrador lo reprocese o lo descarte. Si no se puede guardar, el binder reintenta y
+    // después lo deja en la DLQ del propio broker
+    // -------------------------------------------------------------------------
+    @Bean
+    public Consumer<Message<Event<String, Map<String, Object>>>> estacionamientoDlq() {
+        return mensaje -> estacionadosService.estacionar(mensaje).block(timeoutLote);
+    }
+
+    private static Mono<Void> noSoportado(String consumidor, Event<String, ?> event) {
+        LOGGER.warn("[{}] Evento no soportado: {}", consumidor, event.getEventType());
+        return Mono.empty();
+    }
 }
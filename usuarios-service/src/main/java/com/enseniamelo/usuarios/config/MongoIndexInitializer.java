@@ -0,0 +1,221 @@
+package com.enseniamelo.usuarios.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.MongoWriteException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Crea al arrancar los índices que declaran todas las entidades {@code @Document}
+ * ({@code @Indexed}, {@code @CompoundIndex}, únicos incluidos), en paralelo por colección.
+ *
+ * El progreso queda disponible para {@link MongoIndicesHealthIndicator}, que mantiene el
+ * servicio fuera de readiness hasta que todos los índices existen.
+ *
+ * Los índices de {@link #REEMPLAZADOS} se eliminan antes de crear los declarados: ocupan la
+ * misma clave con otras opciones y harían fallar la creación con IndexOptionsConflict. Solo se
+ * reintentan los errores transitorios; un conflicto de opciones o datos duplicados bajo un
+ * índice único requieren intervención y se informan de inmediato.
+ */
+@Component
+public class MongoIndexInitializer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongoIndexInitializer.class);
+
+    // Índices de versiones anteriores, por colección, que reemplaza un índice declarado
+    static final Map<String, List<String>> REEMPLAZADOS = Map.of(
+            // No único, creado por el arranque anterior; lo reemplaza email_unico
+            "usuarios", List.of("email"));
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final int concurrencia;
+    private final int reintentos;
+
+    private final AtomicBoolean iniciado = new AtomicBoolean(false);
+    private final AtomicBoolean terminado = new AtomicBoolean(false);
+    private final Map<String, Integer> totales = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> creados = new ConcurrentHashMap<>();
+    private final Map<String, String> errores = new ConcurrentHashMap<>();
+
+    @Autowired
+    public MongoIndexInitializer(
+            ReactiveMongoOperations mongoOperations,
+            MeterRegistry meterRegistry,
+            @Value("${usuarios.indices.concurrencia:4}") int concurrencia,
+            @Value("${usuarios.indices.reintentos:3}") int reintentos) {
+        this.mongoOperations = mongoOperations;
+        this.concurrencia = concurrencia;
+        this.reintentos = reintentos;
+
+        Gauge.builder("usuarios.mongo.indices.pendientes", this, MongoIndexInitializer::pendientes)
+                .description("Índices declarados que aún no se han creado")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void crearIndices() {
+        // El contexto puede refrescarse más de una vez (p. ej. con el config server)
+        if (!iniciado.compareAndSet(false, true)) {
+            return;
+        }
+
+        MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext =
+                mongoOperations.getConverter().getMappingContext();
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+
+        List<MongoPersistentEntity<?>> entidades = mappingContext.getPersistentEntities().stream()
+                .filter(entidad -> entidad.isAnnotationPresent(Document.class))
+                .<MongoPersistentEntity<?>>map(entidad -> entidad)
+                .toList();
+
+        Map<MongoPersistentEntity<?>, List<IndexDefinition>> porEntidad = new LinkedHashMap<>();
+        entidades.forEach(entidad -> {
+            List<IndexDefinition> indices = StreamSupport
+                    .stream(resolver.resolveIndexFor(entidad.getTypeInformation()).spliterator(), false)
+                    .map(IndexDefinition.class::cast)
+                    .toList();
+            porEntidad.put(entidad, indices);
+            totales.put(entidad.getCollection(), indices.size());
+            creados.put(entidad.getCollection(), new AtomicInteger());
+        });
+
+        long inicio = System.nanoTime();
+        LOGGER.info("Creando {} índices en {} colecciones", totales.values().stream().mapToInt(Integer::intValue).sum(),
+                porEntidad.size());
+
+        Flux.fromIterable(porEntidad.entrySet())
+                .flatMap(entrada -> crearIndicesDe(entrada.getKey(), entrada.getValue()), concurrencia)
+                .then()
+                .doFinally(signal -> {
+                    terminado.set(true);
+                    LOGGER.info("Creación de índices terminada en {} ms ({} colecciones con error)",
+                            Duration.ofNanos(System.nanoTime() - inicio).toMillis(), errores.size());
+                })
+                .subscribe();
+    }
+
+    private Mono<Void> crearIndicesDe(MongoPersistentEntity<?> entidad, List<IndexDefinition> indices) {
+        String coleccion = entidad.getCollection();
+
+        return eliminarReemplazados(entidad)
+                .thenMany(Flux.fromIterable(indices))
+                .concatMap(indice -> mongoOperations.indexOps(entidad.getType()).ensureIndex(indice)
+                        .retryWhen(Retry.backoff(reintentos, Duration.ofSeconds(1))
+                                .filter(MongoIndexInitializer::esTransitorio)
+                                .onRetryExhaustedThrow((spec, senal) -> senal.failure()))
+                        .doOnSuccess(nombre -> {
+                            creados.get(coleccion).incrementAndGet();
+                            LOGGER.debug("Índice {} listo en {}", nombre, coleccion);
+                        }))
+                .then()
+                .onErrorResume(error -> {
+                    // Un índice único sobre datos duplicados no se puede crear: requiere intervención
+                    Throwable causa = error.getCause() != null ? error.getCause() : error;
+                    LOGGER.error("No se pudieron crear los índices de {}: {}", coleccion, causa.getMessage());
+                    errores.put(coleccion, causa.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> eliminarReemplazados(MongoPersistentEntity<?> entidad) {
+        List<String> reemplazados = REEMPLAZADOS.getOrDefault(entidad.getCollection(), List.of());
+        if (reemplazados.isEmpty()) {
+            return Mono.empty();
+        }
+        ReactiveIndexOperations indexOps = mongoOperations.indexOps(entidad.getType());
+        return indexOps.getIndexInfo()
+                .filter(info -> reemplazados.contains(info.getName()))
+                .concatMap(info -> indexOps.dropIndex(info.getName())
+                        .doOnSuccess(v -> LOGGER.info("Índice {} de {} eliminado: lo reemplaza un índice declarado",
+                                info.getName(), entidad.getCollection())))
+                .retryWhen(Retry.backoff(reintentos, Duration.ofSeconds(1))
+                        .filter(MongoIndexInitializer::esTransitorio)
+                        .onRetryExhaustedThrow((spec, senal) -> senal.failure()))
+                .then();
+    }
+
+    /**
+     * Fallos de red o de elección de primario. Los errores de comando (conflicto de opciones,
+     * clave duplicada) se repetirían igual en cada intento.
+     */
+    static boolean esTransitorio(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof MongoSocketException
+                    || causa instanceof MongoTimeoutException
+                    || causa instanceof MongoNotPrimaryException
+                    || causa instanceof MongoNodeIsRecoveringException) {
+                return true;
+            }
+            if (causa instanceof MongoCommandException || causa instanceof MongoWriteException) {
+                return false;
+            }
+        }
+        return error instanceof TransientDataAccessException;
+    }
+
+    public boolean isTerminado() {
+        return terminado.get();
+    }
+
+    public boolean isCompleto() {
+        return terminado.get() && errores.isEmpty();
+    }
+
+    /**
+     * Progreso por colección: índices creados sobre declarados, y el error si lo hubo.
+     */
+    public Map<String, Object> progreso() {
+        Map<String, Object> detalle = new LinkedHashMap<>();
+        totales.forEach((coleccion, total) -> {
+            Map<String, Object> estado = new LinkedHashMap<>();
+            estado.put("creados", creados.get(coleccion).get());
+            estado.put("declarados", total);
+            if (errores.containsKey(coleccion)) {
+                estado.put("error", errores.get(coleccion));
+            }
+            detalle.put(coleccion, estado);
+        });
+        return detalle;
+    }
+
+    private double pendientes() {
+        return totales.entrySet().stream()
+                .mapToInt(entrada -> entrada.getValue() - creados.get(entrada.getKey()).get())
+                .sum();
+    }
+}
@@ -0,0 +1,31 @@
+package com.enseniamelo.usuarios.config;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Expone en /actuator/health el progreso de {@link MongoIndexInitializer}. Forma parte del
+ * grupo readiness, así que el servicio no recibe tráfico hasta que los índices existen.
+ */
+@Component
+@RequiredArgsConstructor
+public class MongoIndicesHealthIndicator implements HealthIndicator {
+
+    private final MongoIndexInitializer indexInitializer;
+
+    @Override
+    public Health health() {
+        Health.Builder builder;
+        if (indexInitializer.isCompleto()) {
+            builder = Health.up();
+        } else if (indexInitializer.isTerminado()) {
+            builder = Health.down().withDetail("estado", "Hay colecciones con índices sin crear");
+        } else {
+            builder = Health.outOfService().withDetail("estado", "Creando índices");
+        }
+        return builder.withDetail("colecciones", indexInitializer.progreso()).build();
+    }
+}
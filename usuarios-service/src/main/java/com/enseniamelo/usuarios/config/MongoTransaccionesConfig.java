@@ -0,0 +1,28 @@
+package com.enseniamelo.usuarios.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.ReactiveMongoTransactionManager;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+/**
+ * Transacciones multi-documento de Mongo. Requieren un replica set (Atlas lo es), por eso
+ * se activan por configuración y no están disponibles contra un mongod standalone.
+ */
+@Configuration
+@ConditionalOnProperty(name = "usuarios.outbox.transaccional", havingValue = "true")
+public class MongoTransaccionesConfig {
+
+    @Bean
+    public ReactiveMongoTransactionManager reactiveTransactionManager(ReactiveMongoDatabaseFactory databaseFactory) {
+        return new ReactiveMongoTransactionManager(databaseFactory);
+    }
+
+    @Bean
+    public TransactionalOperator transactionalOperator(ReactiveTransactionManager transactionManager) {
+        return TransactionalOperator.create(transactionManager);
+    }
+}
@@ -43,6 +43,8 @@ public class SecurityConfig {
                 .pathMatchers("/v3/api-docs/**").permitAll()
                 .pathMatchers("/webjars/**").permitAll()
                 
+                .pathMatchers(HttpMethod.POST, "/v1/auth/register/bulk").hasRole("ADMIN")
+                .pathMatchers(HttpMethod.POST, "/api/v1/auth/register/bulk").hasRole("ADMIN")
                 .pathMatchers(HttpMethod.POST, "/v1/auth/login").permitAll()
                 .pathMatchers(HttpMethod.POST, "/v1/auth/register").permitAll()
                 .pathMatchers(HttpMethod.POST, "/api/v1/auth/login").permitAll()
@@ -55,6 +57,7 @@ public class SecurityConfig {
                 
                 // Usuario endpoints 
                 .pathMatchers(HttpMethod.GET, "/v1/usuario/**").hasAnyRole("ADMIN", "USER", "TUTOR")
+                .pathMatchers(HttpMethod.POST, "/v1/usuario/lote").hasAnyRole("ADMIN", "USER", "TUTOR")
                 .pathMatchers(HttpMethod.POST, "/v1/usuario").hasRole("ADMIN")
                 .pathMatchers(HttpMethod.PUT, "/v1/usuario/**").hasAnyRole("ADMIN", "USER", "TUTOR")
                 .pathMatchers(HttpMethod.DELETE, "/v1/usuario/**").hasRole("ADMIN")
@@ -68,10 +71,13 @@ public class SecurityConfig {
                 
                 // Verificacion endpoints
                 .pathMatchers(HttpMethod.POST, "/v1/verificacion/curso").permitAll()
+                .pathMatchers(HttpMethod.POST, "/v1/verificacion/decisiones").hasRole("ADMIN")
                 .pathMatchers(HttpMethod.GET, "/v1/verificacion/curso/**").hasAnyRole("ADMIN", "TUTOR")
                 .pathMatchers(HttpMethod.GET, "/v1/verificacion/usuario/**").authenticated()
                 .pathMatchers(HttpMethod.GET, "/v1/verificacion/tutor/**").hasAnyRole("ADMIN", "TUTOR")
                 .pathMatchers(HttpMethod.GET, "/v1/verificacion/**").hasRole("ADMIN")
+
+                .pathMatchers("/v1/eventos/**").hasRole("ADMIN")
                 
                 .anyExchange().authenticated()
             )
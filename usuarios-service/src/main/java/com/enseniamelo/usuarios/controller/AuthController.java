@@ -1,20 +1,27 @@
 package com.enseniamelo.usuarios.controller;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.enseniamelo.usuarios.dto.AuthResponse;
+import com.enseniamelo.usuarios.dto.BulkRegisterResult;
 import com.enseniamelo.usuarios.dto.LoginRequest;
 import com.enseniamelo.usuarios.dto.RegisterRequest;
 import com.enseniamelo.usuarios.service.AuthService;
+import com.enseniamelo.usuarios.service.CurrentUserResolver;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -26,6 +33,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -36,6 +44,7 @@ import reactor.core.publisher.Mono;
 public class AuthController {
 
         private final AuthService authService;
+        private final CurrentUserResolver currentUserResolver;
 
         @Operation(summary = "Registrar nuevo usuario", description = "Crea una nueva cuenta de usuario en el sistema")
         @ApiResponses(value = {
@@ -56,6 +65,21 @@ public class AuthController {
                                                 error.getMessage()));
         }
 
+        @Operation(summary = "Registro masivo de usuarios", description = "Recibe un flujo NDJSON con un usuario por línea y devuelve, también en NDJSON, el resultado de cada línea a medida que se procesan los lotes")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Flujo de resultados por línea"),
+                        @ApiResponse(responseCode = "403", description = "Solo disponible para administradores")
+        })
+        @PostMapping(value = "/register/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+        @PreAuthorize("hasRole('ADMIN')")
+        public Flux<BulkRegisterResult> registerBulk(
+                        @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Usuarios a registrar, uno por línea", required = true, content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = RegisterRequest.class))) @RequestBody Flux<RegisterRequest> requests) {
+
+                log.info("POST /v1/auth/register/bulk - Iniciando registro masivo");
+                return authService.registerBulk(requests)
+                                .doOnError(error -> log.error("Error en registro masivo: {}", error.getMessage()));
+        }
+
         @Operation(summary = "Iniciar sesión", description = "Autentica un usuario con email y contraseña")
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "200", description = "Login exitoso"),
@@ -110,34 +134,30 @@ public class AuthController {
         @Operation(summary = "Obtener usuario actual (por token)", description = "Retorna los datos del usuario autenticado a partir del token JWT (sin pasar ID)")
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "200", description = "Usuario encontrado"),
+                        @ApiResponse(responseCode = "304", description = "El usuario no cambió desde el ETag enviado"),
                         @ApiResponse(responseCode = "404", description = "Usuario no encontrado")
         })
         @GetMapping(value = "/me", produces = "application/json")
         public Mono<ResponseEntity<AuthResponse>> getCurrentUserNoParam(
-                        @AuthenticationPrincipal org.springframework.security.oauth2.jwt.Jwt jwt) {
-                log.info("GET /v1/auth/me - Obteniendo datos del usuario por token (claims)");
+                        @AuthenticationPrincipal org.springframework.security.oauth2.jwt.Jwt jwt,
+                        @Parameter(description = "ETag de una respuesta anterior para obtener 304 si no cambió") @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+                log.debug("GET /v1/auth/me - Obteniendo datos del usuario por token (claims)");
                 if (jwt == null) {
                         return Mono.just(ResponseEntity.status(401).build());
                 }
-                String email = jwt.getClaimAsString("email");
-                String sub = jwt.getClaimAsString("sub");
-
-                // Try find by email first, fallback to auth service not found handling
-                if (email != null) {
-                        return authService.getUserByEmail(email)
-                                        .map(ResponseEntity::ok)
-                                        .defaultIfEmpty(
-                                                        ResponseEntity.ok(new AuthResponse(sub, null,
-                                                                        jwt.getClaimAsString("preferred_username"),
-                                                                        null, email, null,
-                                                                        "Usuario obtenido desde token")));
-                }
 
-                // If no email in token, return fallback with sub if possible
-                AuthResponse fallback = new AuthResponse(sub, null, jwt.getClaimAsString("preferred_username"), null,
-                                null,
-                                null, "Usuario temporal desde token");
-                return Mono.just(ResponseEntity.ok(fallback));
+                return currentUserResolver.resolver(jwt)
+                                .map(actual -> {
+                                        if (currentUserResolver.noModificado(actual, ifNoneMatch)) {
+                                                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                                                .eTag(actual.etag())
+                                                                .<AuthResponse>build();
+                                        }
+                                        return ResponseEntity.ok()
+                                                        .eTag(actual.etag())
+                                                        .cacheControl(CacheControl.noCache().cachePrivate())
+                                                        .body(actual.respuesta());
+                                });
         }
 
         @Operation(summary = "Cerrar sesión", description = "Cierra la sesión del usuario actual")
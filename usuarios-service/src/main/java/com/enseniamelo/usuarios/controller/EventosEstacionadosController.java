@@ -0,0 +1,97 @@
+package com.enseniamelo.usuarios.controller;
+
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.enseniamelo.usuarios.dto.EventoEstacionadoDTO;
+import com.enseniamelo.usuarios.dto.PaginaDTO;
+import com.enseniamelo.usuarios.dto.ReprocesoRequest;
+import com.enseniamelo.usuarios.dto.ReprocesoResultado;
+import com.enseniamelo.usuarios.model.EventoEstacionado;
+import com.enseniamelo.usuarios.service.EventosEstacionadosService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/v1/eventos/estacionados")
+@Tag(name = "Eventos Estacionados", description = "API de administración de los eventos que fueron a la DLQ")
+@RequiredArgsConstructor
+@Slf4j
+public class EventosEstacionadosController {
+
+        private final EventosEstacionadosService estacionadosService;
+
+        @Operation(summary = "Listar eventos estacionados", description = "Eventos de un estado (ESTACIONADO por defecto), del más antiguo al más reciente, paginados con cursor")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Página de eventos obtenida"),
+                        @ApiResponse(responseCode = "400", description = "Cursor inválido")
+        })
+        @PreAuthorize("hasRole('ADMIN')")
+        @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+        public Mono<PaginaDTO<EventoEstacionadoDTO>> listar(
+                        @Parameter(description = "Estado de los eventos", example = "ESTACIONADO") @RequestParam(defaultValue = EventoEstacionado.ESTACIONADO) String estado,
+                        @Parameter(description = "Filtrar por consumidor", example = "USUARIO") @RequestParam(required = false) String consumidor,
+                        @Parameter(description = "Cursor devuelto por la página anterior") @RequestParam(required = false) String cursor,
+                        @Parameter(description = "Cantidad máxima de eventos por página") @RequestParam(defaultValue = "50") int limite) {
+
+                log.info("GET /v1/eventos/estacionados - Listando eventos (estado={}, consumidor={})", estado, consumidor);
+                return estacionadosService.listar(estado, consumidor, cursor, limite);
+        }
+
+        @Operation(summary = "Obtener un evento estacionado")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Evento encontrado"),
+                        @ApiResponse(responseCode = "404", description = "Evento no encontrado")
+        })
+        @PreAuthorize("hasRole('ADMIN')")
+        @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+        public Mono<EventoEstacionadoDTO> obtener(
+                        @Parameter(description = "ID del evento estacionado", required = true) @PathVariable String id) {
+
+                log.info("GET /v1/eventos/estacionados/{} - Obteniendo evento", id);
+                return estacionadosService.obtener(id);
+        }
+
+        @Operation(summary = "Reprocesar eventos estacionados", description = "Publica de nuevo en su destino los eventos indicados por id, o los más antiguos de un consumidor, a un ritmo limitado. Responde cuando todos se publicaron")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Reproceso terminado"),
+                        @ApiResponse(responseCode = "400", description = "Selección inválida")
+        })
+        @PreAuthorize("hasRole('ADMIN')")
+        @PostMapping(value = "/reprocesar", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+        public Mono<ReprocesoResultado> reprocesar(@RequestBody ReprocesoRequest request) {
+                log.info("POST /v1/eventos/estacionados/reprocesar - consumidor={}, ids={}", request.getConsumidor(),
+                                request.getIds() != null ? request.getIds().size() : 0);
+                return estacionadosService.reprocesar(request);
+        }
+
+        @Operation(summary = "Descartar un evento estacionado", description = "El evento queda como DESCARTADO y no se reprocesa")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Evento descartado"),
+                        @ApiResponse(responseCode = "400", description = "El evento no está estacionado"),
+                        @ApiResponse(responseCode = "404", description = "Evento no encontrado")
+        })
+        @PreAuthorize("hasRole('ADMIN')")
+        @DeleteMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+        public Mono<EventoEstacionadoDTO> descartar(
+                        @Parameter(description = "ID del evento estacionado", required = true) @PathVariable String id) {
+
+                log.info("DELETE /v1/eventos/estacionados/{} - Descartando evento", id);
+                return estacionadosService.descartar(id);
+        }
+}
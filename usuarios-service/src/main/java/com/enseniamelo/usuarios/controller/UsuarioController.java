@@ -1,5 +1,8 @@
 package com.enseniamelo.usuarios.controller;
 
+import java.util.Map;
+
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -8,9 +11,13 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.enseniamelo.usuarios.dto.PaginaDTO;
 import com.enseniamelo.usuarios.dto.UsuarioDTO;
+import com.enseniamelo.usuarios.dto.UsuarioLoteItem;
+import com.enseniamelo.usuarios.dto.UsuarioLoteRequest;
 import com.enseniamelo.usuarios.service.UsuarioService;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -65,6 +72,48 @@ public class UsuarioController {
                                 .doOnError(error -> log.error("Error obteniendo usuarios: {}", error.getMessage()));
         }
 
+        @Operation(summary = "Listar usuarios por páginas", description = "Listado paginado con cursor, filtrable por rol y estado activo. Para la página siguiente se envía el siguienteCursor de la respuesta anterior")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+                        @ApiResponse(responseCode = "400", description = "Cursor inválido")
+        })
+        @PreAuthorize("hasAnyRole('ADMIN', 'USER', 'TUTOR')")
+        @GetMapping(value = "/pagina", produces = "application/json")
+        public Mono<PaginaDTO<UsuarioDTO>> getUsuariosPaginados(
+                        @Parameter(description = "Cursor devuelto por la página anterior") @RequestParam(required = false) String cursor,
+                        @Parameter(description = "Cantidad máxima de usuarios por página") @RequestParam(defaultValue = "50") int limite,
+                        @Parameter(description = "Filtrar por rol", example = "TUTOR") @RequestParam(required = false) String rol,
+                        @Parameter(description = "Filtrar por usuarios activos o inactivos") @RequestParam(required = false) Boolean activo) {
+
+                log.info("GET /v1/usuario/pagina - Listando usuarios (rol={}, activo={})", rol, activo);
+                return usuarioService.listarPagina(cursor, limite, rol, activo)
+                                .doOnSuccess(pagina -> log.info("Página de {} usuarios", pagina.getCantidad()))
+                                .doOnError(error -> log.error("Error listando usuarios: {}", error.getMessage()));
+        }
+
+        @Operation(summary = "Buscar usuarios por lote", description = "Resuelve varios ids y/o emails en un solo llamado. Devuelve un mapa por clave con encontrado=false para las que no existen")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+                        @ApiResponse(responseCode = "400", description = "El lote supera el máximo permitido")
+        })
+        @PreAuthorize("hasAnyRole('ADMIN', 'USER', 'TUTOR')")
+        @PostMapping(value = "/lote", consumes = "application/json", produces = "application/json")
+        public Mono<Map<String, UsuarioLoteItem>> buscarLote(@RequestBody UsuarioLoteRequest request) {
+                log.info("POST /v1/usuario/lote - Buscando usuarios por lote");
+                return usuarioService.buscarLoteComoMapa(request.getIds(), request.getEmails())
+                                .doOnSuccess(resultado -> log.info("Lote resuelto: {} claves", resultado.size()))
+                                .doOnError(error -> log.error("Error buscando lote: {}", error.getMessage()));
+        }
+
+        @Operation(summary = "Buscar usuarios por lote (streaming)", description = "Igual que la búsqueda por lote pero emite un resultado NDJSON por clave a medida que se resuelven")
+        @PreAuthorize("hasAnyRole('ADMIN', 'USER', 'TUTOR')")
+        @PostMapping(value = "/lote", consumes = "application/json", produces = MediaType.APPLICATION_NDJSON_VALUE)
+        public Flux<UsuarioLoteItem> buscarLoteStream(@RequestBody UsuarioLoteRequest request) {
+                log.info("POST /v1/usuario/lote - Buscando usuarios por lote (NDJSON)");
+                return usuarioService.buscarLote(request.getIds(), request.getEmails())
+                                .doOnError(error -> log.error("Error buscando lote: {}", error.getMessage()));
+        }
+
         @Operation(summary = "${api.usuario.create-usuario.description}", description = "${api.usuario.create-usuario.notes}")
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "201", description = "${api.responseCodes.created.description}"),
@@ -3,6 +3,7 @@ package com.enseniamelo.usuarios.controller;
 import java.util.Map;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -12,19 +13,27 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.enseniamelo.usuarios.dto.ColaVerificacionDTO;
+import com.enseniamelo.usuarios.dto.DecisionSolicitudRequest;
+import com.enseniamelo.usuarios.dto.DecisionSolicitudResultado;
 import com.enseniamelo.usuarios.dto.VerificarSolicitudDTO;
+import com.enseniamelo.usuarios.service.DecisionesVerificacionService;
 import com.enseniamelo.usuarios.service.VerificarSolicitudService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -35,6 +44,7 @@ import reactor.core.publisher.Mono;
 public class VerificarSolicitudController {
 
         private final VerificarSolicitudService solicitudService;
+        private final DecisionesVerificacionService decisionesService;
 
         @Operation(summary = "Crear solicitud para un curso", description = "Curso-service llama este endpoint al crear un curso")
         @ApiResponses(value = {
@@ -110,6 +120,26 @@ public class VerificarSolicitudController {
                                                 "solicitudes", solicitudes)));
         }
 
+        @Operation(summary = "Cola de verificación", description = "Solicitudes de un estado (PENDIENTE por defecto), de la más antigua a la más reciente, paginadas con cursor. Para la página siguiente se envía el siguienteCursor de la respuesta anterior")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Página de la cola obtenida"),
+                        @ApiResponse(responseCode = "400", description = "Cursor inválido")
+        })
+        @PreAuthorize("hasRole('ADMIN')")
+        @GetMapping(value = "/cola", produces = MediaType.APPLICATION_JSON_VALUE)
+        public Mono<ColaVerificacionDTO> obtenerCola(
+                        @Parameter(description = "Estado de las solicitudes", example = "PENDIENTE") @RequestParam(defaultValue = "PENDIENTE") String estado,
+                        @Parameter(description = "Filtrar por perfil de tutor") @RequestParam(required = false) String idPerfilTutor,
+                        @Parameter(description = "Cursor devuelto por la página anterior") @RequestParam(required = false) String cursor,
+                        @Parameter(description = "Cantidad máxima de solicitudes por página") @RequestParam(defaultValue = "50") int limite) {
+
+                log.info("GET /v1/verificacion/cola - Obteniendo cola (estado={}, tutor={})", estado, idPerfilTutor);
+                return solicitudService.obtenerCola(estado, idPerfilTutor, cursor, limite)
+                                .doOnSuccess(cola -> log.info("Página de {} solicitudes (estado={})",
+                                                cola.getCantidad(), estado))
+                                .doOnError(error -> log.error("Error obteniendo la cola: {}", error.getMessage()));
+        }
+
         @Operation(summary = "Obtener todas las solicitudes (solo básico)")
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "200", description = "Lista de solicitudes obtenida")
@@ -241,6 +271,23 @@ public class VerificarSolicitudController {
                                                 "solicitud", solicitud)));
         }
 
+        @Operation(summary = "Aprobar o rechazar solicitudes en lote", description = "Recibe las decisiones como arreglo JSON o NDJSON y devuelve en NDJSON el resultado de cada una a medida que se aplican los lotes")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Flujo de resultados por decisión"),
+                        @ApiResponse(responseCode = "403", description = "Solo disponible para administradores")
+        })
+        @PreAuthorize("hasRole('ADMIN')")
+        @PostMapping(value = "/decisiones", consumes = { MediaType.APPLICATION_JSON_VALUE,
+                        MediaType.APPLICATION_NDJSON_VALUE }, produces = MediaType.APPLICATION_NDJSON_VALUE)
+        public Flux<DecisionSolicitudResultado> decidirSolicitudes(
+                        @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Decisiones a aplicar", required = true, content = @Content(schema = @Schema(implementation = DecisionSolicitudRequest.class))) @RequestBody Flux<DecisionSolicitudRequest> decisiones) {
+
+                log.info("POST /v1/verificacion/decisiones - Aplicando decisiones en lote");
+                return decisionesService.decidir(decisiones)
+                                .doOnError(error -> log.error("Error aplicando decisiones en lote: {}",
+                                                error.getMessage()));
+        }
+
         @Operation(summary = "Eliminar solicitud")
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "204", description = "Solicitud eliminada"),
@@ -0,0 +1,35 @@
+package com.enseniamelo.usuarios.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Resultado de una línea del registro masivo")
+public class BulkRegisterResult {
+
+    public static final String CREADO = "CREADO";
+    public static final String DUPLICADO = "DUPLICADO";
+    public static final String INVALIDO = "INVALIDO";
+    public static final String ERROR = "ERROR";
+
+    @Schema(description = "Número de línea (desde 1) dentro del cuerpo NDJSON", example = "1")
+    private Long linea;
+
+    @Schema(description = "Correo electrónico de la línea", example = "juan.perez@mail.com")
+    private String email;
+
+    @Schema(description = "Resultado del registro", example = "CREADO", allowableValues = {"CREADO", "DUPLICADO", "INVALIDO", "ERROR"})
+    private String estado;
+
+    @Schema(description = "ID de MongoDB del usuario creado", example = "507f1f77bcf86cd799439011")
+    private String id;
+
+    @Schema(description = "Detalle del resultado", example = "El email ya está registrado")
+    private String mensaje;
+}
@@ -0,0 +1,29 @@
+package com.enseniamelo.usuarios.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Página de la cola de verificación, de la solicitud más antigua a la más reciente")
+public class ColaVerificacionDTO {
+
+    @Schema(description = "Solicitudes de la página")
+    private List<VerificarSolicitudDTO> items;
+
+    @Schema(description = "Cantidad de solicitudes devueltas", example = "50")
+    private Integer cantidad;
+
+    @Schema(description = "Cursor opaco para la página siguiente; ausente si no hay más resultados")
+    private String siguienteCursor;
+
+    @Schema(description = "Total de solicitudes pendientes en el sistema (aproximado, se reconcilia periódicamente); solo en la cola de PENDIENTE", example = "1234")
+    private Long totalPendientes;
+}
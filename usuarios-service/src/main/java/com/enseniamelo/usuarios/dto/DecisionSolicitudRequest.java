@@ -0,0 +1,22 @@
+package com.enseniamelo.usuarios.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Decisión sobre una solicitud de verificación dentro de un lote")
+public class DecisionSolicitudRequest {
+
+    @Schema(description = "ID de MongoDB de la solicitud", example = "507f1f77bcf86cd799439055")
+    private String id;
+
+    @Schema(description = "Decisión a aplicar", example = "APROBADO", allowableValues = {"APROBADO", "RECHAZADO"})
+    private String decision;
+
+    @Schema(description = "Comentario del administrador", example = "Documentación completa")
+    private String comentario;
+}
@@ -0,0 +1,33 @@
+package com.enseniamelo.usuarios.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Resultado de una decisión dentro de un lote")
+public class DecisionSolicitudResultado {
+
+    public static final String APLICADA = "APLICADA";
+    public static final String YA_PROCESADA = "YA_PROCESADA";
+    public static final String NO_ENCONTRADA = "NO_ENCONTRADA";
+    public static final String INVALIDA = "INVALIDA";
+    public static final String ERROR = "ERROR";
+
+    @Schema(description = "ID de MongoDB de la solicitud", example = "507f1f77bcf86cd799439055")
+    private String id;
+
+    @Schema(description = "Decisión solicitada", example = "APROBADO")
+    private String decision;
+
+    @Schema(description = "Resultado de la decisión", example = "APLICADA", allowableValues = {"APLICADA", "YA_PROCESADA", "NO_ENCONTRADA", "INVALIDA", "ERROR"})
+    private String estado;
+
+    @Schema(description = "Detalle del resultado", example = "La solicitud ya fue procesada")
+    private String mensaje;
+}
@@ -0,0 +1,54 @@
+package com.enseniamelo.usuarios.dto;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Evento que un consumidor no pudo aplicar y quedó estacionado")
+public class EventoEstacionadoDTO {
+
+    @Schema(description = "ID del evento estacionado", example = "USUARIO:4b0e1f0c-8f1e-4c55-9a3f-0d1b2f3c4d5e")
+    private String id;
+
+    @Schema(description = "Consumidor que falló", example = "USUARIO")
+    private String consumidor;
+
+    @Schema(description = "ID único del evento", example = "4b0e1f0c-8f1e-4c55-9a3f-0d1b2f3c4d5e")
+    private String eventId;
+
+    @Schema(description = "Tipo de evento", example = "CREATE")
+    private String tipo;
+
+    @Schema(description = "Clave del evento", example = "507f1f77bcf86cd799439011")
+    private String clave;
+
+    @Schema(description = "Datos del evento tal como llegaron")
+    private Map<String, Object> datos;
+
+    @Schema(description = "Motivo del último fallo", example = "El email ya está registrado")
+    private String motivo;
+
+    @Schema(description = "Intentos realizados en el último fallo", example = "3")
+    private Integer intentos;
+
+    @Schema(description = "Veces que el evento llegó al estacionamiento", example = "1")
+    private Integer veces;
+
+    @Schema(description = "Estado", example = "ESTACIONADO", allowableValues = {"ESTACIONADO", "REPROCESANDO", "REPROCESADO", "DESCARTADO"})
+    private String estado;
+
+    @Schema(description = "Fecha en que se estacionó por última vez")
+    private LocalDateTime estacionado;
+
+    @Schema(description = "Fecha del último reproceso")
+    private LocalDateTime reprocesado;
+}
@@ -0,0 +1,30 @@
+package com.enseniamelo.usuarios.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Página de resultados con cursor para pedir la siguiente")
+public class PaginaDTO<T> {
+
+    @Schema(description = "Elementos de la página")
+    private List<T> items;
+
+    @Schema(description = "Cantidad de elementos devueltos", example = "50")
+    private Integer cantidad;
+
+    @Schema(description = "Cursor opaco para la página siguiente; ausente si no hay más resultados", example = "NjZhMWIyYzNkNGU1ZjYwNzE4MjkzYTRi")
+    private String siguienteCursor;
+
+    public static <T> PaginaDTO<T> of(List<T> items, String siguienteCursor) {
+        return new PaginaDTO<>(items, items.size(), siguienteCursor);
+    }
+}
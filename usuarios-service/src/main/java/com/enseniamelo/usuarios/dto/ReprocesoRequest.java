@@ -0,0 +1,24 @@
+package com.enseniamelo.usuarios.dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Selección de eventos estacionados a reprocesar: por ids o los más antiguos de un consumidor")
+public class ReprocesoRequest {
+
+    @Schema(description = "IDs de los eventos estacionados; si se indican se ignoran consumidor y limite")
+    private List<String> ids;
+
+    @Schema(description = "Reprocesar los eventos estacionados de este consumidor", example = "USUARIO")
+    private String consumidor;
+
+    @Schema(description = "Cantidad máxima de eventos a reprocesar", example = "100")
+    private Integer limite;
+}
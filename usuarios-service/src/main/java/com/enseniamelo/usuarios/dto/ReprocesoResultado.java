@@ -0,0 +1,25 @@
+package com.enseniamelo.usuarios.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Resultado de un reproceso de eventos estacionados")
+public class ReprocesoResultado {
+
+    @Schema(description = "Eventos estacionados que se tomaron para reprocesar", example = "100")
+    private Integer seleccionados;
+
+    @Schema(description = "Eventos publicados de nuevo en su destino", example = "98")
+    private Integer publicados;
+
+    @Schema(description = "Eventos que no se pudieron publicar y siguen estacionados", example = "2")
+    private Integer fallidos;
+
+    @Schema(description = "Ritmo máximo de publicación aplicado (eventos por segundo)", example = "20")
+    private Double porSegundo;
+}
@@ -0,0 +1,30 @@
+package com.enseniamelo.usuarios.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Resultado de un identificador dentro de una búsqueda por lote")
+public class UsuarioLoteItem {
+
+    public static final String POR_ID = "ID";
+    public static final String POR_EMAIL = "EMAIL";
+
+    @Schema(description = "ID o email tal como se pidió", example = "507f1f77bcf86cd799439011")
+    private String clave;
+
+    @Schema(description = "Tipo de identificador", example = "ID", allowableValues = {"ID", "EMAIL"})
+    private String tipo;
+
+    @Schema(description = "Si el usuario existe", example = "true")
+    private Boolean encontrado;
+
+    @Schema(description = "Datos del usuario; ausente si no se encontró")
+    private UsuarioDTO usuario;
+}
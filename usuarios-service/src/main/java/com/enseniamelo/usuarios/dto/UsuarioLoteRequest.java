@@ -0,0 +1,21 @@
+package com.enseniamelo.usuarios.dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Identificadores de los usuarios a resolver en un solo llamado")
+public class UsuarioLoteRequest {
+
+    @Schema(description = "IDs de MongoDB de los usuarios", example = "[\"507f1f77bcf86cd799439011\"]")
+    private List<String> ids;
+
+    @Schema(description = "Correos electrónicos de los usuarios", example = "[\"juan.perez@mail.com\"]")
+    private List<String> emails;
+}
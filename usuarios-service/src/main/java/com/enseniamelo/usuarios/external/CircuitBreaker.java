@@ -0,0 +1,175 @@
+package com.enseniamelo.usuarios.external;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.enseniamelo.usuarios.util.exception.CircuitoAbiertoException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Circuit breaker por conteo sobre las últimas {@code ventana} llamadas.
+ *
+ * Abre cuando la proporción de fallos alcanza el umbral (con un mínimo de llamadas), rechaza
+ * con {@link CircuitoAbiertoException} durante {@code esperaAbierto} y después deja pasar una
+ * única llamada de prueba: si termina bien vuelve a cerrar, si falla vuelve a abrir. Solo
+ * cuentan como fallo los errores que indica {@code esFallo}; un 404 no dice nada de la salud
+ * del servicio.
+ */
+class CircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    enum Estado { CERRADO, ABIERTO, SEMIABIERTO }
+
+    private final String nombre;
+    private final boolean[] resultados;
+    private final int minimoLlamadas;
+    private final double umbralFallos;
+    private final long esperaAbiertoNanos;
+    private final Predicate<Throwable> esFallo;
+
+    private Estado estado = Estado.CERRADO;
+    private int posicion;
+    private int registradas;
+    private int fallos;
+    private long abiertoDesde;
+    private boolean pruebaEnCurso;
+
+    private final Counter rechazadas;
+
+    CircuitBreaker(String nombre, int ventana, int minimoLlamadas, double umbralFallos,
+            Duration esperaAbierto, Predicate<Throwable> esFallo, MeterRegistry meterRegistry) {
+        this.nombre = nombre;
+        this.resultados = new boolean[ventana];
+        this.minimoLlamadas = minimoLlamadas;
+        this.umbralFallos = umbralFallos;
+        this.esperaAbiertoNanos = esperaAbierto.toNanos();
+        this.esFallo = esFallo;
+
+        this.rechazadas = Counter.builder("circuitbreaker.rechazadas")
+                .tag("nombre", nombre)
+                .register(meterRegistry);
+        Gauge.builder("circuitbreaker.estado", this, cb -> cb.getEstado().ordinal())
+                .tag("nombre", nombre)
+                .description("0 = cerrado, 1 = abierto, 2 = semiabierto")
+                .register(meterRegistry);
+    }
+
+    <T> Mono<T> proteger(Mono<T> llamada) {
+        return Mono.defer(() -> {
+            if (!permitir()) {
+                rechazadas.increment();
+                return Mono.error(new CircuitoAbiertoException("Circuito " + nombre + " abierto"));
+            }
+            return llamada
+                    .doOnSuccess(valor -> registrar(false))
+                    .doOnError(error -> registrar(esFallo.test(error)))
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            liberarPrueba();
+                        }
+                    });
+        });
+    }
+
+    <T> Flux<T> proteger(Flux<T> llamada) {
+        return Flux.defer(() -> {
+            if (!permitir()) {
+                rechazadas.increment();
+                return Flux.error(new CircuitoAbiertoException("Circuito " + nombre + " abierto"));
+            }
+            return llamada
+                    .doOnComplete(() -> registrar(false))
+                    .doOnError(error -> registrar(esFallo.test(error)))
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            liberarPrueba();
+                        }
+                    });
+        });
+    }
+
+    synchronized Estado getEstado() {
+        return estado;
+    }
+
+    private synchronized boolean permitir() {
+        switch (estado) {
+            case CERRADO:
+                return true;
+            case ABIERTO:
+                if (System.nanoTime() - abiertoDesde < esperaAbiertoNanos) {
+                    return false;
+                }
+                LOGGER.info("Circuito {} semiabierto, enviando llamada de prueba", nombre);
+                estado = Estado.SEMIABIERTO;
+                pruebaEnCurso = true;
+                return true;
+            default:
+                if (pruebaEnCurso) {
+                    return false;
+                }
+                pruebaEnCurso = true;
+                return true;
+        }
+    }
+
+    private synchronized void registrar(boolean fallo) {
+        if (estado == Estado.SEMIABIERTO) {
+            pruebaEnCurso = false;
+            if (fallo) {
+                abrir();
+            } else {
+                LOGGER.info("Circuito {} cerrado", nombre);
+                reiniciarVentana();
+                estado = Estado.CERRADO;
+            }
+            return;
+        }
+        if (estado == Estado.ABIERTO) {
+            return;
+        }
+
+        if (registradas == resultados.length) {
+            fallos -= resultados[posicion] ? 1 : 0;
+        } else {
+            registradas++;
+        }
+        resultados[posicion] = fallo;
+        fallos += fallo ? 1 : 0;
+        posicion = (posicion + 1) % resultados.length;
+
+        if (registradas >= minimoLlamadas && (double) fallos / registradas >= umbralFallos) {
+            abrir();
+        }
+    }
+
+    private synchronized void liberarPrueba() {
+        // Una prueba cancelada no da información; se permite otra
+        if (estado == Estado.SEMIABIERTO) {
+            pruebaEnCurso = false;
+        }
+    }
+
+    private void abrir() {
+        LOGGER.warn("Circuito {} abierto ({} fallos en {} llamadas)", nombre, fallos, registradas);
+        estado = Estado.ABIERTO;
+        abiertoDesde = System.nanoTime();
+        reiniciarVentana();
+    }
+
+    private void reiniciarVentana() {
+        posicion = 0;
+        registradas = 0;
+        fallos = 0;
+    }
+}
@@ -0,0 +1,122 @@
+package com.enseniamelo.usuarios.external;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.enseniamelo.usuarios.dto.CursoDTO;
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+/**
+ * Cache de snapshots de cursos de cursoservice con stale-while-revalidate.
+ *
+ * Pasado {@code refresco} desde que se obtuvo, una entrada se sigue sirviendo tal cual y se
+ * recarga en segundo plano; si la recarga falla se conserva la copia anterior hasta que vence
+ * {@code ttl}. Los cursos se invalidan al actualizar su verificación a través de esta clase.
+ */
+@Component
+public class CursoSnapshotCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CursoSnapshotCache.class);
+
+    private final MsCursoIntegration cursoIntegration;
+    private final AsyncLoadingCache<String, Snapshot> cache;
+    private final Duration refresco;
+
+    private final Counter frescos;
+    private final Counter obsoletos;
+    private final Timer antiguedad;
+
+    @Autowired
+    public CursoSnapshotCache(
+            MsCursoIntegration cursoIntegration,
+            MeterRegistry meterRegistry,
+            @Value("${cursos.cache.tamanio-maximo:5000}") long tamanioMaximo,
+            @Value("${cursos.cache.refresco:1m}") Duration refresco,
+            @Value("${cursos.cache.ttl:30m}") Duration ttl) {
+        this.cursoIntegration = cursoIntegration;
+        this.refresco = refresco;
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .refreshAfterWrite(refresco)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync(new AsyncCacheLoader<String, Snapshot>() {
+                    @Override
+                    public CompletableFuture<Snapshot> asyncLoad(String cursoId, Executor executor) {
+                        return cargar(cursoId);
+                    }
+                });
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "cursos");
+        Gauge.builder("cursos.cache.hit.ratio", cache, c -> c.synchronous().stats().hitRate())
+                .description("Proporción de cursos servidos sin llamar a cursoservice")
+                .register(meterRegistry);
+        this.frescos = Counter.builder("cursos.cache.servidos").tag("tipo", "fresco").register(meterRegistry);
+        this.obsoletos = Counter.builder("cursos.cache.servidos").tag("tipo", "obsoleto")
+                .description("Cursos servidos desde cache mientras se revalidan")
+                .register(meterRegistry);
+        this.antiguedad = Timer.builder("cursos.cache.antiguedad")
+                .description("Antigüedad de los snapshots de curso servidos")
+                .register(meterRegistry);
+    }
+
+    public Mono<CursoDTO> getCurso(String cursoId) {
+        return Mono.defer(() -> {
+            CompletableFuture<Snapshot> futuro = cache.get(cursoId);
+            return Mono.fromFuture(futuro)
+                    // Caffeine retira la carga fallida de forma asíncrona; se adelanta para que la
+                    // siguiente lectura no reciba el mismo error
+                    .doOnError(error -> cache.asMap().remove(cursoId, futuro))
+                    .doOnNext(this::registrarServido)
+                    .map(Snapshot::curso);
+        });
+    }
+
+    /**
+     * Actualiza la verificación en cursoservice e invalida el snapshot si la llamada tiene éxito.
+     */
+    public Mono<Void> updateCursoVerificacion(String cursoId, String estadoVerificacion) {
+        return cursoIntegration.updateCursoVerificacion(cursoId, estadoVerificacion)
+                .doOnSuccess(v -> invalidar(cursoId));
+    }
+
+    public void invalidar(String cursoId) {
+        LOGGER.debug("Invalidando snapshot del curso {}", cursoId);
+        cache.synchronous().invalidate(cursoId);
+    }
+
+    private CompletableFuture<Snapshot> cargar(String cursoId) {
+        // Un error no se cachea: en la carga inicial se propaga y en un refresco se conserva la copia
+        return cursoIntegration.getCurso(cursoId)
+                .map(curso -> new Snapshot(curso, Instant.now()))
+                .doOnError(error -> LOGGER.debug("No se pudo cargar el curso {}: {}", cursoId, error.getMessage()))
+                .toFuture();
+    }
+
+    private void registrarServido(Snapshot snapshot) {
+        Duration edad = Duration.between(snapshot.obtenido(), Instant.now());
+        antiguedad.record(edad);
+        (edad.compareTo(refresco) > 0 ? obsoletos : frescos).increment();
+    }
+
+    record Snapshot(CursoDTO curso, Instant obtenido) {
+    }
+}
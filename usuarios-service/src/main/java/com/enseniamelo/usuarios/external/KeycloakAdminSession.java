@@ -0,0 +1,200 @@
+package com.enseniamelo.usuarios.external;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sesión de administrador de Keycloak compartida por todo el servicio.
+ *
+ * Mantiene en memoria el token de admin-cli, lo renueva en segundo plano antes de que
+ * expire (con refresh_token mientras sea válido, si no con password grant) y agrupa las
+ * renovaciones concurrentes en una única petición en vuelo.
+ */
+@Component
+public class KeycloakAdminSession {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeycloakAdminSession.class);
+
+    private final WebClient webClient;
+    private final String keycloakServerUrl;
+    private final String adminUsername;
+    private final String adminPassword;
+    private final Duration refreshAhead;
+
+    private final AtomicReference<AdminToken> tokenActual = new AtomicReference<>();
+    private Mono<AdminToken> renovacionEnVuelo;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter refreshOk;
+    private final Counter refreshError;
+
+    @Autowired
+    public KeycloakAdminSession(
+            WebClient.Builder webClientBuilder,
+            MeterRegistry meterRegistry,
+            @Value("${keycloak.auth-server-url:http://keycloak:8080}") String keycloakServerUrl,
+            @Value("${keycloak.admin.username:admin}") String adminUsername,
+            @Value("${keycloak.admin.password:admin}") String adminPassword,
+            @Value("${keycloak.admin.token.refresh-ahead:30s}") Duration refreshAhead) {
+        this.webClient = webClientBuilder.build();
+        this.keycloakServerUrl = keycloakServerUrl;
+        this.adminUsername = adminUsername;
+        this.adminPassword = adminPassword;
+        this.refreshAhead = refreshAhead;
+
+        this.hits = Counter.builder("keycloak.admin.token.cache")
+                .tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("keycloak.admin.token.cache")
+                .tag("result", "miss").register(meterRegistry);
+        this.refreshOk = Counter.builder("keycloak.admin.token.refresh")
+                .tag("outcome", "success").register(meterRegistry);
+        this.refreshError = Counter.builder("keycloak.admin.token.refresh")
+                .tag("outcome", "error").register(meterRegistry);
+    }
+
+    /**
+     * Devuelve un token de administrador válido, usando el cacheado siempre que sea posible.
+     */
+    public Mono<String> getToken() {
+        return Mono.defer(() -> {
+            AdminToken token = tokenActual.get();
+            if (token != null && token.vigenteEn(Instant.now())) {
+                hits.increment();
+                return Mono.just(token.accessToken());
+            }
+            misses.increment();
+            return renovar().map(AdminToken::accessToken);
+        });
+    }
+
+    /**
+     * Descarta el token cacheado, por ejemplo tras recibir un 401 de la API de administración.
+     */
+    public void invalidate() {
+        LOGGER.debug("Invalidando token de admin de Keycloak");
+        tokenActual.set(null);
+    }
+
+    @Scheduled(fixedDelayString = "${keycloak.admin.token.check-interval:10s}")
+    public void renovarProactivamente() {
+        AdminToken token = tokenActual.get();
+        // Solo se mantiene caliente una sesión que ya se usó alguna vez
+        if (token != null && token.expiraAntesDe(Instant.now().plus(refreshAhead))) {
+            renovar().subscribe(
+                    t -> LOGGER.debug("Token de admin renovado en segundo plano"),
+                    error -> LOGGER.warn("No se pudo renovar el token de admin: {}", error.getMessage()));
+        }
+    }
+
+    private synchronized Mono<AdminToken> renovar() {
+        if (renovacionEnVuelo == null) {
+            renovacionEnVuelo = solicitarToken(tokenActual.get())
+                    .doOnNext(token -> {
+                        tokenActual.set(token);
+                        refreshOk.increment();
+                    })
+                    .doOnError(error -> refreshError.increment())
+                    .doFinally(signal -> limpiarRenovacion())
+                    .cache();
+        }
+        return renovacionEnVuelo;
+    }
+
+    private synchronized void limpiarRenovacion() {
+        renovacionEnVuelo = null;
+    }
+
+    private Mono<AdminToken> solicitarToken(AdminToken anterior) {
+        Instant ahora = Instant.now();
+        if (anterior != null && anterior.refreshVigenteEn(ahora)) {
+            return postToken(refreshTokenForm(anterior.refreshToken()))
+                    .onErrorResume(error -> {
+                        LOGGER.debug("refresh_token rechazado, usando password grant: {}", error.getMessage());
+                        return postToken(passwordForm());
+                    });
+        }
+        return postToken(passwordForm());
+    }
+
+    private Mono<AdminToken> postToken(MultiValueMap<String, String> formData) {
+        String tokenUrl = String.format("%s/realms/master/protocol/openid-connect/token", keycloakServerUrl);
+
+        return webClient.post()
+                .uri(tokenUrl)
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(BodyInserters.fromFormData(formData))
+                .retrieve()
+                .bodyToMono(Map.class)
+                .map(response -> AdminToken.from(response, Instant.now()))
+                .doOnSuccess(token -> LOGGER.debug("Token de admin obtenido, expira en {}", token.expiresAt()))
+                .doOnError(error -> LOGGER.error("Error obteniendo token de admin: {}", error.getMessage()));
+    }
+
+    private MultiValueMap<String, String> passwordForm() {
+        MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
+        formData.add("grant_type", "password");
+        formData.add("client_id", "admin-cli");
+        formData.add("username", adminUsername);
+        formData.add("password", adminPassword);
+        return formData;
+    }
+
+    private MultiValueMap<String, String> refreshTokenForm(String refreshToken) {
+        MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
+        formData.add("grant_type", "refresh_token");
+        formData.add("client_id", "admin-cli");
+        formData.add("refresh_token", refreshToken);
+        return formData;
+    }
+
+    record AdminToken(String accessToken, String refreshToken, Instant expiresAt, Instant refreshExpiresAt) {
+
+        // Margen para no entregar un token que caduque mientras viaja la petición
+        private static final Duration MARGEN = Duration.ofSeconds(5);
+
+        static AdminToken from(Map<?, ?> response, Instant emitido) {
+            long expiresIn = toLong(response.get("expires_in"), 60);
+            long refreshExpiresIn = toLong(response.get("refresh_expires_in"), 0);
+            return new AdminToken(
+                    (String) response.get("access_token"),
+                    (String) response.get("refresh_token"),
+                    emitido.plusSeconds(expiresIn),
+                    emitido.plusSeconds(refreshExpiresIn));
+        }
+
+        boolean vigenteEn(Instant instante) {
+            return accessToken != null && instante.plus(MARGEN).isBefore(expiresAt);
+        }
+
+        boolean expiraAntesDe(Instant instante) {
+            return !expiresAt.isAfter(instante);
+        }
+
+        boolean refreshVigenteEn(Instant instante) {
+            return refreshToken != null && instante.plus(MARGEN).isBefore(refreshExpiresAt);
+        }
+
+        private static long toLong(Object value, long defaultValue) {
+            return value instanceof Number number ? number.longValue() : defaultValue;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.enseniamelo.usuarios.external;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Cache de las representaciones de los roles de realm que se asignan al registrar usuarios.
+ *
+ * Solo existen los roles que devuelve {@code obtenerKeycloakRole} (ADMIN, TUTOR, USER), así que
+ * se precargan al arrancar, se refrescan periódicamente y se invalidan cuando Keycloak rechaza
+ * una asignación hecha con ellos.
+ */
+@Component
+public class KeycloakRoleCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeycloakRoleCache.class);
+    private static final List<String> ROLES_CONOCIDOS = List.of("ADMIN", "TUTOR", "USER");
+
+    private final WebClient webClient;
+    private final KeycloakAdminSession adminSession;
+    private final String keycloakServerUrl;
+    private final String realm;
+
+    private final Map<String, Map<String, Object>> roles = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public KeycloakRoleCache(
+            WebClient.Builder webClientBuilder,
+            KeycloakAdminSession adminSession,
+            MeterRegistry meterRegistry,
+            @Value("${keycloak.auth-server-url:http://keycloak:8080}") String keycloakServerUrl,
+            @Value("${keycloak.realm:enseniamelo-realm}") String realm) {
+        this.webClient = webClientBuilder.build();
+        this.adminSession = adminSession;
+        this.keycloakServerUrl = keycloakServerUrl;
+        this.realm = realm;
+
+        this.hits = Counter.builder("keycloak.role.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("keycloak.role.cache").tag("result", "miss").register(meterRegistry);
+    }
+
+    public Mono<Map<String, Object>> getRole(String roleName) {
+        return Mono.defer(() -> {
+            Map<String, Object> cached = roles.get(roleName);
+            if (cached != null) {
+                hits.increment();
+                return Mono.just(cached);
+            }
+            misses.increment();
+            return cargar(roleName);
+        });
+    }
+
+    public void invalidate(String roleName) {
+        LOGGER.debug("Invalidando rol {} de la cache", roleName);
+        roles.remove(roleName);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void precargar() {
+        refrescar();
+    }
+
+    @Scheduled(fixedDelayString = "${keycloak.roles.refresh-interval:10m}",
+            initialDelayString = "${keycloak.roles.refresh-interval:10m}")
+    public void refrescar() {
+        Flux.fromIterable(ROLES_CONOCIDOS)
+                .flatMap(roleName -> cargar(roleName)
+                        .onErrorResume(error -> {
+                            LOGGER.warn("No se pudo cargar el rol {} de Keycloak: {}", roleName, error.getMessage());
+                            return Mono.empty();
+                        }))
+                .count()
+                .subscribe(cargados -> LOGGER.info("Roles de Keycloak cacheados: {}/{}",
+                        cargados, ROLES_CONOCIDOS.size()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mono<Map<String, Object>> cargar(String roleName) {
+        String rolesUrl = String.format("%s/admin/realms/%s/roles/%s", keycloakServerUrl, realm, roleName);
+
+        return adminSession.getToken()
+                .flatMap(adminToken -> webClient.get()
+                        .uri(rolesUrl)
+                        .header("Authorization", "Bearer " + adminToken)
+                        .retrieve()
+                        .bodyToMono(Map.class))
+                .map(role -> (Map<String, Object>) role)
+                .doOnNext(role -> roles.put(roleName, role));
+    }
+}
@@ -0,0 +1,186 @@
+package com.enseniamelo.usuarios.external;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.enseniamelo.usuarios.util.exception.ConflictException;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Operaciones de la API de administración de Keycloak sobre usuarios del realm. Reciben el
+ * token de admin ya resuelto para que quien las llama decida cuándo obtenerlo y compartirlo; si
+ * Keycloak lo rechaza con 401, se invalida la sesión y la operación se repite una vez con un
+ * token nuevo.
+ */
+@Component
+public class KeycloakUserClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeycloakUserClient.class);
+
+    private final WebClient webClient;
+    private final KeycloakAdminSession adminSession;
+    private final KeycloakRoleCache roleCache;
+    private final String keycloakServerUrl;
+    private final String realm;
+
+    @Autowired
+    public KeycloakUserClient(
+            WebClient.Builder webClientBuilder,
+            KeycloakAdminSession adminSession,
+            KeycloakRoleCache roleCache,
+            @Value("${keycloak.auth-server-url:http://keycloak:8080}") String keycloakServerUrl,
+            @Value("${keycloak.realm:enseniamelo-realm}") String realm) {
+        this.webClient = webClientBuilder.build();
+        this.adminSession = adminSession;
+        this.roleCache = roleCache;
+        this.keycloakServerUrl = keycloakServerUrl;
+        this.realm = realm;
+    }
+
+    /**
+     * Crea el usuario y devuelve su id de Keycloak. Un 409 se emite como {@link ConflictException}.
+     */
+    public Mono<String> crearUsuario(String adminToken, String email, String nombre, String apellido,
+            String contrasenia) {
+        return conTokenRenovado(adminToken, token -> Mono.defer(() -> {
+            Map<String, Object> keycloakUser = new HashMap<>();
+            keycloakUser.put("username", email);
+            keycloakUser.put("email", email);
+            keycloakUser.put("firstName", nombre);
+            keycloakUser.put("lastName", apellido);
+            keycloakUser.put("enabled", true);
+            keycloakUser.put("emailVerified", false);
+
+            Map<String, Object> credential = new HashMap<>();
+            credential.put("type", "password");
+            credential.put("value", contrasenia);
+            credential.put("temporary", false);
+            keycloakUser.put("credentials", List.of(credential));
+
+            String usersUrl = String.format("%s/admin/realms/%s/users", keycloakServerUrl, realm);
+
+            return webClient.post()
+                    .uri(usersUrl)
+                    .header("Authorization", "Bearer " + token)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(keycloakUser)
+                    .retrieve()
+                    .onStatus(
+                        status -> status.value() == HttpStatus.UNAUTHORIZED.value(),
+                        response -> response.createException().flatMap(Mono::error)
+                    )
+                    .onStatus(
+                        status -> status.value() == HttpStatus.CONFLICT.value(),
+                        response -> Mono.error(new ConflictException("El usuario ya existe en Keycloak"))
+                    )
+                    .onStatus(
+                        HttpStatusCode::isError,
+                        response -> response.bodyToMono(String.class)
+                                .flatMap(body -> {
+                                    LOGGER.error("Error creando usuario en Keycloak: {}", body);
+                                    return Mono.error(new RuntimeException("Error creando usuario en Keycloak: " + body));
+                                })
+                    )
+                    .toBodilessEntity()
+                    .map(response -> {
+                        String location = response.getHeaders().getLocation().toString();
+                        String userId = location.substring(location.lastIndexOf('/') + 1);
+                        LOGGER.debug("Usuario creado en Keycloak con ID: {}", userId);
+                        return userId;
+                    });
+        }));
+    }
+
+    public Mono<Void> asignarRol(String adminToken, String userId, String roleName) {
+        LOGGER.debug("Asignando rol {} al usuario {}", roleName, userId);
+
+        return roleCache.getRole(roleName)
+                .flatMap(roleData -> {
+                    String assignRoleUrl = String.format("%s/admin/realms/%s/users/%s/role-mappings/realm",
+                            keycloakServerUrl, realm, userId);
+
+                    return conTokenRenovado(adminToken, token -> webClient.post()
+                            .uri(assignRoleUrl)
+                            .header("Authorization", "Bearer " + token)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .bodyValue(List.of(roleData))
+                            .retrieve()
+                            .toBodilessEntity()
+                            .then())
+                            .doOnSuccess(v -> LOGGER.debug("Rol {} asignado exitosamente", roleName))
+                            .doOnError(error -> {
+                                LOGGER.error("Error asignando rol: {}", error.getMessage());
+                                // La representación cacheada podría estar obsoleta (rol recreado en Keycloak)
+                                if (!(error instanceof WebClientResponseException.Unauthorized)) {
+                                    roleCache.invalidate(roleName);
+                                }
+                            });
+                });
+    }
+
+    /**
+     * Busca el id de un usuario existente por email exacto; vacío si no existe.
+     */
+    @SuppressWarnings("unchecked")
+    public Mono<String> buscarIdPorEmail(String adminToken, String email) {
+        String usersUrl = String.format("%s/admin/realms/%s/users", keycloakServerUrl, realm);
+
+        return conTokenRenovado(adminToken, token -> webClient.get()
+                .uri(usersUrl + "?exact=true&email={email}", email)
+                .header("Authorization", "Bearer " + token)
+                .retrieve()
+                .bodyToMono(List.class)
+                .flatMap(usuarios -> usuarios.isEmpty()
+                        ? Mono.<String>empty()
+                        : Mono.justOrEmpty((String) ((Map<String, Object>) usuarios.get(0)).get("id"))));
+    }
+
+    public Mono<Void> eliminarUsuario(String adminToken, String userId) {
+        String userUrl = String.format("%s/admin/realms/%s/users/%s", keycloakServerUrl, realm, userId);
+
+        return conTokenRenovado(adminToken, token -> webClient.delete()
+                .uri(userUrl)
+                .header("Authorization", "Bearer " + token)
+                .retrieve()
+                .onStatus(status -> status.value() == HttpStatus.NOT_FOUND.value(), response -> Mono.empty())
+                .toBodilessEntity()
+                .then())
+                .doOnSuccess(v -> LOGGER.info("Usuario {} eliminado de Keycloak", userId));
+    }
+
+    /**
+     * Ejecuta la llamada con el token recibido. Ante un 401 (token revocado o sesión de admin
+     * reiniciada en Keycloak) descarta el token cacheado y la repite una sola vez con uno nuevo.
+     */
+    private <T> Mono<T> conTokenRenovado(String adminToken, Function<String, Mono<T>> llamada) {
+        return llamada.apply(adminToken)
+                .onErrorResume(WebClientResponseException.Unauthorized.class, error -> {
+                    LOGGER.warn("Token de admin de Keycloak rechazado, reintentando con uno nuevo");
+                    adminSession.invalidate();
+                    return adminSession.getToken().flatMap(llamada);
+                })
+                .doOnError(WebClientResponseException.Unauthorized.class, error -> adminSession.invalidate());
+    }
+
+    public String rolKeycloak(String rol) {
+        return switch (rol) {
+            case "ADMIN" -> "ADMIN";
+            case "TUTOR" -> "TUTOR";
+            default -> "USER";
+        };
+    }
+}
@@ -1,14 +1,21 @@
 package com.enseniamelo.usuarios.external;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import com.enseniamelo.usuarios.dto.CursoDTO;
@@ -17,65 +24,259 @@ import com.enseniamelo.usuarios.util.exception.NotFoundException;
 import com.enseniamelo.usuarios.util.http.HttpErrorInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
 
+/**
+ * Cliente de cursoservice.
+ *
+ * Usa un pool de conexiones propio con timeouts de conexión, adquisición y respuesta, de modo
+ * que un cursoservice lento no retiene conexiones indefinidamente. Las lecturas se reintentan
+ * con backoff y jitter mientras quede presupuesto de reintentos; todas las operaciones pasan
+ * por un circuit breaker. Las llamadas concurrentes a {@link #getCurso} para el mismo id
+ * comparten una única petición.
+ */
 @Component
 public class MsCursoIntegration {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MsCursoIntegration.class);
-    private static final String CURSO_SERVICE_URL = "http://cursoservice:8000";
 
     private final WebClient webClient;
     private final ObjectMapper mapper;
+    private final MeterRegistry meterRegistry;
+    private final ConnectionProvider connectionProvider;
+    private final String cursoServiceUrl;
+    private final Duration timeoutRespuesta;
+
+    private final int maxReintentos;
+    private final Duration esperaInicial;
+    private final Duration esperaMaxima;
+    private final PresupuestoReintentos presupuesto;
+    private final CircuitBreaker circuitBreaker;
+
+    private final Map<String, Mono<CursoDTO>> enVuelo = new ConcurrentHashMap<>();
+
+    private final Counter coalescidas;
 
     @Autowired
-    public MsCursoIntegration(WebClient.Builder webClient, ObjectMapper mapper) {
-        this.webClient = webClient.build();
+    public MsCursoIntegration(
+            WebClient.Builder webClient,
+            ObjectMapper mapper,
+            MeterRegistry meterRegistry,
+            @Value("${cursos.service.url:http://cursoservice:8000}") String cursoServiceUrl,
+            @Value("${cursos.cliente.conexiones-maximas:50}") int conexionesMaximas,
+            @Value("${cursos.cliente.adquisiciones-pendientes:200}") int adquisicionesPendientes,
+            @Value("${cursos.cliente.timeout-adquisicion:2s}") Duration timeoutAdquisicion,
+            @Value("${cursos.cliente.timeout-conexion:2s}") Duration timeoutConexion,
+            @Value("${cursos.cliente.timeout-respuesta:3s}") Duration timeoutRespuesta,
+            @Value("${cursos.cliente.max-inactividad:30s}") Duration maxInactividad,
+            @Value("${cursos.cliente.reintentos.maximo:2}") int maxReintentos,
+            @Value("${cursos.cliente.reintentos.espera-inicial:100ms}") Duration esperaInicial,
+            @Value("${cursos.cliente.reintentos.espera-maxima:1s}") Duration esperaMaxima,
+            @Value("${cursos.cliente.reintentos.presupuesto:10}") double capacidadPresupuesto,
+            @Value("${cursos.cliente.reintentos.proporcion:0.1}") double proporcionPresupuesto,
+            @Value("${cursos.cliente.circuit-breaker.ventana:20}") int ventana,
+            @Value("${cursos.cliente.circuit-breaker.minimo-llamadas:10}") int minimoLlamadas,
+            @Value("${cursos.cliente.circuit-breaker.umbral-fallos:0.5}") double umbralFallos,
+            @Value("${cursos.cliente.circuit-breaker.espera-abierto:30s}") Duration esperaAbierto) {
         this.mapper = mapper;
+        this.meterRegistry = meterRegistry;
+        this.cursoServiceUrl = cursoServiceUrl;
+        this.timeoutRespuesta = timeoutRespuesta;
+        this.maxReintentos = maxReintentos;
+        this.esperaInicial = esperaInicial;
+        this.esperaMaxima = esperaMaxima;
+
+        this.connectionProvider = ConnectionProvider.builder("cursoservice")
+                .maxConnections(conexionesMaximas)
+                .pendingAcquireMaxCount(adquisicionesPendientes)
+                .pendingAcquireTimeout(timeoutAdquisicion)
+                .maxIdleTime(maxInactividad)
+                .evictInBackground(maxInactividad)
+                .metrics(true)
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) timeoutConexion.toMillis())
+                .responseTimeout(timeoutRespuesta);
+        // clone() para no alterar el builder compartido con los demás clientes
+        this.webClient = webClient.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+
+        this.presupuesto = new PresupuestoReintentos(capacidadPresupuesto, proporcionPresupuesto);
+        this.circuitBreaker = new CircuitBreaker("cursoservice", ventana, minimoLlamadas, umbralFallos,
+                esperaAbierto, MsCursoIntegration::esTransitorio, meterRegistry);
+
+        this.coalescidas = Counter.builder("cursos.cliente.coalescidas")
+                .description("Llamadas a getCurso resueltas por una petición ya en vuelo")
+                .register(meterRegistry);
+        Gauge.builder("cursos.cliente.reintentos.presupuesto", presupuesto, PresupuestoReintentos::disponibles)
+                .register(meterRegistry);
     }
 
     public Mono<CursoDTO> getCurso(String cursoId) {
-        String url = CURSO_SERVICE_URL + "/api/v1/cursos/" + cursoId;
+        return Mono.defer(() -> {
+            boolean[] nueva = {false};
+            Mono<CursoDTO> compartida = enVuelo.computeIfAbsent(cursoId, id -> {
+                nueva[0] = true;
+                // Se retira antes de propagar el resultado, para que una llamada posterior no
+                // reciba un error ya cacheado
+                return pedirCurso(id)
+                        .doOnTerminate(() -> enVuelo.remove(id))
+                        .doOnCancel(() -> enVuelo.remove(id))
+                        .cache();
+            });
+            if (!nueva[0]) {
+                coalescidas.increment();
+            }
+            return compartida;
+        });
+    }
+
+    private Mono<CursoDTO> pedirCurso(String cursoId) {
+        String url = cursoServiceUrl + "/api/v1/cursos/" + cursoId;
         LOGGER.debug("Llamando getCurso API en URL: {}", url);
 
-        return webClient.get()
+        Mono<CursoDTO> llamada = webClient.get()
                 .uri(url)
                 .retrieve()
                 .bodyToMono(CursoDTO.class)
+                .timeout(timeoutRespuesta)
+                .doOnSuccess(curso -> presupuesto.registrarExito())
+                .retryWhen(reintentos("getCurso"));
+
+        return medir("getCurso", circuitBreaker.proteger(llamada))
                 .log(LOGGER.getName(), Level.FINE)
                 .onErrorMap(WebClientResponseException.class, this::handleException);
     }
 
     public Flux<CursoDTO> getCursosByTutor(String tutorId) {
-        String url = CURSO_SERVICE_URL + "/api/v1/cursos?tutor_id=" + tutorId;
+        String url = cursoServiceUrl + "/api/v1/cursos?tutor_id=" + tutorId;
         LOGGER.debug("Llamando getCursosByTutor API en URL: {}", url);
 
-        return webClient.get()
+        Flux<CursoDTO> llamada = webClient.get()
                 .uri(url)
                 .retrieve()
                 .bodyToFlux(CursoDTO.class)
+                .timeout(timeoutRespuesta)
+                .doOnComplete(presupuesto::registrarExito)
+                .retryWhen(reintentos("getCursosByTutor"));
+
+        return medir("getCursosByTutor", circuitBreaker.proteger(llamada))
                 .log(LOGGER.getName(), Level.FINE)
                 .onErrorMap(WebClientResponseException.class, this::handleException);
     }
 
     public Mono<Void> updateCursoVerificacion(String cursoId, String estadoVerificacion) {
-        String url = CURSO_SERVICE_URL + "/api/v1/cursos/" + cursoId + "/verificacion";
+        String url = cursoServiceUrl + "/api/v1/cursos/" + cursoId + "/verificacion";
         LOGGER.debug("Actualizando verificación del curso {} a estado: {}", cursoId, estadoVerificacion);
 
         CursoVerificacionUpdate update = new CursoVerificacionUpdate(estadoVerificacion);
 
-        return webClient.put()
+        // Sin reintentos: solo se reintentan lecturas
+        Mono<Void> llamada = webClient.put()
                 .uri(url)
                 .bodyValue(update)
                 .retrieve()
                 .bodyToMono(Void.class)
+                .timeout(timeoutRespuesta)
+                .doOnSuccess(v -> presupuesto.registrarExito());
+
+        return medir("updateCursoVerificacion", circuitBreaker.proteger(llamada))
                 .doOnSuccess(v -> LOGGER.info("Estado de verificación actualizado para curso: {}", cursoId))
                 .doOnError(error -> LOGGER.error("Error actualizando verificación del curso {}: {}", 
                         cursoId, error.getMessage()))
                 .onErrorMap(WebClientResponseException.class, this::handleException);
     }
 
+    /**
+     * Curso de reemplazo cuando cursoservice no responde o el circuito está abierto.
+     */
+    public CursoDTO cursoNoDisponible(String cursoId, String estadoVerificacion) {
+        return CursoDTO.builder()
+                .id(cursoId)
+                .nombre("Curso (información no disponible)")
+                .descripcion("No se pudo obtener la descripción del curso")
+                .modalidad("Virtual")
+                .precio_reserva(0.0f)
+                .verificacion_estado(estadoVerificacion)
+                .activo(true)
+                .build();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        connectionProvider.disposeLater().block(Duration.ofSeconds(5));
+    }
+
+    private Retry reintentos(String operacion) {
+        return Retry.backoff(maxReintentos, esperaInicial)
+                .maxBackoff(esperaMaxima)
+                .jitter(0.5)
+                .filter(error -> esTransitorio(error) && consumirPresupuesto(operacion))
+                .doBeforeRetry(signal -> LOGGER.debug("Reintentando {} ({}): {}", operacion,
+                        signal.totalRetries() + 1, signal.failure().toString()))
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    private boolean consumirPresupuesto(String operacion) {
+        boolean concedido = presupuesto.consumir();
+        meterRegistry.counter("cursos.cliente.reintentos", "operacion", operacion,
+                "resultado", concedido ? "realizado" : "sin_presupuesto").increment();
+        if (!concedido) {
+            LOGGER.warn("Presupuesto de reintentos agotado, {} no se reintenta", operacion);
+        }
+        return concedido;
+    }
+
+    private <T> Mono<T> medir(String operacion, Mono<T> llamada) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return llamada.doFinally(signal -> sample.stop(timer(operacion, signal)));
+        });
+    }
+
+    private <T> Flux<T> medir(String operacion, Flux<T> llamada) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return llamada.doFinally(signal -> sample.stop(timer(operacion, signal)));
+        });
+    }
+
+    private Timer timer(String operacion, SignalType signal) {
+        String resultado = switch (signal) {
+            case ON_COMPLETE -> "ok";
+            case ON_ERROR -> "error";
+            default -> "cancelado";
+        };
+        return Timer.builder("cursos.cliente.duration")
+                .tag("operacion", operacion)
+                .tag("resultado", resultado)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Errores que indican un problema del servicio o de la red: se reintentan (si es una
+     * lectura) y cuentan para el circuit breaker. Los 4xx salvo 429 no.
+     */
+    private static boolean esTransitorio(Throwable error) {
+        if (error instanceof WebClientResponseException respuesta) {
+            return respuesta.getStatusCode().is5xxServerError()
+                    || respuesta.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        return error instanceof WebClientRequestException || error instanceof TimeoutException;
+    }
+
     private Throwable handleException(Throwable ex) {
         if (!(ex instanceof WebClientResponseException)) {
             LOGGER.warn("Error inesperado: {}", ex.toString());
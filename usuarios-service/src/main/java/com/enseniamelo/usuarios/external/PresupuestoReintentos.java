@@ -0,0 +1,37 @@
+package com.enseniamelo.usuarios.external;
+
+/**
+ * Token bucket que limita los reintentos a una fracción de las llamadas con éxito.
+ *
+ * Cada llamada correcta deposita {@code proporcion} fichas (hasta {@code capacidad}) y cada
+ * reintento consume una. Cuando el servicio remoto falla de forma sostenida el bucket se vacía
+ * y se deja de reintentar, en lugar de multiplicar la carga sobre él.
+ */
+public class PresupuestoReintentos {
+
+    private final double capacidad;
+    private final double proporcion;
+    private double fichas;
+
+    public PresupuestoReintentos(double capacidad, double proporcion) {
+        this.capacidad = capacidad;
+        this.proporcion = proporcion;
+        this.fichas = capacidad;
+    }
+
+    public synchronized void registrarExito() {
+        fichas = Math.min(capacidad, fichas + proporcion);
+    }
+
+    public synchronized boolean consumir() {
+        if (fichas < 1) {
+            return false;
+        }
+        fichas -= 1;
+        return true;
+    }
+
+    public synchronized double disponibles() {
+        return fichas;
+    }
+}
@@ -0,0 +1,13 @@
+package com.enseniamelo.usuarios.mapper;
+
+import org.mapstruct.Mapper;
+
+import com.enseniamelo.usuarios.dto.EventoEstacionadoDTO;
+import com.enseniamelo.usuarios.model.EventoEstacionado;
+
+@Mapper(componentModel = "spring")
+public interface EventoEstacionadoMapper {
+
+    // dlq, eventCreatedAt y actualizado son internos
+    EventoEstacionadoDTO entityToDto(EventoEstacionado entity);
+}
@@ -23,6 +23,7 @@ public interface VerificarSolicitudMapper {
     @Mapping(target = "idPerfilTutor", ignore = true)
     @Mapping(target = "creado", ignore = true)
     @Mapping(target = "decidido", ignore = true)
+    @Mapping(target = "loteDecision", ignore = true)
     @Mapping(target = "actualizado", ignore = true)
     VerificarSolicitud dtoToEntity(VerificarSolicitudDTO dto);
 
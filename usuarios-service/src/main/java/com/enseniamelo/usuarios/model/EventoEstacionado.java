@@ -0,0 +1,58 @@
+package com.enseniamelo.usuarios.model;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Evento que un consumidor no pudo aplicar, tomado de la DLQ de su destino. Queda estacionado
+ * hasta que un administrador lo reprocesa o lo descarta. Si vuelve a fallar tras reprocesarlo
+ * se estaciona sobre el mismo documento y se suma una vez más.
+ */
+@Document(collection = "eventos_estacionados")
+@CompoundIndexes({
+    @CompoundIndex(name = "estado_estacionado_id", def = "{'estado': 1, 'estacionado': 1, '_id': 1}"),
+    @CompoundIndex(name = "estado_consumidor_estacionado_id", def = "{'estado': 1, 'consumidor': 1, 'estacionado': 1, '_id': 1}")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoEstacionado {
+
+    public static final String ESTACIONADO = "ESTACIONADO";
+    public static final String REPROCESANDO = "REPROCESANDO";
+    public static final String REPROCESADO = "REPROCESADO";
+    public static final String DESCARTADO = "DESCARTADO";
+
+    // consumidor:eventId, o un id nuevo si el evento no trae eventId
+    @Id
+    private String id;
+
+    private String consumidor;
+    private String dlq;
+
+    private String eventId;
+    private String tipo;
+    private String clave;
+    private String eventCreatedAt;
+    private Map<String, Object> datos;
+
+    private String motivo;
+    private Integer intentos;
+    private Integer veces;
+
+    private String estado;
+    // Mientras está REPROCESANDO: vencido, otro reproceso puede volver a tomarlo
+    private LocalDateTime bloqueadoHasta;
+    private LocalDateTime estacionado;
+    private LocalDateTime actualizado;
+    private LocalDateTime reprocesado;
+}
@@ -0,0 +1,44 @@
+package com.enseniamelo.usuarios.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Evento reclamado o ya aplicado por un consumidor. El id es {@code consumidor:eventId}, así que
+ * una redelivery choca con la clave única aunque la procese otra instancia. Se inserta como
+ * APLICANDO antes de aplicar el evento y pasa a APLICADO al terminar; los documentos sin estado
+ * (anteriores al reclamo) cuentan como aplicados.
+ */
+@Document(collection = "eventos_procesados")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoProcesado {
+
+    public static final String APLICANDO = "APLICANDO";
+    public static final String APLICADO = "APLICADO";
+
+    @Id
+    private String id;
+
+    private String consumidor;
+    private String estado;
+
+    // Mientras está APLICANDO: vencido, otra instancia puede retomar el evento
+    private LocalDateTime bloqueadoHasta;
+
+    // Para que cada instancia cargue en su filtro lo que registraron las demás
+    @Indexed
+    private LocalDateTime procesado;
+
+    // Mongo borra el documento al llegar a esta fecha
+    @Indexed(expireAfterSeconds = 0)
+    private LocalDateTime expira;
+}
@@ -0,0 +1,57 @@
+package com.enseniamelo.usuarios.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Cambio de verificación de un curso pendiente de propagar a cursoservice. Se escribe junto
+ * con el cambio de estado de la {@link VerificarSolicitud} y lo envía el relay.
+ */
+@Document(collection = "outbox_verificacion")
+@CompoundIndexes({
+    @CompoundIndex(name = "estado_curso_creado", def = "{'estado': 1, 'id_curso': 1, 'creado': 1}")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxVerificacion {
+
+    public static final String PENDIENTE = "PENDIENTE";
+    public static final String EN_PROCESO = "EN_PROCESO";
+    public static final String ENVIADO = "ENVIADO";
+    public static final String MUERTO = "MUERTO";
+
+    @Id
+    private String id;
+
+    @Field("id_curso")
+    private String idCurso;
+
+    @Field("id_solicitud")
+    private String idSolicitud;
+
+    private String estadoVerificacion;
+
+    private String estado;
+    private Integer intentos;
+    private LocalDateTime proximoIntento;
+    private LocalDateTime bloqueadoHasta;
+    private String ultimoError;
+
+    private LocalDateTime creado;
+    private LocalDateTime actualizado;
+
+    // Los enviados se purgan solos pasado un tiempo
+    @Indexed(expireAfter = "7d")
+    private LocalDateTime enviado;
+}
@@ -3,6 +3,8 @@ package com.enseniamelo.usuarios.model;
 import java.time.LocalDateTime;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -11,6 +13,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Document(collection = "perfil_tutor")
+@CompoundIndex(name = "verificado_clasificacion", def = "{'verificado': 1, 'clasificacion': -1}")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -19,6 +22,7 @@ public class PerfilTutor {
     @Id
     private String id;
 
+    @Indexed(unique = true)
     @Field("id_usuario")
     private String idUsuario; // referencia a usuarios._id
 
@@ -0,0 +1,52 @@
+package com.enseniamelo.usuarios.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Document(collection = "provision_keycloak")
+@CompoundIndex(name = "estado_proximo_intento", def = "{'estado': 1, 'proximoIntento': 1}")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProvisionTarea {
+
+    public static final String PENDIENTE = "PENDIENTE";
+    public static final String EN_PROCESO = "EN_PROCESO";
+    public static final String COMPLETADA = "COMPLETADA";
+    public static final String FALLIDA = "FALLIDA";
+
+    @Id
+    private String id;
+
+    @Indexed
+    @Field("id_usuario")
+    private String idUsuario; // referencia a usuarios._id
+
+    private String email;
+    private String nombre;
+    private String apellido;
+    private String rol;
+
+    // Cifrada con la clave de usuarios.provision; se elimina al terminar la tarea
+    private String contraseniaCifrada;
+
+    private String keycloakId;
+
+    private String estado;
+    private Integer intentos;
+    private LocalDateTime proximoIntento;
+    private LocalDateTime bloqueadoHasta;
+    private String ultimoError;
+
+    private LocalDateTime creado;
+    private LocalDateTime actualizado;
+}
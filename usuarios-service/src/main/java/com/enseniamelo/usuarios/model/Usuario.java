@@ -4,6 +4,8 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
@@ -15,6 +17,12 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Document(collection = "usuarios")
+// Listado paginado por _id: un índice por combinación de filtros para que el orden salga del índice
+@CompoundIndexes({
+    @CompoundIndex(name = "rol_activo_id", def = "{'rol': 1, 'activo': 1, '_id': 1}"),
+    @CompoundIndex(name = "rol_id", def = "{'rol': 1, '_id': 1}"),
+    @CompoundIndex(name = "activo_id", def = "{'activo': 1, '_id': 1}")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -27,7 +35,8 @@ public class Usuario {
     private String apellido;
     private String telefono;
 
-    @Indexed
+    // Nombre propio: el índice no único "email" de versiones anteriores se reemplaza al arrancar
+    @Indexed(name = "email_unico", unique = true)
     private String email;
 
     @JsonIgnore
@@ -42,6 +51,9 @@ public class Usuario {
 
     private Boolean activo;
 
+    private String estadoProvision; // PROVISIONING mientras se crea la cuenta de Keycloak en segundo plano, luego ACTIVO; si falla se elimina (FALLIDO solo en registros anteriores)
+    private String keycloakId;
+
     @Field("fechaCreacion")
     private LocalDateTime fechaCreacion;
     private LocalDateTime creado;
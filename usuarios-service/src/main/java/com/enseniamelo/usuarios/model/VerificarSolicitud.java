@@ -4,6 +4,9 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -12,6 +15,11 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Document(collection = "verificar_solicitud")
+@CompoundIndexes({
+    // Cola de verificación: keyset por (creado, _id) dentro de un estado, con o sin tutor
+    @CompoundIndex(name = "estado_creado_id", def = "{'estado': 1, 'creado': 1, '_id': 1}"),
+    @CompoundIndex(name = "estado_tutor_creado_id", def = "{'estado': 1, 'id_perfil_tutor': 1, 'creado': 1, '_id': 1}")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -20,10 +28,13 @@ public class VerificarSolicitud {
     @Id
     private String id;
 
+    @Indexed
     @Field("id_usuario")
     private String idUsuario; 
+    @Indexed
     @Field("id_perfil_tutor")
     private String idPerfilTutor; 
+    @Indexed(unique = true)
     @Field("id_curso")
     private String idCurso; 
 
@@ -38,5 +49,7 @@ public class VerificarSolicitud {
     private LocalDateTime creado;
     
     private LocalDateTime decidido;
+    // Lote de DecisionesVerificacionService que la decidió: así se sabe qué transiciones aplicó
+    private String loteDecision;
     private LocalDateTime actualizado;
 }
\ No newline at end of file
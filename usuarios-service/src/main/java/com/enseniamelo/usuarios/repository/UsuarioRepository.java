@@ -1,5 +1,7 @@
 package com.enseniamelo.usuarios.repository;
 
+import java.util.Collection;
+
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 
 import com.enseniamelo.usuarios.model.Usuario;
@@ -13,6 +15,8 @@ public interface UsuarioRepository extends ReactiveMongoRepository<Usuario, Stri
 
     Mono<Boolean> existsByEmail(String email);
 
+    Flux<Usuario> findByEmailIn(Collection<String> emails);
+
     Flux<Usuario> findByRol(String rol);
 
     Mono<Long> countByRol(String rol);
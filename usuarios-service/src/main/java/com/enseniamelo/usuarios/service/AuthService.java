@@ -1,33 +1,53 @@
 package com.enseniamelo.usuarios.service;
 
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.HttpStatusCode;
-import org.springframework.http.MediaType;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.client.WebClient;
 
 import com.enseniamelo.usuarios.dto.AuthResponse;
+import com.enseniamelo.usuarios.dto.BulkRegisterResult;
 import com.enseniamelo.usuarios.dto.LoginRequest;
 import com.enseniamelo.usuarios.dto.RegisterRequest;
+import com.enseniamelo.usuarios.external.KeycloakAdminSession;
+import com.enseniamelo.usuarios.external.KeycloakUserClient;
 import com.enseniamelo.usuarios.model.PerfilTutor;
+import com.enseniamelo.usuarios.model.ProvisionTarea;
 import com.enseniamelo.usuarios.model.Usuario;
 import com.enseniamelo.usuarios.repository.PerfilTutorRepository;
 import com.enseniamelo.usuarios.repository.UsuarioRepository;
+import com.enseniamelo.usuarios.util.events.LoteEventos;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 @Service
 @RequiredArgsConstructor
@@ -36,25 +56,26 @@ public class AuthService {
 
     private final UsuarioRepository usuarioRepository;
     private final PerfilTutorRepository perfilTutorRepository;
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
-    private final WebClient.Builder webClientBuilder;
-
-    @Value("${keycloak.auth-server-url:http://keycloak:8080}")
-    private String keycloakServerUrl;
-
-    @Value("${keycloak.realm:enseniamelo-realm}")
-    private String realm;
-
-    @Value("${keycloak.admin.username:admin}")
-    private String adminUsername;
-
-    @Value("${keycloak.admin.password:admin}")
-    private String adminPassword;
+    private final PasswordHashingService passwordHashingService;
+    private final UltimoAccesoWriteBehind ultimoAccesoWriteBehind;
+    private final KeycloakAdminSession keycloakAdminSession;
+    private final KeycloakUserClient keycloakUserClient;
+    private final KeycloakProvisioningService keycloakProvisioningService;
+    private final UsuarioCache usuarioCache;
+    private final MeterRegistry meterRegistry;
+    private final ReactiveMongoOperations mongoOperations;
+    private final Validator validator;
+
+    @Value("${usuarios.registro-masivo.tamanio-lote:100}")
+    private int tamanioLoteMasivo;
+
+    @Value("${usuarios.registro-masivo.concurrencia:8}")
+    private int concurrenciaMasiva;
 
     public Mono<AuthResponse> register(RegisterRequest request) {
         log.debug("Iniciando registro para email: {} con rol: {}", request.getEmail(), request.getRol());
 
-        return usuarioRepository.existsByEmail(request.getEmail())
+        return medirEtapa("email", usuarioRepository.existsByEmail(request.getEmail()))
                 .flatMap(exists -> {
                     if (exists) {
                         return Mono.error(new RuntimeException("El email ya está registrado"));
@@ -65,30 +86,26 @@ public class AuthService {
                     }
                     final String rolFinal = normalizarRol(rol);
                     log.debug("Rol normalizado: {}", rolFinal);
-                    return createUserInKeycloak(request, rolFinal)
-                            .flatMap(keycloakUserId -> {
+                    if (keycloakProvisioningService.isHabilitado()) {
+                        return medirEtapa("hash", passwordHashingService.encode(request.getContrasenia()))
+                                .flatMap(hash -> registrarConProvisionAsincrona(request, rolFinal, hash));
+                    }
+                    // El hash se calcula antes de tocar Keycloak para rechazar sin efectos si el pool está saturado
+                    return medirEtapa("hash", passwordHashingService.encode(request.getContrasenia()))
+                            .flatMap(hash -> createUserInKeycloak(request, rolFinal)
+                                    .map(keycloakUserId -> hash))
+                            .flatMap(hash -> {
                                 LocalDateTime ahora = LocalDateTime.now();
+                                Usuario usuario = construirUsuario(request, rolFinal, hash, ahora);
 
-                                Usuario usuario = new Usuario();
-                                usuario.setId(null);
-                                usuario.setNombre(request.getNombre());
-                                usuario.setApellido(request.getApellido());
-                                usuario.setEmail(request.getEmail());
-                                usuario.setTelefono(request.getTelefono());
-                                usuario.setContrasenia(passwordEncoder.encode(request.getContrasenia()));
-                                usuario.setRol(rolFinal);
-                                usuario.setRolCodigo(obtenerRolCodigo(rolFinal));
-                                usuario.setActivo(true);
-                                usuario.setDocumentos(Collections.emptyList());
-                                usuario.setFechaCreacion(ahora);
-                                usuario.setCreado(ahora);
-                                usuario.setActualizado(ahora);
-
-                                return usuarioRepository.save(usuario)
+                                return medirEtapa("mongo.usuario", usuarioRepository.save(usuario)
+                                                .onErrorMap(DuplicateKeyException.class, AuthService::emailYaRegistrado))
+                                        .doOnSuccess(savedUsuario -> usuarioCache.invalidarEmail(savedUsuario.getEmail()))
                                         .flatMap(savedUsuario -> {
                                             if ("TUTOR".equals(rolFinal)) {
                                                 log.info("Creando perfil de tutor para usuario: {}", savedUsuario.getId());
-                                                return crearPerfilTutorAutomatico(savedUsuario.getId(), ahora)
+                                                return medirEtapa("mongo.perfil-tutor",
+                                                        crearPerfilTutorAutomatico(savedUsuario.getId(), ahora))
                                                         .thenReturn(savedUsuario);
                                             }
                                             return Mono.just(savedUsuario);
@@ -112,6 +129,298 @@ public class AuthService {
                 });
     }
 
+    /**
+     * Variante del registro que no espera a Keycloak: el usuario se guarda en PROVISIONING y la
+     * cuenta se crea desde la cola de {@link KeycloakProvisioningService}.
+     */
+    private Mono<AuthResponse> registrarConProvisionAsincrona(RegisterRequest request, String rolFinal, String hash) {
+        LocalDateTime ahora = LocalDateTime.now();
+        Usuario usuario = construirUsuario(request, rolFinal, hash, ahora);
+        usuario.setId(new ObjectId().toHexString());
+        usuario.setActivo(false);
+        usuario.setEstadoProvision(KeycloakProvisioningService.PROVISIONING);
+
+        Mono<PerfilTutor> perfil = "TUTOR".equals(rolFinal)
+                ? medirEtapa("mongo.perfil-tutor", crearPerfilTutorAutomatico(usuario.getId(), ahora))
+                : Mono.empty();
+
+        // Primero el usuario: un email duplicado corta aquí sin dejar tarea ni perfil, y ningún
+        // worker puede tomar la tarea antes de que el usuario exista
+        return medirEtapa("mongo.usuario", mongoOperations.insert(usuario)
+                        .onErrorMap(DuplicateKeyException.class, AuthService::emailYaRegistrado)
+                        .doOnSuccess(guardado -> usuarioCache.invalidarEmail(guardado.getEmail())))
+                .then(Mono.when(
+                                medirEtapa("mongo.provision", keycloakProvisioningService.encolar(usuario, request.getContrasenia())),
+                                perfil)
+                        .onErrorResume(error -> deshacerRegistro(usuario).then(Mono.error(error))))
+                .then(Mono.fromSupplier(() -> {
+                    log.info("Usuario {} registrado, aprovisionamiento de Keycloak encolado", usuario.getId());
+                    return new AuthResponse(
+                        usuario.getId(),
+                        null,
+                        usuario.getNombre(),
+                        usuario.getApellido(),
+                        usuario.getTelefono(),
+                        usuario.getEmail(),
+                        usuario.getRol(),
+                        usuario.getFoto(),
+                        "Usuario registrado, activación de la cuenta en curso",
+                        null
+                    );
+                }));
+    }
+
+    /**
+     * Elimina lo que alcanzó a guardarse de un registro asíncrono que no se pudo completar.
+     */
+    private Mono<Void> deshacerRegistro(Usuario usuario) {
+        log.warn("Deshaciendo el registro de {}: no se pudo encolar el aprovisionamiento o crear el perfil",
+                usuario.getEmail());
+        return Mono.when(
+                        mongoOperations.remove(query(where("idUsuario").is(usuario.getId())), ProvisionTarea.class),
+                        mongoOperations.remove(query(where("idUsuario").is(usuario.getId())), PerfilTutor.class))
+                .then(mongoOperations.remove(query(where("_id").is(usuario.getId())), Usuario.class))
+                .doOnSuccess(r -> usuarioCache.invalidarEmail(usuario.getEmail()))
+                .onErrorResume(error -> {
+                    log.error("No se pudo deshacer el registro de {}: {}", usuario.getId(), error.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Registro masivo a partir de un flujo NDJSON. Las líneas se agrupan en lotes: cada lote
+     * resuelve los duplicados con una sola consulta {@code $in}, comparte un token de admin,
+     * crea las cuentas de Keycloak con concurrencia acotada y persiste los usuarios con un
+     * único bulkWrite no ordenado. Se emite un resultado por línea, en el orden de entrada de cada lote.
+     */
+    public Flux<BulkRegisterResult> registerBulk(Flux<RegisterRequest> requests) {
+        return Flux.defer(() -> {
+            long inicio = System.nanoTime();
+            AtomicLong procesados = new AtomicLong();
+
+            return requests
+                    .index((indice, request) -> Tuples.of(indice + 1, request))
+                    .bufferTimeout(tamanioLoteMasivo, Duration.ofMillis(200))
+                    .concatMap(this::registrarLote)
+                    .doOnNext(resultado -> {
+                        procesados.incrementAndGet();
+                        meterRegistry.counter("usuarios.register.bulk.registros",
+                                "estado", resultado.getEstado()).increment();
+                    })
+                    .doFinally(signal -> reportarThroughput(procesados.get(), System.nanoTime() - inicio));
+        });
+    }
+
+    private Flux<BulkRegisterResult> registrarLote(List<Tuple2<Long, RegisterRequest>> lote) {
+        List<BulkRegisterResult> rechazados = new ArrayList<>();
+        Map<String, Tuple2<Long, RegisterRequest>> candidatos = new LinkedHashMap<>();
+
+        for (Tuple2<Long, RegisterRequest> linea : lote) {
+            RegisterRequest request = linea.getT2();
+            Set<ConstraintViolation<RegisterRequest>> violaciones = validator.validate(request);
+            if (!violaciones.isEmpty()) {
+                String mensaje = violaciones.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining("; "));
+                rechazados.add(resultado(linea, BulkRegisterResult.INVALIDO, null, mensaje));
+            } else if (candidatos.putIfAbsent(request.getEmail(), linea) != null) {
+                rechazados.add(resultado(linea, BulkRegisterResult.DUPLICADO, null, "Email repetido en la carga"));
+            }
+        }
+        if (candidatos.isEmpty()) {
+            return Flux.fromIterable(rechazados);
+        }
+
+        return usuarioRepository.findByEmailIn(candidatos.keySet())
+                .map(Usuario::getEmail)
+                .collect(Collectors.toSet())
+                .flatMapMany(existentes -> {
+                    List<Tuple2<Long, RegisterRequest>> nuevos = new ArrayList<>();
+                    candidatos.forEach((email, linea) -> {
+                        if (existentes.contains(email)) {
+                            rechazados.add(resultado(linea, BulkRegisterResult.DUPLICADO, null, "El email ya está registrado"));
+                        } else {
+                            nuevos.add(linea);
+                        }
+                    });
+                    if (nuevos.isEmpty()) {
+                        return Flux.<BulkRegisterResult>empty();
+                    }
+                    return keycloakAdminSession.getToken()
+                            .flatMapMany(adminToken -> provisionarLote(adminToken, nuevos))
+                            .onErrorResume(error -> Flux.fromIterable(nuevos)
+                                    .map(linea -> resultado(linea, BulkRegisterResult.ERROR, null,
+                                            "No se pudo obtener el token de Keycloak: " + error.getMessage())));
+                })
+                .concatWith(Flux.defer(() -> Flux.fromIterable(rechazados)))
+                .sort(Comparator.comparing(BulkRegisterResult::getLinea));
+    }
+
+    private Flux<BulkRegisterResult> provisionarLote(String adminToken, List<Tuple2<Long, RegisterRequest>> nuevos) {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<BulkRegisterResult> fallidos = Collections.synchronizedList(new ArrayList<>());
+
+        return Flux.fromIterable(nuevos)
+                .flatMap(linea -> {
+                    RegisterRequest request = linea.getT2();
+                    String rolFinal = normalizarRol(request.getRol());
+                    return passwordHashingService.encode(request.getContrasenia())
+                            .flatMap(hash -> createUserInKeycloak(adminToken, request, rolFinal)
+                                    .map(keycloakId -> {
+                                        Usuario usuario = construirUsuario(request, rolFinal, hash, ahora);
+                                        usuario.setKeycloakId(keycloakId);
+                                        return Tuples.of(linea, usuario);
+                                    }))
+                            .onErrorResume(error -> {
+                                log.warn("Registro masivo: fallo en línea {} ({}): {}",
+                                        linea.getT1(), request.getEmail(), error.getMessage());
+                                fallidos.add(resultado(linea, BulkRegisterResult.ERROR, null, error.getMessage()));
+                                return Mono.empty();
+                            });
+                }, concurrenciaMasiva)
+                .collectList()
+                .flatMapMany(creados -> guardarLote(adminToken, creados, ahora))
+                .concatWith(Flux.defer(() -> Flux.fromIterable(fallidos)));
+    }
+
+    /**
+     * Persiste el lote con un insert no ordenado: un email duplicado solo hace fallar su línea.
+     * Las líneas que no se guardan eliminan la cuenta de Keycloak que se les creó.
+     */
+    private Flux<BulkRegisterResult> guardarLote(String adminToken,
+            List<Tuple2<Tuple2<Long, RegisterRequest>, Usuario>> creados, LocalDateTime ahora) {
+        if (creados.isEmpty()) {
+            return Flux.empty();
+        }
+        List<Usuario> usuarios = creados.stream().map(Tuple2::getT2).toList();
+        // Ids asignados aquí para saber qué se guardó aunque el bulkWrite falle
+        usuarios.forEach(usuario -> usuario.setId(new ObjectId().toHexString()));
+
+        return mongoOperations.bulkOps(BulkMode.UNORDERED, Usuario.class)
+                .insert(usuarios)
+                .execute()
+                .thenReturn(Collections.<Integer, String>emptyMap())
+                .onErrorResume(error -> erroresDeGuardado(usuarios, error))
+                .flatMapMany(errores -> {
+                    List<Usuario> guardados = new ArrayList<>();
+                    for (int i = 0; i < usuarios.size(); i++) {
+                        if (!errores.containsKey(i)) {
+                            guardados.add(usuarios.get(i));
+                        }
+                    }
+                    guardados.forEach(guardado -> usuarioCache.invalidarEmail(guardado.getEmail()));
+                    if (!errores.isEmpty()) {
+                        log.error("Registro masivo: {} de {} usuarios del lote no se guardaron", errores.size(),
+                                usuarios.size());
+                    }
+
+                    List<PerfilTutor> perfiles = guardados.stream()
+                            .filter(usuario -> "TUTOR".equals(usuario.getRol()))
+                            .map(usuario -> construirPerfilTutor(usuario.getId(), ahora))
+                            .toList();
+                    Mono<Boolean> perfilesGuardados = perfiles.isEmpty()
+                            ? Mono.just(true)
+                            : mongoOperations.insertAll(perfiles).then(Mono.just(true))
+                                    .onErrorResume(error -> {
+                                        log.error("Error creando perfiles de tutor del lote: {}", error.getMessage());
+                                        return Mono.just(false);
+                                    });
+
+                    return perfilesGuardados.flatMapMany(ok -> Flux.range(0, creados.size())
+                            .flatMapSequential(i -> {
+                                Tuple2<Long, RegisterRequest> linea = creados.get(i).getT1();
+                                Usuario usuario = creados.get(i).getT2();
+                                if (errores.containsKey(i)) {
+                                    return eliminarCuentaKeycloak(adminToken, usuario)
+                                            .thenReturn(resultado(linea, BulkRegisterResult.ERROR, null,
+                                                    "Error guardando el usuario: " + errores.get(i)));
+                                }
+                                String mensaje = ok || !"TUTOR".equals(usuario.getRol())
+                                        ? "Usuario registrado exitosamente"
+                                        : "Usuario registrado, perfil de tutor pendiente";
+                                return Mono.just(resultado(linea, BulkRegisterResult.CREADO, usuario.getId(), mensaje));
+                            }, concurrenciaMasiva));
+                })
+                .onErrorResume(error -> {
+                    // No se pudo saber qué se guardó: no se borra ninguna cuenta, se informan para revisar
+                    log.error("Error guardando lote de {} usuarios: {}", usuarios.size(), error.getMessage());
+                    return Flux.fromIterable(creados)
+                            .map(creado -> resultado(creado.getT1(), BulkRegisterResult.ERROR, null,
+                                    "Error guardando el usuario: " + error.getMessage()));
+                });
+    }
+
+    /**
+     * Índices del lote que no se guardaron. Los errores de escritura traen el índice de cada
+     * operación; ante cualquier otro error se consulta qué ids llegaron a Mongo.
+     */
+    private Mono<Map<Integer, String>> erroresDeGuardado(List<Usuario> usuarios, Throwable error) {
+        Map<Integer, String> errores = LoteEventos.erroresDeEscritura(error);
+        if (!errores.isEmpty()) {
+            return Mono.just(errores);
+        }
+        List<String> ids = usuarios.stream().map(Usuario::getId).toList();
+        Query guardados = query(where("_id").in(ids));
+        guardados.fields().include("_id");
+        return mongoOperations.find(guardados, Usuario.class)
+                .map(Usuario::getId)
+                .collect(Collectors.toSet())
+                .map(existentes -> {
+                    Map<Integer, String> faltantes = new LinkedHashMap<>();
+                    for (int i = 0; i < ids.size(); i++) {
+                        if (!existentes.contains(ids.get(i))) {
+                            faltantes.put(i, error.getMessage());
+                        }
+                    }
+                    return faltantes;
+                });
+    }
+
+    private Mono<Void> eliminarCuentaKeycloak(String adminToken, Usuario usuario) {
+        return keycloakUserClient.eliminarUsuario(adminToken, usuario.getKeycloakId())
+                .onErrorResume(error -> {
+                    log.error("No se pudo eliminar la cuenta {} de Keycloak de {}, requiere limpieza manual: {}",
+                            usuario.getKeycloakId(), usuario.getEmail(), error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private BulkRegisterResult resultado(Tuple2<Long, RegisterRequest> linea, String estado, String id, String mensaje) {
+        return new BulkRegisterResult(linea.getT1(), linea.getT2().getEmail(), estado, id, mensaje);
+    }
+
+    private void reportarThroughput(long registros, long nanos) {
+        double segundos = nanos / 1_000_000_000.0;
+        double porSegundo = segundos > 0 ? registros / segundos : 0;
+        DistributionSummary.builder("usuarios.register.bulk.throughput")
+                .description("Registros procesados por segundo en cada carga masiva")
+                .baseUnit("registros/s")
+                .register(meterRegistry)
+                .record(porSegundo);
+        log.info("Registro masivo terminado: {} registros en {} s ({} registros/s)",
+                registros, String.format("%.2f", segundos), String.format("%.1f", porSegundo));
+    }
+
+    private Usuario construirUsuario(RegisterRequest request, String rolFinal, String hash, LocalDateTime ahora) {
+        Usuario usuario = new Usuario();
+        usuario.setId(null);
+        usuario.setNombre(request.getNombre());
+        usuario.setApellido(request.getApellido());
+        usuario.setEmail(request.getEmail());
+        usuario.setTelefono(request.getTelefono());
+        usuario.setContrasenia(hash);
+        usuario.setRol(rolFinal);
+        usuario.setRolCodigo(obtenerRolCodigo(rolFinal));
+        usuario.setActivo(true);
+        usuario.setDocumentos(Collections.emptyList());
+        usuario.setFechaCreacion(ahora);
+        usuario.setCreado(ahora);
+        usuario.setActualizado(ahora);
+        return usuario;
+    }
+
     private String normalizarRol(String rol) {
         if (rol == null) return "ESTUDIANTE";
         
@@ -131,15 +440,13 @@ public class AuthService {
             default -> 1; // ESTUDIANTE
         };
     }
-    private String obtenerKeycloakRole(String rol) {
-        return switch (rol) {
-            case "ADMIN" -> "ADMIN";
-            case "TUTOR" -> "TUTOR";
-            default -> "USER"; 
-        };
+    private Mono<PerfilTutor> crearPerfilTutorAutomatico(String idUsuario, LocalDateTime ahora) {
+        return perfilTutorRepository.save(construirPerfilTutor(idUsuario, ahora))
+                .doOnSuccess(saved -> log.info("Perfil de tutor creado automáticamente con id: {}", saved.getId()))
+                .doOnError(error -> log.error("Error creando perfil de tutor automático: {}", error.getMessage()));
     }
 
-    private Mono<PerfilTutor> crearPerfilTutorAutomatico(String idUsuario, LocalDateTime ahora) {
+    private PerfilTutor construirPerfilTutor(String idUsuario, LocalDateTime ahora) {
         PerfilTutor perfil = new PerfilTutor();
         perfil.setId(null); 
         perfil.setIdUsuario(idUsuario);
@@ -149,89 +456,22 @@ public class AuthService {
         perfil.setBiografia(""); 
         perfil.setCreacion(ahora);
         perfil.setActualizado(ahora);
-        
-        return perfilTutorRepository.save(perfil)
-                .doOnSuccess(saved -> log.info("Perfil de tutor creado automáticamente con id: {}", saved.getId()))
-                .doOnError(error -> log.error("Error creando perfil de tutor automático: {}", error.getMessage()));
+        return perfil;
     }
 
     private Mono<String> createUserInKeycloak(RegisterRequest request, String rol) {
         log.debug("Creando usuario en Keycloak: {} con rol: {}", request.getEmail(), rol);
         
-        return getAdminToken()
-                .flatMap(adminToken -> {
-                    WebClient webClient = webClientBuilder.build();
-
-                    Map<String, Object> keycloakUser = new HashMap<>();
-                    keycloakUser.put("username", request.getEmail());
-                    keycloakUser.put("email", request.getEmail());
-                    keycloakUser.put("firstName", request.getNombre());
-                    keycloakUser.put("lastName", request.getApellido());
-                    keycloakUser.put("enabled", true);
-                    keycloakUser.put("emailVerified", false);
-                    
-                    Map<String, Object> credential = new HashMap<>();
-                    credential.put("type", "password");
-                    credential.put("value", request.getContrasenia());
-                    credential.put("temporary", false);
-                    keycloakUser.put("credentials", List.of(credential));
-
-                    String usersUrl = String.format("%s/admin/realms/%s/users", 
-                            keycloakServerUrl, realm);
-
-                    return webClient.post()
-                            .uri(usersUrl)
-                            .header("Authorization", "Bearer " + adminToken)
-                            .contentType(MediaType.APPLICATION_JSON)
-                            .bodyValue(keycloakUser)
-                            .retrieve()
-                            .onStatus(
-                                status -> status.value() == HttpStatus.CONFLICT.value(),
-                                response -> Mono.error(new RuntimeException("El usuario ya existe en Keycloak"))
-                            )
-                            .onStatus(
-                                HttpStatusCode::isError,
-                                response -> response.bodyToMono(String.class)
-                                        .flatMap(body -> {
-                                            log.error("Error creando usuario en Keycloak: {}", body);
-                                            return Mono.error(new RuntimeException("Error creando usuario en Keycloak: " + body));
-                                        })
-                            )
-                            .toBodilessEntity()
-                            .flatMap(response -> {
-                                String location = response.getHeaders().getLocation().toString();
-                                String userId = location.substring(location.lastIndexOf('/') + 1);
-                                log.debug("Usuario creado en Keycloak con ID: {}", userId);
-                                
-                                // Asignar el rol correspondiente en Keycloak
-                                String keycloakRole = obtenerKeycloakRole(rol);
-                                return assignRoleToUser(adminToken, userId, keycloakRole)
-                                        .thenReturn(userId);
-                            });
-                });
+        return medirEtapa("keycloak.token", keycloakAdminSession.getToken())
+                .flatMap(adminToken -> createUserInKeycloak(adminToken, request, rol));
     }
 
-    private Mono<String> getAdminToken() {
-        WebClient webClient = webClientBuilder.build();
-
-        String tokenUrl = String.format("%s/realms/master/protocol/openid-connect/token", 
-                keycloakServerUrl);
-
-        MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
-        formData.add("grant_type", "password");
-        formData.add("client_id", "admin-cli");
-        formData.add("username", adminUsername);
-        formData.add("password", adminPassword);
-
-        return webClient.post()
-                .uri(tokenUrl)
-                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
-                .body(BodyInserters.fromFormData(formData))
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> (String) response.get("access_token"))
-                .doOnSuccess(token -> log.debug("Token de admin obtenido exitosamente"))
-                .doOnError(error -> log.error("Error obteniendo token de admin: {}", error.getMessage()));
+    private Mono<String> createUserInKeycloak(String adminToken, RegisterRequest request, String rol) {
+        return medirEtapa("keycloak.usuario", keycloakUserClient.crearUsuario(adminToken, request.getEmail(),
+                        request.getNombre(), request.getApellido(), request.getContrasenia()))
+                .flatMap(userId -> medirEtapa("keycloak.rol",
+                        keycloakUserClient.asignarRol(adminToken, userId, keycloakUserClient.rolKeycloak(rol)))
+                        .thenReturn(userId));
     }
 
     public Mono<AuthResponse> login(LoginRequest request) {
@@ -239,23 +479,34 @@ public class AuthService {
 
         return usuarioRepository.findByEmail(request.getEmail())
                 .switchIfEmpty(Mono.error(new RuntimeException("Usuario no encontrado")))
-                .flatMap(usuario -> {
-                    if (!passwordEncoder.matches(request.getContrasenia(), usuario.getContrasenia())) {
+                .flatMap(usuario -> passwordHashingService.matches(request.getContrasenia(), usuario.getContrasenia())
+                        .map(coincide -> Tuples.of(usuario, coincide)))
+                .flatMap(tuple -> {
+                    Usuario usuario = tuple.getT1();
+                    if (!tuple.getT2()) {
                         return Mono.error(new RuntimeException("Contraseña incorrecta"));
                     }
+                    // Sin estado: registro síncrono, la cuenta de Keycloak ya existía al guardar el usuario
+                    String estadoProvision = usuario.getEstadoProvision();
+                    if (KeycloakProvisioningService.PROVISIONING.equals(estadoProvision)) {
+                        return Mono.error(new RuntimeException("La cuenta todavía se está activando, intente en unos minutos"));
+                    }
+                    if (estadoProvision != null && !KeycloakProvisioningService.ACTIVO.equals(estadoProvision)) {
+                        return Mono.error(new RuntimeException("La cuenta no pudo activarse, contacte al administrador"));
+                    }
 
-                    usuario.setActualizado(LocalDateTime.now());
+                    // El último acceso se persiste en segundo plano, fuera del camino del login
+                    ultimoAccesoWriteBehind.registrar(usuario.getId(), LocalDateTime.now());
 
-                    return usuarioRepository.save(usuario)
-                            .map(updatedUsuario -> new AuthResponse(
-                                    updatedUsuario.getId(),
+                    return Mono.just(new AuthResponse(
+                                    usuario.getId(),
                                     null,
-                                    updatedUsuario.getNombre(),
-                                    updatedUsuario.getApellido(),
-                                    updatedUsuario.getTelefono(),
-                                    updatedUsuario.getEmail(),
-                                    updatedUsuario.getRol(),
-                                    updatedUsuario.getFoto(),
+                                    usuario.getNombre(),
+                                    usuario.getApellido(),
+                                    usuario.getTelefono(),
+                                    usuario.getEmail(),
+                                    usuario.getRol(),
+                                    usuario.getFoto(),
                                     "Login exitoso",
                                     null));
                 });
@@ -264,7 +515,7 @@ public class AuthService {
     public Mono<AuthResponse> getUserById(String userId) {
         log.debug("Buscando usuario con id: {}", userId);
 
-        return usuarioRepository.findById(userId)
+        return usuarioCache.buscarPorId(userId)
                 .switchIfEmpty(Mono.empty())
                 .map(usuario -> new AuthResponse(
                         usuario.getId(),
@@ -279,38 +530,26 @@ public class AuthService {
                         null));
     }
 
-    private Mono<Void> assignRoleToUser(String adminToken, String userId, String roleName) {
-        log.debug("Asignando rol {} al usuario {}", roleName, userId);
-        WebClient webClient = webClientBuilder.build();
-        String rolesUrl = String.format("%s/admin/realms/%s/roles/%s", 
-                keycloakServerUrl, realm, roleName);
-
-        return webClient.get()
-                .uri(rolesUrl)
-                .header("Authorization", "Bearer " + adminToken)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .flatMap(roleData -> {
-                    String assignRoleUrl = String.format("%s/admin/realms/%s/users/%s/role-mappings/realm",
-                            keycloakServerUrl, realm, userId);
-
-                    return webClient.post()
-                            .uri(assignRoleUrl)
-                            .header("Authorization", "Bearer " + adminToken)
-                            .contentType(MediaType.APPLICATION_JSON)
-                            .bodyValue(List.of(roleData))
-                            .retrieve()
-                            .toBodilessEntity()
-                            .then()
-                            .doOnSuccess(v -> log.debug("Rol {} asignado exitosamente", roleName))
-                            .doOnError(error -> log.error("Error asignando rol: {}", error.getMessage()));
-                });
+    // El índice único de email cubre las carreras que el existsByEmail previo no ve
+    private static RuntimeException emailYaRegistrado(DuplicateKeyException error) {
+        return new RuntimeException("El email ya está registrado", error);
+    }
+
+    private <T> Mono<T> medirEtapa(String etapa, Mono<T> paso) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return paso.doFinally(signal -> sample.stop(Timer.builder("usuarios.register.etapa")
+                    .description("Duración de cada salto del pipeline de registro")
+                    .tag("etapa", etapa)
+                    .tag("outcome", signal == SignalType.ON_ERROR ? "error" : "success")
+                    .register(meterRegistry)));
+        });
     }
 
     public Mono<AuthResponse> getUserByEmail(String email) {
         log.debug("Buscando usuario por email: {}", email);
 
-        return usuarioRepository.findByEmail(email)
+        return usuarioCache.buscarPorEmail(email)
                 .switchIfEmpty(Mono.empty())
                 .map(usuario -> new AuthResponse(
                         usuario.getId(),
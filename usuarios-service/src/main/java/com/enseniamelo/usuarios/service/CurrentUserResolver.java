@@ -0,0 +1,162 @@
+package com.enseniamelo.usuarios.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import com.enseniamelo.usuarios.dto.AuthResponse;
+import com.enseniamelo.usuarios.util.events.UsuarioInvalidadoEvent;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Resuelve el usuario actual a partir de los claims {@code sub}/{@code email} del JWT.
+ *
+ * La respuesta se cachea por token-sujeto durante un tiempo corto que nunca supera la
+ * expiración del propio token, y lleva un ETag calculado sobre su contenido para responder
+ * 304 a peticiones condicionales. Las invalidaciones de {@link UsuarioCache} se propagan aquí.
+ */
+@Component
+@Slf4j
+public class CurrentUserResolver {
+
+    private final AuthService authService;
+    private final Duration ttl;
+    private final AsyncCache<String, UsuarioActual> cache;
+
+    private final Counter respuestasCompletas;
+    private final Counter respuestasNoModificadas;
+
+    @Autowired
+    public CurrentUserResolver(
+            AuthService authService,
+            MeterRegistry meterRegistry,
+            @Value("${usuarios.auth-me.ttl:60s}") Duration ttl,
+            @Value("${usuarios.auth-me.tamanio-maximo:10000}") long tamanioMaximo) {
+        this.authService = authService;
+        this.ttl = ttl;
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfter(new Expiry<String, UsuarioActual>() {
+                    @Override
+                    public long expireAfterCreate(String clave, UsuarioActual valor, long ahora) {
+                        return Math.max(0, Duration.between(Instant.now(), valor.expira()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String clave, UsuarioActual valor, long ahora, long restante) {
+                        return expireAfterCreate(clave, valor, ahora);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String clave, UsuarioActual valor, long ahora, long restante) {
+                        return restante;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "auth.me");
+        this.respuestasCompletas = Counter.builder("auth.me.respuestas")
+                .tag("resultado", "200").register(meterRegistry);
+        this.respuestasNoModificadas = Counter.builder("auth.me.respuestas")
+                .tag("resultado", "304").register(meterRegistry);
+    }
+
+    public Mono<UsuarioActual> resolver(Jwt jwt) {
+        String sub = jwt.getClaimAsString("sub");
+        String email = jwt.getClaimAsString("email");
+        String clave = sub + "|" + email;
+
+        return Mono.fromFuture(() -> cache.get(clave, (k, executor) -> cargar(jwt, sub, email).toFuture()));
+    }
+
+    private Mono<UsuarioActual> cargar(Jwt jwt, String sub, String email) {
+        // La entrada no puede sobrevivir al token con el que se resolvió
+        Instant expira = Instant.now().plus(ttl);
+        if (jwt.getExpiresAt() != null && jwt.getExpiresAt().isBefore(expira)) {
+            expira = jwt.getExpiresAt();
+        }
+        final Instant limite = expira;
+        String nombreUsuario = jwt.getClaimAsString("preferred_username");
+
+        if (email == null) {
+            return Mono.just(UsuarioActual.de(new AuthResponse(sub, null, nombreUsuario, null, null, null,
+                    "Usuario temporal desde token"), limite));
+        }
+        return authService.getUserByEmail(email)
+                .defaultIfEmpty(new AuthResponse(sub, null, nombreUsuario, null, email, null,
+                        "Usuario obtenido desde token"))
+                .map(respuesta -> UsuarioActual.de(respuesta, limite));
+    }
+
+    /**
+     * Indica si el cliente ya tiene la versión actual (responder 304) y lo contabiliza.
+     */
+    public boolean noModificado(UsuarioActual actual, String ifNoneMatch) {
+        boolean noModificado = actual.coincideCon(ifNoneMatch);
+        (noModificado ? respuestasNoModificadas : respuestasCompletas).increment();
+        return noModificado;
+    }
+
+    @EventListener
+    public void onUsuarioInvalidado(UsuarioInvalidadoEvent evento) {
+        cache.synchronous().asMap().entrySet().removeIf(entrada -> {
+            AuthResponse respuesta = entrada.getValue().respuesta();
+            return (evento.idUsuario() != null && evento.idUsuario().equals(respuesta.getId()))
+                    || (evento.email() != null && entrada.getKey().endsWith("|" + evento.email()));
+        });
+    }
+
+    public record UsuarioActual(AuthResponse respuesta, String etag, Instant expira) {
+
+        static UsuarioActual de(AuthResponse respuesta, Instant expira) {
+            String contenido = String.join("\u001F",
+                    Objects.toString(respuesta.getId(), ""),
+                    Objects.toString(respuesta.getNombre(), ""),
+                    Objects.toString(respuesta.getApellido(), ""),
+                    Objects.toString(respuesta.getTelefono(), ""),
+                    Objects.toString(respuesta.getEmail(), ""),
+                    Objects.toString(respuesta.getRol(), ""),
+                    Objects.toString(respuesta.getFoto(), ""),
+                    Objects.toString(respuesta.getMessage(), ""));
+            String etag = "\"" + DigestUtils.md5DigestAsHex(contenido.getBytes(StandardCharsets.UTF_8)) + "\"";
+            return new UsuarioActual(respuesta, etag, expira);
+        }
+
+        /**
+         * Evalúa un If-None-Match (lista de ETags, débiles o fuertes, o {@code *}).
+         */
+        public boolean coincideCon(String ifNoneMatch) {
+            if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+                return false;
+            }
+            for (String candidato : ifNoneMatch.split(",")) {
+                String valor = candidato.trim();
+                if (valor.startsWith("W/")) {
+                    valor = valor.substring(2);
+                }
+                if (valor.equals("*") || valor.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.enseniamelo.usuarios.dto.DecisionSolicitudRequest;
+import com.enseniamelo.usuarios.dto.DecisionSolicitudResultado;
+import com.enseniamelo.usuarios.model.PerfilTutor;
+import com.enseniamelo.usuarios.model.VerificarSolicitud;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Aprobación y rechazo masivo de solicitudes de verificación.
+ *
+ * Las decisiones se agrupan en lotes; cada lote aplica todas las transiciones
+ * {@code PENDIENTE → APROBADO/RECHAZADO} con un único bulkWrite condicionado al estado, relee los
+ * documentos para saber cuáles se aplicaron (los que llevan el {@code loteDecision} del lote), registra sus entradas del outbox con un insertMany
+ * (el relay las envía a cursoservice por lotes) y marca los perfiles de tutor aprobados con un
+ * único updateMulti. Los resultados se emiten por decisión, en el orden de entrada.
+ */
+@Service
+@Slf4j
+public class DecisionesVerificacionService {
+
+    private static final Set<String> DECISIONES = Set.of("APROBADO", "RECHAZADO");
+    private static final String PENDIENTE = "PENDIENTE";
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final OutboxVerificacionService outboxVerificacion;
+    private final PerfilVerificadoWriteBehind perfilVerificado;
+    private final SolicitudesPendientesContador pendientesContador;
+    private final MeterRegistry meterRegistry;
+
+    private final int tamanioLote;
+
+    @Autowired
+    public DecisionesVerificacionService(
+            ReactiveMongoOperations mongoOperations,
+            OutboxVerificacionService outboxVerificacion,
+            PerfilVerificadoWriteBehind perfilVerificado,
+            SolicitudesPendientesContador pendientesContador,
+            MeterRegistry meterRegistry,
+            @Value("${usuarios.verificacion.decisiones.tamanio-lote:100}") int tamanioLote) {
+        this.mongoOperations = mongoOperations;
+        this.outboxVerificacion = outboxVerificacion;
+        this.perfilVerificado = perfilVerificado;
+        this.pendientesContador = pendientesContador;
+        this.meterRegistry = meterRegistry;
+        this.tamanioLote = tamanioLote;
+    }
+
+    public Flux<DecisionSolicitudResultado> decidir(Flux<DecisionSolicitudRequest> decisiones) {
+        return decisiones
+                .bufferTimeout(tamanioLote, Duration.ofMillis(200))
+                .concatMap(this::decidirLote)
+                .doOnNext(resultado -> meterRegistry.counter("usuarios.verificacion.decisiones",
+                        "resultado", resultado.getEstado()).increment());
+    }
+
+    private Flux<DecisionSolicitudResultado> decidirLote(List<DecisionSolicitudRequest> lote) {
+        DecisionSolicitudResultado[] resultados = new DecisionSolicitudResultado[lote.size()];
+        Map<String, DecisionSolicitudRequest> validas = new LinkedHashMap<>();
+
+        for (int i = 0; i < lote.size(); i++) {
+            DecisionSolicitudRequest decision = lote.get(i);
+            String error = validar(decision, validas);
+            if (error != null) {
+                resultados[i] = resultado(decision, DecisionSolicitudResultado.INVALIDA, error);
+            } else {
+                validas.put(decision.getId(), decision);
+            }
+        }
+        if (validas.isEmpty()) {
+            return Flux.fromArray(resultados);
+        }
+
+        // Marca única del lote: las solicitudes que la tienen al releer son las que cambió este lote,
+        // aunque otro lote las decida en el mismo milisegundo
+        String loteDecision = UUID.randomUUID().toString();
+
+        Mono<Map<String, VerificarSolicitud>> aplicacion = aplicar(validas.values(), loteDecision)
+                .then(releer(validas.keySet()))
+                .flatMap(leidas -> outboxVerificacion.registrarTodas(aplicadas(leidas, validas, loteDecision))
+                        .then(Mono.just(leidas)));
+
+        return outboxVerificacion.enTransaccion(aplicacion)
+                .doOnNext(leidas -> pendientesContador.decididas(aplicadas(leidas, validas, loteDecision).size()))
+                .flatMap(leidas -> verificarPerfiles(aplicadas(leidas, validas, loteDecision)).thenReturn(leidas))
+                .map(leidas -> completar(lote, resultados, leidas, validas, loteDecision))
+                .onErrorResume(error -> {
+                    log.error("Error aplicando lote de {} decisiones: {}", validas.size(), error.getMessage());
+                    for (int i = 0; i < lote.size(); i++) {
+                        if (resultados[i] == null) {
+                            resultados[i] = resultado(lote.get(i), DecisionSolicitudResultado.ERROR, error.getMessage());
+                        }
+                    }
+                    return Mono.just(Arrays.asList(resultados));
+                })
+                .flatMapIterable(lista -> lista);
+    }
+
+    private String validar(DecisionSolicitudRequest decision, Map<String, DecisionSolicitudRequest> validas) {
+        if (decision.getId() == null || decision.getId().isBlank()) {
+            return "El id de la solicitud es obligatorio";
+        }
+        if (decision.getDecision() == null || !DECISIONES.contains(decision.getDecision())) {
+            return "La decisión debe ser APROBADO o RECHAZADO";
+        }
+        if (validas.containsKey(decision.getId())) {
+            return "Solicitud repetida en el lote";
+        }
+        return null;
+    }
+
+    private Mono<Void> aplicar(Iterable<DecisionSolicitudRequest> decisiones, String loteDecision) {
+        LocalDateTime ahora = LocalDateTime.now();
+        ReactiveBulkOperations bulk = mongoOperations.bulkOps(BulkMode.UNORDERED, VerificarSolicitud.class);
+        for (DecisionSolicitudRequest decision : decisiones) {
+            bulk.updateOne(
+                    query(where("_id").is(decision.getId()).and("estado").is(PENDIENTE)),
+                    new Update()
+                            .set("estado", decision.getDecision())
+                            .set("comentario", decision.getComentario())
+                            .set("decidido", ahora)
+                            .set("loteDecision", loteDecision)
+                            .set("actualizado", ahora));
+        }
+        return bulk.execute()
+                .doOnNext(result -> log.debug("Lote de decisiones: {} solicitudes, {} modificadas",
+                        result.getMatchedCount(), result.getModifiedCount()))
+                .then();
+    }
+
+    private Mono<Map<String, VerificarSolicitud>> releer(Set<String> ids) {
+        Query leidas = query(where("_id").in(ids));
+        leidas.fields().include("estado", "loteDecision", "idCurso", "idPerfilTutor");
+        return mongoOperations.find(leidas, VerificarSolicitud.class)
+                .collectMap(VerificarSolicitud::getId);
+    }
+
+    private static List<VerificarSolicitud> aplicadas(Map<String, VerificarSolicitud> leidas,
+            Map<String, DecisionSolicitudRequest> validas, String loteDecision) {
+        return leidas.values().stream()
+                .filter(solicitud -> aplicada(solicitud, validas.get(solicitud.getId()), loteDecision))
+                .toList();
+    }
+
+    private static boolean aplicada(VerificarSolicitud solicitud, DecisionSolicitudRequest decision,
+            String loteDecision) {
+        return decision != null
+                && decision.getDecision().equals(solicitud.getEstado())
+                && loteDecision.equals(solicitud.getLoteDecision());
+    }
+
+    /**
+     * Un único updateMulti para los perfiles de las solicitudes aprobadas. Si falla, se delega
+     * en el write-behind para que lo reintente.
+     */
+    private Mono<Void> verificarPerfiles(List<VerificarSolicitud> aplicadas) {
+        List<String> perfiles = aplicadas.stream()
+                .filter(solicitud -> "APROBADO".equals(solicitud.getEstado()))
+                .map(VerificarSolicitud::getIdPerfilTutor)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        if (perfiles.isEmpty()) {
+            return Mono.empty();
+        }
+
+        return mongoOperations.updateMulti(
+                        query(where("_id").in(perfiles)),
+                        new Update().set("verificado", "verificado").set("actualizado", LocalDateTime.now()),
+                        PerfilTutor.class)
+                .doOnError(error -> {
+                    log.warn("No se pudieron verificar {} perfiles de tutor, se reintentará: {}",
+                            perfiles.size(), error.getMessage());
+                    perfiles.forEach(perfilVerificado::marcarVerificado);
+                })
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    private List<DecisionSolicitudResultado> completar(List<DecisionSolicitudRequest> lote,
+            DecisionSolicitudResultado[] resultados, Map<String, VerificarSolicitud> leidas,
+            Map<String, DecisionSolicitudRequest> validas, String loteDecision) {
+        List<DecisionSolicitudResultado> salida = new ArrayList<>(lote.size());
+        for (int i = 0; i < lote.size(); i++) {
+            if (resultados[i] != null) {
+                salida.add(resultados[i]);
+                continue;
+            }
+            DecisionSolicitudRequest decision = lote.get(i);
+            VerificarSolicitud solicitud = leidas.get(decision.getId());
+            if (solicitud == null) {
+                salida.add(resultado(decision, DecisionSolicitudResultado.NO_ENCONTRADA, "Solicitud no encontrada"));
+            } else if (aplicada(solicitud, validas.get(solicitud.getId()), loteDecision)) {
+                salida.add(resultado(decision, DecisionSolicitudResultado.APLICADA, null));
+            } else {
+                salida.add(resultado(decision, DecisionSolicitudResultado.YA_PROCESADA,
+                        "La solicitud ya fue procesada"));
+            }
+        }
+        return salida;
+    }
+
+    private static DecisionSolicitudResultado resultado(DecisionSolicitudRequest decision, String estado,
+            String mensaje) {
+        return new DecisionSolicitudResultado(decision.getId(), decision.getDecision(), estado, mensaje);
+    }
+}
@@ -0,0 +1,378 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.enseniamelo.usuarios.dto.EventoEstacionadoDTO;
+import com.enseniamelo.usuarios.dto.PaginaDTO;
+import com.enseniamelo.usuarios.dto.ReprocesoRequest;
+import com.enseniamelo.usuarios.dto.ReprocesoResultado;
+import com.enseniamelo.usuarios.mapper.EventoEstacionadoMapper;
+import com.enseniamelo.usuarios.model.EventoEstacionado;
+import com.enseniamelo.usuarios.util.events.Event;
+import com.enseniamelo.usuarios.util.events.EventosDlq;
+import com.enseniamelo.usuarios.util.exception.BadRequestException;
+import com.enseniamelo.usuarios.util.exception.NotFoundException;
+import com.enseniamelo.usuarios.util.paginacion.CursorPaginacion;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Estacionamiento de los eventos que llegan a las DLQ: los guarda con el motivo y los intentos,
+ * los lista para administración y los reprocesa publicándolos de nuevo en su destino.
+ *
+ * El reproceso se publica a un ritmo máximo común a todas las peticiones
+ * ({@code usuarios.estacionamiento.reproceso.por-segundo}), para que recuperar miles de eventos
+ * no se traduzca en una ráfaga de escrituras contra Mongo en los consumidores. Cada evento se
+ * toma con un findAndModify ESTACIONADO -> REPROCESANDO con bloqueo temporal, así dos reprocesos
+ * concurrentes nunca publican el mismo evento; si la instancia que lo tomó muere, al vencer el
+ * bloqueo el evento vuelve a poder reprocesarse o descartarse.
+ */
+@Service
+@Slf4j
+public class EventosEstacionadosService {
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final StreamBridge streamBridge;
+    private final EventoEstacionadoMapper estacionadoMapper;
+    private final MeterRegistry meterRegistry;
+    private final int limiteMaximo;
+    private final double porSegundo;
+    private final long intervaloNanos;
+    private final Duration bloqueo;
+
+    // Próximo instante (nanoTime) en el que se puede publicar un reproceso
+    private final AtomicLong siguienteTurno = new AtomicLong(System.nanoTime());
+    private final Map<String, AtomicLong> estacionadosPorConsumidor = new ConcurrentHashMap<>();
+
+    @Autowired
+    public EventosEstacionadosService(
+            ReactiveMongoOperations mongoOperations,
+            StreamBridge streamBridge,
+            EventoEstacionadoMapper estacionadoMapper,
+            MeterRegistry meterRegistry,
+            @Value("${usuarios.estacionamiento.limite-maximo:500}") int limiteMaximo,
+            @Value("${usuarios.estacionamiento.reproceso.por-segundo:20}") double porSegundo,
+            @Value("${usuarios.estacionamiento.reproceso.bloqueo:5m}") Duration bloqueo) {
+        this.mongoOperations = mongoOperations;
+        this.streamBridge = streamBridge;
+        this.estacionadoMapper = estacionadoMapper;
+        this.meterRegistry = meterRegistry;
+        this.limiteMaximo = limiteMaximo;
+        this.porSegundo = porSegundo;
+        this.intervaloNanos = (long) (1_000_000_000L / Math.max(0.001, porSegundo));
+        this.bloqueo = bloqueo;
+    }
+
+    /**
+     * Guarda un mensaje de DLQ. Si el evento ya estuvo estacionado (falló otra vez tras
+     * reprocesarlo) se actualiza el mismo documento.
+     */
+    public Mono<Void> estacionar(Message<Event<String, Map<String, Object>>> mensaje) {
+        Event<String, Map<String, Object>> event = mensaje.getPayload();
+        MessageHeaders headers = mensaje.getHeaders();
+        String consumidor = texto(headers.get(EventosDlq.HEADER_CONSUMIDOR), "DESCONOCIDO");
+        String id = event.getEventId() != null ? consumidor + ":" + event.getEventId() : UUID.randomUUID().toString();
+        LocalDateTime ahora = LocalDateTime.now();
+
+        Update update = new Update()
+                .set("consumidor", consumidor)
+                .set("dlq", texto(headers.get(EventosDlq.HEADER_DLQ), null))
+                .set("eventId", event.getEventId())
+                .set("tipo", event.getEventType() != null ? event.getEventType().name() : null)
+                .set("clave", event.getKey())
+                .set("eventCreatedAt", event.getEventCreatedAt() != null ? event.getEventCreatedAt().toString() : null)
+                .set("datos", event.getData())
+                .set("motivo", texto(headers.get(EventosDlq.HEADER_ERROR), null))
+                .set("intentos", entero(headers.get(EventosDlq.HEADER_INTENTOS)))
+                .set("estado", EventoEstacionado.ESTACIONADO)
+                .set("estacionado", ahora)
+                .set("actualizado", ahora)
+                .unset("bloqueadoHasta")
+                .inc("veces", 1);
+
+        return mongoOperations.upsert(query(where("_id").is(id)), update, EventoEstacionado.class)
+                .doOnSuccess(resultado -> {
+                    meterRegistry.counter("usuarios.eventos.estacionados.total", "consumidor", consumidor).increment();
+                    log.info("[{}] Evento {} {} estacionado: {}", consumidor, event.getEventType(), event.getKey(),
+                            headers.get(EventosDlq.HEADER_ERROR));
+                })
+                .then();
+    }
+
+    public Mono<PaginaDTO<EventoEstacionadoDTO>> listar(String estado, String consumidor, String cursor, int limite) {
+        int tamanio = Math.max(1, Math.min(limite, limiteMaximo));
+        Query consulta = query(where("estado").is(estado));
+        if (consumidor != null && !consumidor.isBlank()) {
+            consulta.addCriteria(where("consumidor").is(consumidor));
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            List<String> valores = CursorPaginacion.decodificar(cursor, 2);
+            LocalDateTime ultimo;
+            try {
+                ultimo = LocalDateTime.parse(valores.get(0));
+            } catch (DateTimeParseException e) {
+                return Mono.error(new BadRequestException("Cursor de paginación inválido"));
+            }
+            consulta.addCriteria(new Criteria().orOperator(
+                    where("estacionado").gt(ultimo),
+                    where("estacionado").is(ultimo).and("_id").gt(valores.get(1))));
+        }
+        consulta.with(Sort.by(Sort.Direction.ASC, "estacionado", "_id"));
+        // Se pide uno de más para saber si existe una página siguiente
+        consulta.limit(tamanio + 1);
+
+        return mongoOperations.find(consulta, EventoEstacionado.class)
+                .collectList()
+                .map(eventos -> {
+                    boolean hayMas = eventos.size() > tamanio;
+                    List<EventoEstacionado> pagina = hayMas ? eventos.subList(0, tamanio) : eventos;
+                    String siguiente = null;
+                    if (hayMas) {
+                        EventoEstacionado ultimo = pagina.get(pagina.size() - 1);
+                        siguiente = CursorPaginacion.codificar(ultimo.getEstacionado().toString(), ultimo.getId());
+                    }
+                    return PaginaDTO.of(pagina.stream().map(estacionadoMapper::entityToDto).toList(), siguiente);
+                });
+    }
+
+    public Mono<EventoEstacionadoDTO> obtener(String id) {
+        return mongoOperations.findById(id, EventoEstacionado.class)
+                .switchIfEmpty(Mono.error(new NotFoundException("Evento estacionado no encontrado: " + id)))
+                .map(estacionadoMapper::entityToDto);
+    }
+
+    public Mono<EventoEstacionadoDTO> descartar(String id) {
+        LocalDateTime ahora = LocalDateTime.now();
+        return mongoOperations.findAndModify(
+                        query(where("_id").is(id).orOperator(disponible(ahora))),
+                        new Update().set("estado", EventoEstacionado.DESCARTADO).set("actualizado", ahora)
+                                .unset("bloqueadoHasta"),
+                        FindAndModifyOptions.options().returnNew(true),
+                        EventoEstacionado.class)
+                .switchIfEmpty(Mono.defer(() -> mongoOperations.exists(query(where("_id").is(id)), EventoEstacionado.class)
+                        .flatMap(existe -> Mono.error(existe
+                                ? new BadRequestException("Solo se pueden descartar eventos en estado ESTACIONADO")
+                                : new NotFoundException("Evento estacionado no encontrado: " + id)))))
+                .map(estacionadoMapper::entityToDto)
+                .doOnSuccess(descartado -> log.info("Evento estacionado {} descartado", id));
+    }
+
+    /**
+     * Reprocesa los eventos indicados por id o, si no hay ids, los más antiguos del consumidor.
+     * Termina cuando todos se publicaron; los que no se pudieron publicar vuelven a ESTACIONADO.
+     */
+    public Mono<ReprocesoResultado> reprocesar(ReprocesoRequest request) {
+        boolean porIds = request.getIds() != null && !request.getIds().isEmpty();
+        if (!porIds && (request.getConsumidor() == null || request.getConsumidor().isBlank())) {
+            return Mono.error(new BadRequestException("Indique ids o un consumidor a reprocesar"));
+        }
+        if (porIds && request.getIds().size() > limiteMaximo) {
+            return Mono.error(new BadRequestException("Se pueden reprocesar hasta " + limiteMaximo + " eventos por petición"));
+        }
+
+        Query seleccion;
+        LocalDateTime ahora = LocalDateTime.now();
+        if (porIds) {
+            seleccion = query(where("_id").in(request.getIds()).orOperator(disponible(ahora)));
+        } else {
+            int limite = request.getLimite() != null ? request.getLimite() : limiteMaximo;
+            seleccion = query(where("consumidor").is(request.getConsumidor()).orOperator(disponible(ahora)))
+                    .with(Sort.by(Sort.Direction.ASC, "estacionado", "_id"))
+                    .limit(Math.max(1, Math.min(limite, limiteMaximo)));
+        }
+        seleccion.fields().include("_id");
+
+        AtomicInteger seleccionados = new AtomicInteger();
+        AtomicInteger publicados = new AtomicInteger();
+        AtomicInteger fallidos = new AtomicInteger();
+
+        return mongoOperations.find(seleccion, EventoEstacionado.class)
+                .map(EventoEstacionado::getId)
+                .collectList()
+                .flatMapMany(Flux::fromIterable)
+                .concatMap(id -> tomar(id)
+                        .flatMap(estacionado -> {
+                            seleccionados.incrementAndGet();
+                            return esperarTurno().then(Mono.defer(() -> publicar(estacionado)));
+                        })
+                        .doOnNext(publicado -> (publicado ? publicados : fallidos).incrementAndGet()))
+                .then(Mono.fromSupplier(() -> new ReprocesoResultado(seleccionados.get(), publicados.get(),
+                        fallidos.get(), porSegundo)))
+                .doOnSuccess(resultado -> log.info("Reproceso terminado: {} seleccionados, {} publicados, {} fallidos",
+                        resultado.getSeleccionados(), resultado.getPublicados(), resultado.getFallidos()));
+    }
+
+    private Mono<EventoEstacionado> tomar(String id) {
+        LocalDateTime ahora = LocalDateTime.now();
+        return mongoOperations.findAndModify(
+                query(where("_id").is(id).orOperator(disponible(ahora))),
+                new Update()
+                        .set("estado", EventoEstacionado.REPROCESANDO)
+                        .set("bloqueadoHasta", ahora.plus(bloqueo))
+                        .set("actualizado", ahora),
+                FindAndModifyOptions.options().returnNew(true),
+                EventoEstacionado.class);
+    }
+
+    /**
+     * Eventos que se pueden tomar: los ESTACIONADO y los REPROCESANDO con el bloqueo vencido.
+     */
+    private static Criteria[] disponible(LocalDateTime ahora) {
+        return new Criteria[] {
+                where("estado").is(EventoEstacionado.ESTACIONADO),
+                // Bloqueo vencido: la instancia que lo tomó murió o se colgó antes de publicar
+                where("estado").is(EventoEstacionado.REPROCESANDO).and("bloqueadoHasta").lt(ahora) };
+    }
+
+    /**
+     * Reserva el siguiente hueco del ritmo de reproceso y espera hasta él. Las reservas son
+     * globales: dos peticiones simultáneas se reparten el mismo ritmo.
+     */
+    private Mono<Void> esperarTurno() {
+        long ahora = System.nanoTime();
+        long anterior = siguienteTurno.getAndUpdate(turno -> Math.max(turno, ahora) + intervaloNanos);
+        long espera = Math.max(anterior, ahora) - ahora;
+        return espera > 0 ? Mono.delay(Duration.ofNanos(espera)).then() : Mono.empty();
+    }
+
+    private Mono<Boolean> publicar(EventoEstacionado estacionado) {
+        String binding = estacionado.getDlq() != null ? EventosDlq.REPROCESO.get(estacionado.getDlq()) : null;
+        boolean publicado = false;
+        if (binding == null) {
+            log.warn("Evento estacionado {} sin destino de reproceso (dlq={})", estacionado.getId(), estacionado.getDlq());
+        } else {
+            try {
+                publicado = streamBridge.send(binding, MessageBuilder.withPayload(evento(estacionado))
+                        .setHeader("partitionKey", estacionado.getClave())
+                        .build());
+            } catch (RuntimeException e) {
+                log.error("No se pudo reprocesar el evento estacionado {}: {}", estacionado.getId(), e.getMessage());
+            }
+            // Si el turno llegó tarde, el siguiente se cuenta desde esta publicación y no se recupera en ráfaga
+            long despues = System.nanoTime() + intervaloNanos;
+            siguienteTurno.accumulateAndGet(despues, Math::max);
+        }
+        meterRegistry.counter("usuarios.eventos.reprocesados", "consumidor", estacionado.getConsumidor(),
+                "resultado", publicado ? "publicado" : "fallido").increment();
+
+        // Condicionado a REPROCESANDO con nuestro bloqueo: si el evento ya falló otra vez y se
+        // reestacionó, o el bloqueo venció y lo tomó otro reproceso, no se pisa
+        LocalDateTime ahora = LocalDateTime.now();
+        Update update = publicado
+                ? new Update().set("estado", EventoEstacionado.REPROCESADO).set("reprocesado", ahora).set("actualizado", ahora)
+                : new Update().set("estado", EventoEstacionado.ESTACIONADO).set("actualizado", ahora);
+        update.unset("bloqueadoHasta");
+        boolean resultado = publicado;
+        return mongoOperations.updateFirst(
+                        query(where("_id").is(estacionado.getId())
+                                .and("estado").is(EventoEstacionado.REPROCESANDO)
+                                .and("bloqueadoHasta").is(estacionado.getBloqueadoHasta())),
+                        update, EventoEstacionado.class)
+                .thenReturn(resultado);
+    }
+
+    private static Event<String, Map<String, Object>> evento(EventoEstacionado estacionado) {
+        ZonedDateTime creado = null;
+        if (estacionado.getEventCreatedAt() != null) {
+            try {
+                creado = ZonedDateTime.parse(estacionado.getEventCreatedAt());
+            } catch (DateTimeParseException e) {
+                creado = ZonedDateTime.now();
+            }
+        }
+        // El mismo eventId: si el primer intento sí se había aplicado, la deduplicación lo descarta
+        return new Event<>(
+                estacionado.getTipo() != null ? Event.Type.valueOf(estacionado.getTipo()) : null,
+                estacionado.getClave(), estacionado.getDatos(), creado, estacionado.getEventId());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        medirEstacionados();
+    }
+
+    /**
+     * Recuenta los eventos ESTACIONADO por consumidor para el gauge {@code usuarios.eventos.estacionados}.
+     */
+    @Scheduled(fixedDelayString = "${usuarios.estacionamiento.intervalo-metricas:30s}",
+            initialDelayString = "${usuarios.estacionamiento.intervalo-metricas:30s}")
+    public void medirEstacionados() {
+        mongoOperations.aggregate(newAggregation(
+                        match(where("estado").is(EventoEstacionado.ESTACIONADO)),
+                        group("consumidor").count().as("total")),
+                "eventos_estacionados", Document.class)
+                .collectMap(documento -> String.valueOf(documento.get("_id")),
+                        documento -> ((Number) documento.get("total")).longValue())
+                .subscribe(totales -> {
+                    estacionadosPorConsumidor.forEach((consumidor, valor) -> valor.set(totales.getOrDefault(consumidor, 0L)));
+                    totales.forEach((consumidor, total) -> gauge(consumidor).set(total));
+                }, error -> log.warn("No se pudieron contar los eventos estacionados: {}", error.getMessage()));
+    }
+
+    private AtomicLong gauge(String consumidor) {
+        return estacionadosPorConsumidor.computeIfAbsent(consumidor, c -> {
+            AtomicLong valor = new AtomicLong();
+            Gauge.builder("usuarios.eventos.estacionados", valor, AtomicLong::get)
+                    .description("Eventos en el estacionamiento pendientes de reproceso")
+                    .tag("consumidor", c)
+                    .register(meterRegistry);
+            return valor;
+        });
+    }
+
+    private static String texto(Object valor, String porDefecto) {
+        if (valor == null) {
+            return porDefecto;
+        }
+        return valor instanceof byte[] bytes ? new String(bytes) : valor.toString();
+    }
+
+    private static Integer entero(Object valor) {
+        String texto = texto(valor, null);
+        if (texto == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(texto.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.crypto.encrypt.Encryptors;
+import org.springframework.security.crypto.encrypt.TextEncryptor;
+import org.springframework.stereotype.Service;
+
+import com.enseniamelo.usuarios.external.KeycloakAdminSession;
+import com.enseniamelo.usuarios.external.KeycloakUserClient;
+import com.enseniamelo.usuarios.model.PerfilTutor;
+import com.enseniamelo.usuarios.model.ProvisionTarea;
+import com.enseniamelo.usuarios.model.Usuario;
+import com.enseniamelo.usuarios.util.exception.ConflictException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Cola de aprovisionamiento de cuentas de Keycloak respaldada en Mongo.
+ *
+ * Con {@code usuarios.provision.asincrona} activo, el registro guarda el usuario en estado
+ * PROVISIONING junto con una tarea en {@code provision_keycloak} y responde sin esperar a
+ * Keycloak. Un ciclo periódico reclama tareas con findAndModify (con bloqueo temporal para
+ * que varias instancias no las repitan), crea el usuario y le asigna el rol, y pasa el usuario
+ * a ACTIVO. Los fallos se reintentan con backoff exponencial; al agotar los intentos se elimina
+ * lo creado en Keycloak y también el usuario, para que el email quede libre y pueda registrarse
+ * de nuevo. La tarea FALLIDA conserva el email y el motivo.
+ */
+@Service
+@Slf4j
+public class KeycloakProvisioningService {
+
+    public static final String PROVISIONING = "PROVISIONING";
+    public static final String ACTIVO = "ACTIVO";
+    public static final String FALLIDO = "FALLIDO";
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final KeycloakAdminSession adminSession;
+    private final KeycloakUserClient keycloakUserClient;
+    private final TextEncryptor encryptor;
+    private final UsuarioCache usuarioCache;
+
+    private final boolean habilitado;
+    private final int tamanioLote;
+    private final int concurrencia;
+    private final int maxIntentos;
+    private final Duration backoffInicial;
+    private final Duration backoffMaximo;
+    private final Duration bloqueo;
+
+    private final AtomicBoolean cicloEnCurso = new AtomicBoolean(false);
+    private final AtomicLong profundidad = new AtomicLong();
+    private final AtomicLong antiguedadMs = new AtomicLong();
+
+    private final Counter completadas;
+    private final Counter reintentos;
+    private final Counter fallidas;
+    private final Timer lag;
+
+    @Autowired
+    public KeycloakProvisioningService(
+            ReactiveMongoOperations mongoOperations,
+            KeycloakAdminSession adminSession,
+            KeycloakUserClient keycloakUserClient,
+            UsuarioCache usuarioCache,
+            MeterRegistry meterRegistry,
+            @Value("${usuarios.provision.asincrona:false}") boolean habilitado,
+            @Value("${usuarios.provision.tamanio-lote:20}") int tamanioLote,
+            @Value("${usuarios.provision.concurrencia:4}") int concurrencia,
+            @Value("${usuarios.provision.max-intentos:6}") int maxIntentos,
+            @Value("${usuarios.provision.backoff-inicial:2s}") Duration backoffInicial,
+            @Value("${usuarios.provision.backoff-maximo:5m}") Duration backoffMaximo,
+            @Value("${usuarios.provision.bloqueo:2m}") Duration bloqueo,
+            @Value("${usuarios.provision.clave-cifrado:}") String claveCifrado,
+            @Value("${usuarios.provision.sal:}") String sal) {
+        this.mongoOperations = mongoOperations;
+        this.adminSession = adminSession;
+        this.keycloakUserClient = keycloakUserClient;
+        this.usuarioCache = usuarioCache;
+        this.habilitado = habilitado;
+        this.tamanioLote = tamanioLote;
+        this.concurrencia = concurrencia;
+        this.maxIntentos = maxIntentos;
+        this.backoffInicial = backoffInicial;
+        this.backoffMaximo = backoffMaximo;
+        this.bloqueo = bloqueo;
+
+        if (habilitado && (claveCifrado.isBlank() || sal.isBlank())) {
+            throw new IllegalStateException(
+                    "usuarios.provision.clave-cifrado y usuarios.provision.sal son obligatorias con aprovisionamiento asíncrono");
+        }
+        this.encryptor = habilitado ? Encryptors.delux(claveCifrado, sal) : null;
+
+        this.completadas = Counter.builder("usuarios.provision.tareas")
+                .tag("resultado", "completada").register(meterRegistry);
+        this.reintentos = Counter.builder("usuarios.provision.tareas")
+                .tag("resultado", "reintento").register(meterRegistry);
+        this.fallidas = Counter.builder("usuarios.provision.tareas")
+                .tag("resultado", "fallida").register(meterRegistry);
+        this.lag = Timer.builder("usuarios.provision.lag")
+                .description("Tiempo desde el registro hasta que la cuenta de Keycloak queda activa")
+                .register(meterRegistry);
+        Gauge.builder("usuarios.provision.profundidad", profundidad, AtomicLong::get)
+                .description("Tareas de aprovisionamiento pendientes o en proceso")
+                .register(meterRegistry);
+        TimeGauge.builder("usuarios.provision.antiguedad", antiguedadMs, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Antigüedad de la tarea pendiente más vieja")
+                .register(meterRegistry);
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    public Mono<ProvisionTarea> encolar(Usuario usuario, String contrasenia) {
+        LocalDateTime ahora = LocalDateTime.now();
+
+        ProvisionTarea tarea = new ProvisionTarea();
+        tarea.setIdUsuario(usuario.getId());
+        tarea.setEmail(usuario.getEmail());
+        tarea.setNombre(usuario.getNombre());
+        tarea.setApellido(usuario.getApellido());
+        tarea.setRol(usuario.getRol());
+        tarea.setContraseniaCifrada(encryptor.encrypt(contrasenia));
+        tarea.setEstado(ProvisionTarea.PENDIENTE);
+        tarea.setIntentos(0);
+        tarea.setProximoIntento(ahora);
+        tarea.setCreado(ahora);
+        tarea.setActualizado(ahora);
+
+        return mongoOperations.insert(tarea);
+    }
+
+    @Scheduled(fixedDelayString = "${usuarios.provision.intervalo:1s}")
+    public void procesarPendientes() {
+        if (!habilitado || !cicloEnCurso.compareAndSet(false, true)) {
+            return;
+        }
+        procesarLote()
+                .doFinally(signal -> cicloEnCurso.set(false))
+                .subscribe(
+                        procesadas -> {
+                            if (procesadas > 0) {
+                                log.debug("Aprovisionamiento: {} tareas procesadas, {} en cola",
+                                        procesadas, profundidad.get());
+                            }
+                        },
+                        error -> log.error("Error en el ciclo de aprovisionamiento: {}", error.getMessage()));
+    }
+
+    Mono<Long> procesarLote() {
+        AtomicInteger reclamadas = new AtomicInteger(1);
+        return reclamar()
+                .expand(tarea -> reclamadas.getAndIncrement() < tamanioLote ? reclamar() : Mono.empty())
+                .flatMap(this::ejecutar, concurrencia)
+                .count()
+                .flatMap(procesadas -> actualizarMetricas().thenReturn(procesadas));
+    }
+
+    private Mono<ProvisionTarea> reclamar() {
+        LocalDateTime ahora = LocalDateTime.now();
+        Query disponibles = query(new Criteria().orOperator(
+                where("estado").is(ProvisionTarea.PENDIENTE).and("proximoIntento").lte(ahora),
+                // Bloqueo vencido: la instancia que la tomó murió o se colgó
+                where("estado").is(ProvisionTarea.EN_PROCESO).and("bloqueadoHasta").lt(ahora)))
+                .with(Sort.by("proximoIntento"));
+
+        Update reclamo = new Update()
+                .set("estado", ProvisionTarea.EN_PROCESO)
+                .set("bloqueadoHasta", ahora.plus(bloqueo))
+                .set("actualizado", ahora)
+                .inc("intentos", 1);
+
+        return mongoOperations.findAndModify(disponibles, reclamo,
+                FindAndModifyOptions.options().returnNew(true), ProvisionTarea.class);
+    }
+
+    private Mono<Void> ejecutar(ProvisionTarea tarea) {
+        return adminSession.getToken()
+                .flatMap(adminToken -> obtenerKeycloakId(adminToken, tarea)
+                        .flatMap(keycloakId -> keycloakUserClient.asignarRol(adminToken, keycloakId,
+                                        keycloakUserClient.rolKeycloak(tarea.getRol()))
+                                .thenReturn(keycloakId)))
+                .flatMap(keycloakId -> completar(tarea, keycloakId))
+                .onErrorResume(error -> registrarFallo(tarea, error));
+    }
+
+    private Mono<String> obtenerKeycloakId(String adminToken, ProvisionTarea tarea) {
+        if (tarea.getKeycloakId() != null) {
+            return Mono.just(tarea.getKeycloakId());
+        }
+        return keycloakUserClient.crearUsuario(adminToken, tarea.getEmail(), tarea.getNombre(),
+                        tarea.getApellido(), encryptor.decrypt(tarea.getContraseniaCifrada()))
+                .onErrorResume(ConflictException.class, error -> {
+                    // Solo se adopta la cuenta existente si un intento anterior pudo haberla creado
+                    if (tarea.getIntentos() <= 1) {
+                        return Mono.error(error);
+                    }
+                    return keycloakUserClient.buscarIdPorEmail(adminToken, tarea.getEmail())
+                            .switchIfEmpty(Mono.error(error));
+                })
+                .flatMap(keycloakId -> mongoOperations.updateFirst(
+                                query(where("_id").is(tarea.getId())),
+                                new Update().set("keycloakId", keycloakId),
+                                ProvisionTarea.class)
+                        .doOnSuccess(result -> tarea.setKeycloakId(keycloakId))
+                        .thenReturn(keycloakId));
+    }
+
+    /**
+     * Idempotente: si un intento anterior ya activó al usuario con esta misma cuenta pero no llegó
+     * a cerrar la tarea (falló la segunda escritura o venció el bloqueo), se vuelve a cerrar sin
+     * compensar. Solo se compensa si el usuario ya no existe.
+     */
+    private Mono<Void> completar(ProvisionTarea tarea, String keycloakId) {
+        LocalDateTime ahora = LocalDateTime.now();
+
+        Query pendienteOActivado = query(where("_id").is(tarea.getIdUsuario()).orOperator(
+                where("estadoProvision").is(PROVISIONING),
+                where("estadoProvision").is(ACTIVO).and("keycloakId").is(keycloakId)));
+
+        return mongoOperations.updateFirst(
+                        pendienteOActivado,
+                        new Update()
+                                .set("estadoProvision", ACTIVO)
+                                .set("activo", true)
+                                .set("keycloakId", keycloakId)
+                                .set("actualizado", ahora),
+                        Usuario.class)
+                .doOnSuccess(result -> usuarioCache.invalidar(tarea.getIdUsuario(), tarea.getEmail()))
+                .flatMap(result -> {
+                    if (result.getMatchedCount() > 0) {
+                        return cerrar(tarea, ahora);
+                    }
+                    return mongoOperations.exists(query(where("_id").is(tarea.getIdUsuario())), Usuario.class)
+                            .flatMap(existe -> {
+                                if (!existe) {
+                                    // El usuario se eliminó (o nunca llegó a guardarse) mientras se aprovisionaba
+                                    return compensar(tarea, "El usuario ya no existe");
+                                }
+                                // Estado inesperado (p. ej. FALLIDO o activo con otra cuenta): no se toca
+                                // al usuario ni a Keycloak, se deja la tarea para revisión manual
+                                log.error("Usuario {} no está pendiente de aprovisionamiento; la cuenta {} de Keycloak requiere revisión",
+                                        tarea.getIdUsuario(), keycloakId);
+                                return mongoOperations.updateFirst(
+                                                query(where("_id").is(tarea.getId())),
+                                                new Update()
+                                                        .set("estado", ProvisionTarea.FALLIDA)
+                                                        .set("ultimoError", "El usuario no está pendiente de aprovisionamiento")
+                                                        .set("actualizado", ahora)
+                                                        .unset("contraseniaCifrada")
+                                                        .unset("bloqueadoHasta"),
+                                                ProvisionTarea.class)
+                                        .doOnSuccess(r -> fallidas.increment())
+                                        .then();
+                            });
+                });
+    }
+
+    private Mono<Void> cerrar(ProvisionTarea tarea, LocalDateTime ahora) {
+        return mongoOperations.updateFirst(
+                        query(where("_id").is(tarea.getId())),
+                        new Update()
+                                .set("estado", ProvisionTarea.COMPLETADA)
+                                .set("actualizado", ahora)
+                                .unset("contraseniaCifrada")
+                                .unset("bloqueadoHasta"),
+                        ProvisionTarea.class)
+                .doOnSuccess(r -> {
+                    completadas.increment();
+                    lag.record(Duration.between(tarea.getCreado(), ahora));
+                    log.info("Cuenta de Keycloak aprovisionada para usuario {}", tarea.getIdUsuario());
+                })
+                .then();
+    }
+
+    private Mono<Void> registrarFallo(ProvisionTarea tarea, Throwable error) {
+        boolean permanente = error instanceof ConflictException;
+        if (permanente || tarea.getIntentos() >= maxIntentos) {
+            return compensar(tarea, error.getMessage());
+        }
+
+        Duration espera = backoff(tarea.getIntentos());
+        LocalDateTime ahora = LocalDateTime.now();
+        log.warn("Aprovisionamiento de {} falló (intento {}/{}), reintento en {}: {}",
+                tarea.getEmail(), tarea.getIntentos(), maxIntentos, espera, error.getMessage());
+
+        return mongoOperations.updateFirst(
+                        query(where("_id").is(tarea.getId())),
+                        new Update()
+                                .set("estado", ProvisionTarea.PENDIENTE)
+                                .set("proximoIntento", ahora.plus(espera))
+                                .set("ultimoError", error.getMessage())
+                                .set("actualizado", ahora)
+                                .unset("bloqueadoHasta"),
+                        ProvisionTarea.class)
+                .doOnSuccess(r -> reintentos.increment())
+                .then();
+    }
+
+    private Mono<Void> compensar(ProvisionTarea tarea, String motivo) {
+        LocalDateTime ahora = LocalDateTime.now();
+
+        Mono<Void> eliminarCuenta = tarea.getKeycloakId() == null
+                ? Mono.empty()
+                : adminSession.getToken()
+                        .flatMap(adminToken -> keycloakUserClient.eliminarUsuario(adminToken, tarea.getKeycloakId()))
+                        .onErrorResume(error -> {
+                            log.error("No se pudo eliminar la cuenta {} de Keycloak, requiere limpieza manual: {}",
+                                    tarea.getKeycloakId(), error.getMessage());
+                            return Mono.empty();
+                        });
+
+        // Solo si sigue sin activar: un usuario ACTIVO (otra tarea, o un cambio manual) no se toca.
+        // Con el usuario se va el perfil de tutor creado en el registro
+        Query sinActivar = query(where("_id").is(tarea.getIdUsuario())
+                .and("estadoProvision").in(PROVISIONING, FALLIDO));
+
+        return eliminarCuenta
+                .then(mongoOperations.remove(sinActivar, Usuario.class))
+                .flatMap(result -> result.getDeletedCount() > 0
+                        ? mongoOperations.remove(query(where("idUsuario").is(tarea.getIdUsuario())), PerfilTutor.class)
+                                .then()
+                        : Mono.<Void>empty())
+                .doOnSuccess(result -> usuarioCache.invalidar(tarea.getIdUsuario(), tarea.getEmail()))
+                .then(mongoOperations.updateFirst(
+                        query(where("_id").is(tarea.getId())),
+                        new Update()
+                                .set("estado", ProvisionTarea.FALLIDA)
+                                .set("ultimoError", motivo)
+                                .set("actualizado", ahora)
+                                .unset("contraseniaCifrada")
+                                .unset("bloqueadoHasta"),
+                        ProvisionTarea.class))
+                .doOnSuccess(r -> {
+                    fallidas.increment();
+                    log.error("Aprovisionamiento de {} abandonado tras {} intentos: {}",
+                            tarea.getEmail(), tarea.getIntentos(), motivo);
+                })
+                .then();
+    }
+
+    private Duration backoff(int intentos) {
+        long base = backoffInicial.toMillis() << Math.min(intentos - 1, 20);
+        long tope = Math.min(base, backoffMaximo.toMillis());
+        // Jitter para que las tareas que fallaron juntas no se reintenten juntas
+        return Duration.ofMillis(tope / 2 + ThreadLocalRandom.current().nextLong(tope / 2 + 1));
+    }
+
+    private Mono<Void> actualizarMetricas() {
+        Criteria activas = where("estado").in(ProvisionTarea.PENDIENTE, ProvisionTarea.EN_PROCESO);
+
+        Mono<Long> total = mongoOperations.count(query(activas), ProvisionTarea.class);
+        Mono<Long> antiguedad = mongoOperations
+                .findOne(query(activas).with(Sort.by("creado")), ProvisionTarea.class)
+                .map(tarea -> Duration.between(tarea.getCreado(), LocalDateTime.now()).toMillis())
+                .defaultIfEmpty(0L);
+
+        return Mono.zip(total, antiguedad)
+                .doOnNext(valores -> {
+                    profundidad.set(valores.getT1());
+                    antiguedadMs.set(valores.getT2());
+                })
+                .then();
+    }
+}
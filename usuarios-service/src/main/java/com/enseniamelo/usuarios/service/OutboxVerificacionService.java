@@ -0,0 +1,367 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.limit;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.replaceRoot;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.sort;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.enseniamelo.usuarios.external.CursoSnapshotCache;
+import com.enseniamelo.usuarios.model.OutboxVerificacion;
+import com.enseniamelo.usuarios.model.VerificarSolicitud;
+import com.enseniamelo.usuarios.util.events.Event;
+import com.enseniamelo.usuarios.util.exception.InvalidInputException;
+import com.enseniamelo.usuarios.util.exception.NotFoundException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Outbox de cambios de verificación de cursos.
+ *
+ * Aprobar o rechazar una solicitud escribe el cambio de estado y una entrada en
+ * {@code outbox_verificacion} en la misma transacción (con {@code usuarios.outbox.transaccional});
+ * el administrador ya no espera a cursoservice. Un relay periódico envía las entradas por lotes,
+ * a cursoservice o a un destino de Spring Cloud Stream, respetando el orden por curso: de cada
+ * curso solo se envía la entrada abierta más antigua. Los fallos se reintentan con backoff y
+ * las entradas que agotan los intentos (o que cursoservice rechaza) quedan en estado MUERTO.
+ */
+@Service
+@Slf4j
+public class OutboxVerificacionService {
+
+    public static final String DESTINO_HTTP = "http";
+    public static final String DESTINO_STREAM = "stream";
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final CursoSnapshotCache cursoSnapshotCache;
+    private final StreamBridge streamBridge;
+    private final TransactionalOperator transactionalOperator;
+
+    private final boolean relayHabilitado;
+    private final String destino;
+    private final String binding;
+    private final int tamanioLote;
+    private final int concurrencia;
+    private final int maxIntentos;
+    private final Duration backoffInicial;
+    private final Duration backoffMaximo;
+    private final Duration bloqueo;
+
+    private final AtomicBoolean cicloEnCurso = new AtomicBoolean(false);
+    private final AtomicLong profundidad = new AtomicLong();
+    private final AtomicLong antiguedadMs = new AtomicLong();
+
+    private final Counter enviadas;
+    private final Counter reintentos;
+    private final Counter muertas;
+    private final Timer lag;
+
+    @Autowired
+    public OutboxVerificacionService(
+            ReactiveMongoOperations mongoOperations,
+            CursoSnapshotCache cursoSnapshotCache,
+            StreamBridge streamBridge,
+            ObjectProvider<TransactionalOperator> transactionalOperator,
+            MeterRegistry meterRegistry,
+            @Value("${usuarios.outbox.relay-habilitado:true}") boolean relayHabilitado,
+            @Value("${usuarios.outbox.destino:http}") String destino,
+            @Value("${usuarios.outbox.binding:verificacionCurso-out-0}") String binding,
+            @Value("${usuarios.outbox.tamanio-lote:50}") int tamanioLote,
+            @Value("${usuarios.outbox.concurrencia:8}") int concurrencia,
+            @Value("${usuarios.outbox.max-intentos:10}") int maxIntentos,
+            @Value("${usuarios.outbox.backoff-inicial:2s}") Duration backoffInicial,
+            @Value("${usuarios.outbox.backoff-maximo:10m}") Duration backoffMaximo,
+            @Value("${usuarios.outbox.bloqueo:1m}") Duration bloqueo) {
+        this.mongoOperations = mongoOperations;
+        this.cursoSnapshotCache = cursoSnapshotCache;
+        this.streamBridge = streamBridge;
+        this.transactionalOperator = transactionalOperator.getIfAvailable();
+        this.relayHabilitado = relayHabilitado;
+        this.destino = destino;
+        this.binding = binding;
+        this.tamanioLote = tamanioLote;
+        this.concurrencia = concurrencia;
+        this.maxIntentos = maxIntentos;
+        this.backoffInicial = backoffInicial;
+        this.backoffMaximo = backoffMaximo;
+        this.bloqueo = bloqueo;
+
+        if (!DESTINO_HTTP.equals(destino) && !DESTINO_STREAM.equals(destino)) {
+            throw new IllegalStateException("usuarios.outbox.destino debe ser http o stream: " + destino);
+        }
+        if (this.transactionalOperator == null) {
+            log.warn("Outbox de verificación sin transacciones: el cambio de estado y la entrada del "
+                    + "outbox se escriben por separado");
+        }
+
+        this.enviadas = Counter.builder("usuarios.outbox.entradas")
+                .tag("resultado", "enviada").register(meterRegistry);
+        this.reintentos = Counter.builder("usuarios.outbox.entradas")
+                .tag("resultado", "reintento").register(meterRegistry);
+        this.muertas = Counter.builder("usuarios.outbox.entradas")
+                .tag("resultado", "muerta").register(meterRegistry);
+        this.lag = Timer.builder("usuarios.outbox.lag")
+                .description("Tiempo desde la decisión hasta que cursoservice recibe el cambio")
+                .register(meterRegistry);
+        Gauge.builder("usuarios.outbox.profundidad", profundidad, AtomicLong::get)
+                .description("Entradas del outbox pendientes o en proceso")
+                .register(meterRegistry);
+        TimeGauge.builder("usuarios.outbox.antiguedad", antiguedadMs, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Antigüedad de la entrada pendiente más vieja")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ejecuta el cambio de estado y la escritura del outbox en una transacción si están
+     * habilitadas.
+     */
+    public <T> Mono<T> enTransaccion(Mono<T> operacion) {
+        return transactionalOperator == null ? operacion : operacion.as(transactionalOperator::transactional);
+    }
+
+    public Mono<OutboxVerificacion> registrar(VerificarSolicitud solicitud) {
+        return mongoOperations.insert(entrada(solicitud, LocalDateTime.now()));
+    }
+
+    /**
+     * Variante por lotes para las decisiones masivas: un único insertMany.
+     */
+    public Flux<OutboxVerificacion> registrarTodas(Collection<VerificarSolicitud> solicitudes) {
+        if (solicitudes.isEmpty()) {
+            return Flux.empty();
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        return mongoOperations.insertAll(solicitudes.stream()
+                .map(solicitud -> entrada(solicitud, ahora))
+                .toList());
+    }
+
+    private static OutboxVerificacion entrada(VerificarSolicitud solicitud, LocalDateTime ahora) {
+        OutboxVerificacion entrada = new OutboxVerificacion();
+        entrada.setIdCurso(solicitud.getIdCurso());
+        entrada.setIdSolicitud(solicitud.getId());
+        entrada.setEstadoVerificacion(solicitud.getEstado());
+        entrada.setEstado(OutboxVerificacion.PENDIENTE);
+        entrada.setIntentos(0);
+        entrada.setProximoIntento(ahora);
+        entrada.setCreado(ahora);
+        entrada.setActualizado(ahora);
+        return entrada;
+    }
+
+    @Scheduled(fixedDelayString = "${usuarios.outbox.intervalo:1s}")
+    public void procesarPendientes() {
+        if (!relayHabilitado || !cicloEnCurso.compareAndSet(false, true)) {
+            return;
+        }
+        procesarLote()
+                .doFinally(signal -> cicloEnCurso.set(false))
+                .subscribe(
+                        procesadas -> {
+                            if (procesadas > 0) {
+                                log.debug("Outbox de verificación: {} entradas procesadas, {} en cola",
+                                        procesadas, profundidad.get());
+                            }
+                        },
+                        error -> log.error("Error en el ciclo del outbox de verificación: {}", error.getMessage()));
+    }
+
+    Mono<Long> procesarLote() {
+        return cabezasDisponibles()
+                .concatMap(this::reclamar)
+                .flatMap(this::enviar, concurrencia)
+                .count()
+                .flatMap(procesadas -> actualizarMetricas().thenReturn(procesadas));
+    }
+
+    /**
+     * La entrada abierta más antigua de cada curso, si ya le toca. Mientras un curso tenga una
+     * entrada en backoff o en proceso, las posteriores esperan.
+     */
+    private Flux<OutboxVerificacion> cabezasDisponibles() {
+        // La agregación no pasa por el conversor de Spring: la fecha va ya como Date
+        Date ahora = Date.from(LocalDateTime.now().atZone(ZoneId.systemDefault()).toInstant());
+        Aggregation cabezas = newAggregation(
+                match(where("estado").in(OutboxVerificacion.PENDIENTE, OutboxVerificacion.EN_PROCESO)),
+                sort(Sort.by("creado", "_id")),
+                group("id_curso").first(Aggregation.ROOT).as("cabeza"),
+                replaceRoot("cabeza"),
+                match(disponible(ahora)),
+                sort(Sort.by("proximoIntento")),
+                limit(tamanioLote));
+
+        // Sin contexto tipado: tras el replaceRoot los campos se referencian por su nombre en Mongo
+        return mongoOperations.aggregate(cabezas, "outbox_verificacion", OutboxVerificacion.class);
+    }
+
+    private Mono<OutboxVerificacion> reclamar(OutboxVerificacion cabeza) {
+        LocalDateTime ahora = LocalDateTime.now();
+        Update reclamo = new Update()
+                .set("estado", OutboxVerificacion.EN_PROCESO)
+                .set("bloqueadoHasta", ahora.plus(bloqueo))
+                .set("actualizado", ahora)
+                .inc("intentos", 1);
+
+        // Otra instancia pudo reclamarla entre la agregación y este punto
+        return mongoOperations.findAndModify(
+                query(where("_id").is(cabeza.getId()).andOperator(disponible(ahora))),
+                reclamo,
+                FindAndModifyOptions.options().returnNew(true),
+                OutboxVerificacion.class);
+    }
+
+    private static Criteria disponible(Object ahora) {
+        return new Criteria().orOperator(
+                where("estado").is(OutboxVerificacion.PENDIENTE).and("proximoIntento").lte(ahora),
+                // Bloqueo vencido: la instancia que la tomó murió o se colgó
+                where("estado").is(OutboxVerificacion.EN_PROCESO).and("bloqueadoHasta").lt(ahora));
+    }
+
+    private Mono<Void> enviar(OutboxVerificacion entrada) {
+        return publicar(entrada)
+                .then(Mono.defer(() -> completar(entrada)))
+                .onErrorResume(error -> registrarFallo(entrada, error));
+    }
+
+    private Mono<Void> publicar(OutboxVerificacion entrada) {
+        if (DESTINO_HTTP.equals(destino)) {
+            return cursoSnapshotCache.updateCursoVerificacion(entrada.getIdCurso(), entrada.getEstadoVerificacion());
+        }
+
+        Event.Type tipo = "APROBADO".equals(entrada.getEstadoVerificacion())
+                ? Event.Type.APPROVE_REQUEST
+                : Event.Type.REJECT_REQUEST;
+        Event<String, Map<String, String>> evento = new Event<>(tipo, entrada.getIdCurso(), Map.of(
+                "idCurso", entrada.getIdCurso(),
+                "idSolicitud", entrada.getIdSolicitud(),
+                "estadoVerificacion", entrada.getEstadoVerificacion()));
+        // Un reenvío de la misma entrada lleva el mismo id para que el consumidor lo descarte
+        evento.setEventId(entrada.getId());
+
+        return Mono.fromCallable(() -> streamBridge.send(binding, MessageBuilder.withPayload(evento)
+                        .setHeader("partitionKey", entrada.getIdCurso())
+                        .build()))
+                .flatMap(aceptado -> aceptado
+                        ? Mono.<Void>fromRunnable(() -> cursoSnapshotCache.invalidar(entrada.getIdCurso()))
+                        : Mono.error(new IllegalStateException("El binder no aceptó el mensaje")));
+    }
+
+    private Mono<Void> completar(OutboxVerificacion entrada) {
+        LocalDateTime ahora = LocalDateTime.now();
+
+        return mongoOperations.updateFirst(
+                        query(where("_id").is(entrada.getId())),
+                        new Update()
+                                .set("estado", OutboxVerificacion.ENVIADO)
+                                .set("enviado", ahora)
+                                .set("actualizado", ahora)
+                                .unset("bloqueadoHasta"),
+                        OutboxVerificacion.class)
+                .doOnSuccess(r -> {
+                    enviadas.increment();
+                    lag.record(Duration.between(entrada.getCreado(), ahora));
+                    log.debug("Verificación {} del curso {} propagada", entrada.getEstadoVerificacion(),
+                            entrada.getIdCurso());
+                })
+                .then();
+    }
+
+    private Mono<Void> registrarFallo(OutboxVerificacion entrada, Throwable error) {
+        LocalDateTime ahora = LocalDateTime.now();
+        // cursoservice no va a aceptar el cambio por mucho que se reintente
+        boolean permanente = error instanceof NotFoundException || error instanceof InvalidInputException;
+
+        if (permanente || entrada.getIntentos() >= maxIntentos) {
+            return mongoOperations.updateFirst(
+                            query(where("_id").is(entrada.getId())),
+                            new Update()
+                                    .set("estado", OutboxVerificacion.MUERTO)
+                                    .set("ultimoError", error.getMessage())
+                                    .set("actualizado", ahora)
+                                    .unset("bloqueadoHasta"),
+                            OutboxVerificacion.class)
+                    .doOnSuccess(r -> {
+                        muertas.increment();
+                        log.error("Verificación del curso {} descartada tras {} intentos: {}",
+                                entrada.getIdCurso(), entrada.getIntentos(), error.getMessage());
+                    })
+                    .then();
+        }
+
+        Duration espera = backoff(entrada.getIntentos());
+        log.warn("Propagación de la verificación del curso {} falló (intento {}/{}), reintento en {}: {}",
+                entrada.getIdCurso(), entrada.getIntentos(), maxIntentos, espera, error.getMessage());
+
+        return mongoOperations.updateFirst(
+                        query(where("_id").is(entrada.getId())),
+                        new Update()
+                                .set("estado", OutboxVerificacion.PENDIENTE)
+                                .set("proximoIntento", ahora.plus(espera))
+                                .set("ultimoError", error.getMessage())
+                                .set("actualizado", ahora)
+                                .unset("bloqueadoHasta"),
+                        OutboxVerificacion.class)
+                .doOnSuccess(r -> reintentos.increment())
+                .then();
+    }
+
+    private Duration backoff(int intentos) {
+        long base = backoffInicial.toMillis() << Math.min(intentos - 1, 20);
+        long tope = Math.min(base, backoffMaximo.toMillis());
+        // Jitter para que las entradas que fallaron juntas no se reintenten juntas
+        return Duration.ofMillis(tope / 2 + ThreadLocalRandom.current().nextLong(tope / 2 + 1));
+    }
+
+    private Mono<Void> actualizarMetricas() {
+        Criteria abiertas = where("estado").in(OutboxVerificacion.PENDIENTE, OutboxVerificacion.EN_PROCESO);
+
+        Mono<Long> total = mongoOperations.count(query(abiertas), OutboxVerificacion.class);
+        Mono<Long> antiguedad = mongoOperations
+                .findOne(query(abiertas).with(Sort.by("creado")), OutboxVerificacion.class)
+                .map(entrada -> Duration.between(entrada.getCreado(), LocalDateTime.now()).toMillis())
+                .defaultIfEmpty(0L);
+
+        return Mono.zip(total, antiguedad)
+                .doOnNext(valores -> {
+                    profundidad.set(valores.getT1());
+                    antiguedadMs.set(valores.getT2());
+                })
+                .then();
+    }
+}
@@ -0,0 +1,96 @@
+package com.enseniamelo.usuarios.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import com.enseniamelo.usuarios.util.exception.TooManyRequestsException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Ejecuta el hashing BCrypt fuera del event loop de Netty, en un pool acotado con cola
+ * acotada. Si la cola está llena la petición se rechaza de inmediato con 429 en lugar de
+ * acumular trabajo que bloquearía al resto de endpoints.
+ */
+@Service
+@Slf4j
+public class PasswordHashingService {
+
+    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final ThreadPoolExecutor executor;
+    private final Scheduler scheduler;
+
+    private final Timer hashTimer;
+    private final Counter rechazos;
+
+    @Autowired
+    public PasswordHashingService(
+            MeterRegistry meterRegistry,
+            @Value("${usuarios.hashing.threads:4}") int threads,
+            @Value("${usuarios.hashing.queue-capacity:64}") int queueCapacity) {
+
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + contador.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.scheduler = Schedulers.fromExecutorService(executor, "bcrypt");
+
+        this.hashTimer = Timer.builder("usuarios.hashing.duration")
+                .description("Tiempo de CPU dedicado a BCrypt")
+                .register(meterRegistry);
+        this.rechazos = Counter.builder("usuarios.hashing.rejected")
+                .description("Operaciones de hashing rechazadas por saturación")
+                .register(meterRegistry);
+        Gauge.builder("usuarios.hashing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Operaciones de hashing esperando un hilo")
+                .register(meterRegistry);
+        Gauge.builder("usuarios.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    public Mono<String> encode(String contrasenia) {
+        return enPool(() -> passwordEncoder.encode(contrasenia));
+    }
+
+    public Mono<Boolean> matches(String contrasenia, String hash) {
+        return enPool(() -> passwordEncoder.matches(contrasenia, hash));
+    }
+
+    private <T> Mono<T> enPool(Callable<T> tarea) {
+        return Mono.fromCallable(() -> hashTimer.recordCallable(tarea))
+                .subscribeOn(scheduler)
+                .onErrorMap(RejectedExecutionException.class, error -> {
+                    rechazos.increment();
+                    log.warn("Cola de hashing saturada ({} en espera), rechazando petición",
+                            executor.getQueue().size());
+                    return new TooManyRequestsException("Servidor ocupado, intente nuevamente en unos segundos");
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,160 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.enseniamelo.usuarios.dto.PerfilTutorDTO;
+import com.enseniamelo.usuarios.model.PerfilTutor;
+import com.enseniamelo.usuarios.util.events.Event;
+import com.enseniamelo.usuarios.util.events.EventosDlq;
+import com.enseniamelo.usuarios.util.events.LoteEventos;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Aplicación por lotes de eventos de perfil de tutor: colapso por clave, validación de existencia
+ * con una consulta {@code $in} y un único bulkWrite sin orden. Los fallos individuales van a la
+ * DLQ, igual que en {@link UsuarioLoteService}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PerfilTutorLoteService {
+
+    static final String CONSUMIDOR = "TUTOR-LOTE";
+    static final String DLQ = EventosDlq.TUTORES;
+
+    private final PerfilTutorService perfilTutorService;
+    private final ReactiveMongoOperations mongoOperations;
+    private final LoteEventos loteEventos;
+
+    public Mono<Void> aplicar(List<Event<String, PerfilTutorDTO>> eventos) {
+        Map<String, Event<String, PerfilTutorDTO>> porClave =
+                loteEventos.colapsar(CONSUMIDOR, DLQ, eventos, PerfilTutorLoteService::clave);
+        if (porClave.isEmpty()) {
+            return Mono.empty();
+        }
+
+        Set<String> ids = new HashSet<>();
+        Set<String> idsUsuario = new HashSet<>();
+        porClave.values().forEach(event -> {
+            if (event.getEventType() == Event.Type.CREATE) {
+                if (event.getData() != null && event.getData().getIdUsuario() != null) {
+                    idsUsuario.add(event.getData().getIdUsuario());
+                }
+            } else if (event.getKey() != null) {
+                ids.add(event.getKey());
+            }
+        });
+
+        Query existentes = query(new Criteria().orOperator(where("_id").in(ids), where("idUsuario").in(idsUsuario)));
+        existentes.fields().include("_id", "idUsuario");
+
+        return mongoOperations.find(existentes, PerfilTutor.class)
+                .collectList()
+                .flatMap(encontrados -> escribir(porClave, encontrados));
+    }
+
+    private Mono<Void> escribir(Map<String, Event<String, PerfilTutorDTO>> porClave, List<PerfilTutor> encontrados) {
+        Set<String> idsExistentes = new HashSet<>();
+        Set<String> usuariosConPerfil = new HashSet<>();
+        encontrados.forEach(perfil -> {
+            idsExistentes.add(perfil.getId());
+            usuariosConPerfil.add(perfil.getIdUsuario());
+        });
+
+        ReactiveBulkOperations bulk = mongoOperations.bulkOps(BulkMode.UNORDERED, PerfilTutor.class);
+        List<Event<String, PerfilTutorDTO>> operaciones = new ArrayList<>();
+        LocalDateTime ahora = LocalDateTime.now();
+
+        for (Event<String, PerfilTutorDTO> event : porClave.values()) {
+            PerfilTutorDTO datos = event.getData();
+            switch (event.getEventType()) {
+                case CREATE -> {
+                    if (datos == null || datos.getIdUsuario() == null) {
+                        loteEventos.aDlq(CONSUMIDOR, DLQ, event, "idUsuario es obligatorio para crear perfil de tutor");
+                    } else if (!usuariosConPerfil.add(datos.getIdUsuario())) {
+                        loteEventos.aDlq(CONSUMIDOR, DLQ, event, "El usuario ya tiene perfil de tutor");
+                    } else {
+                        bulk.insert(perfilTutorService.nuevoPerfil(datos, ahora));
+                        operaciones.add(event);
+                    }
+                }
+                case UPDATE -> {
+                    if (!idsExistentes.contains(event.getKey())) {
+                        loteEventos.aDlq(CONSUMIDOR, DLQ, event, "Perfil de tutor no encontrado");
+                    } else if (datos == null) {
+                        loteEventos.aDlq(CONSUMIDOR, DLQ, event, "Evento de actualización sin datos");
+                    } else {
+                        // Igual que actualizarPerfil: verificado y clasificacion se manejan en otros flujos
+                        Update update = new Update().set("actualizado", ahora);
+                        if (datos.getCi() != null) {
+                            update.set("ci", datos.getCi());
+                        }
+                        if (datos.getBiografia() != null) {
+                            update.set("biografia", datos.getBiografia());
+                        }
+                        bulk.updateOne(query(where("_id").is(event.getKey())), update);
+                        operaciones.add(event);
+                    }
+                }
+                case DELETE -> {
+                    if (!idsExistentes.contains(event.getKey())) {
+                        loteEventos.aDlq(CONSUMIDOR, DLQ, event, "Perfil de tutor no encontrado");
+                    } else {
+                        bulk.remove(query(where("_id").is(event.getKey())));
+                        operaciones.add(event);
+                    }
+                }
+                default -> loteEventos.aDlq(CONSUMIDOR, DLQ, event, "Evento no soportado: " + event.getEventType());
+            }
+        }
+
+        if (operaciones.isEmpty()) {
+            return Mono.empty();
+        }
+        return bulk.execute()
+                .map(resultado -> Collections.<Integer, String>emptyMap())
+                .onErrorResume(error -> {
+                    Map<Integer, String> errores = LoteEventos.erroresDeEscritura(error);
+                    return errores.isEmpty() ? Mono.error(error) : Mono.just(errores);
+                })
+                .doOnNext(errores -> {
+                    errores.forEach((indice, mensaje) -> loteEventos.aDlq(CONSUMIDOR, DLQ, operaciones.get(indice), mensaje));
+                    loteEventos.aplicados(CONSUMIDOR, operaciones.size() - errores.size());
+                    log.info("[{}] Lote aplicado: {} escrituras, {} a la DLQ", CONSUMIDOR, operaciones.size(),
+                            errores.size());
+                })
+                .then();
+    }
+
+    private static String clave(Event<String, PerfilTutorDTO> event) {
+        if (event.getKey() != null) {
+            return event.getKey();
+        }
+        // Un alta puede llegar sin id: el usuario la identifica (un perfil por usuario)
+        if (event.getEventType() == Event.Type.CREATE && event.getData() != null
+                && event.getData().getIdUsuario() != null) {
+            return "usuario:" + event.getData().getIdUsuario();
+        }
+        return null;
+    }
+}
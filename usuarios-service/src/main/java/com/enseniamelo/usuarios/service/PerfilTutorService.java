@@ -37,29 +37,7 @@ public class PerfilTutorService {
                         return Mono.error(new RuntimeException("El usuario ya tiene perfil de tutor"));
                     }
 
-                    PerfilTutor perfil = perfilTutorMapper.dtoToEntity(perfilDTO);
-                    perfil.setId(null); // Mongo genera el _id
-                    perfil.setIdUsuario(idUsuario);
-
-                    // ci y biografia YA se copiaron del DTO por el mapper
-
-                    // verificado: String en entidad, Boolean en DTO
-                    if (perfilDTO.getVerificado() != null) {
-                        perfil.setVerificado(
-                                Boolean.TRUE.equals(perfilDTO.getVerificado()) ? "verificado" : "pendiente");
-                    } else if (perfil.getVerificado() == null) {
-                        perfil.setVerificado("pendiente");
-                    }
-
-                    if (perfil.getClasificacion() == null) {
-                        perfil.setClasificacion(0.0f);
-                    }
-
-                    LocalDateTime ahora = LocalDateTime.now();
-                    perfil.setCreacion(ahora);
-                    perfil.setActualizado(ahora);
-
-                    return perfilTutorRepository.save(perfil);
+                    return perfilTutorRepository.save(nuevoPerfil(perfilDTO, LocalDateTime.now()));
                 })
                 .map(guardado -> {
                     log.info("Perfil de tutor creado con id: {}", guardado.getId());
@@ -110,6 +88,34 @@ public class PerfilTutorService {
                 .doOnComplete(() -> log.info("Búsqueda por clasificación completada"));
     }
 
+    /**
+     * Entidad lista para insertar a partir del DTO. La comparten el alta individual y la
+     * aplicación por lotes de eventos.
+     */
+    PerfilTutor nuevoPerfil(PerfilTutorDTO perfilDTO, LocalDateTime ahora) {
+        PerfilTutor perfil = perfilTutorMapper.dtoToEntity(perfilDTO);
+        perfil.setId(null); // Mongo genera el _id
+        perfil.setIdUsuario(perfilDTO.getIdUsuario());
+
+        // ci y biografia YA se copiaron del DTO por el mapper
+
+        // verificado: String en entidad, Boolean en DTO
+        if (perfilDTO.getVerificado() != null) {
+            perfil.setVerificado(
+                    Boolean.TRUE.equals(perfilDTO.getVerificado()) ? "verificado" : "pendiente");
+        } else if (perfil.getVerificado() == null) {
+            perfil.setVerificado("pendiente");
+        }
+
+        if (perfil.getClasificacion() == null) {
+            perfil.setClasificacion(0.0f);
+        }
+
+        perfil.setCreacion(ahora);
+        perfil.setActualizado(ahora);
+        return perfil;
+    }
+
     public Mono<PerfilTutorDTO> actualizarPerfil(String idTutor, PerfilTutorDTO perfilDTO) {
         log.info("Actualizando perfil de tutor: {}", idTutor);
 
@@ -0,0 +1,134 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.enseniamelo.usuarios.model.PerfilTutor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Marca como verificados los perfiles de tutor de las solicitudes aprobadas en lotes.
+ *
+ * Aprobar solo anota el id del perfil; un flush periódico (o al llegar a {@code tamanio-lote})
+ * los escribe con un único updateMulti sobre {@code $in}. Si el flush falla, los ids vuelven al
+ * buffer para el siguiente intento.
+ */
+@Component
+@Slf4j
+public class PerfilVerificadoWriteBehind {
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final int tamanioLote;
+    private final Duration timeoutCierre;
+
+    private final Set<String> pendientes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushEnCurso = new AtomicBoolean(false);
+
+    private final Counter escritos;
+    private final Counter erroresFlush;
+
+    @Autowired
+    public PerfilVerificadoWriteBehind(
+            ReactiveMongoOperations mongoOperations,
+            MeterRegistry meterRegistry,
+            @Value("${usuarios.perfil-verificado.tamanio-lote:200}") int tamanioLote,
+            @Value("${usuarios.perfil-verificado.timeout-cierre:10s}") Duration timeoutCierre) {
+        this.mongoOperations = mongoOperations;
+        this.tamanioLote = tamanioLote;
+        this.timeoutCierre = timeoutCierre;
+
+        this.escritos = Counter.builder("usuarios.perfil-verificado.escritos").register(meterRegistry);
+        this.erroresFlush = Counter.builder("usuarios.perfil-verificado.flush.errores").register(meterRegistry);
+        Gauge.builder("usuarios.perfil-verificado.pendientes", pendientes, Set::size)
+                .register(meterRegistry);
+    }
+
+    public void marcarVerificado(String idPerfilTutor) {
+        if (idPerfilTutor == null) {
+            return;
+        }
+        pendientes.add(idPerfilTutor);
+        if (pendientes.size() >= tamanioLote) {
+            flush().subscribe();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${usuarios.perfil-verificado.intervalo-flush:1s}")
+    public void flushPeriodico() {
+        flush().subscribe();
+    }
+
+    public Mono<Void> flush() {
+        return Mono.defer(this::vaciarBuffer);
+    }
+
+    private Mono<Void> vaciarBuffer() {
+        if (pendientes.isEmpty() || !flushEnCurso.compareAndSet(false, true)) {
+            return Mono.empty();
+        }
+
+        List<String> lote = new ArrayList<>();
+        for (String id : pendientes) {
+            if (pendientes.remove(id)) {
+                lote.add(id);
+            }
+        }
+        if (lote.isEmpty()) {
+            flushEnCurso.set(false);
+            return Mono.empty();
+        }
+
+        return mongoOperations.updateMulti(
+                        query(where("_id").in(lote)),
+                        new Update().set("verificado", "verificado").set("actualizado", LocalDateTime.now()),
+                        PerfilTutor.class)
+                .doOnSuccess(result -> {
+                    escritos.increment(result.getModifiedCount());
+                    log.debug("Perfiles de tutor verificados: {} solicitados, {} modificados",
+                            lote.size(), result.getModifiedCount());
+                })
+                .doOnError(error -> {
+                    erroresFlush.increment();
+                    log.error("Error actualizando perfiles de tutor verificados, se reintentará: {}",
+                            error.getMessage());
+                    pendientes.addAll(lote);
+                })
+                .onErrorResume(error -> Mono.empty())
+                .doFinally(signal -> flushEnCurso.set(false))
+                .then();
+    }
+
+    @PreDestroy
+    public void flushAlCerrar() {
+        long limite = System.nanoTime() + timeoutCierre.toNanos();
+        try {
+            while (flushEnCurso.get() && System.nanoTime() < limite) {
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush().block(timeoutCierre);
+    }
+}
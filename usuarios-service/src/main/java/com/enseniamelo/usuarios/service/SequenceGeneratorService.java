@@ -1,30 +1,166 @@
 package com.enseniamelo.usuarios.service;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.data.mongodb.core.ReactiveMongoOperations;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import com.enseniamelo.usuarios.model.DatabaseSequence;
 
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
 
 import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
 
+/**
+ * Secuencias numéricas con reserva por bloques (hi-lo).
+ *
+ * Cada instancia reserva un rango de valores con un único {@code $inc} sobre
+ * {@code database_sequences} y lo reparte desde memoria sin bloqueos. Cuando al bloque actual le
+ * queda menos del umbral configurado se reserva el siguiente en segundo plano, así que en régimen
+ * normal ningún llamador espera a Mongo.
+ *
+ * Los valores siguen siendo únicos y crecientes por instancia, pero no consecutivos entre
+ * instancias, y los que no se llegan a usar de un bloque se pierden al reiniciar.
+ */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class SequenceGeneratorService {
 
+    private static final int AGOTADO = Integer.MIN_VALUE;
+
     private final ReactiveMongoOperations mongoOperations;
+    private final Environment environment;
+    private final int tamanioBloque;
+    private final double umbralPrefetch;
+
+    private final Map<String, Secuencia> secuencias = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SequenceGeneratorService(
+            ReactiveMongoOperations mongoOperations,
+            Environment environment,
+            @Value("${usuarios.secuencias.tamanio-bloque:100}") int tamanioBloque,
+            @Value("${usuarios.secuencias.umbral-prefetch:0.2}") double umbralPrefetch) {
+        this.mongoOperations = mongoOperations;
+        this.environment = environment;
+        this.tamanioBloque = tamanioBloque;
+        this.umbralPrefetch = umbralPrefetch;
+    }
 
     public Mono<Integer> generateSequence(String seqName) {
+        return secuencias.computeIfAbsent(seqName, this::crearSecuencia).siguiente();
+    }
+
+    private Secuencia crearSecuencia(String nombre) {
+        // Tamaño propio por secuencia: usuarios.secuencias.bloques.<nombre>
+        int tamanio = Math.max(1, environment.getProperty("usuarios.secuencias.bloques." + nombre,
+                Integer.class, tamanioBloque));
+        log.info("Secuencia {} con bloques de {} valores", nombre, tamanio);
+        return new Secuencia(nombre, tamanio, (int) Math.ceil(tamanio * umbralPrefetch));
+    }
+
+    private Mono<Rango> reservarEnMongo(String nombre, int tamanio) {
         return mongoOperations.findAndModify(
-            query(where("_id").is(seqName)),
-            new Update().inc("seq", 1),
-            options().returnNew(true).upsert(true),
-            DatabaseSequence.class
-        ).map(DatabaseSequence::getSeq);
+                query(where("_id").is(nombre)),
+                new Update().inc("seq", tamanio),
+                options().returnNew(true).upsert(true),
+                DatabaseSequence.class
+        ).map(secuencia -> {
+            int ultimo = secuencia.getSeq();
+            log.debug("Secuencia {}: reservado bloque {}..{}", nombre, ultimo - tamanio + 1, ultimo);
+            return new Rango(ultimo - tamanio + 1, ultimo);
+        });
+    }
+
+    private final class Secuencia {
+
+        private final String nombre;
+        private final int tamanio;
+        private final int umbral;
+
+        private final AtomicReference<Rango> actual = new AtomicReference<>(Rango.VACIO);
+        // Reserva en curso (o ya resuelta y sin instalar); a lo sumo una por secuencia
+        private final AtomicReference<Mono<Rango>> reserva = new AtomicReference<>();
+
+        Secuencia(String nombre, int tamanio, int umbral) {
+            this.nombre = nombre;
+            this.tamanio = tamanio;
+            this.umbral = umbral;
+        }
+
+        Mono<Integer> siguiente() {
+            return Mono.defer(() -> {
+                Rango rango = actual.get();
+                int valor = rango.tomar();
+                if (valor != AGOTADO) {
+                    if (rango.restantes() <= umbral) {
+                        reservar();
+                    }
+                    return Mono.just(valor);
+                }
+
+                Mono<Rango> pendiente = reservar();
+                return pendiente.flatMap(nuevo -> {
+                    // Solo uno instala el bloque nuevo; el resto reintenta sobre el ya instalado
+                    if (actual.compareAndSet(rango, nuevo)) {
+                        reserva.compareAndSet(pendiente, null);
+                    }
+                    return siguiente();
+                });
+            });
+        }
+
+        private Mono<Rango> reservar() {
+            while (true) {
+                Mono<Rango> pendiente = reserva.get();
+                if (pendiente != null) {
+                    return pendiente;
+                }
+                Mono<Rango> nueva = reservarEnMongo(nombre, tamanio).cache();
+                if (reserva.compareAndSet(null, nueva)) {
+                    nueva.subscribe(rango -> { }, error -> {
+                        log.warn("No se pudo reservar un bloque de la secuencia {}: {}", nombre, error.getMessage());
+                        // Se descarta para que la próxima llamada lo reintente
+                        reserva.compareAndSet(nueva, null);
+                    });
+                    return nueva;
+                }
+            }
+        }
+    }
+
+    private static final class Rango {
+
+        static final Rango VACIO = new Rango(1, 0);
+
+        private final AtomicInteger siguiente;
+        private final int ultimo;
+
+        Rango(int primero, int ultimo) {
+            this.siguiente = new AtomicInteger(primero);
+            this.ultimo = ultimo;
+        }
+
+        int tomar() {
+            if (siguiente.get() > ultimo) {
+                return AGOTADO;
+            }
+            int valor = siguiente.getAndIncrement();
+            return valor <= ultimo ? valor : AGOTADO;
+        }
+
+        int restantes() {
+            return Math.max(0, ultimo - siguiente.get() + 1);
+        }
     }
-}
\ No newline at end of file
+}
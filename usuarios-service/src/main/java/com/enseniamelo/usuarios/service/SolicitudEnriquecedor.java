@@ -0,0 +1,186 @@
+package com.enseniamelo.usuarios.service;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.enseniamelo.usuarios.dto.CursoDTO;
+import com.enseniamelo.usuarios.dto.PerfilTutorDTO;
+import com.enseniamelo.usuarios.dto.UsuarioDTO;
+import com.enseniamelo.usuarios.external.CursoSnapshotCache;
+import com.enseniamelo.usuarios.external.MsCursoIntegration;
+import com.enseniamelo.usuarios.mapper.PerfilTutorMapper;
+import com.enseniamelo.usuarios.mapper.UsuarioMapper;
+import com.enseniamelo.usuarios.mapper.VerificarSolicitudMapper;
+import com.enseniamelo.usuarios.model.PerfilTutor;
+import com.enseniamelo.usuarios.model.Usuario;
+import com.enseniamelo.usuarios.model.VerificarSolicitud;
+import com.enseniamelo.usuarios.repository.PerfilTutorRepository;
+import com.enseniamelo.usuarios.repository.UsuarioRepository;
+import com.enseniamelo.usuarios.service.VerificarSolicitudService.VerificarSolicitudCompleta;
+import com.enseniamelo.usuarios.util.exception.CircuitoAbiertoException;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+/**
+ * Enriquecimiento por lotes de solicitudes de verificación.
+ *
+ * Las solicitudes se agrupan en ventanas; dentro de cada ventana los ids se deduplican y se
+ * resuelven con un {@code $in} para usuarios, otro para perfiles de tutor y una consulta a la
+ * cache de cursos por curso distinto (cursoservice no tiene endpoint por lote) con concurrencia
+ * acotada. El orden
+ * de entrada se conserva.
+ */
+@Component
+@Slf4j
+public class SolicitudEnriquecedor {
+
+    private final UsuarioRepository usuarioRepository;
+    private final PerfilTutorRepository perfilTutorRepository;
+    private final MsCursoIntegration cursoIntegration;
+    private final CursoSnapshotCache cursoSnapshotCache;
+    private final VerificarSolicitudMapper solicitudMapper;
+    private final UsuarioMapper usuarioMapper;
+    private final PerfilTutorMapper perfilTutorMapper;
+
+    private final int tamanioVentana;
+    private final int concurrenciaVentanas;
+    private final int concurrenciaCursos;
+
+    @Autowired
+    public SolicitudEnriquecedor(
+            UsuarioRepository usuarioRepository,
+            PerfilTutorRepository perfilTutorRepository,
+            MsCursoIntegration cursoIntegration,
+            CursoSnapshotCache cursoSnapshotCache,
+            VerificarSolicitudMapper solicitudMapper,
+            UsuarioMapper usuarioMapper,
+            PerfilTutorMapper perfilTutorMapper,
+            @Value("${usuarios.enriquecimiento.tamanio-ventana:100}") int tamanioVentana,
+            @Value("${usuarios.enriquecimiento.concurrencia-ventanas:2}") int concurrenciaVentanas,
+            @Value("${usuarios.enriquecimiento.concurrencia-cursos:8}") int concurrenciaCursos) {
+        this.usuarioRepository = usuarioRepository;
+        this.perfilTutorRepository = perfilTutorRepository;
+        this.cursoIntegration = cursoIntegration;
+        this.cursoSnapshotCache = cursoSnapshotCache;
+        this.solicitudMapper = solicitudMapper;
+        this.usuarioMapper = usuarioMapper;
+        this.perfilTutorMapper = perfilTutorMapper;
+        this.tamanioVentana = tamanioVentana;
+        this.concurrenciaVentanas = concurrenciaVentanas;
+        this.concurrenciaCursos = concurrenciaCursos;
+    }
+
+    public Flux<VerificarSolicitudCompleta> enriquecer(Flux<VerificarSolicitud> solicitudes) {
+        return solicitudes
+                .buffer(tamanioVentana)
+                .flatMapSequential(this::enriquecerVentana, concurrenciaVentanas);
+    }
+
+    public Mono<VerificarSolicitudCompleta> enriquecer(VerificarSolicitud solicitud) {
+        return enriquecerVentana(List.of(solicitud)).next();
+    }
+
+    private Flux<VerificarSolicitudCompleta> enriquecerVentana(List<VerificarSolicitud> ventana) {
+        Set<String> idsUsuario = distintos(ventana, VerificarSolicitud::getIdUsuario);
+        Set<String> idsPerfil = distintos(ventana, VerificarSolicitud::getIdPerfilTutor);
+        Set<String> idsCurso = distintos(ventana, VerificarSolicitud::getIdCurso);
+
+        Mono<Map<String, UsuarioDTO>> usuarios = usuarioRepository.findAllById(idsUsuario)
+                .collectMap(Usuario::getId, usuarioMapper::entityToDto)
+                .onErrorResume(error -> {
+                    log.warn("Error obteniendo {} usuarios: {}", idsUsuario.size(), error.getMessage());
+                    return Mono.just(rellenar(idsUsuario, id -> new UsuarioDTO()));
+                });
+
+        Mono<Map<String, PerfilTutorDTO>> perfiles = perfilTutorRepository.findAllById(idsPerfil)
+                .collectMap(PerfilTutor::getId, perfilTutorMapper::entityToDto)
+                .onErrorResume(error -> {
+                    log.warn("Error obteniendo {} perfiles de tutor: {}", idsPerfil.size(), error.getMessage());
+                    return Mono.just(rellenar(idsPerfil, id -> new PerfilTutorDTO()));
+                });
+
+        return Mono.zip(usuarios, perfiles, cursos(idsCurso))
+                .flatMapIterable(mapas -> ventana.stream()
+                        .map(solicitud -> componer(solicitud, mapas.getT1(), mapas.getT2(), mapas.getT3()))
+                        .filter(Objects::nonNull)
+                        .toList());
+    }
+
+    /**
+     * Resuelve cada curso distinto contra la cache, con concurrencia acotada. Los que fallan no
+     * aparecen en el mapa; {@link #cursoODatosBasicos} los sustituye.
+     */
+    Mono<Map<String, CursoDTO>> cursos(Set<String> idsCurso) {
+        return Flux.fromIterable(idsCurso)
+                .flatMap(idCurso -> cursoSnapshotCache.getCurso(idCurso)
+                        // CursoDTO.id es de solo lectura para Jackson y no llega en la respuesta:
+                        // se indexa por el id pedido
+                        .map(curso -> Tuples.of(idCurso, curso))
+                        .doOnError(error -> {
+                            // Con el circuito abierto no se llega a llamar; no hace falta un warn por curso
+                            if (error instanceof CircuitoAbiertoException) {
+                                log.debug("Curso {} omitido: {}", idCurso, error.getMessage());
+                            } else {
+                                log.warn("No se pudo obtener información del curso {}: {}",
+                                        idCurso, error.getMessage());
+                            }
+                        })
+                        .onErrorResume(error -> Mono.empty()), concurrenciaCursos)
+                .collectMap(Tuple2::getT1, Tuple2::getT2);
+    }
+
+    CursoDTO cursoODatosBasicos(VerificarSolicitud solicitud, Map<String, CursoDTO> cursos) {
+        CursoDTO curso = cursos.get(solicitud.getIdCurso());
+        if (curso == null) {
+            log.info("Usando información básica para curso {}", solicitud.getIdCurso());
+            curso = cursoIntegration.cursoNoDisponible(solicitud.getIdCurso(), solicitud.getEstado());
+        }
+        return curso;
+    }
+
+    int getTamanioVentana() {
+        return tamanioVentana;
+    }
+
+    int getConcurrenciaVentanas() {
+        return concurrenciaVentanas;
+    }
+
+    private VerificarSolicitudCompleta componer(VerificarSolicitud solicitud, Map<String, UsuarioDTO> usuarios,
+            Map<String, PerfilTutorDTO> perfiles, Map<String, CursoDTO> cursos) {
+        UsuarioDTO usuario = usuarios.get(solicitud.getIdUsuario());
+        PerfilTutorDTO tutor = perfiles.get(solicitud.getIdPerfilTutor());
+        // Igual que antes: sin usuario o sin perfil la solicitud no se incluye
+        if (usuario == null || tutor == null) {
+            log.debug("Solicitud {} omitida: usuario o perfil de tutor inexistente", solicitud.getId());
+            return null;
+        }
+
+        return new VerificarSolicitudCompleta(solicitudMapper.entityToDto(solicitud), usuario, tutor,
+                cursoODatosBasicos(solicitud, cursos));
+    }
+
+    static Set<String> distintos(List<VerificarSolicitud> ventana, Function<VerificarSolicitud, String> campo) {
+        return ventana.stream()
+                .map(campo)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static <T> Map<String, T> rellenar(Set<String> ids, Function<String, T> valor) {
+        return ids.stream().collect(Collectors.toMap(Function.identity(), valor));
+    }
+}
@@ -0,0 +1,113 @@
+package com.enseniamelo.usuarios.service;
+
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Component;
+
+import com.enseniamelo.usuarios.dto.CursoDTO;
+import com.enseniamelo.usuarios.mapper.PerfilTutorMapper;
+import com.enseniamelo.usuarios.mapper.UsuarioMapper;
+import com.enseniamelo.usuarios.mapper.VerificarSolicitudMapper;
+import com.enseniamelo.usuarios.model.PerfilTutor;
+import com.enseniamelo.usuarios.model.Usuario;
+import com.enseniamelo.usuarios.model.VerificarSolicitud;
+import com.enseniamelo.usuarios.service.VerificarSolicitudService.VerificarSolicitudCompleta;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+
+/**
+ * Lectura de solicitudes completas con un único pipeline de agregación.
+ *
+ * Usuarios, perfiles de tutor y solicitudes están en la misma base, así que el join se hace en
+ * Mongo: {@code $match → $lookup usuarios → $lookup perfil_tutor → $project}. Los ids de
+ * referencia se guardan como texto y se convierten a ObjectId para que cada {@code $lookup} use
+ * el índice de {@code _id}. Solo los cursos siguen siendo una llamada remota, agrupada por ventana
+ * a través de {@link SolicitudEnriquecedor}.
+ */
+@Component
+@RequiredArgsConstructor
+public class SolicitudesCompletasAgregacion {
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final SolicitudEnriquecedor solicitudEnriquecedor;
+    private final VerificarSolicitudMapper solicitudMapper;
+    private final UsuarioMapper usuarioMapper;
+    private final PerfilTutorMapper perfilTutorMapper;
+
+    public Flux<VerificarSolicitudCompleta> buscar(Criteria criterio) {
+        return mongoOperations.aggregate(pipeline(criterio), SolicitudUnida.class)
+                .buffer(solicitudEnriquecedor.getTamanioVentana())
+                .flatMapSequential(this::completarVentana, solicitudEnriquecedor.getConcurrenciaVentanas());
+    }
+
+    TypedAggregation<VerificarSolicitud> pipeline(Criteria criterio) {
+        String usuarios = mongoOperations.getCollectionName(Usuario.class);
+        String perfiles = mongoOperations.getCollectionName(PerfilTutor.class);
+
+        // Sin usuario o sin perfil la solicitud no se incluye, igual que en el enriquecimiento en memoria
+        return Aggregation.newAggregation(VerificarSolicitud.class,
+                Aggregation.match(criterio),
+                etapa("$project", new Document("_id", 0)
+                        .append("solicitud", "$$ROOT")
+                        .append("uid", aObjectId("$id_usuario"))
+                        .append("tid", aObjectId("$id_perfil_tutor"))),
+                etapa("$lookup", new Document("from", usuarios)
+                        .append("localField", "uid")
+                        .append("foreignField", "_id")
+                        .append("as", "usuario")),
+                etapa("$unwind", "$usuario"),
+                etapa("$lookup", new Document("from", perfiles)
+                        .append("localField", "tid")
+                        .append("foreignField", "_id")
+                        .append("as", "tutor")),
+                etapa("$unwind", "$tutor"),
+                etapa("$project", new Document("uid", 0)
+                        .append("tid", 0)
+                        .append("usuario.contrasenia", 0)));
+    }
+
+    private Flux<VerificarSolicitudCompleta> completarVentana(List<SolicitudUnida> ventana) {
+        List<VerificarSolicitud> solicitudes = ventana.stream().map(SolicitudUnida::getSolicitud).toList();
+
+        return solicitudEnriquecedor.cursos(SolicitudEnriquecedor.distintos(solicitudes, VerificarSolicitud::getIdCurso))
+                .flatMapIterable(cursos -> ventana.stream()
+                        .map(unida -> componer(unida, cursos))
+                        .toList());
+    }
+
+    private VerificarSolicitudCompleta componer(SolicitudUnida unida, Map<String, CursoDTO> cursos) {
+        return new VerificarSolicitudCompleta(
+                solicitudMapper.entityToDto(unida.getSolicitud()),
+                usuarioMapper.entityToDto(unida.getUsuario()),
+                perfilTutorMapper.entityToDto(unida.getTutor()),
+                solicitudEnriquecedor.cursoODatosBasicos(unida.getSolicitud(), cursos));
+    }
+
+    private static Document aObjectId(String campo) {
+        // Un id mal formado no debe romper todo el listado: queda sin join y se descarta
+        return new Document("$convert", new Document("input", campo)
+                .append("to", "objectId")
+                .append("onError", null)
+                .append("onNull", null));
+    }
+
+    private static AggregationOperation etapa(String operador, Object cuerpo) {
+        return context -> new Document(operador, cuerpo);
+    }
+
+    @Data
+    public static class SolicitudUnida {
+        private VerificarSolicitud solicitud;
+        private Usuario usuario;
+        private PerfilTutor tutor;
+    }
+}
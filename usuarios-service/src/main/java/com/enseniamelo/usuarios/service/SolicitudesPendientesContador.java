@@ -0,0 +1,75 @@
+package com.enseniamelo.usuarios.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.enseniamelo.usuarios.repository.VerificarSolicitudRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Total de solicitudes PENDIENTE servido desde memoria, para no ejecutar un countByEstado por
+ * cada página de la cola.
+ *
+ * Las altas, decisiones y bajas de esta instancia lo ajustan al momento; un recuento periódico
+ * lo reconcilia con Mongo y corrige lo que hayan cambiado otras instancias.
+ */
+@Component
+@Slf4j
+public class SolicitudesPendientesContador {
+
+    private static final String PENDIENTE = "PENDIENTE";
+
+    private final VerificarSolicitudRepository solicitudRepository;
+    private final AtomicLong pendientes = new AtomicLong();
+
+    public SolicitudesPendientesContador(VerificarSolicitudRepository solicitudRepository,
+            MeterRegistry meterRegistry) {
+        this.solicitudRepository = solicitudRepository;
+        Gauge.builder("usuarios.verificacion.pendientes", pendientes, AtomicLong::get)
+                .description("Solicitudes de verificación pendientes de decisión")
+                .register(meterRegistry);
+    }
+
+    public long actual() {
+        return pendientes.get();
+    }
+
+    public void creada() {
+        pendientes.incrementAndGet();
+    }
+
+    public void decididas(long cantidad) {
+        // Nunca por debajo de cero aunque otra instancia se haya adelantado
+        pendientes.updateAndGet(valor -> Math.max(0, valor - cantidad));
+    }
+
+    public void eliminada(String estado) {
+        if (PENDIENTE.equals(estado)) {
+            decididas(1);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        reconciliar();
+    }
+
+    @Scheduled(fixedDelayString = "${usuarios.verificacion.reconciliacion-pendientes:1m}",
+            initialDelayString = "${usuarios.verificacion.reconciliacion-pendientes:1m}")
+    public void reconciliar() {
+        solicitudRepository.countByEstado(PENDIENTE)
+                .subscribe(total -> {
+                    long anterior = pendientes.getAndSet(total);
+                    if (anterior != total) {
+                        log.debug("Contador de solicitudes pendientes reconciliado: {} -> {}", anterior, total);
+                    }
+                }, error -> log.warn("No se pudo reconciliar el contador de pendientes: {}", error.getMessage()));
+    }
+}
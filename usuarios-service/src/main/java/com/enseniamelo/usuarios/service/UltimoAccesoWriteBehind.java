@@ -0,0 +1,168 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.enseniamelo.usuarios.model.Usuario;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Buffer write-behind para el campo {@code actualizado} que se toca en cada login.
+ *
+ * Los logins solo registran el instante en memoria; un flush periódico los escribe como un
+ * único bulkWrite de {@code $max} sobre ese campo, sin reescribir el documento completo.
+ */
+@Component
+@Slf4j
+public class UltimoAccesoWriteBehind {
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final int capacidad;
+    private final Duration timeoutCierre;
+
+    private final Map<String, LocalDateTime> pendientes = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushEnCurso = new AtomicBoolean(false);
+
+    private final Counter registrados;
+    private final Counter descartados;
+    private final Counter escritos;
+    private final Counter erroresFlush;
+    private final Timer duracionFlush;
+
+    @Autowired
+    public UltimoAccesoWriteBehind(
+            ReactiveMongoOperations mongoOperations,
+            MeterRegistry meterRegistry,
+            @Value("${usuarios.ultimo-acceso.capacidad:10000}") int capacidad,
+            @Value("${usuarios.ultimo-acceso.timeout-cierre:10s}") Duration timeoutCierre) {
+        this.mongoOperations = mongoOperations;
+        this.capacidad = capacidad;
+        this.timeoutCierre = timeoutCierre;
+
+        this.registrados = Counter.builder("usuarios.ultimo-acceso.registrados").register(meterRegistry);
+        this.descartados = Counter.builder("usuarios.ultimo-acceso.descartados")
+                .description("Accesos perdidos porque el buffer estaba lleno")
+                .register(meterRegistry);
+        this.escritos = Counter.builder("usuarios.ultimo-acceso.escritos").register(meterRegistry);
+        this.erroresFlush = Counter.builder("usuarios.ultimo-acceso.flush.errores").register(meterRegistry);
+        this.duracionFlush = Timer.builder("usuarios.ultimo-acceso.flush.duration").register(meterRegistry);
+        Gauge.builder("usuarios.ultimo-acceso.pendientes", pendientes, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registra el acceso de un usuario. Nunca bloquea ni espera a Mongo.
+     */
+    public void registrar(String idUsuario, LocalDateTime instante) {
+        if (idUsuario == null) {
+            return;
+        }
+        if (pendientes.size() >= capacidad && !pendientes.containsKey(idUsuario)) {
+            descartados.increment();
+            log.warn("Buffer de último acceso lleno ({}), adelantando flush", capacidad);
+            flush().subscribe();
+            return;
+        }
+        pendientes.merge(idUsuario, instante, UltimoAccesoWriteBehind::max);
+        registrados.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${usuarios.ultimo-acceso.intervalo-flush:5s}")
+    public void flushPeriodico() {
+        flush().subscribe();
+    }
+
+    /**
+     * Escribe lo acumulado como un único bulkWrite desordenado. Si falla, las entradas vuelven
+     * al buffer para el siguiente intento.
+     */
+    public Mono<Void> flush() {
+        return Mono.defer(this::vaciarBuffer);
+    }
+
+    private Mono<Void> vaciarBuffer() {
+        if (pendientes.isEmpty() || !flushEnCurso.compareAndSet(false, true)) {
+            return Mono.empty();
+        }
+
+        List<Map.Entry<String, LocalDateTime>> lote = new ArrayList<>();
+        for (String id : pendientes.keySet()) {
+            LocalDateTime instante = pendientes.remove(id);
+            if (instante != null) {
+                lote.add(Map.entry(id, instante));
+            }
+        }
+        if (lote.isEmpty()) {
+            flushEnCurso.set(false);
+            return Mono.empty();
+        }
+
+        ReactiveBulkOperations bulk = mongoOperations.bulkOps(BulkMode.UNORDERED, Usuario.class);
+        lote.forEach(entrada -> bulk.updateOne(
+                query(where("_id").is(entrada.getKey())),
+                new Update().max("actualizado", entrada.getValue())));
+
+        Timer.Sample sample = Timer.start();
+        return bulk.execute()
+                .doOnSuccess(result -> {
+                    escritos.increment(lote.size());
+                    log.debug("Flush de último acceso: {} usuarios, {} modificados",
+                            lote.size(), result.getModifiedCount());
+                })
+                .doOnError(error -> {
+                    erroresFlush.increment();
+                    log.error("Error en flush de último acceso, se reintentará: {}", error.getMessage());
+                    lote.forEach(entrada -> pendientes.merge(entrada.getKey(), entrada.getValue(),
+                            UltimoAccesoWriteBehind::max));
+                })
+                .onErrorResume(error -> Mono.empty())
+                .doFinally(signal -> {
+                    sample.stop(duracionFlush);
+                    flushEnCurso.set(false);
+                })
+                .then();
+    }
+
+    @PreDestroy
+    public void flushAlCerrar() {
+        log.info("Vaciando buffer de último acceso antes de cerrar ({} pendientes)", pendientes.size());
+        // Un flush periódico podría estar en curso; se espera a que termine antes del final
+        long limite = System.nanoTime() + timeoutCierre.toNanos();
+        try {
+            while (flushEnCurso.get() && System.nanoTime() < limite) {
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush().block(timeoutCierre);
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
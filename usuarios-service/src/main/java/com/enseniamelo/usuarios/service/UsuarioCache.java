@@ -0,0 +1,202 @@
+package com.enseniamelo.usuarios.service;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import com.enseniamelo.usuarios.dto.UsuarioDTO;
+import com.enseniamelo.usuarios.model.Usuario;
+import com.enseniamelo.usuarios.repository.UsuarioRepository;
+import com.enseniamelo.usuarios.util.events.Event;
+import com.enseniamelo.usuarios.util.events.UsuarioInvalidadoEvent;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Cache read-through de usuarios por id y por email, acotada por tamaño y TTL.
+ *
+ * Los usuarios inexistentes se guardan como entradas negativas con un TTL corto. Quien
+ * modifica un usuario debe invalidarlo con el id y los emails afectados; cada invalidación
+ * se publica como {@link UsuarioInvalidadoEvent} y se difunde al destino {@code usuarios} como un
+ * evento {@code INVALIDATE} para que el binding anónimo {@code usuarioCacheInvalidacion} la
+ * aplique en las demás instancias. Si la difusión falla, las otras instancias pueden servir la
+ * copia anterior hasta que venza el TTL.
+ */
+@Component
+@Slf4j
+public class UsuarioCache {
+
+    private static final String POR_ID = "id:";
+    private static final String POR_EMAIL = "email:";
+
+    static final String INVALIDACION = "usuarioInvalidacion-out-0";
+
+    private final UsuarioRepository usuarioRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StreamBridge streamBridge;
+    private final MeterRegistry meterRegistry;
+    private final AsyncCache<String, Optional<Usuario>> cache;
+
+    private final Counter inexistentes;
+
+    @Autowired
+    public UsuarioCache(
+            UsuarioRepository usuarioRepository,
+            ApplicationEventPublisher eventPublisher,
+            StreamBridge streamBridge,
+            MeterRegistry meterRegistry,
+            @Value("${usuarios.cache.tamanio-maximo:10000}") long tamanioMaximo,
+            @Value("${usuarios.cache.ttl:5m}") Duration ttl,
+            @Value("${usuarios.cache.ttl-negativo:30s}") Duration ttlNegativo) {
+        this.usuarioRepository = usuarioRepository;
+        this.eventPublisher = eventPublisher;
+        this.streamBridge = streamBridge;
+        this.meterRegistry = meterRegistry;
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfter(new Expiry<String, Optional<Usuario>>() {
+                    @Override
+                    public long expireAfterCreate(String clave, Optional<Usuario> valor, long ahora) {
+                        return (valor.isPresent() ? ttl : ttlNegativo).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String clave, Optional<Usuario> valor, long ahora, long restante) {
+                        return expireAfterCreate(clave, valor, ahora);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String clave, Optional<Usuario> valor, long ahora, long restante) {
+                        return restante;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "usuarios");
+        Gauge.builder("usuarios.cache.hit.ratio", cache, c -> c.synchronous().stats().hitRate())
+                .description("Proporción de búsquedas de usuario resueltas sin ir a Mongo")
+                .register(meterRegistry);
+        this.inexistentes = Counter.builder("usuarios.cache.inexistentes")
+                .description("Búsquedas que terminaron en un usuario inexistente")
+                .register(meterRegistry);
+    }
+
+    public Mono<Usuario> buscarPorId(String id) {
+        return obtener(POR_ID + id, () -> usuarioRepository.findById(id));
+    }
+
+    public Mono<Usuario> buscarPorEmail(String email) {
+        return obtener(POR_EMAIL + email, () -> usuarioRepository.findByEmail(email));
+    }
+
+    /**
+     * Invalida las entradas del usuario por id y por cada email indicado (p. ej. el anterior y
+     * el nuevo tras un cambio de email) en esta instancia y en las demás. Si la entrada por id
+     * está cacheada, su email también se invalida.
+     */
+    public void invalidar(String id, String... emails) {
+        difundir(id, quitar(id, emails));
+    }
+
+    public void invalidarEmail(String email) {
+        invalidar(null, email);
+    }
+
+    /**
+     * Invalida solo en esta instancia. Lo usa el consumidor de las invalidaciones difundidas, que
+     * no debe volver a publicarlas.
+     */
+    public void invalidarLocal(String id, String... emails) {
+        quitar(id, emails);
+    }
+
+    private Set<String> quitar(String id, String... emails) {
+        String emailCacheado = null;
+        if (id != null) {
+            CompletableFuture<Optional<Usuario>> actual = cache.getIfPresent(POR_ID + id);
+            if (actual != null && actual.isDone() && !actual.isCompletedExceptionally()) {
+                emailCacheado = actual.join().map(Usuario::getEmail).orElse(null);
+            }
+            cache.synchronous().invalidate(POR_ID + id);
+        }
+        Set<String> invalidados = new LinkedHashSet<>();
+        for (String email : emails) {
+            if (email != null) {
+                invalidados.add(email);
+            }
+        }
+        if (emailCacheado != null) {
+            invalidados.add(emailCacheado);
+        }
+        invalidados.forEach(email -> cache.synchronous().invalidate(POR_EMAIL + email));
+
+        String email = emails.length > 0 && emails[0] != null ? emails[0] : emailCacheado;
+        log.debug("Usuario invalidado en cache: id={}, email={}", id, email);
+        eventPublisher.publishEvent(new UsuarioInvalidadoEvent(id, email));
+        return invalidados;
+    }
+
+    /**
+     * Un evento por email (el consumidor lee uno solo), sin eventId: no pasa por el registro de
+     * eventos aplicados y los consumidores con grupo lo ignoran. Nunca falla la escritura que lo
+     * originó.
+     */
+    private void difundir(String id, Set<String> emails) {
+        if (emails.isEmpty()) {
+            enviar(id, null);
+        } else {
+            emails.forEach(email -> enviar(id, email));
+        }
+    }
+
+    private void enviar(String id, String email) {
+        UsuarioDTO datos = new UsuarioDTO();
+        datos.setEmail(email);
+        String resultado;
+        try {
+            resultado = streamBridge.send(INVALIDACION, MessageBuilder
+                    .withPayload(new Event<>(Event.Type.INVALIDATE, id, datos, ZonedDateTime.now(), null))
+                    .setHeader("partitionKey", id != null ? id : email)
+                    .build()) ? "ok" : "rechazado";
+        } catch (RuntimeException e) {
+            log.warn("No se pudo difundir la invalidación del usuario id={}, email={}: {}", id, email,
+                    e.getMessage());
+            resultado = "error";
+        }
+        meterRegistry.counter("usuarios.cache.invalidaciones.difundidas", "resultado", resultado).increment();
+    }
+
+    private Mono<Usuario> obtener(String clave, Supplier<Mono<Usuario>> cargador) {
+        return Mono.fromFuture(() -> cache.get(clave, (k, executor) -> cargador.get()
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .toFuture()))
+                .flatMap(valor -> {
+                    if (valor.isEmpty()) {
+                        inexistentes.increment();
+                    }
+                    return Mono.justOrEmpty(valor);
+                });
+    }
+}
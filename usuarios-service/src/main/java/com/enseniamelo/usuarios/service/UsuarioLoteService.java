@@ -0,0 +1,205 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.enseniamelo.usuarios.dto.UsuarioDTO;
+import com.enseniamelo.usuarios.mapper.UsuarioMapper;
+import com.enseniamelo.usuarios.model.Usuario;
+import com.enseniamelo.usuarios.util.events.Event;
+import com.enseniamelo.usuarios.util.events.EventosDlq;
+import com.enseniamelo.usuarios.util.events.LoteEventos;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Aplicación por lotes de eventos de usuario, para reprocesar o rellenar el destino
+ * {@code usuarios} sin pasar evento a evento por {@link UsuarioService}.
+ *
+ * El lote se colapsa al último estado por clave, la existencia (ids a actualizar o borrar, emails
+ * a dar de alta) se valida con una sola consulta {@code $in} y las escrituras se aplican con un
+ * único bulkWrite sin orden. Lo que falla de a uno (no encontrado, email repetido, error de
+ * escritura) se envía a la DLQ sin afectar al resto del lote.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UsuarioLoteService {
+
+    static final String CONSUMIDOR = "USUARIO-LOTE";
+    static final String DLQ = EventosDlq.USUARIOS;
+
+    private final UsuarioService usuarioService;
+    private final UsuarioMapper usuarioMapper;
+    private final UsuarioCache usuarioCache;
+    private final ReactiveMongoOperations mongoOperations;
+    private final LoteEventos loteEventos;
+
+    public Mono<Void> aplicar(List<Event<String, UsuarioDTO>> eventos) {
+        // Las invalidaciones difundidas por UsuarioCache solo le interesan a usuarioCacheInvalidacion
+        Map<String, Event<String, UsuarioDTO>> porClave = loteEventos.colapsar(CONSUMIDOR, DLQ,
+                eventos.stream().filter(event -> event == null || event.getEventType() != Event.Type.INVALIDATE)
+                        .toList(),
+                UsuarioLoteService::clave);
+        if (porClave.isEmpty()) {
+            return Mono.empty();
+        }
+
+        Set<String> ids = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        porClave.values().forEach(event -> {
+            if (event.getEventType() == Event.Type.CREATE) {
+                if (event.getData() != null && event.getData().getEmail() != null) {
+                    emails.add(event.getData().getEmail());
+                }
+            } else if (event.getKey() != null) {
+                ids.add(event.getKey());
+            }
+        });
+
+        Query existentes = query(new Criteria().orOperator(where("_id").in(ids), where("email").in(emails)));
+        existentes.fields().include("_id", "email");
+
+        return mongoOperations.find(existentes, Usuario.class)
+                .collectList()
+                .flatMap(encontrados -> escribir(porClave, encontrados));
+    }
+
+    private Mono<Void> escribir(Map<String, Event<String, UsuarioDTO>> porClave, List<Usuario> encontrados) {
+        Map<String, String> emailPorId = new HashMap<>();
+        Set<String> emailsOcupados = new HashSet<>();
+        encontrados.forEach(usuario -> {
+            emailPorId.put(usuario.getId(), usuario.getEmail());
+            emailsOcupados.add(usuario.getEmail());
+        });
+
+        ReactiveBulkOperations bulk = mongoOperations.bulkOps(BulkMode.UNORDERED, Usuario.class);
+        List<Operacion> operaciones = new ArrayList<>();
+        LocalDateTime ahora = LocalDateTime.now();
+
+        for (Event<String, UsuarioDTO> event : porClave.values()) {
+            UsuarioDTO datos = event.getData();
+            switch (event.getEventType()) {
+                case CREATE -> {
+                    if (datos == null || datos.getEmail() == null) {
+                        loteEventos.aDlq(CONSUMIDOR, DLQ, event, "El email es obligatorio");
+                    } else if (!emailsOcupados.add(datos.getEmail())) {
+                        loteEventos.aDlq(CONSUMIDOR, DLQ, event, "El email ya está registrado");
+                    } else {
+                        bulk.insert(usuarioService.nuevoUsuario(datos, ahora));
+                        operaciones.add(new Operacion(event, null, null, datos.getEmail()));
+                    }
+                }
+                case UPDATE -> {
+                    if (!emailPorId.containsKey(event.getKey())) {
+                        loteEventos.aDlq(CONSUMIDOR, DLQ, event, "Usuario no encontrado con id: " + event.getKey());
+                    } else if (datos == null) {
+                        loteEventos.aDlq(CONSUMIDOR, DLQ, event, "Evento de actualización sin datos");
+                    } else {
+                        Usuario cambios = new Usuario();
+                        usuarioMapper.updateEntityFromDto(datos, cambios);
+                        bulk.updateOne(query(where("_id").is(event.getKey())), actualizacion(cambios, ahora));
+                        operaciones.add(new Operacion(event, event.getKey(), emailPorId.get(event.getKey()),
+                                cambios.getEmail()));
+                    }
+                }
+                case DELETE -> {
+                    if (!emailPorId.containsKey(event.getKey())) {
+                        loteEventos.aDlq(CONSUMIDOR, DLQ, event, "Usuario no encontrado con id: " + event.getKey());
+                    } else {
+                        bulk.remove(query(where("_id").is(event.getKey())));
+                        operaciones.add(new Operacion(event, event.getKey(), emailPorId.get(event.getKey()), null));
+                    }
+                }
+                default -> loteEventos.aDlq(CONSUMIDOR, DLQ, event, "Evento no soportado: " + event.getEventType());
+            }
+        }
+
+        if (operaciones.isEmpty()) {
+            return Mono.empty();
+        }
+        return bulk.execute()
+                .map(resultado -> Collections.<Integer, String>emptyMap())
+                .onErrorResume(error -> {
+                    Map<Integer, String> errores = LoteEventos.erroresDeEscritura(error);
+                    // Sin errores por operación falló el lote entero: el binder lo reintenta
+                    return errores.isEmpty() ? Mono.error(error) : Mono.just(errores);
+                })
+                .doOnNext(errores -> completar(operaciones, errores))
+                .then();
+    }
+
+    /**
+     * Los mismos campos que copia {@link UsuarioMapper#updateEntityFromDto} en la actualización
+     * individual, como {@code $set} para no pisar el resto del documento.
+     */
+    private static Update actualizacion(Usuario cambios, LocalDateTime ahora) {
+        Update update = new Update()
+                .set("nombre", cambios.getNombre())
+                .set("apellido", cambios.getApellido())
+                .set("telefono", cambios.getTelefono())
+                .set("email", cambios.getEmail())
+                .set("rol", cambios.getRol())
+                .set("foto", cambios.getFoto())
+                .set("creado", cambios.getCreado())
+                .set("actualizado", ahora);
+        Integer codigo = UsuarioService.codigoRol(cambios.getRol());
+        if (codigo != null) {
+            update.set("rolCodigo", codigo);
+        }
+        return update;
+    }
+
+    private void completar(List<Operacion> operaciones, Map<Integer, String> errores) {
+        for (int i = 0; i < operaciones.size(); i++) {
+            Operacion operacion = operaciones.get(i);
+            if (errores.containsKey(i)) {
+                loteEventos.aDlq(CONSUMIDOR, DLQ, operacion.event(), errores.get(i));
+                continue;
+            }
+            if (operacion.id() == null) {
+                // Puede haber una entrada negativa de una búsqueda anterior por este email
+                usuarioCache.invalidarEmail(operacion.emailNuevo());
+            } else {
+                usuarioCache.invalidar(operacion.id(), operacion.emailAnterior(), operacion.emailNuevo());
+            }
+        }
+        loteEventos.aplicados(CONSUMIDOR, operaciones.size() - errores.size());
+        log.info("[{}] Lote aplicado: {} escrituras, {} a la DLQ", CONSUMIDOR, operaciones.size(), errores.size());
+    }
+
+    private static String clave(Event<String, UsuarioDTO> event) {
+        if (event.getKey() != null) {
+            return event.getKey();
+        }
+        // Un alta puede llegar sin id: el email la identifica dentro del lote
+        if (event.getEventType() == Event.Type.CREATE && event.getData() != null
+                && Objects.nonNull(event.getData().getEmail())) {
+            return "email:" + event.getData().getEmail();
+        }
+        return null;
+    }
+
+    private record Operacion(Event<String, UsuarioDTO> event, String id, String emailAnterior, String emailNuevo) {
+    }
+}
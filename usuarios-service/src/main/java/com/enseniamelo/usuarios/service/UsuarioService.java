@@ -1,14 +1,32 @@
 package com.enseniamelo.usuarios.service;
 
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import com.enseniamelo.usuarios.dto.PaginaDTO;
+import com.enseniamelo.usuarios.dto.UsuarioLoteItem;
 import com.enseniamelo.usuarios.dto.UsuarioDTO;
 import com.enseniamelo.usuarios.mapper.UsuarioMapper;
 import com.enseniamelo.usuarios.model.Usuario;
 import com.enseniamelo.usuarios.repository.UsuarioRepository;
+import com.enseniamelo.usuarios.util.exception.BadRequestException;
+import com.enseniamelo.usuarios.util.paginacion.CursorPaginacion;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,6 +40,18 @@ public class UsuarioService {
 
     private final UsuarioRepository usuarioRepository;
     private final UsuarioMapper usuarioMapper;
+    private final ReactiveMongoOperations mongoOperations;
+    private final UsuarioCache usuarioCache;
+
+    // Solo los campos que expone UsuarioDTO; la contraseña y los documentos no salen de Mongo
+    private static final String[] CAMPOS_LISTADO = {
+            "_id", "nombre", "apellido", "telefono", "email", "rol", "foto", "creado", "actualizado" };
+
+    @Value("${usuarios.paginacion.limite-maximo:200}")
+    private int limiteMaximo;
+
+    @Value("${usuarios.lote.maximo:500}")
+    private int maximoLote;
 
     public Mono<UsuarioDTO> crearUsuario(UsuarioDTO usuarioDTO) {
         log.info("Creando usuario");
@@ -33,41 +63,12 @@ public class UsuarioService {
                         return Mono.error(new RuntimeException("El email ya está registrado"));
                     }
 
-                    Usuario usuario = usuarioMapper.dtoToEntity(usuarioDTO);
-                    usuario.setId(null); // Mongo genera el _id
-
-                    LocalDateTime ahora = LocalDateTime.now();
-
-                    // 🔹 Rol viene del DTO: ADMIN | DOCENTE | ESTUDIANTE
-                    String rol = usuario.getRol();
-                    if (rol == null) {
-                        // fallback por si alguien manda DTO sin rol (no debería)
-                        rol = "ESTUDIANTE";
-                        usuario.setRol(rol);
-                    }
-
-                    // 🔹 Mapear rol → rolCodigo (1=ESTUDIANTE, 2=DOCENTE, 3=ADMIN por ejemplo)
-                    if (usuario.getRolCodigo() == null) {
-                        switch (rol) {
-                            case "ADMIN" -> usuario.setRolCodigo(3);
-                            case "DOCENTE" -> usuario.setRolCodigo(2);
-                            case "ESTUDIANTE" -> usuario.setRolCodigo(1);
-                            default -> usuario.setRolCodigo(1);
-                        }
-                    }
-
-                    if (usuario.getActivo() == null) {
-                        usuario.setActivo(true);
-                    }
-                    if (usuario.getDocumentos() == null) {
-                        usuario.setDocumentos(Collections.emptyList());
-                    }
-
-                    usuario.setFechaCreacion(ahora);
-                    usuario.setCreado(ahora);
-                    usuario.setActualizado(ahora);
+                    Usuario usuario = nuevoUsuario(usuarioDTO, LocalDateTime.now());
 
                     return usuarioRepository.save(usuario)
+                            .onErrorMap(DuplicateKeyException.class, UsuarioService::emailYaRegistrado)
+                            // Puede haber una entrada negativa de una búsqueda anterior por este email
+                            .doOnSuccess(usuarioGuardado -> usuarioCache.invalidarEmail(usuarioGuardado.getEmail()))
                             .map(usuarioGuardado -> {
                                 log.info("Usuario creado exitosamente con id: {}", usuarioGuardado.getId());
                                 return usuarioMapper.entityToDto(usuarioGuardado);
@@ -75,18 +76,192 @@ public class UsuarioService {
                 });
     }
 
+    /**
+     * Entidad lista para insertar a partir del DTO: rol y código de rol, valores por defecto y
+     * fechas. Lo comparten el alta individual y la aplicación por lotes de eventos.
+     */
+    Usuario nuevoUsuario(UsuarioDTO usuarioDTO, LocalDateTime ahora) {
+        Usuario usuario = usuarioMapper.dtoToEntity(usuarioDTO);
+        usuario.setId(null); // Mongo genera el _id
+
+        // 🔹 Rol viene del DTO: ADMIN | DOCENTE | ESTUDIANTE
+        String rol = usuario.getRol();
+        if (rol == null) {
+            // fallback por si alguien manda DTO sin rol (no debería)
+            rol = "ESTUDIANTE";
+            usuario.setRol(rol);
+        }
+
+        // 🔹 Mapear rol → rolCodigo (1=ESTUDIANTE, 2=DOCENTE, 3=ADMIN por ejemplo)
+        if (usuario.getRolCodigo() == null) {
+            Integer codigo = codigoRol(rol);
+            usuario.setRolCodigo(codigo != null ? codigo : 1);
+        }
+
+        if (usuario.getActivo() == null) {
+            usuario.setActivo(true);
+        }
+        if (usuario.getDocumentos() == null) {
+            usuario.setDocumentos(Collections.emptyList());
+        }
+
+        usuario.setFechaCreacion(ahora);
+        usuario.setCreado(ahora);
+        usuario.setActualizado(ahora);
+        return usuario;
+    }
+
+    static Integer codigoRol(String rol) {
+        if (rol == null) {
+            return null;
+        }
+        return switch (rol) {
+            case "ADMIN" -> 3;
+            case "DOCENTE" -> 2;
+            case "ESTUDIANTE" -> 1;
+            default -> null;
+        };
+    }
+
+    private static RuntimeException emailYaRegistrado(DuplicateKeyException error) {
+        log.error("El email ya está registrado (índice único)");
+        return new RuntimeException("El email ya está registrado", error);
+    }
+
     public Flux<UsuarioDTO> obtenerTodos() {
         log.info("Obteniendo todos los usuarios");
 
-        return usuarioRepository.findAll()
+        Query consulta = new Query();
+        consulta.fields().include(CAMPOS_LISTADO);
+
+        return mongoOperations.find(consulta, Usuario.class)
                 .map(usuarioMapper::entityToDto)
                 .doOnComplete(() -> log.info("Listado de usuarios completado"));
     }
 
+    /**
+     * Listado paginado por {@code _id} (keyset): cada página continúa tras el último id de la
+     * anterior, así el coste no crece con el número de página.
+     */
+    public Mono<PaginaDTO<UsuarioDTO>> listarPagina(String cursor, int limite, String rol, Boolean activo) {
+        int tamanio = Math.max(1, Math.min(limite, limiteMaximo));
+        log.info("Listando usuarios: limite={}, rol={}, activo={}, cursor={}", tamanio, rol, activo, cursor != null);
+
+        Query consulta = new Query();
+        if (rol != null) {
+            consulta.addCriteria(where("rol").is(rol));
+        }
+        if (activo != null) {
+            consulta.addCriteria(where("activo").is(activo));
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            String ultimoId = CursorPaginacion.decodificar(cursor, 1).get(0);
+            if (!ObjectId.isValid(ultimoId)) {
+                return Mono.error(new BadRequestException("Cursor de paginación inválido"));
+            }
+            consulta.addCriteria(where("_id").gt(new ObjectId(ultimoId)));
+        }
+        consulta.with(Sort.by(Sort.Direction.ASC, "_id"));
+        // Se pide uno de más para saber si existe una página siguiente
+        consulta.limit(tamanio + 1);
+        consulta.fields().include(CAMPOS_LISTADO);
+
+        return mongoOperations.find(consulta, Usuario.class)
+                .collectList()
+                .map(usuarios -> {
+                    boolean hayMas = usuarios.size() > tamanio;
+                    List<Usuario> pagina = hayMas ? usuarios.subList(0, tamanio) : usuarios;
+                    String siguiente = hayMas
+                            ? CursorPaginacion.codificar(pagina.get(pagina.size() - 1).getId())
+                            : null;
+                    return PaginaDTO.of(pagina.stream().map(usuarioMapper::entityToDto).toList(), siguiente);
+                });
+    }
+
+    /**
+     * Resuelve un lote de ids y/o emails con una sola consulta {@code $in} proyectada. Los
+     * usuarios se emiten a medida que llegan de Mongo y al final un marcador
+     * {@code encontrado=false} por cada clave sin resultado.
+     */
+    public Flux<UsuarioLoteItem> buscarLote(List<String> ids, List<String> emails) {
+        // Claves en orden de petición, sin repetir; el valor indica el tipo
+        Map<String, String> pendientes = new LinkedHashMap<>();
+        if (ids != null) {
+            ids.stream().filter(id -> id != null && !id.isBlank())
+                    .forEach(id -> pendientes.putIfAbsent(id, UsuarioLoteItem.POR_ID));
+        }
+        if (emails != null) {
+            emails.stream().filter(email -> email != null && !email.isBlank())
+                    .forEach(email -> pendientes.putIfAbsent(email, UsuarioLoteItem.POR_EMAIL));
+        }
+        if (pendientes.size() > maximoLote) {
+            return Flux.error(new BadRequestException(
+                    "El lote supera el máximo de " + maximoLote + " identificadores"));
+        }
+        log.info("Buscando lote de {} usuarios", pendientes.size());
+
+        List<ObjectId> objectIds = new ArrayList<>();
+        List<String> emailsValidos = new ArrayList<>();
+        pendientes.forEach((clave, tipo) -> {
+            if (UsuarioLoteItem.POR_EMAIL.equals(tipo)) {
+                emailsValidos.add(clave);
+            } else if (ObjectId.isValid(clave)) {
+                objectIds.add(new ObjectId(clave));
+            }
+        });
+
+        List<Criteria> criterios = new ArrayList<>();
+        if (!objectIds.isEmpty()) {
+            criterios.add(where("_id").in(objectIds));
+        }
+        if (!emailsValidos.isEmpty()) {
+            criterios.add(where("email").in(emailsValidos));
+        }
+        Flux<Usuario> encontrados = Flux.empty();
+        if (!criterios.isEmpty()) {
+            Query consulta = new Query(new Criteria().orOperator(criterios));
+            consulta.fields().include(CAMPOS_LISTADO);
+            encontrados = mongoOperations.find(consulta, Usuario.class);
+        }
+
+        return encontrados
+                .flatMapIterable(usuario -> {
+                    UsuarioDTO dto = usuarioMapper.entityToDto(usuario);
+                    List<UsuarioLoteItem> items = new ArrayList<>(2);
+                    // Un mismo usuario puede haberse pedido por id y por email
+                    if (pendientes.remove(usuario.getId()) != null) {
+                        items.add(new UsuarioLoteItem(usuario.getId(), UsuarioLoteItem.POR_ID, true, dto));
+                    }
+                    if (usuario.getEmail() != null && pendientes.remove(usuario.getEmail()) != null) {
+                        items.add(new UsuarioLoteItem(usuario.getEmail(), UsuarioLoteItem.POR_EMAIL, true, dto));
+                    }
+                    return items;
+                })
+                .concatWith(Flux.defer(() -> Flux.fromIterable(pendientes.entrySet())
+                        .map(faltante -> new UsuarioLoteItem(faltante.getKey(), faltante.getValue(), false, null))));
+    }
+
+    /**
+     * Variante de {@link #buscarLote} que devuelve un mapa clave → resultado, en el orden pedido.
+     */
+    public Mono<Map<String, UsuarioLoteItem>> buscarLoteComoMapa(List<String> ids, List<String> emails) {
+        // buscarLote emite primero los encontrados: el orden se rehace a partir de la petición
+        return buscarLote(ids, emails)
+                .collectMap(UsuarioLoteItem::getClave)
+                .map(porClave -> {
+                    Map<String, UsuarioLoteItem> ordenado = new LinkedHashMap<>();
+                    Stream.concat(ids != null ? ids.stream() : Stream.empty(),
+                                    emails != null ? emails.stream() : Stream.empty())
+                            .filter(porClave::containsKey)
+                            .forEach(clave -> ordenado.putIfAbsent(clave, porClave.get(clave)));
+                    return ordenado;
+                });
+    }
+
     public Mono<UsuarioDTO> buscarPorId(String id) {
         log.info("Buscando usuario con id: {}", id);
 
-        return usuarioRepository.findById(id)
+        return usuarioCache.buscarPorId(id)
                 .map(usuarioMapper::entityToDto)
                 .switchIfEmpty(Mono.defer(() -> {
                     log.error("Usuario no encontrado con id: {}", id);
@@ -97,23 +272,23 @@ public class UsuarioService {
 
     public Mono<UsuarioDTO> buscarPorEmail(String email) {
         log.info("Buscando usuario por email: {}", email);
-        return usuarioRepository.findByEmail(email)
+        return usuarioCache.buscarPorEmail(email)
                 .map(usuarioMapper::entityToDto);
     }
 
     public Mono<Void> eliminarPorId(String id) {
         log.info("Eliminando usuario con id: {}", id);
 
-        return usuarioRepository.existsById(id)
-                .flatMap(existe -> {
-                    if (!existe) {
-                        log.error("Usuario no encontrado con id: {}", id);
-                        return Mono.error(new RuntimeException("Usuario no encontrado con id: " + id));
-                    }
-
-                    return usuarioRepository.deleteById(id)
-                            .doOnSuccess(v -> log.info("Usuario eliminado exitosamente con id: {}", id));
-                });
+        return usuarioRepository.findById(id)
+                .switchIfEmpty(Mono.defer(() -> {
+                    log.error("Usuario no encontrado con id: {}", id);
+                    return Mono.error(new RuntimeException("Usuario no encontrado con id: " + id));
+                }))
+                .flatMap(usuario -> usuarioRepository.deleteById(id)
+                        .doOnSuccess(v -> {
+                            usuarioCache.invalidar(id, usuario.getEmail());
+                            log.info("Usuario eliminado exitosamente con id: {}", id);
+                        }));
     }
 
     public Mono<UsuarioDTO> actualizarUsuario(String id, UsuarioDTO usuarioDTO) {
@@ -125,21 +300,21 @@ public class UsuarioService {
                     return Mono.error(new RuntimeException("Usuario no encontrado con id: " + id));
                 }))
                 .flatMap(usuarioExistente -> {
+                    String emailAnterior = usuarioExistente.getEmail();
+
                     // Actualiza campos “editables” según el mapper
                     usuarioMapper.updateEntityFromDto(usuarioDTO, usuarioExistente);
 
                     // Si cambiaron el rol en el DTO, recalculamos rolCodigo
-                    String rol = usuarioExistente.getRol();
-                    if (rol != null) {
-                        switch (rol) {
-                            case "ADMIN" -> usuarioExistente.setRolCodigo(3);
-                            case "DOCENTE" -> usuarioExistente.setRolCodigo(2);
-                            case "ESTUDIANTE" -> usuarioExistente.setRolCodigo(1);
-                        }
+                    Integer codigo = codigoRol(usuarioExistente.getRol());
+                    if (codigo != null) {
+                        usuarioExistente.setRolCodigo(codigo);
                     }
 
                     usuarioExistente.setActualizado(LocalDateTime.now());
-                    return usuarioRepository.save(usuarioExistente);
+                    return usuarioRepository.save(usuarioExistente)
+                            .onErrorMap(DuplicateKeyException.class, UsuarioService::emailYaRegistrado)
+                            .doOnSuccess(guardado -> usuarioCache.invalidar(id, emailAnterior, guardado.getEmail()));
                 })
                 .map(guardado -> {
                     log.info("Usuario actualizado exitosamente con id: {}", id);
@@ -0,0 +1,191 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.enseniamelo.usuarios.dto.DecisionSolicitudRequest;
+import com.enseniamelo.usuarios.dto.DecisionSolicitudResultado;
+import com.enseniamelo.usuarios.dto.VerificarSolicitudDTO;
+import com.enseniamelo.usuarios.model.VerificarSolicitud;
+import com.enseniamelo.usuarios.util.events.Event;
+import com.enseniamelo.usuarios.util.events.EventosDlq;
+import com.enseniamelo.usuarios.util.events.LoteEventos;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Aplicación por lotes de eventos de solicitudes de verificación.
+ *
+ * Tras colapsar por clave, las aprobaciones y rechazos se aplican con
+ * {@link DecisionesVerificacionService} (un bulkWrite condicionado por lote, con su outbox) y las
+ * bajas con una consulta {@code $in} y un único bulkWrite. Las altas siguen pasando de a una por
+ * {@link VerificarSolicitudService#crearSolicitud}, con concurrencia acotada, porque validan el
+ * curso contra cursoservice. Lo que falla de a uno va a la DLQ.
+ */
+@Service
+@Slf4j
+public class VerificarSolicitudLoteService {
+
+    static final String CONSUMIDOR = "SOLICITUD-LOTE";
+    static final String DLQ = EventosDlq.SOLICITUDES;
+
+    // Al reprocesar, una decisión ya aplicada no es un error
+    private static final Set<String> DECISION_FALLIDA = Set.of(
+            DecisionSolicitudResultado.NO_ENCONTRADA,
+            DecisionSolicitudResultado.INVALIDA,
+            DecisionSolicitudResultado.ERROR);
+
+    private final VerificarSolicitudService solicitudService;
+    private final DecisionesVerificacionService decisionesService;
+    private final SolicitudesPendientesContador pendientesContador;
+    private final ReactiveMongoOperations mongoOperations;
+    private final LoteEventos loteEventos;
+    private final int concurrenciaAltas;
+
+    @Autowired
+    public VerificarSolicitudLoteService(
+            VerificarSolicitudService solicitudService,
+            DecisionesVerificacionService decisionesService,
+            SolicitudesPendientesContador pendientesContador,
+            ReactiveMongoOperations mongoOperations,
+            LoteEventos loteEventos,
+            @Value("${usuarios.eventos.lote.concurrencia-altas:8}") int concurrenciaAltas) {
+        this.solicitudService = solicitudService;
+        this.decisionesService = decisionesService;
+        this.pendientesContador = pendientesContador;
+        this.mongoOperations = mongoOperations;
+        this.loteEventos = loteEventos;
+        this.concurrenciaAltas = concurrenciaAltas;
+    }
+
+    public Mono<Void> aplicar(List<Event<String, VerificarSolicitudDTO>> eventos) {
+        Map<String, Event<String, VerificarSolicitudDTO>> porClave =
+                loteEventos.colapsar(CONSUMIDOR, DLQ, eventos, VerificarSolicitudLoteService::clave);
+
+        Map<Event.Type, List<Event<String, VerificarSolicitudDTO>>> porTipo = porClave.values().stream()
+                .collect(Collectors.groupingBy(Event::getEventType));
+        porTipo.forEach((tipo, lista) -> {
+            if (tipo != Event.Type.CREATE && tipo != Event.Type.APPROVE_REQUEST
+                    && tipo != Event.Type.REJECT_REQUEST && tipo != Event.Type.DELETE) {
+                lista.forEach(event -> loteEventos.aDlq(CONSUMIDOR, DLQ, event, "Evento no soportado: " + tipo));
+            }
+        });
+
+        List<Event<String, VerificarSolicitudDTO>> decisiones = new ArrayList<>();
+        decisiones.addAll(porTipo.getOrDefault(Event.Type.APPROVE_REQUEST, List.of()));
+        decisiones.addAll(porTipo.getOrDefault(Event.Type.REJECT_REQUEST, List.of()));
+
+        return crear(porTipo.getOrDefault(Event.Type.CREATE, List.of()))
+                .then(decidir(decisiones))
+                .then(eliminar(porTipo.getOrDefault(Event.Type.DELETE, List.of())))
+                .doOnSuccess(v -> log.info("[{}] Lote aplicado: {} eventos tras colapsar", CONSUMIDOR, porClave.size()));
+    }
+
+    private Mono<Void> crear(List<Event<String, VerificarSolicitudDTO>> altas) {
+        return Flux.fromIterable(altas)
+                .flatMap(event -> solicitudService.crearSolicitud(event.getData() != null
+                                ? event.getData() : new VerificarSolicitudDTO())
+                        .doOnSuccess(creada -> loteEventos.aplicados(CONSUMIDOR, 1))
+                        .onErrorResume(error -> {
+                            loteEventos.aDlq(CONSUMIDOR, DLQ, event, error.getMessage());
+                            return Mono.empty();
+                        }), concurrenciaAltas)
+                .then();
+    }
+
+    private Mono<Void> decidir(List<Event<String, VerificarSolicitudDTO>> decisiones) {
+        if (decisiones.isEmpty()) {
+            return Mono.empty();
+        }
+        Map<String, Event<String, VerificarSolicitudDTO>> porId = decisiones.stream()
+                .collect(Collectors.toMap(Event::getKey, event -> event));
+
+        Flux<DecisionSolicitudRequest> solicitudes = Flux.fromIterable(decisiones)
+                .map(event -> new DecisionSolicitudRequest(event.getKey(),
+                        event.getEventType() == Event.Type.APPROVE_REQUEST ? "APROBADO" : "RECHAZADO",
+                        event.getData() != null ? event.getData().getComentario() : null));
+
+        return decisionesService.decidir(solicitudes)
+                .doOnNext(resultado -> {
+                    if (DECISION_FALLIDA.contains(resultado.getEstado())) {
+                        loteEventos.aDlq(CONSUMIDOR, DLQ, porId.get(resultado.getId()), resultado.getMensaje());
+                    } else {
+                        loteEventos.aplicados(CONSUMIDOR, 1);
+                    }
+                })
+                .then();
+    }
+
+    private Mono<Void> eliminar(List<Event<String, VerificarSolicitudDTO>> bajas) {
+        if (bajas.isEmpty()) {
+            return Mono.empty();
+        }
+        Query existentes = query(where("_id").in(bajas.stream().map(Event::getKey).toList()));
+        existentes.fields().include("_id", "estado");
+
+        return mongoOperations.find(existentes, VerificarSolicitud.class)
+                .collectMap(VerificarSolicitud::getId, VerificarSolicitud::getEstado)
+                .flatMap(estados -> {
+                    ReactiveBulkOperations bulk = mongoOperations.bulkOps(BulkMode.UNORDERED, VerificarSolicitud.class);
+                    List<Event<String, VerificarSolicitudDTO>> operaciones = new ArrayList<>();
+                    for (Event<String, VerificarSolicitudDTO> event : bajas) {
+                        if (!estados.containsKey(event.getKey())) {
+                            loteEventos.aDlq(CONSUMIDOR, DLQ, event, "Solicitud no encontrada");
+                        } else {
+                            bulk.remove(query(where("_id").is(event.getKey())));
+                            operaciones.add(event);
+                        }
+                    }
+                    if (operaciones.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    return bulk.execute()
+                            .map(resultado -> Collections.<Integer, String>emptyMap())
+                            .onErrorResume(error -> {
+                                Map<Integer, String> errores = LoteEventos.erroresDeEscritura(error);
+                                return errores.isEmpty() ? Mono.error(error) : Mono.just(errores);
+                            })
+                            .doOnNext(errores -> {
+                                for (int i = 0; i < operaciones.size(); i++) {
+                                    Event<String, VerificarSolicitudDTO> event = operaciones.get(i);
+                                    if (errores.containsKey(i)) {
+                                        loteEventos.aDlq(CONSUMIDOR, DLQ, event, errores.get(i));
+                                    } else {
+                                        pendientesContador.eliminada(estados.get(event.getKey()));
+                                    }
+                                }
+                                loteEventos.aplicados(CONSUMIDOR, operaciones.size() - errores.size());
+                            });
+                })
+                .then();
+    }
+
+    private static String clave(Event<String, VerificarSolicitudDTO> event) {
+        if (event.getKey() != null) {
+            return event.getKey();
+        }
+        // Un alta puede llegar sin id: el curso la identifica (una solicitud por curso)
+        if (event.getEventType() == Event.Type.CREATE && event.getData() != null
+                && event.getData().getIdCurso() != null) {
+            return "curso:" + event.getData().getIdCurso();
+        }
+        return null;
+    }
+}
@@ -1,21 +1,34 @@
 package com.enseniamelo.usuarios.service;
 
-import java.time.LocalDateTime;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import com.enseniamelo.usuarios.dto.ColaVerificacionDTO;
 import com.enseniamelo.usuarios.dto.CursoDTO;
 import com.enseniamelo.usuarios.dto.PerfilTutorDTO;
 import com.enseniamelo.usuarios.dto.UsuarioDTO;
 import com.enseniamelo.usuarios.dto.VerificarSolicitudDTO;
-import com.enseniamelo.usuarios.external.MsCursoIntegration;
-import com.enseniamelo.usuarios.mapper.PerfilTutorMapper;
-import com.enseniamelo.usuarios.mapper.UsuarioMapper;
 import com.enseniamelo.usuarios.mapper.VerificarSolicitudMapper;
 import com.enseniamelo.usuarios.model.VerificarSolicitud;
-import com.enseniamelo.usuarios.repository.PerfilTutorRepository;
 import com.enseniamelo.usuarios.repository.UsuarioRepository;
 import com.enseniamelo.usuarios.repository.VerificarSolicitudRepository;
+import com.enseniamelo.usuarios.util.exception.BadRequestException;
+import com.enseniamelo.usuarios.util.paginacion.CursorPaginacion;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -27,13 +40,25 @@ import reactor.core.publisher.Mono;
 @Slf4j
 public class VerificarSolicitudService {
 
+    private static final String ESTRATEGIA_AGREGACION = "agregacion";
+
     private final VerificarSolicitudRepository solicitudRepository;
     private final UsuarioRepository usuarioRepository;
-    private final PerfilTutorRepository perfilTutorRepository;
     private final VerificarSolicitudMapper solicitudMapper;
-    private final UsuarioMapper usuarioMapper;
-    private final PerfilTutorMapper perfilTutorMapper;
-    private final MsCursoIntegration cursoIntegration;
+    private final OutboxVerificacionService outboxVerificacion;
+    private final PerfilVerificadoWriteBehind perfilVerificado;
+    private final ReactiveMongoOperations mongoOperations;
+    private final SolicitudesPendientesContador pendientesContador;
+
+    private final SolicitudesCompletasAgregacion solicitudesAgregacion;
+
+    @Value("${usuarios.paginacion.limite-maximo:200}")
+    private int limiteMaximo;
+
+    // agregacion: join en Mongo con $lookup; aplicacion: consultas $in por ventana y join en memoria
+    @Value("${usuarios.enriquecimiento.estrategia:agregacion}")
+    private String estrategiaCompletas;
+    private final SolicitudEnriquecedor solicitudEnriquecedor;
 
     public Mono<VerificarSolicitudDTO> crearSolicitudParaCurso(
             String idUsuario,
@@ -68,13 +93,14 @@ public class VerificarSolicitudService {
                                 solicitud.setComentario(solicitudDTO.getComentario());
                                 solicitud.setArchivos(
                                         solicitudDTO.getArchivos() != null ? solicitudDTO.getArchivos()
-                                                : java.util.List.of());
+                                                : List.of());
 
                                 LocalDateTime ahora = LocalDateTime.now();
                                 solicitud.setCreado(ahora);
                                 solicitud.setActualizado(ahora);
 
-                                return solicitudRepository.save(solicitud);
+                                return solicitudRepository.save(solicitud)
+                                        .doOnSuccess(creada -> pendientesContador.creada());
                             });
                 })
                 .map(guardada -> {
@@ -86,159 +112,79 @@ public class VerificarSolicitudService {
     public Flux<VerificarSolicitudCompleta> obtenerTodasCompletas() {
         log.info("Obteniendo todas las solicitudes con información completa");
         
-        return solicitudRepository.findAll()
-                .flatMap(this::enrichSolicitud)
+        Flux<VerificarSolicitudCompleta> completas = usarAgregacion()
+                ? solicitudesAgregacion.buscar(new Criteria())
+                : solicitudEnriquecedor.enriquecer(solicitudRepository.findAll());
+        return completas
                 .doOnComplete(() -> log.info("Listado completo de solicitudes completado"));
     }
 
+    private boolean usarAgregacion() {
+        return ESTRATEGIA_AGREGACION.equalsIgnoreCase(estrategiaCompletas);
+    }
+
     public Mono<VerificarSolicitudCompleta> buscarPorIdCompleta(String id) {
         log.info("Buscando solicitud completa con id: {}", id);
         
-        return solicitudRepository.findById(id)
-                .flatMap(this::enrichSolicitud)
+        Mono<VerificarSolicitudCompleta> completa = usarAgregacion()
+                ? solicitudesAgregacion.buscar(where("_id").is(id)).next()
+                : solicitudRepository.findById(id).flatMap(solicitudEnriquecedor::enriquecer);
+        return completa
                 .switchIfEmpty(Mono.defer(() -> {
                     log.error("Solicitud no encontrada con id: {}", id);
                     return Mono.error(new RuntimeException("Solicitud no encontrada con id: " + id));
                 }));
     }
 
-    private Mono<VerificarSolicitudCompleta> enrichSolicitud(VerificarSolicitud solicitud) {
-        Mono<UsuarioDTO> usuarioMono = usuarioRepository.findById(solicitud.getIdUsuario())
-                .map(usuarioMapper::entityToDto)
-                .doOnError(error -> log.warn("Error obteniendo usuario {}: {}", 
-                        solicitud.getIdUsuario(), error.getMessage()))
-                .onErrorReturn(new UsuarioDTO());
-
-        Mono<PerfilTutorDTO> tutorMono = perfilTutorRepository.findById(solicitud.getIdPerfilTutor())
-                .map(perfilTutorMapper::entityToDto)
-                .doOnError(error -> log.warn("Error obteniendo tutor {}: {}", 
-                        solicitud.getIdPerfilTutor(), error.getMessage()))
-                .onErrorReturn(new PerfilTutorDTO());
-
-        Mono<CursoDTO> cursoMono = cursoIntegration.getCurso(solicitud.getIdCurso())
-                .doOnSuccess(curso -> {
-                    log.debug("Curso obtenido exitosamente: {} - {} - {}", 
-                            curso.getId(), 
-                            curso.getNombre(), 
-                            curso.getDescripcion());
-                })
-                .doOnError(error -> log.warn("No se pudo obtener información del curso {}: {}. " +
-                        "Esto es normal si el servicio de cursos no tiene el endpoint implementado.", 
-                        solicitud.getIdCurso(), error.getMessage()))
-                .onErrorResume(error -> {
-                    CursoDTO cursoBasico = CursoDTO.builder()
-                            .id(solicitud.getIdCurso())
-                            .nombre("Curso (información no disponible)")
-                            .descripcion("No se pudo obtener la descripción del curso")
-                            .modalidad("Virtual")
-                            .precio_reserva(0.0f)
-                            .verificacion_estado(solicitud.getEstado())
-                            .activo(true)
-                            .build();
-                    
-                    log.info("Usando información básica para curso {}", solicitud.getIdCurso());
-                    return Mono.just(cursoBasico);
-                });
-
-        return Mono.zip(usuarioMono, tutorMono, cursoMono)
-                .map(tuple -> {
-                    VerificarSolicitudDTO solicitudDTO = solicitudMapper.entityToDto(solicitud);
-                    
-                    CursoDTO curso = tuple.getT3();
-                    log.debug("Mapeando solicitud completa - Curso: {} | Nombre: {} | Descripción: {}", 
-                            curso.getId(), 
-                            curso.getNombre(), 
-                            curso.getDescripcion());
-                    
-                    return new VerificarSolicitudCompleta(
-                            solicitudDTO,
-                            tuple.getT1(), 
-                            tuple.getT2(), 
-                            curso          
-                    );
-                });
-    }
-
     public Mono<VerificarSolicitudDTO> aprobarSolicitud(String id, String comentario) {
         log.info("Aprobando solicitud: {}", id);
 
-        return solicitudRepository.findById(id)
-                .switchIfEmpty(Mono.error(new RuntimeException("Solicitud no encontrada")))
-                .flatMap(solicitud -> {
-                    if (!"PENDIENTE".equals(solicitud.getEstado())) {
-                        return Mono.error(new RuntimeException("La solicitud ya fue procesada"));
-                    }
-
-                    LocalDateTime ahora = LocalDateTime.now();
-                    solicitud.setEstado("APROBADO");
-                    solicitud.setComentario(comentario);
-                    solicitud.setDecidido(ahora);
-                    solicitud.setActualizado(ahora);
-
-                    return solicitudRepository.save(solicitud)
-                            .flatMap(guardada -> {
-                                // Intentar actualizar estado en curso-service (opcional)
-                                return cursoIntegration.updateCursoVerificacion(
-                                        guardada.getIdCurso(), "APROBADO")
-                                        .doOnError(error -> log.warn("No se pudo notificar al servicio de cursos: {}. " +
-                                                "Esto no afecta la aprobación de la solicitud.", error.getMessage()))
-                                        .onErrorResume(error -> Mono.empty()) // Continuar aunque falle
-                                        .thenReturn(guardada);
-                            })
-                            .flatMap(guardada -> {
-                                // Actualizar perfil de tutor a "verificado"
-                                return perfilTutorRepository.findById(guardada.getIdPerfilTutor())
-                                        .flatMap(perfil -> {
-                                            perfil.setVerificado("verificado");
-                                            perfil.setActualizado(ahora);
-                                            return perfilTutorRepository.save(perfil);
-                                        })
-                                        .doOnError(error -> log.error("Error actualizando perfil de tutor: {}", 
-                                                error.getMessage()))
-                                        .onErrorResume(error -> Mono.empty()) // Continuar aunque falle
-                                        .thenReturn(guardada);
-                            });
-                })
-                .map(guardada -> {
-                    log.info("Solicitud aprobada exitosamente para curso: {}", guardada.getIdCurso());
-                    return solicitudMapper.entityToDto(guardada);
+        return decidir(id, "APROBADO", comentario)
+                .doOnNext(aprobada -> perfilVerificado.marcarVerificado(aprobada.getIdPerfilTutor()))
+                .map(aprobada -> {
+                    log.info("Solicitud aprobada exitosamente para curso: {}", aprobada.getIdCurso());
+                    return solicitudMapper.entityToDto(aprobada);
                 });
     }
 
-
     public Mono<VerificarSolicitudDTO> rechazarSolicitud(String id, String comentario) {
         log.info("Rechazando solicitud: {}", id);
 
-        return solicitudRepository.findById(id)
-                .switchIfEmpty(Mono.error(new RuntimeException("Solicitud no encontrada")))
-                .flatMap(solicitud -> {
-                    if (!"PENDIENTE".equals(solicitud.getEstado())) {
-                        return Mono.error(new RuntimeException("La solicitud ya fue procesada"));
-                    }
-
-                    solicitud.setEstado("RECHAZADO");
-                    solicitud.setComentario(comentario);
-                    LocalDateTime ahora = LocalDateTime.now();
-                    solicitud.setDecidido(ahora);
-                    solicitud.setActualizado(ahora);
-
-                    return solicitudRepository.save(solicitud)
-                            .flatMap(guardada -> {
-                                // Intentar notificar a curso-service (opcional)
-                                return cursoIntegration.updateCursoVerificacion(
-                                        guardada.getIdCurso(), "RECHAZADO")
-                                        .doOnError(error -> log.warn("No se pudo notificar al servicio de cursos: {}",
-                                                error.getMessage()))
-                                        .onErrorResume(error -> Mono.empty()) // Continuar aunque falle
-                                        .thenReturn(guardada);
-                            });
-                })
-                .map(guardada -> {
-                    log.info("Solicitud rechazada para curso: {}", guardada.getIdCurso());
-                    return solicitudMapper.entityToDto(guardada);
+        return decidir(id, "RECHAZADO", comentario)
+                .map(rechazada -> {
+                    log.info("Solicitud rechazada para curso: {}", rechazada.getIdCurso());
+                    return solicitudMapper.entityToDto(rechazada);
                 });
     }
 
+    /**
+     * Transición PENDIENTE → {@code nuevoEstado} en un único findAndModify condicionado al estado,
+     * junto con su entrada del outbox. Si dos administradores deciden a la vez, solo uno gana.
+     */
+    private Mono<VerificarSolicitud> decidir(String id, String nuevoEstado, String comentario) {
+        LocalDateTime ahora = LocalDateTime.now();
+        Update decision = new Update()
+                .set("estado", nuevoEstado)
+                .set("comentario", comentario)
+                .set("decidido", ahora)
+                .set("actualizado", ahora);
+
+        Mono<VerificarSolicitud> transicion = mongoOperations.findAndModify(
+                        query(where("_id").is(id).and("estado").is("PENDIENTE")),
+                        decision,
+                        FindAndModifyOptions.options().returnNew(true),
+                        VerificarSolicitud.class)
+                // cursoservice se entera a través del outbox
+                .flatMap(decidida -> outboxVerificacion.registrar(decidida).thenReturn(decidida));
+
+        return outboxVerificacion.enTransaccion(transicion)
+                .doOnNext(decidida -> pendientesContador.decididas(1))
+                .switchIfEmpty(Mono.defer(() -> solicitudRepository.existsById(id)
+                        .flatMap(existe -> Mono.error(existe
+                                ? new RuntimeException("La solicitud ya fue procesada")
+                                : new RuntimeException("Solicitud no encontrada")))));
+    }
+
     public Mono<VerificarSolicitudDTO> buscarPorCurso(String idCurso) {
         log.info("Buscando solicitud del curso: {}", idCurso);
         return solicitudRepository.findByIdCurso(idCurso)
@@ -285,19 +231,80 @@ public class VerificarSolicitudService {
                 .doOnComplete(() -> log.info("Búsqueda por estado completada"));
     }
 
-    public Mono<Void> eliminarSolicitud(String id) {
-        log.info("Eliminando solicitud: {}", id);
-        return solicitudRepository.existsById(id)
-                .flatMap(existe -> {
-                    if (!existe) {
-                        log.error("Solicitud no encontrada con id: {}", id);
-                        return Mono.error(new RuntimeException("Solicitud no encontrada"));
+    /**
+     * Cola de verificación con paginación keyset sobre (estado, creado, _id): primero las más
+     * antiguas. Las solicitudes sin {@code creado} (anteriores al campo) van al principio, como las
+     * ordena Mongo, y su cursor lleva solo el _id. El total de pendientes sale del contador en
+     * memoria, no de un count por página, y solo se informa en la cola de PENDIENTE.
+     */
+    public Mono<ColaVerificacionDTO> obtenerCola(String estado, String idPerfilTutor, String cursor, int limite) {
+        int tamanio = Math.max(1, Math.min(limite, limiteMaximo));
+        log.info("Obteniendo cola de verificación: estado={}, tutor={}, limite={}, cursor={}",
+                estado, idPerfilTutor, tamanio, cursor != null);
+
+        Query consulta = query(where("estado").is(estado));
+        if (idPerfilTutor != null && !idPerfilTutor.isBlank()) {
+            consulta.addCriteria(where("idPerfilTutor").is(idPerfilTutor));
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            List<String> valores = CursorPaginacion.decodificar(cursor, 2);
+            LocalDateTime ultimoCreado = null;
+            if (!valores.get(0).isEmpty()) {
+                try {
+                    ultimoCreado = LocalDateTime.parse(valores.get(0));
+                } catch (DateTimeParseException e) {
+                    return Mono.error(new BadRequestException("Cursor de paginación inválido"));
+                }
+            }
+            if (!ObjectId.isValid(valores.get(1))) {
+                return Mono.error(new BadRequestException("Cursor de paginación inválido"));
+            }
+            ObjectId ultimoId = new ObjectId(valores.get(1));
+            consulta.addCriteria(ultimoCreado == null
+                    // Quedan las demás sin creado y después todas las que lo tienen
+                    ? new Criteria().orOperator(
+                            where("creado").is(null).and("_id").gt(ultimoId),
+                            where("creado").ne(null))
+                    : new Criteria().orOperator(
+                            where("creado").gt(ultimoCreado),
+                            where("creado").is(ultimoCreado).and("_id").gt(ultimoId)));
+        }
+        consulta.with(Sort.by(Sort.Direction.ASC, "creado", "_id"));
+        // Se pide uno de más para saber si existe una página siguiente
+        consulta.limit(tamanio + 1);
+
+        return mongoOperations.find(consulta, VerificarSolicitud.class)
+                .collectList()
+                .map(solicitudes -> {
+                    boolean hayMas = solicitudes.size() > tamanio;
+                    List<VerificarSolicitud> pagina = hayMas ? solicitudes.subList(0, tamanio) : solicitudes;
+                    String siguiente = null;
+                    if (hayMas) {
+                        VerificarSolicitud ultima = pagina.get(pagina.size() - 1);
+                        siguiente = CursorPaginacion.codificar(
+                                ultima.getCreado() != null ? ultima.getCreado().toString() : "", ultima.getId());
                     }
-                    return solicitudRepository.deleteById(id)
-                            .doOnSuccess(v -> log.info("Solicitud eliminada exitosamente"));
+                    return new ColaVerificacionDTO(
+                            pagina.stream().map(solicitudMapper::entityToDto).toList(),
+                            pagina.size(), siguiente,
+                            "PENDIENTE".equals(estado) ? pendientesContador.actual() : null);
                 });
     }
 
+    public Mono<Void> eliminarSolicitud(String id) {
+        log.info("Eliminando solicitud: {}", id);
+        return mongoOperations.findAndRemove(query(where("_id").is(id)), VerificarSolicitud.class)
+                .switchIfEmpty(Mono.defer(() -> {
+                    log.error("Solicitud no encontrada con id: {}", id);
+                    return Mono.error(new RuntimeException("Solicitud no encontrada"));
+                }))
+                .doOnNext(eliminada -> {
+                    pendientesContador.eliminada(eliminada.getEstado());
+                    log.info("Solicitud eliminada exitosamente");
+                })
+                .then();
+    }
+
     public Mono<VerificarSolicitudDTO> crearSolicitud(VerificarSolicitudDTO solicitudDTO) {
         log.info("Creando solicitud desde evento");
         String idUsuario = solicitudDTO.getIdUsuario();
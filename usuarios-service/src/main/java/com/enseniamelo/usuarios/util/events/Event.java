@@ -1,6 +1,8 @@
 package com.enseniamelo.usuarios.util.events;
 
 import java.time.ZonedDateTime;
+import java.util.UUID;
+
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.datatype.jsr310.ser.ZonedDateTimeSerializer;
 import lombok.AllArgsConstructor;
@@ -18,7 +20,9 @@ public class Event<K, T> {
         UPDATE,         
         VERIFY_REQUEST,   
         APPROVE_REQUEST,  
-        REJECT_REQUEST    
+        REJECT_REQUEST,
+        // Solo lo publica UsuarioCache para que las demás instancias invaliden su cache
+        INVALIDATE
     }
 
     private Type eventType;
@@ -28,10 +32,14 @@ public class Event<K, T> {
     @JsonSerialize(using = ZonedDateTimeSerializer.class)
     private ZonedDateTime eventCreatedAt;
 
+    // Único por evento publicado; las redeliveries conservan el mismo id
+    private String eventId;
+
     public Event(Type eventType, K key, T data) {
         this.eventType = eventType;
         this.key = key;
         this.data = data;
         this.eventCreatedAt = ZonedDateTime.now();
+        this.eventId = UUID.randomUUID().toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.enseniamelo.usuarios.util.events;
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Publicación en la DLQ de cada destino de los eventos que un consumidor no pudo aplicar.
+ *
+ * Cada destino tiene su binding de DLQ y su binding de reproceso, que publica de nuevo en el
+ * destino original. El motivo, el consumidor y los intentos viajan en headers; el
+ * estacionamiento los guarda al consumir la DLQ.
+ */
+@Component
+@RequiredArgsConstructor
+public class EventosDlq {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventosDlq.class);
+
+    public static final String HEADER_ERROR = "x-error";
+    public static final String HEADER_CONSUMIDOR = "x-consumidor";
+    public static final String HEADER_INTENTOS = "x-intentos";
+    public static final String HEADER_DLQ = "x-dlq";
+
+    public static final String USUARIOS = "usuarioDlq-out-0";
+    public static final String TUTORES = "tutorDlq-out-0";
+    public static final String SOLICITUDES = "solicitudDlq-out-0";
+
+    // Binding de reproceso que corresponde a cada DLQ
+    public static final Map<String, String> REPROCESO = Map.of(
+            USUARIOS, "usuarioReproceso-out-0",
+            TUTORES, "tutorReproceso-out-0",
+            SOLICITUDES, "solicitudReproceso-out-0");
+
+    private final StreamBridge streamBridge;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Publica el evento en la DLQ. Devuelve si el binder lo aceptó; si no, el llamador decide
+     * (rechazar el mensaje original o solo registrarlo).
+     */
+    public boolean enviar(String consumidor, String dlq, Event<?, ?> event, String error, int intentos) {
+        try {
+            boolean aceptado = streamBridge.send(dlq, MessageBuilder.withPayload(event)
+                    .setHeader(HEADER_ERROR, error)
+                    .setHeader(HEADER_CONSUMIDOR, consumidor)
+                    .setHeader(HEADER_INTENTOS, intentos)
+                    .setHeader(HEADER_DLQ, dlq)
+                    .setHeader("partitionKey", event.getKey())
+                    .build());
+            meterRegistry.counter("usuarios.eventos.dlq.enviados", "consumidor", consumidor,
+                    "resultado", aceptado ? "ok" : "rechazado").increment();
+            return aceptado;
+        } catch (RuntimeException e) {
+            LOGGER.error("[{}] No se pudo publicar en {} el evento {}: {}", consumidor, dlq, event.getKey(),
+                    e.getMessage());
+            meterRegistry.counter("usuarios.eventos.dlq.enviados", "consumidor", consumidor,
+                    "resultado", "error").increment();
+            return false;
+        }
+    }
+}
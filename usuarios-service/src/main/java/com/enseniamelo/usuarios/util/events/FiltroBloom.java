@@ -0,0 +1,81 @@
+package com.enseniamelo.usuarios.util.events;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom concurrente sobre cadenas. {@link #puedeContener} nunca da un falso negativo;
+ * los falsos positivos rondan la probabilidad con la que se dimensionó mientras no se supere la
+ * capacidad.
+ */
+class FiltroBloom {
+
+    private final AtomicLongArray palabras;
+    private final long bits;
+    private final int funciones;
+
+    FiltroBloom(long capacidad, double probabilidadFalsoPositivo) {
+        long n = Math.max(1, capacidad);
+        double p = Math.min(0.5, Math.max(1e-9, probabilidadFalsoPositivo));
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int palabrasNecesarias = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64);
+
+        this.palabras = new AtomicLongArray(palabrasNecesarias);
+        this.bits = (long) palabrasNecesarias * 64;
+        this.funciones = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+    }
+
+    void agregar(String valor) {
+        long h1 = hash(valor);
+        long h2 = mezclar(h1);
+        for (int i = 0; i < funciones; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            int indice = (int) (bit >>> 6);
+            long mascara = 1L << bit;
+            long actual;
+            do {
+                actual = palabras.get(indice);
+                if ((actual & mascara) != 0) {
+                    break;
+                }
+            } while (!palabras.compareAndSet(indice, actual, actual | mascara));
+        }
+    }
+
+    boolean puedeContener(String valor) {
+        long h1 = hash(valor);
+        long h2 = mezclar(h1);
+        for (int i = 0; i < funciones; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            if ((palabras.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long getBits() {
+        return bits;
+    }
+
+    int getFunciones() {
+        return funciones;
+    }
+
+    // FNV-1a de 64 bits sobre los bytes UTF-8
+    private static long hash(String valor) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : valor.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mezclar(h);
+    }
+
+    // Finalizador de splitmix64; el segundo hash del doble hashing se deriva del primero
+    private static long mezclar(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return (z ^ (z >>> 31)) | 1L;
+    }
+}
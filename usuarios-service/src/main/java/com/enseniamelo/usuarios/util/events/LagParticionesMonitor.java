@@ -0,0 +1,129 @@
+package com.enseniamelo.usuarios.util.events;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ListOffsetsResult.ListOffsetsResultInfo;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.config.BindingProperties;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Lag por partición de los grupos de consumo de este servicio, como gauge
+ * {@code usuarios.eventos.lag{destino,grupo,particion}}: último offset de la partición menos el
+ * offset confirmado por el grupo. Una partición que aún no tiene offset confirmado cuenta todo
+ * lo publicado como lag.
+ *
+ * Los pares destino/grupo salen de los bindings de entrada con {@code group}, así que el monitor
+ * sigue a la configuración (incluido el perfil {@code lote}) sin listas duplicadas.
+ */
+@Component
+@ConditionalOnProperty(name = "usuarios.eventos.kafka.habilitado", havingValue = "true")
+public class LagParticionesMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LagParticionesMonitor.class);
+
+    private final BindingServiceProperties bindingServiceProperties;
+    private final MeterRegistry meterRegistry;
+    private final Admin admin;
+    private final Duration timeout;
+
+    private final Map<String, AtomicLong> lags = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LagParticionesMonitor(
+            BindingServiceProperties bindingServiceProperties,
+            MeterRegistry meterRegistry,
+            @Value("${spring.cloud.stream.kafka.binder.brokers:${spring.kafka.bootstrap-servers:localhost:9092}}") String brokers,
+            @Value("${usuarios.eventos.kafka.timeout-lag:5s}") Duration timeout) {
+        this.bindingServiceProperties = bindingServiceProperties;
+        this.meterRegistry = meterRegistry;
+        this.timeout = timeout;
+        this.admin = Admin.create(Map.of(
+                AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, brokers,
+                AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, (int) timeout.toMillis(),
+                AdminClientConfig.DEFAULT_API_TIMEOUT_MS_CONFIG, (int) timeout.toMillis()));
+    }
+
+    @Scheduled(fixedDelayString = "${usuarios.eventos.kafka.intervalo-lag:15s}",
+            initialDelayString = "${usuarios.eventos.kafka.intervalo-lag:15s}")
+    public void medir() {
+        Map<String, String> grupoPorDestino = bindingServiceProperties.getBindings().entrySet().stream()
+                .filter(binding -> binding.getKey().contains("-in-"))
+                .map(Map.Entry::getValue)
+                .filter(binding -> binding.getGroup() != null && binding.getDestination() != null)
+                .collect(Collectors.toMap(BindingProperties::getDestination, BindingProperties::getGroup,
+                        (a, b) -> a));
+
+        grupoPorDestino.forEach((destino, grupo) -> {
+            try {
+                medir(destino, grupo);
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                LOGGER.warn("No se pudo medir el lag de {} (grupo {}): {}", destino, grupo, e.getMessage());
+            }
+        });
+    }
+
+    private void medir(String destino, String grupo) throws Exception {
+        TopicDescription topico = admin.describeTopics(List.of(destino))
+                .allTopicNames().get(timeout.toMillis(), TimeUnit.MILLISECONDS).get(destino);
+        Map<TopicPartition, OffsetSpec> ultimos = topico.partitions().stream()
+                .collect(Collectors.toMap(p -> new TopicPartition(destino, p.partition()), p -> OffsetSpec.latest()));
+
+        Map<TopicPartition, ListOffsetsResultInfo> finales = admin.listOffsets(ultimos)
+                .all().get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        Map<TopicPartition, OffsetAndMetadata> confirmados = admin.listConsumerGroupOffsets(grupo)
+                .partitionsToOffsetAndMetadata().get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+        long total = 0;
+        for (Map.Entry<TopicPartition, ListOffsetsResultInfo> entrada : finales.entrySet()) {
+            OffsetAndMetadata confirmado = confirmados.get(entrada.getKey());
+            long lag = Math.max(0, entrada.getValue().offset() - (confirmado != null ? confirmado.offset() : 0));
+            gauge(destino, grupo, entrada.getKey().partition()).set(lag);
+            total += lag;
+        }
+        LOGGER.debug("Lag de {} (grupo {}): {} en {} particiones", destino, grupo, total, finales.size());
+    }
+
+    private AtomicLong gauge(String destino, String grupo, int particion) {
+        return lags.computeIfAbsent(destino + "|" + grupo + "|" + particion, clave -> {
+            AtomicLong valor = new AtomicLong();
+            Gauge.builder("usuarios.eventos.lag", valor, AtomicLong::get)
+                    .description("Mensajes pendientes del grupo en la partición")
+                    .tag("destino", destino)
+                    .tag("grupo", grupo)
+                    .tag("particion", String.valueOf(particion))
+                    .register(meterRegistry);
+            return valor;
+        });
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        admin.close(timeout);
+    }
+}
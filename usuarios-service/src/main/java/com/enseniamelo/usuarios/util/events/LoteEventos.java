@@ -0,0 +1,188 @@
+package com.enseniamelo.usuarios.util.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * Utilidades comunes a los consumidores por lotes: descarte de eventos ya aplicados, colapso por
+ * clave, envío a la DLQ de los eventos que fallan de a uno y lectura de los errores individuales
+ * de un bulkWrite.
+ */
+@Component
+@RequiredArgsConstructor
+public class LoteEventos {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoteEventos.class);
+
+    private final EventosDlq eventosDlq;
+    private final MeterRegistry meterRegistry;
+    private final RegistroEventosProcesados registroEventos;
+
+    // Ids enviados a la DLQ durante el lote en curso: no se registran como aplicados
+    private final Set<String> enviadosADlq = ConcurrentHashMap.newKeySet();
+    // Los que además la DLQ no aceptó: el lote falla para que el binder lo reentregue
+    private final Set<String> sinEstacionar = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Reclama los eventos del lote y aplica los que no estaban aplicados (redeliveries) sin los
+     * repetidos dentro del mismo lote. Al terminar registra como aplicados los que no terminaron en
+     * la DLQ y libera el resto; si el lote falla los libera todos.
+     *
+     * Si algún evento no se pudo publicar en la DLQ, el lote falla después de registrar los
+     * aplicados: el binder lo reentrega, los aplicados se descartan como duplicados y los demás
+     * vuelven a intentarse.
+     */
+    public <T> Mono<Void> aplicarSinDuplicados(String registro, List<Event<String, T>> eventos,
+            Function<List<Event<String, T>>, Mono<Void>> aplicar) {
+        List<String> ids = eventos.stream()
+                .filter(Objects::nonNull)
+                .map(Event::getEventId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+
+        return registroEventos.reclamarTodos(registro, ids).flatMap(duplicados -> {
+            List<Event<String, T>> nuevos = new ArrayList<>(eventos.size());
+            Set<String> vistos = new HashSet<>();
+            for (Event<String, T> event : eventos) {
+                String id = event != null ? event.getEventId() : null;
+                if (id == null || (!duplicados.contains(id) && vistos.add(id))) {
+                    nuevos.add(event);
+                }
+            }
+            if (nuevos.size() < eventos.size()) {
+                LOGGER.info("[{}] {} eventos ya aplicados descartados del lote", registro,
+                        eventos.size() - nuevos.size());
+            }
+
+            return Mono.defer(() -> aplicar.apply(nuevos))
+                    .onErrorResume(error -> registroEventos.liberarTodos(registro, vistos).then(Mono.error(error)))
+                    .then(Mono.defer(() -> {
+                        List<String> pendientes = vistos.stream().filter(sinEstacionar::contains).toList();
+                        Mono<Void> registrar = registroEventos.marcarTodos(registro,
+                                        vistos.stream().filter(id -> !enviadosADlq.contains(id)).toList())
+                                .then(registroEventos.liberarTodos(registro,
+                                        vistos.stream().filter(enviadosADlq::contains).toList()));
+                        return pendientes.isEmpty() ? registrar : registrar.then(Mono.error(new IllegalStateException(
+                                pendientes.size() + " eventos del lote no se pudieron publicar en la DLQ")));
+                    }))
+                    .doFinally(senal -> {
+                        enviadosADlq.removeAll(vistos);
+                        sinEstacionar.removeAll(vistos);
+                    });
+        });
+    }
+
+    /**
+     * Reduce el lote al último estado por clave, en el orden de la primera aparición.
+     *
+     * Un UPDATE sobre un CREATE del mismo lote sigue siendo un CREATE con los datos nuevos (el
+     * documento aún no existe) y un DELETE sobre un CREATE del mismo lote los anula a ambos. En el
+     * resto de los casos gana el último evento. Los eventos sin clave van a la DLQ.
+     */
+    public <T> Map<String, Event<String, T>> colapsar(String consumidor, String dlq,
+            List<Event<String, T>> eventos, Function<Event<String, T>, String> clave) {
+        Map<String, Event<String, T>> porClave = new LinkedHashMap<>();
+        int colapsados = 0;
+
+        for (Event<String, T> event : eventos) {
+            String k = event == null || event.getEventType() == null ? null : clave.apply(event);
+            if (k == null) {
+                aDlq(consumidor, dlq, event, "Evento sin tipo o sin clave");
+                continue;
+            }
+            Event<String, T> anterior = porClave.get(k);
+            if (anterior == null) {
+                porClave.put(k, event);
+                continue;
+            }
+
+            colapsados++;
+            if (anterior.getEventType() == Event.Type.CREATE && event.getEventType() == Event.Type.UPDATE) {
+                porClave.put(k, new Event<>(Event.Type.CREATE, anterior.getKey(), event.getData(),
+                        event.getEventCreatedAt(), event.getEventId()));
+            } else if (anterior.getEventType() == Event.Type.CREATE && event.getEventType() == Event.Type.DELETE) {
+                porClave.remove(k);
+                colapsados++;
+            } else {
+                porClave.put(k, event);
+            }
+        }
+
+        if (colapsados > 0) {
+            meterRegistry.counter("usuarios.eventos.colapsados", "consumidor", consumidor).increment(colapsados);
+            LOGGER.debug("[{}] Lote de {} eventos colapsado a {}", consumidor, eventos.size(), porClave.size());
+        }
+        return porClave;
+    }
+
+    public void aplicados(String consumidor, int cantidad) {
+        if (cantidad > 0) {
+            meterRegistry.counter("usuarios.eventos.procesados", "consumidor", consumidor, "resultado", "ok")
+                    .increment(cantidad);
+        }
+    }
+
+    /**
+     * Publica el evento en la DLQ con el motivo en un header. Si la DLQ no lo acepta el lote
+     * termina de aplicarse y después falla (ver {@link #aplicarSinDuplicados}); un evento sin id no
+     * se puede descartar en la reentrega, así que falla el lote en el momento.
+     */
+    public void aDlq(String consumidor, String dlq, Event<?, ?> event, String error) {
+        LOGGER.warn("[{}] Evento {} {} a la DLQ: {}", consumidor,
+                event != null ? event.getEventType() : null, event != null ? event.getKey() : null, error);
+        meterRegistry.counter("usuarios.eventos.procesados", "consumidor", consumidor, "resultado", "dlq")
+                .increment();
+        if (event == null) {
+            return;
+        }
+        if (event.getEventId() != null) {
+            enviadosADlq.add(event.getEventId());
+        }
+        if (eventosDlq.enviar(consumidor, dlq, event, error, 1)) {
+            return;
+        }
+        if (event.getEventId() == null) {
+            throw new IllegalStateException("No se pudo publicar en la DLQ un evento sin id: " + error);
+        }
+        sinEstacionar.add(event.getEventId());
+    }
+
+    /**
+     * Errores por operación de un bulkWrite sin orden, indexados por la posición de la operación.
+     * Vacío si el error no es de escritura (p. ej. de conexión): en ese caso falló el lote entero.
+     */
+    public static Map<Integer, String> erroresDeEscritura(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof MongoBulkWriteException bulk) {
+                Map<Integer, String> errores = new LinkedHashMap<>();
+                for (BulkWriteError escritura : bulk.getWriteErrors()) {
+                    errores.put(escritura.getIndex(), escritura.getCode() == 11000
+                            ? "Clave duplicada: " + escritura.getMessage()
+                            : escritura.getMessage());
+                }
+                return errores;
+            }
+        }
+        return Collections.emptyMap();
+    }
+}
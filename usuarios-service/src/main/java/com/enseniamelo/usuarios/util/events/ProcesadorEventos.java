@@ -0,0 +1,274 @@
+package com.enseniamelo.usuarios.util.events;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import com.enseniamelo.usuarios.external.PresupuestoReintentos;
+import com.enseniamelo.usuarios.util.events.RegistroEventosProcesados.Reclamo;
+import com.enseniamelo.usuarios.util.exception.EventoEnCursoException;
+import com.rabbitmq.client.Channel;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Construye consumidores reactivos de eventos para Spring Cloud Stream.
+ *
+ * Los mensajes se reparten en {@code concurrencia} grupos según el hash de {@code event.getKey()}:
+ * los eventos de una misma clave van siempre al mismo grupo y se procesan en orden, y los grupos
+ * avanzan en paralelo sin bloquear hilos del binder. El número de grupos es fijo para que
+ * {@code groupBy} no abra un grupo por clave y agote la concurrencia de {@code flatMap}.
+ *
+ * Cada mensaje se confirma al broker solo cuando la escritura terminó; si falla se reintenta con
+ * backoff y, agotados los intentos, se publica en la DLQ del destino y se confirma, para que un
+ * mensaje envenenado no bloquee su grupo. Si la DLQ no lo acepta, en Rabbit se rechaza y el broker
+ * lo mueve a la DLQ del binding ({@code auto-bind-dlq}); en Kafka no se confirma, así que su offset
+ * no se commitea y se vuelve a entregar tras el siguiente rebalanceo o reinicio.
+ *
+ * Antes de aplicar cada evento se reclama en el {@link RegistroEventosProcesados}: los ya aplicados
+ * se confirman sin llamar al manejador, y si otra instancia lo está aplicando se espera a que
+ * termine o venza su bloqueo. Un evento que no se aplica libera su reclamo.
+ *
+ * Los reintentos de cada consumidor consumen un {@link PresupuestoReintentos}: cuando fallan muchos
+ * eventos a la vez (Mongo caído, un lote de mensajes envenenados) el presupuesto se agota y los
+ * siguientes van directo a la DLQ en lugar de ocupar cada grupo con esperas de backoff.
+ */
+@Component
+public class ProcesadorEventos {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcesadorEventos.class);
+
+    // Cada cuánto se vuelve a reclamar un evento que otra instancia está aplicando
+    private static final Duration ESPERA_EN_CURSO = Duration.ofSeconds(1);
+
+    private final MeterRegistry meterRegistry;
+    private final RegistroEventosProcesados registroEventos;
+    private final EventosDlq eventosDlq;
+    private final int concurrencia;
+    private final int maxIntentos;
+    private final Duration esperaInicial;
+    private final Duration esperaMaxima;
+    private final double capacidadPresupuesto;
+    private final double proporcionPresupuesto;
+
+    private final Map<String, PresupuestoReintentos> presupuestos = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ProcesadorEventos(
+            MeterRegistry meterRegistry,
+            RegistroEventosProcesados registroEventos,
+            EventosDlq eventosDlq,
+            @Value("${usuarios.eventos.concurrencia:16}") int concurrencia,
+            @Value("${usuarios.eventos.max-intentos:3}") int maxIntentos,
+            @Value("${usuarios.eventos.espera-inicial:1s}") Duration esperaInicial,
+            @Value("${usuarios.eventos.espera-maxima:10s}") Duration esperaMaxima,
+            @Value("${usuarios.eventos.reintentos.presupuesto:20}") double capacidadPresupuesto,
+            @Value("${usuarios.eventos.reintentos.proporcion:0.1}") double proporcionPresupuesto) {
+        this.meterRegistry = meterRegistry;
+        this.registroEventos = registroEventos;
+        this.eventosDlq = eventosDlq;
+        this.concurrencia = Math.max(1, concurrencia);
+        this.maxIntentos = Math.max(1, maxIntentos);
+        this.esperaInicial = esperaInicial;
+        this.esperaMaxima = esperaMaxima;
+        this.capacidadPresupuesto = capacidadPresupuesto;
+        this.proporcionPresupuesto = proporcionPresupuesto;
+    }
+
+    /**
+     * @param dlq binding de DLQ del destino (ver {@link EventosDlq}) para los eventos que agotan
+     *            sus intentos
+     */
+    public <T> Function<Flux<Message<Event<String, T>>>, Mono<Void>> crear(
+            String nombre, String dlq, Function<Event<String, T>, Mono<?>> manejador) {
+        PresupuestoReintentos presupuesto = presupuesto(nombre);
+        return mensajes -> mensajes
+                .groupBy(mensaje -> grupo(mensaje.getPayload()))
+                .flatMap(grupo -> grupo.concatMap(mensaje -> procesar(nombre, dlq, presupuesto, mensaje, manejador)),
+                        concurrencia)
+                .then();
+    }
+
+    private PresupuestoReintentos presupuesto(String nombre) {
+        return presupuestos.computeIfAbsent(nombre, n -> {
+            PresupuestoReintentos presupuesto = new PresupuestoReintentos(capacidadPresupuesto, proporcionPresupuesto);
+            Gauge.builder("usuarios.eventos.reintentos.presupuesto", presupuesto, PresupuestoReintentos::disponibles)
+                    .tag("consumidor", n)
+                    .register(meterRegistry);
+            return presupuesto;
+        });
+    }
+
+    /**
+     * El hash se mezcla antes del módulo: las claves de una misma partición de Kafka comparten
+     * {@code hashCode % particiones} y, sin mezclar, se concentrarían en unos pocos grupos.
+     */
+    private int grupo(Event<String, ?> event) {
+        if (event.getKey() == null) {
+            return 0;
+        }
+        int h = event.getKey().hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, concurrencia);
+    }
+
+    private <T> Mono<Void> procesar(String nombre, String dlq, PresupuestoReintentos presupuesto,
+            Message<Event<String, T>> mensaje, Function<Event<String, T>, Mono<?>> manejador) {
+        Event<String, T> event = mensaje.getPayload();
+        // Como mucho hasta que vence el bloqueo de la otra instancia: ahí se retoma o ya está aplicado
+        long esperas = registroEventos.getBloqueo().toMillis() / ESPERA_EN_CURSO.toMillis() + 1;
+
+        return Mono.defer(() -> registroEventos.reclamar(nombre, event.getEventId()))
+                .flatMap(reclamo -> reclamo == Reclamo.EN_CURSO
+                        ? Mono.<Reclamo>error(new EventoEnCursoException("El evento " + event.getEventId()
+                                + " se está aplicando en otra instancia"))
+                        : Mono.just(reclamo))
+                .retryWhen(Retry.fixedDelay(esperas, ESPERA_EN_CURSO)
+                        .filter(EventoEnCursoException.class::isInstance)
+                        .onRetryExhaustedThrow((spec, senal) -> senal.failure()))
+                .flatMap(reclamo -> {
+                    if (reclamo == Reclamo.NUEVO) {
+                        return aplicar(nombre, dlq, presupuesto, mensaje, manejador);
+                    }
+                    LOGGER.info("[{}] Evento {} {} ya aplicado ({}), se confirma sin procesar", nombre,
+                            event.getEventType(), event.getKey(), event.getEventId());
+                    confirmar(mensaje);
+                    contar(nombre, "duplicado");
+                    return Mono.<Void>empty();
+                })
+                .onErrorResume(EventoEnCursoException.class, error -> {
+                    fallar(nombre, dlq, mensaje, error, 0);
+                    return Mono.empty();
+                });
+    }
+
+    private <T> Mono<Void> aplicar(String nombre, String dlq, PresupuestoReintentos presupuesto,
+            Message<Event<String, T>> mensaje, Function<Event<String, T>, Mono<?>> manejador) {
+        Event<String, T> event = mensaje.getPayload();
+        AtomicInteger intentos = new AtomicInteger();
+
+        return Mono.defer(() -> {
+                    intentos.incrementAndGet();
+                    return manejador.apply(event);
+                })
+                .retryWhen(Retry.backoff(maxIntentos - 1, esperaInicial)
+                        .maxBackoff(esperaMaxima)
+                        .filter(error -> consumirPresupuesto(nombre, presupuesto))
+                        .doBeforeRetry(senal -> LOGGER.warn("[{}] Reintentando evento {} {} (intento {}): {}",
+                                nombre, event.getEventType(), event.getKey(), senal.totalRetries() + 2,
+                                senal.failure().getMessage()))
+                        .onRetryExhaustedThrow((spec, senal) -> senal.failure()))
+                .doOnSuccess(resultado -> presupuesto.registrarExito())
+                .then(Mono.defer(() -> registroEventos.marcar(nombre, event.getEventId())))
+                .then(Mono.fromRunnable(() -> {
+                    confirmar(mensaje);
+                    contar(nombre, "ok");
+                    LOGGER.debug("[{}] Completado {} {}", nombre, event.getEventType(), event.getKey());
+                }))
+                .onErrorResume(error -> registroEventos.liberar(nombre, event.getEventId())
+                        .then(Mono.fromRunnable(() -> fallar(nombre, dlq, mensaje, error, intentos.get()))))
+                .then();
+    }
+
+    /**
+     * Publica el evento en la DLQ y confirma el original; si la DLQ no lo acepta, lo rechaza.
+     */
+    private <T> void fallar(String nombre, String dlq, Message<Event<String, T>> mensaje, Throwable error,
+            int intentos) {
+        Event<String, T> event = mensaje.getPayload();
+        LOGGER.error("[{}] Error procesando evento {} {} tras {} intentos: {}", nombre,
+                event.getEventType(), event.getKey(), intentos, error.getMessage(), error);
+        String motivo = error.getMessage() != null ? error.getMessage() : error.getClass().getName();
+        if (eventosDlq.enviar(nombre, dlq, event, motivo, intentos)) {
+            confirmar(mensaje);
+            contar(nombre, "dlq");
+        } else {
+            rechazar(mensaje);
+            contar(nombre, "error");
+        }
+    }
+
+    private boolean consumirPresupuesto(String nombre, PresupuestoReintentos presupuesto) {
+        boolean concedido = presupuesto.consumir();
+        meterRegistry.counter("usuarios.eventos.reintentos", "consumidor", nombre,
+                "resultado", concedido ? "realizado" : "sin_presupuesto").increment();
+        if (!concedido) {
+            LOGGER.warn("[{}] Presupuesto de reintentos agotado, el evento va a la DLQ sin reintentar", nombre);
+        }
+        return concedido;
+    }
+
+    private void contar(String nombre, String resultado) {
+        meterRegistry.counter("usuarios.eventos.procesados", "consumidor", nombre, "resultado", resultado)
+                .increment();
+    }
+
+    /**
+     * Confirma el mensaje si el binder trabaja con acuse manual: Rabbit con
+     * {@code acknowledge-mode: MANUAL} o Kafka con {@code ack-mode: MANUAL}. Con acuse automático
+     * (o con el binder de pruebas) no hay nada que hacer.
+     */
+    private static void confirmar(Message<?> mensaje) {
+        Channel canal = mensaje.getHeaders().get(AmqpHeaders.CHANNEL, Channel.class);
+        Long etiqueta = mensaje.getHeaders().get(AmqpHeaders.DELIVERY_TAG, Long.class);
+        if (canal != null && etiqueta != null) {
+            try {
+                canal.basicAck(etiqueta, false);
+            } catch (IOException e) {
+                LOGGER.warn("No se pudo confirmar el mensaje {}: {}", etiqueta, e.getMessage());
+            }
+            return;
+        }
+        Acknowledgment acuse = mensaje.getHeaders().get(KafkaHeaders.ACKNOWLEDGMENT, Acknowledgment.class);
+        if (acuse != null) {
+            acuse.acknowledge();
+        }
+    }
+
+    /**
+     * Devuelve al broker un mensaje que no se aplicó ni se pudo estacionar, sin perderlo.
+     */
+    private static void rechazar(Message<?> mensaje) {
+        Channel canal = mensaje.getHeaders().get(AmqpHeaders.CHANNEL, Channel.class);
+        Long etiqueta = mensaje.getHeaders().get(AmqpHeaders.DELIVERY_TAG, Long.class);
+        if (canal != null && etiqueta != null) {
+            try {
+                // Sin reencolar: el binding declara su DLQ (auto-bind-dlq) y el broker lo mueve allí
+                canal.basicNack(etiqueta, false, false);
+            } catch (IOException e) {
+                LOGGER.warn("No se pudo rechazar el mensaje {}: {}", etiqueta, e.getMessage());
+            }
+            return;
+        }
+        // En Kafka no hay rechazo individual y nack() no admite acuses fuera de orden: no se confirma.
+        // Con asyncAcks el offset y los siguientes de la partición quedan sin commitear, y el evento
+        // vuelve tras el próximo rebalanceo o reinicio; los ya aplicados los descarta el registro
+        if (mensaje.getHeaders().containsKey(KafkaHeaders.ACKNOWLEDGMENT)) {
+            LOGGER.error("Evento sin confirmar en {}-{}@{}: no se aplicó ni se pudo publicar en la DLQ",
+                    mensaje.getHeaders().get(KafkaHeaders.RECEIVED_TOPIC),
+                    mensaje.getHeaders().get(KafkaHeaders.RECEIVED_PARTITION),
+                    mensaje.getHeaders().get(KafkaHeaders.OFFSET));
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package com.enseniamelo.usuarios.util.events;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.enseniamelo.usuarios.model.EventoProcesado;
+import com.enseniamelo.usuarios.util.exception.EventoEnCursoException;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+/**
+ * Registro de eventos aplicados, para descartar las redeliveries del broker sin volver a
+ * ejecutar la escritura.
+ *
+ * La fuente de verdad es la colección {@code eventos_procesados}, con TTL. Antes de aplicar un
+ * evento se reclama insertando su id como APLICANDO: la clave única hace que solo una instancia
+ * lo aplique aunque el broker se lo entregue a otra (la primera murió antes de confirmarlo, un
+ * rebalanceo de Kafka, el outbox lo publicó dos veces). El reclamo tiene un bloqueo temporal; si
+ * la instancia que lo tomó muere a mitad, al vencer otra lo retoma. Al terminar pasa a APLICADO,
+ * y si la aplicación falla se libera para que el reproceso desde la DLQ pueda aplicarlo.
+ *
+ * Delante hay un filtro de Bloom en memoria con los ids aplicados: un positivo, casi siempre una
+ * redelivery, se confirma con una lectura por clave sin intentar la inserción. El filtro se carga
+ * al arrancar, antes de que se abran los bindings, y se sincroniza periódicamente con los que
+ * registran las demás instancias; un id que todavía no llegó al filtro lo detecta la inserción.
+ * Para que caduque junto con la colección se usan dos generaciones que rotan cada {@code ttl}.
+ */
+@Component
+public class RegistroEventosProcesados {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RegistroEventosProcesados.class);
+
+    private static final int CLAVE_DUPLICADA = 11000;
+    private static final Duration ESPERA_CARGA_INICIAL = Duration.ofSeconds(10);
+
+    /** Resultado de reclamar un evento. */
+    public enum Reclamo {
+        /** Reclamado por esta instancia: hay que aplicarlo. */
+        NUEVO,
+        /** Ya aplicado: se confirma sin procesar. */
+        DUPLICADO,
+        /** Otra instancia lo está aplicando y su bloqueo no venció. */
+        EN_CURSO
+    }
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final MeterRegistry meterRegistry;
+    private final boolean habilitado;
+    private final Duration ttl;
+    private final Duration bloqueo;
+    private final long capacidad;
+    private final double probabilidadFalsoPositivo;
+
+    private volatile FiltroBloom actual;
+    private volatile FiltroBloom anterior;
+    private volatile LocalDateTime ultimaSincronizacion;
+
+    @Autowired
+    public RegistroEventosProcesados(
+            ReactiveMongoOperations mongoOperations,
+            MeterRegistry meterRegistry,
+            @Value("${usuarios.eventos.deduplicacion.habilitada:true}") boolean habilitado,
+            @Value("${usuarios.eventos.deduplicacion.ttl:24h}") Duration ttl,
+            @Value("${usuarios.eventos.deduplicacion.bloqueo:2m}") Duration bloqueo,
+            @Value("${usuarios.eventos.deduplicacion.capacidad:1000000}") long capacidad,
+            @Value("${usuarios.eventos.deduplicacion.probabilidad-falso-positivo:0.01}") double probabilidadFalsoPositivo) {
+        this.mongoOperations = mongoOperations;
+        this.meterRegistry = meterRegistry;
+        this.habilitado = habilitado;
+        this.ttl = ttl;
+        this.bloqueo = bloqueo;
+        this.capacidad = capacidad;
+        this.probabilidadFalsoPositivo = probabilidadFalsoPositivo;
+
+        this.actual = new FiltroBloom(capacidad, probabilidadFalsoPositivo);
+        this.anterior = new FiltroBloom(capacidad, probabilidadFalsoPositivo);
+        this.ultimaSincronizacion = LocalDateTime.now().minus(ttl);
+        LOGGER.info("Deduplicación de eventos {}: ttl={}, bloqueo={}, filtro de {} bits y {} funciones por generación",
+                habilitado ? "habilitada" : "deshabilitada", ttl, bloqueo, actual.getBits(), actual.getFunciones());
+    }
+
+    /** Lo que puede tardar en resolverse un reclamo EN_CURSO: como mucho, el bloqueo de otra instancia. */
+    public Duration getBloqueo() {
+        return bloqueo;
+    }
+
+    /**
+     * Reclama el evento para este consumidor. Un evento sin id (productor anterior a los ids) es
+     * siempre nuevo. Si Mongo falla se procesa igual: las escrituras siguen validando por su cuenta.
+     */
+    public Mono<Reclamo> reclamar(String consumidor, String eventId) {
+        if (!habilitado) {
+            return Mono.just(Reclamo.NUEVO);
+        }
+        if (eventId == null) {
+            contar(consumidor, "sin-id");
+            return Mono.just(Reclamo.NUEVO);
+        }
+        String clave = clave(consumidor, eventId);
+        LocalDateTime ahora = LocalDateTime.now();
+
+        Mono<Reclamo> insertar = mongoOperations.insert(reclamo(clave, consumidor, ahora))
+                .map(registro -> {
+                    contar(consumidor, "nuevo");
+                    return Reclamo.NUEVO;
+                })
+                .onErrorResume(DuplicateKeyException.class, error -> resolver(consumidor, clave, ahora));
+
+        Mono<Reclamo> reclamo = insertar;
+        if (actual.puedeContener(clave) || anterior.puedeContener(clave)) {
+            reclamo = aplicado(clave).flatMap(aplicado -> {
+                if (aplicado) {
+                    contar(consumidor, "duplicado");
+                    return Mono.just(Reclamo.DUPLICADO);
+                }
+                contar(consumidor, "falso-positivo");
+                return insertar;
+            });
+        }
+        return reclamo.onErrorResume(error -> {
+            LOGGER.warn("[{}] No se pudo reclamar el evento {}: {}", consumidor, eventId, error.getMessage());
+            contar(consumidor, "error");
+            return Mono.just(Reclamo.NUEVO);
+        });
+    }
+
+    /**
+     * Reclama los eventos de un lote con una inserción sin orden. Devuelve los ids ya aplicados,
+     * que hay que descartar. Si alguno lo está aplicando otra instancia libera los que reclamó y
+     * falla con {@link EventoEnCursoException}, para que el lote se reentregue.
+     */
+    public Mono<Set<String>> reclamarTodos(String consumidor, Collection<String> eventIds) {
+        if (!habilitado || eventIds.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+        return aplicados(consumidor, eventIds)
+                .flatMap(duplicados -> {
+                    List<String> restantes = eventIds.stream().filter(id -> !duplicados.contains(id)).toList();
+                    if (restantes.isEmpty()) {
+                        return Mono.just(duplicados);
+                    }
+                    LocalDateTime ahora = LocalDateTime.now();
+                    return insertarReclamos(consumidor, restantes, ahora)
+                            .flatMapMany(Flux::fromIterable)
+                            .concatMap(eventId -> resolver(consumidor, clave(consumidor, eventId), ahora)
+                                    .map(reclamo -> Tuples.of(eventId, reclamo)))
+                            .collectMultimap(Tuple2::getT2, Tuple2::getT1)
+                            .flatMap(resueltos -> {
+                                Set<String> descartar = new HashSet<>(duplicados);
+                                descartar.addAll(resueltos.getOrDefault(Reclamo.DUPLICADO, List.of()));
+                                Collection<String> enCurso = resueltos.getOrDefault(Reclamo.EN_CURSO, List.of());
+                                if (enCurso.isEmpty()) {
+                                    return Mono.just(descartar);
+                                }
+                                List<String> reclamados = restantes.stream()
+                                        .filter(id -> !descartar.contains(id) && !enCurso.contains(id))
+                                        .toList();
+                                return liberarTodos(consumidor, reclamados).then(Mono.error(new EventoEnCursoException(
+                                        enCurso.size() + " eventos del lote se están aplicando en otra instancia")));
+                            });
+                })
+                .onErrorResume(error -> !(error instanceof EventoEnCursoException), error -> {
+                    LOGGER.warn("[{}] No se pudieron reclamar {} eventos: {}", consumidor, eventIds.size(),
+                            error.getMessage());
+                    contar(consumidor, "error", eventIds.size());
+                    return Mono.just(Set.of());
+                });
+    }
+
+    /**
+     * Inserta los reclamos del lote y devuelve los ids que chocaron con uno existente.
+     */
+    private Mono<List<String>> insertarReclamos(String consumidor, List<String> eventIds, LocalDateTime ahora) {
+        List<EventoProcesado> reclamos = eventIds.stream()
+                .map(eventId -> reclamo(clave(consumidor, eventId), consumidor, ahora))
+                .toList();
+        return mongoOperations.bulkOps(BulkMode.UNORDERED, EventoProcesado.class)
+                .insert(reclamos)
+                .execute()
+                .thenReturn(List.<String>of())
+                .onErrorResume(error -> {
+                    List<Integer> posiciones = duplicadas(error);
+                    return posiciones != null
+                            ? Mono.just(posiciones.stream().map(eventIds::get).toList())
+                            : Mono.error(error);
+                })
+                .doOnNext(chocados -> contar(consumidor, "nuevo", eventIds.size() - chocados.size()));
+    }
+
+    /**
+     * Registra como aplicado un evento reclamado. Un fallo al registrar solo se anota: la
+     * escritura ya se hizo y el evento debe confirmarse igual; al vencer el bloqueo una
+     * redelivery lo volvería a aplicar.
+     */
+    public Mono<Void> marcar(String consumidor, String eventId) {
+        if (!habilitado || eventId == null) {
+            return Mono.empty();
+        }
+        return marcarTodos(consumidor, List.of(eventId));
+    }
+
+    /**
+     * Registra varios eventos reclamados de un mismo consumidor con una sola actualización.
+     */
+    public Mono<Void> marcarTodos(String consumidor, Collection<String> eventIds) {
+        if (!habilitado || eventIds.isEmpty()) {
+            return Mono.empty();
+        }
+        List<String> claves = eventIds.stream().map(eventId -> clave(consumidor, eventId)).toList();
+        claves.forEach(actual::agregar);
+        LocalDateTime ahora = LocalDateTime.now();
+
+        return mongoOperations.updateMulti(
+                        query(where("_id").in(claves).and("estado").is(EventoProcesado.APLICANDO)),
+                        new Update()
+                                .set("estado", EventoProcesado.APLICADO)
+                                .set("procesado", ahora)
+                                .unset("bloqueadoHasta"),
+                        EventoProcesado.class)
+                .then()
+                .onErrorResume(error -> {
+                    LOGGER.warn("[{}] No se pudieron registrar {} eventos: {}", consumidor, claves.size(),
+                            error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Libera el reclamo de un evento que no se aplicó, para que una redelivery o el reproceso
+     * desde la DLQ puedan reclamarlo de nuevo sin esperar al bloqueo.
+     */
+    public Mono<Void> liberar(String consumidor, String eventId) {
+        if (!habilitado || eventId == null) {
+            return Mono.empty();
+        }
+        return liberarTodos(consumidor, List.of(eventId));
+    }
+
+    public Mono<Void> liberarTodos(String consumidor, Collection<String> eventIds) {
+        if (!habilitado || eventIds.isEmpty()) {
+            return Mono.empty();
+        }
+        List<String> claves = eventIds.stream().map(eventId -> clave(consumidor, eventId)).toList();
+        return mongoOperations.remove(
+                        query(where("_id").in(claves).and("estado").is(EventoProcesado.APLICANDO)),
+                        EventoProcesado.class)
+                .then()
+                .onErrorResume(error -> {
+                    LOGGER.warn("[{}] No se pudieron liberar {} eventos: {}", consumidor, claves.size(),
+                            error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * El id ya existía: si es un reclamo con el bloqueo vencido se retoma, si no se distingue
+     * entre aplicado y en curso. Si desapareció entretanto (liberado o caducado) queda en curso
+     * y el llamador vuelve a reclamarlo.
+     */
+    private Mono<Reclamo> resolver(String consumidor, String clave, LocalDateTime ahora) {
+        return mongoOperations.findAndModify(
+                        query(where("_id").is(clave).and("estado").is(EventoProcesado.APLICANDO)
+                                .and("bloqueadoHasta").lt(ahora)),
+                        new Update().set("bloqueadoHasta", ahora.plus(bloqueo)).set("procesado", ahora),
+                        FindAndModifyOptions.options().returnNew(true),
+                        EventoProcesado.class)
+                .map(retomado -> {
+                    LOGGER.warn("[{}] Retomado el evento {}: la instancia que lo reclamó no lo terminó",
+                            consumidor, clave);
+                    contar(consumidor, "retomado");
+                    return Reclamo.NUEVO;
+                })
+                .switchIfEmpty(Mono.defer(() -> aplicado(clave).map(aplicado -> {
+                    contar(consumidor, aplicado ? "duplicado" : "en-curso");
+                    return aplicado ? Reclamo.DUPLICADO : Reclamo.EN_CURSO;
+                })));
+    }
+
+    private Mono<Boolean> aplicado(String clave) {
+        return mongoOperations.exists(query(where("_id").is(clave).and("estado").ne(EventoProcesado.APLICANDO)),
+                EventoProcesado.class);
+    }
+
+    /**
+     * Los ids del lote que este consumidor ya aplicó: el filtro descarta los nuevos y los
+     * positivos se confirman con una única consulta {@code $in}.
+     */
+    private Mono<Set<String>> aplicados(String consumidor, Collection<String> eventIds) {
+        List<String> candidatos = new ArrayList<>();
+        for (String eventId : eventIds) {
+            String clave = clave(consumidor, eventId);
+            if (actual.puedeContener(clave) || anterior.puedeContener(clave)) {
+                candidatos.add(clave);
+            }
+        }
+        if (candidatos.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+
+        Query registrados = query(where("_id").in(candidatos).and("estado").ne(EventoProcesado.APLICANDO));
+        registrados.fields().include("_id");
+        String prefijo = clave(consumidor, "");
+        return mongoOperations.find(registrados, EventoProcesado.class)
+                .map(registro -> registro.getId().substring(prefijo.length()))
+                .collect(Collectors.toSet())
+                .doOnNext(duplicados -> {
+                    contar(consumidor, "duplicado", duplicados.size());
+                    contar(consumidor, "falso-positivo", candidatos.size() - duplicados.size());
+                });
+    }
+
+    private EventoProcesado reclamo(String clave, String consumidor, LocalDateTime ahora) {
+        return new EventoProcesado(clave, consumidor, EventoProcesado.APLICANDO, ahora.plus(bloqueo), ahora,
+                ahora.plus(ttl));
+    }
+
+    /**
+     * Posiciones de las inserciones que chocaron con la clave única, o null si el error no es
+     * solo de claves duplicadas.
+     */
+    private static List<Integer> duplicadas(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof MongoBulkWriteException bulk) {
+                List<Integer> posiciones = new ArrayList<>();
+                for (BulkWriteError escritura : bulk.getWriteErrors()) {
+                    if (escritura.getCode() != CLAVE_DUPLICADA) {
+                        return null;
+                    }
+                    posiciones.add(escritura.getIndex());
+                }
+                return posiciones;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Carga inicial del filtro, bloqueante para que esté lista antes de que arranquen los
+     * bindings. Si Mongo no responde a tiempo se sigue con el filtro vacío: los duplicados los
+     * detecta igual la inserción del reclamo.
+     */
+    @PostConstruct
+    public void inicializar() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            Long cargados = cargar().block(ESPERA_CARGA_INICIAL);
+            LOGGER.info("Filtro de eventos procesados cargado: {} ids", cargados);
+        } catch (RuntimeException e) {
+            LOGGER.warn("No se pudo cargar el filtro de eventos procesados al arrancar: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Carga en el filtro los ids aplicados desde la última sincronización, incluidos los de
+     * otras instancias. El margen cubre los relojes desparejos y las inserciones en vuelo.
+     */
+    @Scheduled(fixedDelayString = "${usuarios.eventos.deduplicacion.sincronizacion:5s}",
+            initialDelayString = "${usuarios.eventos.deduplicacion.sincronizacion:5s}")
+    public void sincronizar() {
+        if (!habilitado) {
+            return;
+        }
+        cargar().subscribe(cargados -> {
+            if (cargados > 0) {
+                LOGGER.debug("Filtro de eventos procesados sincronizado: {} ids", cargados);
+            }
+        }, error -> LOGGER.warn("No se pudo sincronizar el filtro de eventos procesados: {}", error.getMessage()));
+    }
+
+    private Mono<Long> cargar() {
+        return Mono.defer(() -> {
+            LocalDateTime desde = ultimaSincronizacion.minusSeconds(5);
+            LocalDateTime hasta = LocalDateTime.now();
+            Query nuevos = query(where("procesado").gte(desde).and("estado").ne(EventoProcesado.APLICANDO));
+            nuevos.fields().include("_id");
+
+            return mongoOperations.find(nuevos, EventoProcesado.class)
+                    .doOnNext(registro -> actual.agregar(registro.getId()))
+                    .count()
+                    .doOnNext(cargados -> ultimaSincronizacion = hasta);
+        });
+    }
+
+    /**
+     * Descarta la generación más vieja. Un id queda en el filtro entre {@code ttl} y el doble,
+     * siempre al menos lo que tarda Mongo en borrarlo; pasado ese tiempo un positivo sería un
+     * falso positivo que la lectura descarta.
+     */
+    @Scheduled(fixedDelayString = "${usuarios.eventos.deduplicacion.ttl:24h}",
+            initialDelayString = "${usuarios.eventos.deduplicacion.ttl:24h}")
+    public void rotar() {
+        anterior = actual;
+        actual = new FiltroBloom(capacidad, probabilidadFalsoPositivo);
+        LOGGER.debug("Rotada la generación del filtro de eventos procesados");
+    }
+
+    private void contar(String consumidor, String resultado) {
+        contar(consumidor, resultado, 1);
+    }
+
+    private void contar(String consumidor, String resultado, int cantidad) {
+        if (cantidad > 0) {
+            meterRegistry.counter("usuarios.eventos.deduplicacion", "consumidor", consumidor, "resultado", resultado)
+                    .increment(cantidad);
+        }
+    }
+
+    private static String clave(String consumidor, String eventId) {
+        return consumidor + ":" + eventId;
+    }
+}
@@ -0,0 +1,8 @@
+package com.enseniamelo.usuarios.util.events;
+
+/**
+ * Evento local de Spring que se publica cuando un usuario sale de la cache porque cambió o
+ * se eliminó. {@code email} puede ser null si no se conoce.
+ */
+public record UsuarioInvalidadoEvent(String idUsuario, String email) {
+}
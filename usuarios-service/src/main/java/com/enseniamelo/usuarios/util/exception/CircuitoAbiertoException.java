@@ -0,0 +1,19 @@
+package com.enseniamelo.usuarios.util.exception;
+
+public class CircuitoAbiertoException extends RuntimeException {
+    public CircuitoAbiertoException() {
+        super();
+    }
+
+    public CircuitoAbiertoException(String message) {
+        super(message);
+    }
+
+    public CircuitoAbiertoException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public CircuitoAbiertoException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,19 @@
+package com.enseniamelo.usuarios.util.exception;
+
+public class ConflictException extends RuntimeException {
+    public ConflictException() {
+        super();
+    }
+
+    public ConflictException(String message) {
+        super(message);
+    }
+
+    public ConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public ConflictException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,19 @@
+package com.enseniamelo.usuarios.util.exception;
+
+public class EventoEnCursoException extends RuntimeException {
+    public EventoEnCursoException() {
+        super();
+    }
+
+    public EventoEnCursoException(String message) {
+        super(message);
+    }
+
+    public EventoEnCursoException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public EventoEnCursoException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -1,6 +1,7 @@
 package com.enseniamelo.usuarios.util.http;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 
 import org.slf4j.Logger;
@@ -18,6 +19,7 @@ import org.springframework.web.server.ServerWebInputException;
 import com.enseniamelo.usuarios.util.exception.BadRequestException;
 import com.enseniamelo.usuarios.util.exception.InvalidInputException;
 import com.enseniamelo.usuarios.util.exception.NotFoundException;
+import com.enseniamelo.usuarios.util.exception.TooManyRequestsException;
 
 @RestControllerAdvice
 class GlobalControllerExceptionHandler {
@@ -54,6 +56,14 @@ class GlobalControllerExceptionHandler {
 		return createHttpErrorInfo(UNPROCESSABLE_ENTITY, request, ex);
 	}
 
+	@ResponseStatus(TOO_MANY_REQUESTS)
+	@ExceptionHandler(TooManyRequestsException.class)
+	public @ResponseBody HttpErrorInfo handleTooManyRequestsException(ServerHttpRequest request,
+			TooManyRequestsException ex) {
+		LOGGER.warn("Manejando TooManyRequestsException");
+		return createHttpErrorInfo(TOO_MANY_REQUESTS, request, ex);
+	}
+
 	@ExceptionHandler({org.springframework.web.method.annotation.MethodArgumentTypeMismatchException.class,
                    jakarta.validation.ConstraintViolationException.class})
 	@ResponseStatus(HttpStatus.BAD_REQUEST)
@@ -0,0 +1,41 @@
+package com.enseniamelo.usuarios.util.paginacion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import com.enseniamelo.usuarios.util.exception.BadRequestException;
+
+/**
+ * Tokens opacos para paginación keyset. Un cursor es la lista de valores de la clave de
+ * orden del último elemento devuelto, codificada en Base64 URL-safe.
+ */
+public final class CursorPaginacion {
+
+    private static final String SEPARADOR = "\u001F";
+
+    private CursorPaginacion() {
+    }
+
+    public static String codificar(String... valores) {
+        String plano = String.join(SEPARADOR, valores);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plano.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un cursor comprobando que tenga el número de valores esperado.
+     */
+    public static List<String> decodificar(String cursor, int valoresEsperados) {
+        try {
+            String plano = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            List<String> valores = Arrays.asList(plano.split(SEPARADOR, -1));
+            if (valores.size() != valoresEsperados) {
+                throw new BadRequestException("Cursor de paginación inválido");
+            }
+            return valores;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Cursor de paginación inválido");
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.enseniamelo.usuarios.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.stream.binder.test.InputDestination;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.enseniamelo.usuarios.dto.VerificarSolicitudDTO;
+import com.enseniamelo.usuarios.model.EventoProcesado;
+import com.enseniamelo.usuarios.service.EventosEstacionadosService;
+import com.enseniamelo.usuarios.service.PerfilTutorLoteService;
+import com.enseniamelo.usuarios.service.PerfilTutorService;
+import com.enseniamelo.usuarios.service.UsuarioCache;
+import com.enseniamelo.usuarios.service.UsuarioLoteService;
+import com.enseniamelo.usuarios.service.UsuarioService;
+import com.enseniamelo.usuarios.service.VerificarSolicitudLoteService;
+import com.enseniamelo.usuarios.service.VerificarSolicitudService;
+import com.enseniamelo.usuarios.util.events.Event;
+import com.enseniamelo.usuarios.util.events.EventosDlq;
+import com.enseniamelo.usuarios.util.events.LoteEventos;
+import com.enseniamelo.usuarios.util.events.ProcesadorEventos;
+import com.enseniamelo.usuarios.util.events.RegistroEventosProcesados;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Consumidores reactivos sobre el binder de pruebas, con los servicios simulados con una latencia
+ * fija de escritura. Compara el rendimiento con el consumidor bloqueante anterior.
+ */
+class MessageProcessorConfigTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageProcessorConfigTest.class);
+
+    private static final Duration LATENCIA_ESCRITURA = Duration.ofMillis(2);
+    private static final int EVENTOS = 1000;
+    private static final int CLAVES = 100;
+
+    private static final List<String> PROCESADOS = Collections.synchronizedList(new ArrayList<>());
+    private static final AtomicInteger FALLOS = new AtomicInteger();
+    private static final Set<String> REGISTRADOS = ConcurrentHashMap.newKeySet();
+    private static final Set<String> RECLAMADOS = ConcurrentHashMap.newKeySet();
+    private static volatile CountDownLatch pendientes;
+
+    private ConfigurableApplicationContext contexto;
+
+    @AfterEach
+    void tearDown() {
+        if (contexto != null) {
+            contexto.close();
+        }
+        PROCESADOS.clear();
+        FALLOS.set(0);
+        REGISTRADOS.clear();
+        RECLAMADOS.clear();
+    }
+
+    @Test
+    void conservaElOrdenPorClave() throws InterruptedException {
+        contexto = arrancar("solicitudProcessor");
+        enviar("solicitudProcessor-in-0", EVENTOS);
+
+        Map<String, List<Integer>> porClave = new ConcurrentHashMap<>();
+        synchronized (PROCESADOS) {
+            PROCESADOS.forEach(registro -> {
+                String[] partes = registro.split(":");
+                porClave.computeIfAbsent(partes[0], clave -> new ArrayList<>()).add(Integer.parseInt(partes[1]));
+            });
+        }
+        assertEquals(CLAVES, porClave.size());
+        porClave.forEach((clave, secuencia) -> {
+            for (int i = 1; i < secuencia.size(); i++) {
+                assertTrue(secuencia.get(i - 1) < secuencia.get(i), "desorden en " + clave + ": " + secuencia);
+            }
+        });
+    }
+
+    @Test
+    void unEventoQueFallaNoDetieneAlResto() throws InterruptedException {
+        contexto = arrancar("solicitudProcessor");
+        pendientes = new CountDownLatch(EVENTOS / 10 - 1);
+
+        for (int i = 0; i < EVENTOS / 10; i++) {
+            String id = i == 0 ? "falla" : "s" + i;
+            InputDestination entrada = contexto.getBean(InputDestination.class);
+            entrada.send(MessageBuilder.withPayload(evento(id, i)).build(), "solicitudProcessor-in-0");
+        }
+
+        assertTrue(pendientes.await(10, TimeUnit.SECONDS));
+        // Tres intentos para el evento que falla y ninguna pérdida para los demás
+        assertEquals(3, FALLOS.get());
+        assertEquals(EVENTOS / 10 - 1, PROCESADOS.size());
+
+        // Agotados los intentos, el evento queda en la DLQ con el motivo y los intentos
+        Message<byte[]> dlq = contexto.getBean(OutputDestination.class).receive(5000, "verificar-solicitudes.dlq");
+        assertNotNull(dlq);
+        assertEquals("SOLICITUD", dlq.getHeaders().get(EventosDlq.HEADER_CONSUMIDOR));
+        assertEquals(3, dlq.getHeaders().get(EventosDlq.HEADER_INTENTOS));
+        assertEquals("Mongo no disponible", dlq.getHeaders().get(EventosDlq.HEADER_ERROR));
+        // El que falló liberó su reclamo para que el reproceso pueda aplicarlo
+        assertTrue(RECLAMADOS.isEmpty(), "reclamos sin liberar: " + RECLAMADOS);
+    }
+
+    @Test
+    void unaRedeliveryNoVuelveAProcesarElEvento() throws InterruptedException {
+        contexto = arrancar("solicitudProcessor");
+        InputDestination entrada = contexto.getBean(InputDestination.class);
+        Message<Event<String, VerificarSolicitudDTO>> mensaje = MessageBuilder.withPayload(evento("s1", 1)).build();
+
+        pendientes = new CountDownLatch(1);
+        entrada.send(mensaje, "solicitudProcessor-in-0");
+        assertTrue(pendientes.await(10, TimeUnit.SECONDS));
+
+        // El mismo evento dos veces más y uno nuevo detrás, con la misma clave para respetar el orden
+        pendientes = new CountDownLatch(1);
+        entrada.send(mensaje, "solicitudProcessor-in-0");
+        entrada.send(mensaje, "solicitudProcessor-in-0");
+        entrada.send(MessageBuilder.withPayload(evento("s1", 2)).build(), "solicitudProcessor-in-0");
+        assertTrue(pendientes.await(10, TimeUnit.SECONDS));
+
+        assertEquals(List.of("s1:1", "s1:2"), PROCESADOS);
+        assertEquals(2, REGISTRADOS.size());
+    }
+
+    @Test
+    void unEventoQueAplicoOtraInstanciaNoSeVuelveAAplicar() throws InterruptedException {
+        contexto = arrancar("solicitudProcessor");
+        InputDestination entrada = contexto.getBean(InputDestination.class);
+        // Otra instancia lo aplicó y murió antes de confirmarlo: este filtro todavía no lo conoce
+        Event<String, VerificarSolicitudDTO> aplicado = evento("s1", 1);
+        REGISTRADOS.add("SOLICITUD:" + aplicado.getEventId());
+
+        pendientes = new CountDownLatch(1);
+        entrada.send(MessageBuilder.withPayload(aplicado).build(), "solicitudProcessor-in-0");
+        entrada.send(MessageBuilder.withPayload(evento("s1", 2)).build(), "solicitudProcessor-in-0");
+        assertTrue(pendientes.await(10, TimeUnit.SECONDS));
+
+        assertEquals(List.of("s1:2"), PROCESADOS);
+    }
+
+    @Test
+    void rendimientoFrenteAlConsumidorBloqueante() throws InterruptedException {
+        contexto = arrancar("solicitudBloqueante");
+        long bloqueante = enviar("solicitudBloqueante-in-0", EVENTOS);
+        contexto.close();
+        PROCESADOS.clear();
+
+        contexto = arrancar("solicitudProcessor");
+        long reactivo = enviar("solicitudProcessor-in-0", EVENTOS);
+
+        LOGGER.info("{} eventos con {} ms de escritura: bloqueante {} ms ({} ev/s), reactivo {} ms ({} ev/s)",
+                EVENTOS, LATENCIA_ESCRITURA.toMillis(), bloqueante, EVENTOS * 1000 / Math.max(1, bloqueante),
+                reactivo, EVENTOS * 1000 / Math.max(1, reactivo));
+        assertTrue(reactivo * 2 < bloqueante, "reactivo " + reactivo + " ms, bloqueante " + bloqueante + " ms");
+    }
+
+    /**
+     * Envía los eventos repartidos en {@link #CLAVES} claves y espera a que se procesen todos.
+     * Devuelve los milisegundos transcurridos.
+     */
+    private long enviar(String destino, int cantidad) throws InterruptedException {
+        InputDestination entrada = contexto.getBean(InputDestination.class);
+        pendientes = new CountDownLatch(cantidad);
+        long inicio = System.nanoTime();
+
+        for (int i = 0; i < cantidad; i++) {
+            entrada.send(MessageBuilder.withPayload(evento("s" + (i % CLAVES), i)).build(), destino);
+        }
+
+        assertTrue(pendientes.await(60, TimeUnit.SECONDS), "quedaron " + pendientes.getCount() + " eventos");
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+    }
+
+    private static Event<String, VerificarSolicitudDTO> evento(String id, int secuencia) {
+        VerificarSolicitudDTO solicitud = new VerificarSolicitudDTO();
+        solicitud.setComentario(String.valueOf(secuencia));
+        return new Event<>(Event.Type.APPROVE_REQUEST, id, solicitud);
+    }
+
+    private static ConfigurableApplicationContext arrancar(String funcion) {
+        return new SpringApplicationBuilder(TestChannelBinderConfiguration.getCompleteConfiguration(Contexto.class))
+                .web(WebApplicationType.NONE)
+                .run("--spring.config.name=message-processor-test",
+                        "--spring.cloud.config.enabled=false",
+                        "--eureka.client.enabled=false",
+                        "--spring.cloud.stream.default-binder=integration",
+                        "--spring.cloud.function.definition=" + funcion,
+                        "--usuarios.eventos.concurrencia=16",
+                        "--usuarios.eventos.espera-inicial=10ms",
+                        "--usuarios.eventos.espera-maxima=50ms",
+                        "--spring.cloud.stream.bindings.solicitudDlq-out-0.destination=verificar-solicitudes.dlq");
+    }
+
+    private static Mono<VerificarSolicitudDTO> aprobar(String id, String comentario) {
+        if ("falla".equals(id)) {
+            FALLOS.incrementAndGet();
+            return Mono.error(new IllegalStateException("Mongo no disponible"));
+        }
+        return Mono.delay(LATENCIA_ESCRITURA)
+                .map(t -> {
+                    PROCESADOS.add(id + ":" + comentario);
+                    pendientes.countDown();
+                    return new VerificarSolicitudDTO();
+                });
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration(exclude = {
+            MongoAutoConfiguration.class,
+            MongoDataAutoConfiguration.class,
+            MongoReactiveAutoConfiguration.class,
+            MongoReactiveDataAutoConfiguration.class,
+            MongoReactiveRepositoriesAutoConfiguration.class
+    })
+    @Import({ MessageProcessorConfig.class, ProcesadorEventos.class, LoteEventos.class, EventosDlq.class })
+    static class Contexto {
+
+        @Bean
+        VerificarSolicitudService verificarSolicitudService() {
+            VerificarSolicitudService servicio = mock(VerificarSolicitudService.class);
+            when(servicio.aprobarSolicitud(anyString(), anyString()))
+                    .thenAnswer(invocacion -> aprobar(invocacion.getArgument(0), invocacion.getArgument(1)));
+            return servicio;
+        }
+
+        /**
+         * Registro real sobre un Mongo simulado en memoria: los reclamos se anotan en
+         * {@link #RECLAMADOS} con clave única, al marcarlos pasan a {@link #REGISTRADOS} y
+         * {@code exists} consulta estos últimos.
+         */
+        @Bean
+        RegistroEventosProcesados registroEventosProcesados() {
+            ReactiveMongoOperations mongo = mock(ReactiveMongoOperations.class);
+            when(mongo.find(any(Query.class), eq(EventoProcesado.class))).thenReturn(Flux.empty());
+            when(mongo.insert(any(EventoProcesado.class))).thenAnswer(invocacion -> {
+                EventoProcesado registro = invocacion.getArgument(0);
+                if (REGISTRADOS.contains(registro.getId()) || !RECLAMADOS.add(registro.getId())) {
+                    return Mono.error(new DuplicateKeyException(registro.getId()));
+                }
+                return Mono.just(registro);
+            });
+            when(mongo.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                    eq(EventoProcesado.class))).thenReturn(Mono.empty());
+            when(mongo.exists(any(Query.class), eq(EventoProcesado.class))).thenAnswer(invocacion -> Mono.just(
+                    REGISTRADOS.contains(invocacion.<Query>getArgument(0).getQueryObject().getString("_id"))));
+            when(mongo.updateMulti(any(Query.class), any(Update.class), eq(EventoProcesado.class)))
+                    .thenAnswer(invocacion -> {
+                        List<String> ids = ids(invocacion.getArgument(0));
+                        ids.stream().filter(RECLAMADOS::remove).forEach(REGISTRADOS::add);
+                        return Mono.just(UpdateResult.acknowledged(ids.size(), (long) ids.size(), null));
+                    });
+            when(mongo.remove(any(Query.class), eq(EventoProcesado.class))).thenAnswer(invocacion -> {
+                List<String> ids = ids(invocacion.getArgument(0));
+                RECLAMADOS.removeAll(ids);
+                return Mono.just(DeleteResult.acknowledged(ids.size()));
+            });
+            return new RegistroEventosProcesados(mongo, new SimpleMeterRegistry(), true, Duration.ofHours(1),
+                    Duration.ofMinutes(2), 10_000, 0.01);
+        }
+
+        private static List<String> ids(Query consulta) {
+            return consulta.getQueryObject().get("_id", Document.class).getList("$in", String.class);
+        }
+
+        @Bean
+        UsuarioService usuarioService() {
+            return mock(UsuarioService.class);
+        }
+
+        @Bean
+        PerfilTutorService perfilTutorService() {
+            return mock(PerfilTutorService.class);
+        }
+
+        @Bean
+        UsuarioCache usuarioCache() {
+            return mock(UsuarioCache.class);
+        }
+
+        @Bean
+        UsuarioLoteService usuarioLoteService() {
+            return mock(UsuarioLoteService.class);
+        }
+
+        @Bean
+        PerfilTutorLoteService perfilTutorLoteService() {
+            return mock(PerfilTutorLoteService.class);
+        }
+
+        @Bean
+        VerificarSolicitudLoteService solicitudLoteService() {
+            return mock(VerificarSolicitudLoteService.class);
+        }
+
+        @Bean
+        EventosEstacionadosService eventosEstacionadosService() {
+            return mock(EventosEstacionadosService.class);
+        }
+
+        /**
+         * El consumidor anterior: un evento por hilo del binder, bloqueado hasta que Mongo responde.
+         */
+        @Bean
+        Consumer<Event<String, VerificarSolicitudDTO>> solicitudBloqueante(VerificarSolicitudService servicio) {
+            return event -> servicio.aprobarSolicitud(event.getKey(), event.getData().getComentario()).block();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.enseniamelo.usuarios.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Configuración de {@code config/usuarios-service.yml} tal como la resuelve el config server con
+ * los perfiles activos: con {@code kafka} los bindings particionados quedan en el binder de Kafka.
+ */
+class PerfilKafkaTest {
+
+    private static final String CONFIGURACION = "../config/usuarios-service.yml";
+    private static final List<String> CONSUMIDORES = List.of(
+            "usuarioProcessor-in-0", "tutorProcessor-in-0", "solicitudProcessor-in-0");
+
+    @Test
+    void conElPerfilKafkaLosConsumidoresParticionadosUsanKafka() throws IOException {
+        StandardEnvironment entorno = entorno("docker", "kafka");
+
+        assertEquals("kafka", entorno.getProperty("spring.cloud.stream.default-binder"));
+        CONSUMIDORES.forEach(binding -> {
+            // Ningún binding fija su binder: todos toman el por defecto del perfil
+            assertNull(entorno.getProperty("spring.cloud.stream.bindings." + binding + ".binder"), binding);
+            assertEquals(Boolean.TRUE, entorno.getProperty(
+                    "spring.cloud.stream.bindings." + binding + ".consumer.partitioned", Boolean.class), binding);
+            assertEquals("MANUAL", entorno.getProperty(
+                    "spring.cloud.stream.kafka.bindings." + binding + ".consumer.ack-mode"), binding);
+        });
+        assertEquals("headers['partitionKey']", entorno.getProperty(
+                "spring.cloud.stream.bindings.usuarioReproceso-out-0.producer.partition-key-expression"));
+    }
+
+    @Test
+    void sinElPerfilKafkaSigueEnRabbit() throws IOException {
+        StandardEnvironment entorno = entorno("docker");
+
+        assertEquals("rabbit", entorno.getProperty("spring.cloud.stream.default-binder"));
+        CONSUMIDORES.forEach(binding -> {
+            assertNull(entorno.getProperty("spring.cloud.stream.bindings." + binding + ".consumer.partitioned"),
+                    binding);
+            // Lo que ProcesadorEventos rechaza sin reencolar lo guarda el broker en la DLQ del binding
+            assertEquals(Boolean.TRUE, entorno.getProperty(
+                    "spring.cloud.stream.rabbit.bindings." + binding + ".consumer.auto-bind-dlq", Boolean.class),
+                    binding);
+        });
+    }
+
+    /** Carga los documentos sin perfil y los de los perfiles indicados; los posteriores ganan. */
+    private static StandardEnvironment entorno(String... perfiles) throws IOException {
+        StandardEnvironment entorno = new StandardEnvironment();
+        List<String> activos = List.of(perfiles);
+        for (PropertySource<?> documento : new YamlPropertySourceLoader()
+                .load("usuarios-service", new FileSystemResource(CONFIGURACION))) {
+            Object perfil = documento.getProperty("spring.config.activate.on-profile");
+            if (perfil == null || activos.contains(perfil.toString())) {
+                entorno.getPropertySources().addFirst(documento);
+            }
+        }
+        return entorno;
+    }
+}
@@ -0,0 +1,155 @@
+package com.enseniamelo.usuarios.external;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.enseniamelo.usuarios.dto.CursoDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Prueba la cache de cursos contra un cursoservice simulado con el HttpServer del JDK.
+ */
+class CursoSnapshotCacheTest {
+
+    private static final Duration REFRESCO = Duration.ofMillis(300);
+    private static final Duration ESPERA = Duration.ofSeconds(5);
+
+    private HttpServer servidor;
+    private final Map<String, String> nombres = new ConcurrentHashMap<>();
+    private final AtomicInteger lecturas = new AtomicInteger();
+    private final AtomicInteger actualizaciones = new AtomicInteger();
+
+    private SimpleMeterRegistry meterRegistry;
+    private CursoSnapshotCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        servidor.createContext("/api/v1/cursos/", this::responder);
+        servidor.start();
+
+        String url = "http://127.0.0.1:" + servidor.getAddress().getPort();
+        meterRegistry = new SimpleMeterRegistry();
+        MsCursoIntegration integracion = new MsCursoIntegration(WebClient.builder(), new ObjectMapper(),
+                meterRegistry, url, 10, 50, Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(2),
+                Duration.ofSeconds(30), 0, Duration.ofMillis(10), Duration.ofMillis(50), 10, 0.1,
+                20, 10, 0.5, Duration.ofSeconds(30));
+        cache = new CursoSnapshotCache(integracion, meterRegistry, 100, REFRESCO, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        servidor.stop(0);
+    }
+
+    @Test
+    void segundaLecturaSeSirveDesdeCache() {
+        nombres.put("c1", "Álgebra");
+
+        assertEquals("Álgebra", cache.getCurso("c1").block(ESPERA).getNombre());
+        assertEquals("Álgebra", cache.getCurso("c1").block(ESPERA).getNombre());
+
+        assertEquals(1, lecturas.get());
+    }
+
+    @Test
+    void entradaVencidaSeSirveObsoletaYSeRevalidaEnSegundoPlano() throws InterruptedException {
+        nombres.put("c1", "Álgebra");
+        cache.getCurso("c1").block(ESPERA);
+
+        nombres.put("c1", "Álgebra II");
+        Thread.sleep(REFRESCO.toMillis() + 100);
+
+        // Se devuelve la copia anterior sin esperar a cursoservice
+        assertEquals("Álgebra", cache.getCurso("c1").block(ESPERA).getNombre());
+        esperarHasta(() -> "Álgebra II".equals(cache.getCurso("c1").block(ESPERA).getNombre()));
+
+        assertEquals(2, lecturas.get());
+        assertTrue(meterRegistry.get("cursos.cache.servidos").tag("tipo", "obsoleto").counter().count() >= 1);
+    }
+
+    @Test
+    void actualizarVerificacionInvalidaElSnapshot() {
+        nombres.put("c1", "Álgebra");
+        cache.getCurso("c1").block(ESPERA);
+
+        nombres.put("c1", "Álgebra verificada");
+        cache.updateCursoVerificacion("c1", "APROBADO").block(ESPERA);
+
+        assertEquals(1, actualizaciones.get());
+        assertEquals("Álgebra verificada", cache.getCurso("c1").block(ESPERA).getNombre());
+        assertEquals(2, lecturas.get());
+    }
+
+    @Test
+    void errorDeCargaNoSeCachea() {
+        assertThrows(RuntimeException.class, () -> cache.getCurso("c2").block(ESPERA));
+
+        nombres.put("c2", "Geometría");
+        assertEquals("Geometría", cache.getCurso("c2").block(ESPERA).getNombre());
+        assertEquals(2, lecturas.get());
+    }
+
+    private void responder(HttpExchange exchange) throws IOException {
+        String ruta = exchange.getRequestURI().getPath();
+        String id = ruta.substring("/api/v1/cursos/".length()).replace("/verificacion", "");
+
+        if ("PUT".equals(exchange.getRequestMethod())) {
+            actualizaciones.incrementAndGet();
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            return;
+        }
+
+        lecturas.incrementAndGet();
+        String nombre = nombres.get(id);
+        if (nombre == null) {
+            // Con cuerpo y Connection: close el cliente no vuelve a usar esta conexión desde el pool
+            byte[] error = "{\"error\":\"curso no disponible\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Connection", "close");
+            exchange.sendResponseHeaders(500, error.length);
+            try (OutputStream salida = exchange.getResponseBody()) {
+                salida.write(error);
+            }
+            return;
+        }
+        CursoDTO curso = CursoDTO.builder().id(id).nombre(nombre).build();
+        byte[] cuerpo = new ObjectMapper().writeValueAsString(curso).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, cuerpo.length);
+        try (OutputStream salida = exchange.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    private static void esperarHasta(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.nanoTime() + ESPERA.toNanos();
+        while (!condicion.getAsBoolean()) {
+            if (System.nanoTime() > limite) {
+                throw new AssertionError("La condición no se cumplió a tiempo");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.enseniamelo.usuarios.external;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Prueba el cliente de administración contra un Keycloak simulado con el HttpServer del JDK: un
+ * token rechazado con 401 invalida la sesión y la llamada se repite una vez con un token nuevo.
+ */
+class KeycloakUserClientTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(5);
+    private static final String REALM = "realm-prueba";
+
+    private HttpServer servidor;
+    private final List<String> tokensRecibidos = new CopyOnWriteArrayList<>();
+    private volatile String tokenValido = "nuevo";
+
+    private KeycloakAdminSession adminSession;
+    private KeycloakRoleCache roleCache;
+    private KeycloakUserClient cliente;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        servidor.createContext("/admin/realms/" + REALM + "/users", this::responder);
+        servidor.start();
+
+        adminSession = mock(KeycloakAdminSession.class);
+        when(adminSession.getToken()).thenReturn(Mono.just("nuevo"));
+        roleCache = mock(KeycloakRoleCache.class);
+        when(roleCache.getRole(anyString())).thenReturn(Mono.just(Map.of("id", "r1", "name", "USER")));
+
+        cliente = new KeycloakUserClient(WebClient.builder(), adminSession, roleCache,
+                "http://127.0.0.1:" + servidor.getAddress().getPort(), REALM);
+    }
+
+    @AfterEach
+    void tearDown() {
+        servidor.stop(0);
+    }
+
+    @Test
+    void crearUsuarioConTokenRechazadoSeRepiteConUnoNuevo() {
+        String id = cliente.crearUsuario("viejo", "ana@test.com", "Ana", "García", "secreta123").block(ESPERA);
+
+        assertEquals("kc-1", id);
+        assertEquals(List.of("viejo", "nuevo"), tokensRecibidos);
+        verify(adminSession).invalidate();
+    }
+
+    @Test
+    void asignarRolConTokenRechazadoSeRepiteSinDescartarElRol() {
+        cliente.asignarRol("viejo", "kc-1", "USER").block(ESPERA);
+
+        assertEquals(List.of("viejo", "nuevo"), tokensRecibidos);
+        verify(adminSession).invalidate();
+        verify(roleCache, never()).invalidate(anyString());
+    }
+
+    @Test
+    void soloSeReintentaUnaVez() {
+        tokenValido = "ninguno";
+
+        assertThrows(WebClientResponseException.Unauthorized.class,
+                () -> cliente.asignarRol("viejo", "kc-1", "USER").block(ESPERA));
+        assertEquals(List.of("viejo", "nuevo"), tokensRecibidos);
+        verify(adminSession, times(2)).invalidate();
+    }
+
+    private void responder(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String token = exchange.getRequestHeaders().getFirst("Authorization").substring("Bearer ".length());
+        tokensRecibidos.add(token);
+        exchange.getResponseHeaders().add("Connection", "close");
+
+        if (!tokenValido.equals(token)) {
+            exchange.sendResponseHeaders(401, -1);
+        } else if (exchange.getRequestURI().getPath().endsWith("/role-mappings/realm")) {
+            exchange.sendResponseHeaders(204, -1);
+        } else {
+            exchange.getResponseHeaders().add("Location", "http://keycloak/admin/realms/" + REALM + "/users/kc-1");
+            exchange.sendResponseHeaders(201, -1);
+        }
+        exchange.close();
+    }
+}
@@ -0,0 +1,93 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+import com.enseniamelo.usuarios.dto.LoginRequest;
+import com.enseniamelo.usuarios.external.KeycloakAdminSession;
+import com.enseniamelo.usuarios.external.KeycloakUserClient;
+import com.enseniamelo.usuarios.model.Usuario;
+import com.enseniamelo.usuarios.repository.PerfilTutorRepository;
+import com.enseniamelo.usuarios.repository.UsuarioRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import reactor.core.publisher.Mono;
+
+/**
+ * Login según el estado de aprovisionamiento: solo entra una cuenta activa o registrada de forma
+ * síncrona (sin estado).
+ */
+class AuthServiceLoginTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(5);
+
+    private UsuarioRepository usuarioRepository;
+    private UltimoAccesoWriteBehind ultimoAcceso;
+    private AuthService servicio;
+
+    @BeforeEach
+    void setUp() {
+        usuarioRepository = mock(UsuarioRepository.class);
+        ultimoAcceso = mock(UltimoAccesoWriteBehind.class);
+        PasswordHashingService passwordHashingService = mock(PasswordHashingService.class);
+        when(passwordHashingService.matches(anyString(), anyString())).thenReturn(Mono.just(true));
+
+        servicio = new AuthService(usuarioRepository, mock(PerfilTutorRepository.class), passwordHashingService,
+                ultimoAcceso, mock(KeycloakAdminSession.class), mock(KeycloakUserClient.class),
+                mock(KeycloakProvisioningService.class), mock(UsuarioCache.class), new SimpleMeterRegistry(),
+                mock(ReactiveMongoOperations.class), Validation.buildDefaultValidatorFactory().getValidator());
+    }
+
+    @Test
+    void unaCuentaEnAprovisionamientoNoPuedeEntrar() {
+        existente(KeycloakProvisioningService.PROVISIONING);
+
+        assertThrows(RuntimeException.class, () -> servicio.login(login()).block(ESPERA));
+        verify(ultimoAcceso, never()).registrar(anyString(), any());
+    }
+
+    @Test
+    void unaCuentaFallidaNoPuedeEntrar() {
+        existente(KeycloakProvisioningService.FALLIDO);
+
+        assertThrows(RuntimeException.class, () -> servicio.login(login()).block(ESPERA));
+    }
+
+    @Test
+    void entranLasCuentasActivasYLasDelRegistroSincrono() {
+        existente(KeycloakProvisioningService.ACTIVO);
+        assertEquals("Login exitoso", servicio.login(login()).block(ESPERA).getMessage());
+
+        existente(null);
+        assertEquals("Login exitoso", servicio.login(login()).block(ESPERA).getMessage());
+    }
+
+    private void existente(String estadoProvision) {
+        Usuario usuario = new Usuario();
+        usuario.setId("u1");
+        usuario.setEmail("ana@test.com");
+        usuario.setContrasenia("hash");
+        usuario.setEstadoProvision(estadoProvision);
+        when(usuarioRepository.findByEmail("ana@test.com")).thenReturn(Mono.just(usuario));
+    }
+
+    private static LoginRequest login() {
+        LoginRequest request = new LoginRequest();
+        request.setEmail("ana@test.com");
+        request.setContrasenia("secreta123");
+        return request;
+    }
+}
@@ -0,0 +1,111 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.enseniamelo.usuarios.dto.BulkRegisterResult;
+import com.enseniamelo.usuarios.dto.RegisterRequest;
+import com.enseniamelo.usuarios.external.KeycloakAdminSession;
+import com.enseniamelo.usuarios.external.KeycloakUserClient;
+import com.enseniamelo.usuarios.model.Usuario;
+import com.enseniamelo.usuarios.repository.PerfilTutorRepository;
+import com.enseniamelo.usuarios.repository.UsuarioRepository;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Registro masivo con Mongo y Keycloak simulados: un error de escritura en una línea no afecta
+ * al resto del lote y su cuenta de Keycloak se elimina.
+ */
+class AuthServiceRegistroMasivoTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(5);
+
+    private ReactiveBulkOperations bulk;
+    private KeycloakUserClient keycloakUserClient;
+    private AuthService servicio;
+
+    @BeforeEach
+    void setUp() {
+        UsuarioRepository usuarioRepository = mock(UsuarioRepository.class);
+        PasswordHashingService passwordHashingService = mock(PasswordHashingService.class);
+        KeycloakAdminSession adminSession = mock(KeycloakAdminSession.class);
+        ReactiveMongoOperations mongoOperations = mock(ReactiveMongoOperations.class);
+        keycloakUserClient = mock(KeycloakUserClient.class);
+        bulk = mock(ReactiveBulkOperations.class);
+
+        when(usuarioRepository.findByEmailIn(any())).thenReturn(Flux.empty());
+        when(passwordHashingService.encode(anyString())).thenReturn(Mono.just("hash"));
+        when(adminSession.getToken()).thenReturn(Mono.just("token"));
+        when(keycloakUserClient.crearUsuario(eq("token"), anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocacion -> Mono.just("kc-" + invocacion.getArgument(1)));
+        when(keycloakUserClient.asignarRol(anyString(), anyString(), any())).thenReturn(Mono.empty());
+        when(keycloakUserClient.eliminarUsuario(anyString(), anyString())).thenReturn(Mono.empty());
+        when(mongoOperations.bulkOps(BulkMode.UNORDERED, Usuario.class)).thenReturn(bulk);
+        when(bulk.insert(any(List.class))).thenReturn(bulk);
+
+        servicio = new AuthService(usuarioRepository, mock(PerfilTutorRepository.class), passwordHashingService,
+                mock(UltimoAccesoWriteBehind.class), adminSession, keycloakUserClient,
+                mock(KeycloakProvisioningService.class), mock(UsuarioCache.class), new SimpleMeterRegistry(),
+                mongoOperations, Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(servicio, "tamanioLoteMasivo", 100);
+        ReflectionTestUtils.setField(servicio, "concurrenciaMasiva", 1);
+    }
+
+    @Test
+    void unDuplicadoEnMongoSoloFallaSuLinea() {
+        BulkWriteError duplicado = new BulkWriteError(11000, "E11000 email duplicado", new BsonDocument(), 1);
+        when(bulk.execute()).thenReturn(Mono.error(new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(), List.of(duplicado), null, new ServerAddress(), Set.of())));
+
+        List<BulkRegisterResult> resultados = servicio.registerBulk(Flux.just(
+                registro("ana@test.com"), registro("beto@test.com"), registro("carla@test.com")))
+                .collectList().block(ESPERA);
+
+        assertEquals(List.of(BulkRegisterResult.CREADO, BulkRegisterResult.ERROR, BulkRegisterResult.CREADO),
+                resultados.stream().map(BulkRegisterResult::getEstado).toList());
+        verify(keycloakUserClient).eliminarUsuario("token", "kc-beto@test.com");
+        verify(keycloakUserClient, never()).eliminarUsuario("token", "kc-ana@test.com");
+        verify(keycloakUserClient, never()).eliminarUsuario("token", "kc-carla@test.com");
+    }
+
+    @Test
+    void unLoteSinErroresNoEliminaCuentas() {
+        when(bulk.execute()).thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+
+        List<BulkRegisterResult> resultados = servicio.registerBulk(Flux.just(
+                registro("ana@test.com"), registro("beto@test.com"))).collectList().block(ESPERA);
+
+        assertEquals(2, resultados.stream().filter(r -> BulkRegisterResult.CREADO.equals(r.getEstado())).count());
+        verify(keycloakUserClient, never()).eliminarUsuario(anyString(), anyString());
+    }
+
+    private static RegisterRequest registro(String email) {
+        return new RegisterRequest("Nombre", "Apellido", email, null, "secreta123", "ESTUDIANTE");
+    }
+}
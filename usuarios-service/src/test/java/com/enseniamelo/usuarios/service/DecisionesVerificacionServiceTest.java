@@ -0,0 +1,103 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.enseniamelo.usuarios.dto.DecisionSolicitudRequest;
+import com.enseniamelo.usuarios.dto.DecisionSolicitudResultado;
+import com.enseniamelo.usuarios.model.VerificarSolicitud;
+import com.mongodb.bulk.BulkWriteResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Decisiones masivas con Mongo simulado: una solicitud cuenta como aplicada solo si lleva la marca
+ * del lote, aunque otro lote la haya decidido igual y en el mismo instante.
+ */
+class DecisionesVerificacionServiceTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(5);
+
+    private ReactiveMongoOperations mongoOperations;
+    private OutboxVerificacionService outboxVerificacion;
+    private DecisionesVerificacionService servicio;
+
+    private final AtomicReference<String> loteDecision = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        mongoOperations = mock(ReactiveMongoOperations.class);
+        outboxVerificacion = mock(OutboxVerificacionService.class);
+        ReactiveBulkOperations bulk = mock(ReactiveBulkOperations.class);
+
+        when(mongoOperations.bulkOps(BulkMode.UNORDERED, VerificarSolicitud.class)).thenReturn(bulk);
+        when(bulk.updateOne(any(Query.class), any(Update.class))).thenAnswer(invocacion -> {
+            Document cambios = invocacion.<Update>getArgument(1).getUpdateObject().get("$set", Document.class);
+            loteDecision.set(cambios.getString("loteDecision"));
+            return bulk;
+        });
+        when(bulk.execute()).thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 2, 0, 1, List.of(), List.of())));
+        when(outboxVerificacion.enTransaccion(any())).thenAnswer(invocacion -> invocacion.getArgument(0));
+        when(outboxVerificacion.registrarTodas(anyCollection())).thenReturn(Flux.empty());
+
+        servicio = new DecisionesVerificacionService(mongoOperations, outboxVerificacion,
+                mock(PerfilVerificadoWriteBehind.class), mock(SolicitudesPendientesContador.class),
+                new SimpleMeterRegistry(), 100);
+    }
+
+    @Test
+    void soloSeConsideranAplicadasLasQueLlevanLaMarcaDelLote() {
+        LocalDateTime mismoInstante = LocalDateTime.now();
+        when(mongoOperations.find(any(Query.class), eq(VerificarSolicitud.class))).thenAnswer(invocacion -> Flux.just(
+                solicitud("s1", loteDecision.get(), mismoInstante),
+                solicitud("s2", "otro-lote", mismoInstante)));
+
+        List<DecisionSolicitudResultado> resultados = servicio.decidir(Flux.just(
+                new DecisionSolicitudRequest("s1", "RECHAZADO", null),
+                new DecisionSolicitudRequest("s2", "RECHAZADO", null))).collectList().block(ESPERA);
+
+        Map<String, String> porId = Map.of(
+                resultados.get(0).getId(), resultados.get(0).getEstado(),
+                resultados.get(1).getId(), resultados.get(1).getEstado());
+        assertEquals(DecisionSolicitudResultado.APLICADA, porId.get("s1"));
+        assertEquals(DecisionSolicitudResultado.YA_PROCESADA, porId.get("s2"));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<VerificarSolicitud>> outbox = ArgumentCaptor.forClass(Collection.class);
+        verify(outboxVerificacion).registrarTodas(outbox.capture());
+        assertEquals(List.of("s1"), outbox.getValue().stream().map(VerificarSolicitud::getId).toList());
+    }
+
+    private static VerificarSolicitud solicitud(String id, String lote, LocalDateTime decidido) {
+        VerificarSolicitud solicitud = new VerificarSolicitud();
+        solicitud.setId(id);
+        solicitud.setEstado("RECHAZADO");
+        solicitud.setLoteDecision(lote);
+        solicitud.setDecidido(decidido);
+        return solicitud;
+    }
+}
@@ -0,0 +1,225 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.enseniamelo.usuarios.dto.CursoDTO;
+import com.enseniamelo.usuarios.external.CursoSnapshotCache;
+import com.enseniamelo.usuarios.external.MsCursoIntegration;
+import com.enseniamelo.usuarios.mapper.PerfilTutorMapperImpl;
+import com.enseniamelo.usuarios.mapper.UsuarioMapperImpl;
+import com.enseniamelo.usuarios.mapper.VerificarSolicitudMapperImpl;
+import com.enseniamelo.usuarios.model.PerfilTutor;
+import com.enseniamelo.usuarios.model.Usuario;
+import com.enseniamelo.usuarios.model.VerificarSolicitud;
+import com.enseniamelo.usuarios.repository.PerfilTutorRepository;
+import com.enseniamelo.usuarios.repository.UsuarioRepository;
+import com.enseniamelo.usuarios.service.VerificarSolicitudService.VerificarSolicitudCompleta;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+
+/**
+ * Compara el join en memoria ({@link SolicitudEnriquecedor}) con el pipeline de agregación
+ * ({@link SolicitudesCompletasAgregacion}) sobre un conjunto generado.
+ *
+ * Necesita un Mongo real, así que solo corre si se indica la URI:
+ * {@code mvn test -Dtest=EnriquecimientoSolicitudesBenchmarkTest -Dbenchmark.mongo.uri=mongodb://localhost:27017}.
+ * Los cursos salen de un cursoservice simulado y quedan en cache tras el calentamiento, de modo
+ * que la medición refleja el costo de las lecturas en Mongo.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "benchmark.mongo.uri", matches = ".+")
+class EnriquecimientoSolicitudesBenchmarkTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EnriquecimientoSolicitudesBenchmarkTest.class);
+
+    private static final String BASE = "enseniamelo_benchmark";
+    private static final int SOLICITUDES = Integer.getInteger("benchmark.solicitudes", 5000);
+    private static final int CONSULTAS_POR_ID = 500;
+    private static final int CALENTAMIENTO = 2;
+    private static final int ITERACIONES = 5;
+    private static final Duration ESPERA = Duration.ofMinutes(2);
+
+    private MongoClient client;
+    private ReactiveMongoTemplate template;
+    private HttpServer cursoservice;
+
+    private SolicitudEnriquecedor enriquecedor;
+    private SolicitudesCompletasAgregacion agregacion;
+    private List<VerificarSolicitud> solicitudes;
+
+    @BeforeAll
+    void setUp() throws IOException {
+        client = MongoClients.create(System.getProperty("benchmark.mongo.uri"));
+        template = new ReactiveMongoTemplate(client, BASE);
+        template.getMongoDatabase().flatMap(base -> Flux.from(base.drop()).then()).block(ESPERA);
+
+        cursoservice = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        cursoservice.createContext("/api/v1/cursos/", EnriquecimientoSolicitudesBenchmarkTest::responderCurso);
+        cursoservice.start();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MsCursoIntegration integracion = new MsCursoIntegration(WebClient.builder(), new ObjectMapper(),
+                meterRegistry, "http://127.0.0.1:" + cursoservice.getAddress().getPort(), 50, 1000,
+                Duration.ofSeconds(5), Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(30),
+                0, Duration.ofMillis(10), Duration.ofMillis(50), 10, 0.1, 20, 10, 0.5, Duration.ofSeconds(30));
+        CursoSnapshotCache cache = new CursoSnapshotCache(integracion, meterRegistry, SOLICITUDES * 2,
+                Duration.ofHours(1), Duration.ofHours(1));
+
+        ReactiveMongoRepositoryFactory repositorios = new ReactiveMongoRepositoryFactory(template);
+        enriquecedor = new SolicitudEnriquecedor(
+                repositorios.getRepository(UsuarioRepository.class),
+                repositorios.getRepository(PerfilTutorRepository.class),
+                integracion, cache, new VerificarSolicitudMapperImpl(), new UsuarioMapperImpl(),
+                new PerfilTutorMapperImpl(), 100, 2, 8);
+        agregacion = new SolicitudesCompletasAgregacion(template, enriquecedor, new VerificarSolicitudMapperImpl(),
+                new UsuarioMapperImpl(), new PerfilTutorMapperImpl());
+
+        generarDatos();
+    }
+
+    @AfterAll
+    void tearDown() {
+        if (template != null) {
+            template.getMongoDatabase().flatMap(base -> Flux.from(base.drop()).then()).block(ESPERA);
+        }
+        if (cursoservice != null) {
+            cursoservice.stop(0);
+        }
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    @Test
+    void listadoCompleto() {
+        Supplier<List<VerificarSolicitudCompleta>> aplicacion =
+                () -> enriquecedor.enriquecer(template.findAll(VerificarSolicitud.class)).collectList().block(ESPERA);
+        Supplier<List<VerificarSolicitudCompleta>> agregada =
+                () -> agregacion.buscar(new Criteria()).collectList().block(ESPERA);
+
+        // Las dos estrategias deben devolver lo mismo antes de compararlas en tiempo
+        assertEquals(resumen(aplicacion.get()), resumen(agregada.get()));
+        assertEquals(SOLICITUDES - SOLICITUDES / 10, agregada.get().size());
+
+        medir("listado, join en aplicación", aplicacion);
+        medir("listado, pipeline de agregación", agregada);
+    }
+
+    @Test
+    void consultasPorId() {
+        List<String> ids = solicitudes.stream().limit(CONSULTAS_POR_ID).map(VerificarSolicitud::getId).toList();
+
+        medir("por id, join en aplicación", () -> Flux.fromIterable(ids)
+                .concatMap(id -> template.findById(id, VerificarSolicitud.class).flatMap(enriquecedor::enriquecer))
+                .collectList().block(ESPERA));
+        medir("por id, pipeline de agregación", () -> Flux.fromIterable(ids)
+                .concatMap(id -> agregacion.buscar(Criteria.where("_id").is(id)).next())
+                .collectList().block(ESPERA));
+    }
+
+    private void generarDatos() {
+        List<Usuario> usuarios = new ArrayList<>(SOLICITUDES);
+        List<PerfilTutor> perfiles = new ArrayList<>(SOLICITUDES);
+        solicitudes = new ArrayList<>(SOLICITUDES);
+        LocalDateTime ahora = LocalDateTime.now();
+
+        for (int i = 0; i < SOLICITUDES; i++) {
+            Usuario usuario = new Usuario();
+            usuario.setId(new ObjectId().toHexString());
+            usuario.setNombre("Tutor " + i);
+            usuario.setEmail("tutor" + i + "@benchmark.test");
+            usuario.setRol("tutor");
+            usuario.setActivo(true);
+            usuarios.add(usuario);
+
+            PerfilTutor perfil = new PerfilTutor();
+            perfil.setId(new ObjectId().toHexString());
+            perfil.setIdUsuario(usuario.getId());
+            perfil.setVerificado("pendiente");
+            perfil.setClasificacion(4.5f);
+            perfiles.add(perfil);
+
+            VerificarSolicitud solicitud = new VerificarSolicitud();
+            solicitud.setId(new ObjectId().toHexString());
+            solicitud.setIdUsuario(usuario.getId());
+            // Una de cada diez apunta a un perfil inexistente y debe quedar fuera con ambas estrategias
+            solicitud.setIdPerfilTutor(i % 10 == 0 ? new ObjectId().toHexString() : perfil.getId());
+            solicitud.setIdCurso("curso-" + i);
+            solicitud.setEstado("PENDIENTE");
+            solicitud.setArchivos(Arrays.asList("doc-" + i + ".pdf"));
+            solicitud.setCreado(ahora.minusSeconds(i));
+            solicitudes.add(solicitud);
+        }
+
+        template.insertAll(usuarios).then().block(ESPERA);
+        template.insertAll(perfiles).then().block(ESPERA);
+        template.insertAll(solicitudes).then().block(ESPERA);
+        LOGGER.info("Datos generados: {} solicitudes, {} usuarios, {} perfiles",
+                solicitudes.size(), usuarios.size(), perfiles.size());
+    }
+
+    private static void medir(String nombre, Supplier<?> operacion) {
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            operacion.get();
+        }
+        long[] tiempos = new long[ITERACIONES];
+        for (int i = 0; i < ITERACIONES; i++) {
+            long inicio = System.nanoTime();
+            operacion.get();
+            tiempos[i] = Duration.ofNanos(System.nanoTime() - inicio).toMillis();
+        }
+        Arrays.sort(tiempos);
+        LOGGER.info("{}: mediana {} ms, mínimo {} ms, máximo {} ms",
+                nombre, tiempos[ITERACIONES / 2], tiempos[0], tiempos[ITERACIONES - 1]);
+    }
+
+    private static Map<String, String> resumen(List<VerificarSolicitudCompleta> completas) {
+        return completas.stream().collect(Collectors.toMap(
+                completa -> completa.getSolicitud().getId(),
+                completa -> completa.getUsuario().getEmail() + "|" + completa.getTutor().getId()
+                        + "|" + completa.getCurso().getNombre()));
+    }
+
+    private static void responderCurso(HttpExchange exchange) throws IOException {
+        String id = exchange.getRequestURI().getPath().substring("/api/v1/cursos/".length());
+        CursoDTO curso = CursoDTO.builder().id(id).nombre("Curso " + id).build();
+        byte[] cuerpo = new ObjectMapper().writeValueAsString(curso).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, cuerpo.length);
+        try (OutputStream salida = exchange.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+}
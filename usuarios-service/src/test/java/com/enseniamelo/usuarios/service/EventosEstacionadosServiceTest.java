@@ -0,0 +1,224 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.messaging.Message;
+
+import com.enseniamelo.usuarios.dto.ReprocesoRequest;
+import com.enseniamelo.usuarios.dto.ReprocesoResultado;
+import com.enseniamelo.usuarios.mapper.EventoEstacionadoMapper;
+import com.enseniamelo.usuarios.model.EventoEstacionado;
+import com.enseniamelo.usuarios.util.events.Event;
+import com.enseniamelo.usuarios.util.events.EventosDlq;
+import com.enseniamelo.usuarios.util.exception.BadRequestException;
+import com.mongodb.client.result.UpdateResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reproceso de eventos estacionados con Mongo simulado en memoria: los estados se guardan en un
+ * mapa y el ritmo de publicación se mide sobre las llamadas a StreamBridge.
+ */
+class EventosEstacionadosServiceTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(10);
+    private static final double POR_SEGUNDO = 50;
+    private static final Duration BLOQUEO = Duration.ofMinutes(5);
+
+    private ReactiveMongoOperations mongoOperations;
+    private StreamBridge streamBridge;
+    private EventosEstacionadosService servicio;
+
+    private final Map<String, EventoEstacionado> estacionados = new ConcurrentHashMap<>();
+    private final List<Long> publicaciones = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        mongoOperations = mock(ReactiveMongoOperations.class);
+        streamBridge = mock(StreamBridge.class);
+
+        when(mongoOperations.find(any(Query.class), eq(EventoEstacionado.class))).thenAnswer(invocacion -> {
+            Document filtro = invocacion.<Query>getArgument(0).getQueryObject();
+            return Flux.fromIterable(estacionados.values())
+                    .filter(e -> coincide(filtro, e))
+                    .sort((a, b) -> a.getId().compareTo(b.getId()));
+        });
+        // findAndModify y updateFirst aplican la actualización si el documento cumple el filtro
+        when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(EventoEstacionado.class))).thenAnswer(invocacion -> Mono.justOrEmpty(
+                        cambiarEstado(invocacion.getArgument(0), invocacion.getArgument(1))));
+        when(mongoOperations.updateFirst(any(Query.class), any(Update.class), eq(EventoEstacionado.class)))
+                .thenAnswer(invocacion -> {
+                    cambiarEstado(invocacion.getArgument(0), invocacion.getArgument(1));
+                    return Mono.just(UpdateResult.acknowledged(1, 1L, null));
+                });
+        when(streamBridge.send(anyString(), any())).thenAnswer(invocacion -> {
+            publicaciones.add(System.nanoTime());
+            return true;
+        });
+
+        servicio = new EventosEstacionadosService(mongoOperations, streamBridge, mock(EventoEstacionadoMapper.class),
+                new SimpleMeterRegistry(), 500, POR_SEGUNDO, BLOQUEO);
+    }
+
+    @Test
+    void reprocesaAlRitmoConfiguradoYMarcaLosEventos() {
+        IntStream.range(0, 20).forEach(i -> estacionar("USUARIO:e" + (10 + i), EventosDlq.USUARIOS));
+
+        ReprocesoResultado resultado = servicio.reprocesar(new ReprocesoRequest(null, "USUARIO", 20)).block(ESPERA);
+
+        assertEquals(20, resultado.getSeleccionados());
+        assertEquals(20, resultado.getPublicados());
+        assertEquals(0, resultado.getFallidos());
+        assertTrue(estacionados.values().stream().allMatch(e -> EventoEstacionado.REPROCESADO.equals(e.getEstado())));
+        verify(streamBridge, times(20)).send(eq("usuarioReproceso-out-0"), any(Message.class));
+
+        // 20 eventos a 50/s: al menos 19 intervalos de 20 ms entre la primera y la última publicación
+        long milisegundos = TimeUnit.NANOSECONDS.toMillis(publicaciones.get(19) - publicaciones.get(0));
+        assertTrue(milisegundos >= 19 * 1000 / POR_SEGUNDO - 5, "reproceso demasiado rápido: " + milisegundos + " ms");
+    }
+
+    @Test
+    void dosReprocesosSimultaneosCompartenElRitmo() {
+        IntStream.range(0, 10).forEach(i -> estacionar("USUARIO:e" + (10 + i), EventosDlq.USUARIOS));
+        IntStream.range(0, 10).forEach(i -> estacionar("TUTOR:e" + (10 + i), EventosDlq.TUTORES));
+
+        Mono.zip(
+                servicio.reprocesar(new ReprocesoRequest(null, "USUARIO", 10)),
+                servicio.reprocesar(new ReprocesoRequest(null, "TUTOR", 10))).block(ESPERA);
+
+        assertEquals(20, publicaciones.size());
+        long milisegundos = TimeUnit.NANOSECONDS.toMillis(publicaciones.get(19) - publicaciones.get(0));
+        assertTrue(milisegundos >= 19 * 1000 / POR_SEGUNDO - 5, "ritmo no compartido: " + milisegundos + " ms");
+    }
+
+    @Test
+    void losQueNoSePublicanVuelvenAEstacionado() {
+        estacionar("SOLICITUD:e1", EventosDlq.SOLICITUDES);
+        estacionar("SOLICITUD:e2", EventosDlq.SOLICITUDES);
+        when(streamBridge.send(anyString(), any())).thenReturn(false);
+
+        ReprocesoResultado resultado = servicio.reprocesar(
+                new ReprocesoRequest(List.of("SOLICITUD:e1", "SOLICITUD:e2"), null, null)).block(ESPERA);
+
+        assertEquals(2, resultado.getFallidos());
+        assertEquals(0, resultado.getPublicados());
+        assertTrue(estacionados.values().stream().allMatch(e -> EventoEstacionado.ESTACIONADO.equals(e.getEstado())));
+    }
+
+    @Test
+    void retomaLosQueQuedaronReprocesandoConElBloqueoVencido() {
+        estacionar("USUARIO:e1", EventosDlq.USUARIOS);
+        estacionar("USUARIO:e2", EventosDlq.USUARIOS);
+        // e1 lo tomó una instancia que murió antes de publicarlo; e2 sigue en manos de otra
+        reprocesando("USUARIO:e1", LocalDateTime.now().minusMinutes(1));
+        reprocesando("USUARIO:e2", LocalDateTime.now().plusMinutes(1));
+
+        ReprocesoResultado resultado = servicio.reprocesar(new ReprocesoRequest(null, "USUARIO", 10)).block(ESPERA);
+
+        assertEquals(1, resultado.getSeleccionados());
+        assertEquals(1, resultado.getPublicados());
+        assertEquals(EventoEstacionado.REPROCESADO, estacionados.get("USUARIO:e1").getEstado());
+        assertNull(estacionados.get("USUARIO:e1").getBloqueadoHasta());
+        assertEquals(EventoEstacionado.REPROCESANDO, estacionados.get("USUARIO:e2").getEstado());
+        verify(streamBridge, times(1)).send(eq("usuarioReproceso-out-0"), any(Message.class));
+    }
+
+    @Test
+    void sinIdsNiConsumidorNoReprocesaNada() {
+        assertThrows(BadRequestException.class, () -> servicio.reprocesar(new ReprocesoRequest()).block(ESPERA));
+        verify(streamBridge, never()).send(anyString(), any());
+    }
+
+    private void estacionar(String id, String dlq) {
+        EventoEstacionado estacionado = new EventoEstacionado();
+        estacionado.setId(id);
+        estacionado.setConsumidor(id.substring(0, id.indexOf(':')));
+        estacionado.setDlq(dlq);
+        estacionado.setEventId(id.substring(id.indexOf(':') + 1));
+        estacionado.setTipo(Event.Type.UPDATE.name());
+        estacionado.setClave("k" + id);
+        estacionado.setDatos(Map.of("nombre", "Ana"));
+        estacionado.setEstado(EventoEstacionado.ESTACIONADO);
+        estacionado.setEstacionado(LocalDateTime.now());
+        estacionados.put(id, estacionado);
+    }
+
+    private void reprocesando(String id, LocalDateTime bloqueadoHasta) {
+        estacionados.get(id).setEstado(EventoEstacionado.REPROCESANDO);
+        estacionados.get(id).setBloqueadoHasta(bloqueadoHasta);
+    }
+
+    private EventoEstacionado cambiarEstado(Query consulta, Update update) {
+        EventoEstacionado estacionado = estacionados.get(consulta.getQueryObject().getString("_id"));
+        if (estacionado == null || !coincide(consulta.getQueryObject(), estacionado)) {
+            return null;
+        }
+        Document cambios = update.getUpdateObject();
+        estacionado.setEstado(cambios.get("$set", Document.class).getString("estado"));
+        if (cambios.get("$set", Document.class).containsKey("bloqueadoHasta")) {
+            estacionado.setBloqueadoHasta((LocalDateTime) cambios.get("$set", Document.class).get("bloqueadoHasta"));
+        }
+        if (cambios.containsKey("$unset") && cambios.get("$unset", Document.class).containsKey("bloqueadoHasta")) {
+            estacionado.setBloqueadoHasta(null);
+        }
+        return estacionado;
+    }
+
+    /** Evalúa los filtros que usa el servicio: igualdad, $in, $lt y $or. */
+    @SuppressWarnings("unchecked")
+    private static boolean coincide(Document filtro, EventoEstacionado estacionado) {
+        return filtro.entrySet().stream().allMatch(condicion -> switch (condicion.getKey()) {
+            case "$or" -> ((List<Document>) condicion.getValue()).stream().anyMatch(rama -> coincide(rama, estacionado));
+            case "_id" -> cumple(condicion.getValue(), estacionado.getId());
+            case "consumidor" -> cumple(condicion.getValue(), estacionado.getConsumidor());
+            case "estado" -> cumple(condicion.getValue(), estacionado.getEstado());
+            case "bloqueadoHasta" -> cumple(condicion.getValue(), estacionado.getBloqueadoHasta());
+            default -> throw new IllegalArgumentException("Filtro no simulado: " + condicion.getKey());
+        });
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static boolean cumple(Object condicion, Object valor) {
+        if (condicion instanceof Document operador && operador.containsKey("$in")) {
+            return ((Collection<?>) operador.get("$in")).contains(valor);
+        }
+        if (condicion instanceof Document operador && operador.containsKey("$lt")) {
+            return valor != null && ((Comparable) valor).compareTo(operador.get("$lt")) < 0;
+        }
+        return Objects.equals(condicion, valor);
+    }
+}
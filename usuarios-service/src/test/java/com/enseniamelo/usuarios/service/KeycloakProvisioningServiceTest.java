@@ -0,0 +1,108 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.security.crypto.encrypt.Encryptors;
+
+import com.enseniamelo.usuarios.external.KeycloakAdminSession;
+import com.enseniamelo.usuarios.external.KeycloakUserClient;
+import com.enseniamelo.usuarios.model.PerfilTutor;
+import com.enseniamelo.usuarios.model.ProvisionTarea;
+import com.enseniamelo.usuarios.model.Usuario;
+import com.enseniamelo.usuarios.util.exception.ConflictException;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Compensación del aprovisionamiento asíncrono con Mongo y Keycloak simulados: un fallo permanente
+ * elimina al usuario para liberar su email.
+ */
+class KeycloakProvisioningServiceTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(5);
+    private static final String CLAVE = "clave-de-prueba";
+    private static final String SAL = "5c0744940b5c369b";
+
+    private ReactiveMongoOperations mongoOperations;
+    private KeycloakUserClient keycloakUserClient;
+    private UsuarioCache usuarioCache;
+    private KeycloakProvisioningService servicio;
+
+    @BeforeEach
+    void setUp() {
+        mongoOperations = mock(ReactiveMongoOperations.class);
+        keycloakUserClient = mock(KeycloakUserClient.class);
+        usuarioCache = mock(UsuarioCache.class);
+        KeycloakAdminSession adminSession = mock(KeycloakAdminSession.class);
+        when(adminSession.getToken()).thenReturn(Mono.just("token"));
+
+        when(mongoOperations.updateFirst(any(Query.class), any(Update.class), eq(ProvisionTarea.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoOperations.remove(any(Query.class), eq(Usuario.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+        when(mongoOperations.remove(any(Query.class), eq(PerfilTutor.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+        when(mongoOperations.count(any(Query.class), eq(ProvisionTarea.class))).thenReturn(Mono.just(0L));
+        when(mongoOperations.findOne(any(Query.class), eq(ProvisionTarea.class))).thenReturn(Mono.empty());
+
+        servicio = new KeycloakProvisioningService(mongoOperations, adminSession, keycloakUserClient, usuarioCache,
+                new SimpleMeterRegistry(), true, 1, 1, 6, Duration.ofSeconds(2), Duration.ofMinutes(5),
+                Duration.ofMinutes(2), CLAVE, SAL);
+    }
+
+    @Test
+    void unFalloPermanenteEliminaAlUsuarioParaLiberarElEmail() {
+        when(mongoOperations.findAndModify(any(Query.class), any(), any(FindAndModifyOptions.class),
+                eq(ProvisionTarea.class))).thenReturn(Mono.just(tarea()), Mono.empty());
+        when(keycloakUserClient.crearUsuario(eq("token"), anyString(), anyString(), anyString(), anyString()))
+                .thenReturn(Mono.error(new ConflictException("El email ya existe en Keycloak")));
+
+        servicio.procesarLote().block(ESPERA);
+
+        ArgumentCaptor<Query> usuario = ArgumentCaptor.forClass(Query.class);
+        verify(mongoOperations).remove(usuario.capture(), eq(Usuario.class));
+        Document filtro = usuario.getValue().getQueryObject();
+        assertEquals("u1", filtro.get("_id"));
+        // Solo si sigue sin activar
+        assertEquals(List.of(KeycloakProvisioningService.PROVISIONING, KeycloakProvisioningService.FALLIDO),
+                filtro.get("estadoProvision", Document.class).get("$in"));
+        verify(mongoOperations).remove(any(Query.class), eq(PerfilTutor.class));
+        verify(usuarioCache).invalidar("u1", "ana@test.com");
+    }
+
+    private static ProvisionTarea tarea() {
+        ProvisionTarea tarea = new ProvisionTarea();
+        tarea.setId("t1");
+        tarea.setIdUsuario("u1");
+        tarea.setEmail("ana@test.com");
+        tarea.setNombre("Ana");
+        tarea.setApellido("García");
+        tarea.setRol("ESTUDIANTE");
+        tarea.setContraseniaCifrada(Encryptors.delux(CLAVE, SAL).encrypt("secreta123"));
+        tarea.setEstado(ProvisionTarea.EN_PROCESO);
+        tarea.setIntentos(1);
+        tarea.setCreado(LocalDateTime.now());
+        return tarea;
+    }
+}
@@ -0,0 +1,170 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.enseniamelo.usuarios.model.DatabaseSequence;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Generador de secuencias contra un documento de {@code database_sequences} simulado: las
+ * escrituras se serializan en un único hilo con una latencia fija, como el bloqueo por documento
+ * de Mongo. Incluye una medición de contención con muchos llamadores concurrentes.
+ */
+class SequenceGeneratorServiceTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SequenceGeneratorServiceTest.class);
+
+    private static final Duration LATENCIA_ESCRITURA = Duration.ofMillis(1);
+    private static final int LLAMADORES = 64;
+    private static final int VALORES_POR_LLAMADOR = 50;
+    private static final Duration ESPERA = Duration.ofSeconds(30);
+
+    private final AtomicInteger documento = new AtomicInteger();
+    private final AtomicInteger escrituras = new AtomicInteger();
+    private Scheduler mongo;
+    private ReactiveMongoOperations mongoOperations;
+
+    @BeforeEach
+    void setUp() {
+        mongo = Schedulers.newSingle("mongo-simulado");
+        mongoOperations = mock(ReactiveMongoOperations.class);
+        when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(DatabaseSequence.class))).thenAnswer(invocacion -> {
+                    Update update = invocacion.getArgument(1);
+                    int incremento = update.getUpdateObject().get("$inc", Document.class).get("seq", Number.class)
+                            .intValue();
+                    return Mono.fromCallable(() -> {
+                        LockSupport.parkNanos(LATENCIA_ESCRITURA.toNanos());
+                        escrituras.incrementAndGet();
+                        DatabaseSequence secuencia = new DatabaseSequence();
+                        secuencia.setId("usuarios");
+                        secuencia.setSeq(documento.addAndGet(incremento));
+                        return secuencia;
+                    }).subscribeOn(mongo);
+                });
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.dispose();
+    }
+
+    @Test
+    void valoresUnicosYConsecutivosConUnaSolaInstancia() {
+        SequenceGeneratorService generador = generador(100);
+
+        List<Integer> valores = Flux.range(0, 250)
+                .concatMap(i -> generador.generateSequence("usuarios"))
+                .collectList()
+                .block(ESPERA);
+
+        for (int i = 0; i < valores.size(); i++) {
+            assertEquals(i + 1, valores.get(i));
+        }
+        // Tres bloques para 250 valores, más como mucho uno adelantado
+        assertTrue(escrituras.get() <= 4, "escrituras: " + escrituras.get());
+    }
+
+    @Test
+    void tamanioDeBloquePorSecuencia() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("usuarios.secuencias.bloques.usuarios", "10");
+        SequenceGeneratorService generador = new SequenceGeneratorService(mongoOperations, environment, 100, 0.2);
+
+        generador.generateSequence("usuarios").block(ESPERA);
+
+        assertEquals(10, documento.get());
+    }
+
+    @Test
+    void errorAlReservarSeReintentaEnLaSiguienteLlamada() {
+        ReactiveMongoOperations fallando = mock(ReactiveMongoOperations.class);
+        AtomicInteger intentos = new AtomicInteger();
+        when(fallando.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(DatabaseSequence.class))).thenAnswer(invocacion -> {
+                    if (intentos.incrementAndGet() == 1) {
+                        return Mono.error(new IllegalStateException("Mongo no disponible"));
+                    }
+                    DatabaseSequence secuencia = new DatabaseSequence();
+                    secuencia.setSeq(100);
+                    return Mono.just(secuencia);
+                });
+        SequenceGeneratorService generador = new SequenceGeneratorService(fallando, new MockEnvironment(), 100, 0.2);
+
+        try {
+            generador.generateSequence("usuarios").block(ESPERA);
+        } catch (IllegalStateException esperado) {
+            // La primera reserva falla
+        }
+
+        assertEquals(1, generador.generateSequence("usuarios").block(ESPERA));
+    }
+
+    @Test
+    void contencionConMuchosLlamadoresConcurrentes() {
+        // Bloque de 1: un $inc por id, como antes de la reserva por bloques
+        Resultado porId = medir(generador(1));
+        documento.set(0);
+        escrituras.set(0);
+        Resultado porBloques = medir(generador(100));
+
+        LOGGER.info("Un $inc por id: {} ms, {} escrituras", porId.milisegundos(), porId.escrituras());
+        LOGGER.info("Bloques de 100: {} ms, {} escrituras", porBloques.milisegundos(), porBloques.escrituras());
+
+        assertTrue(porBloques.escrituras() * 50 < porId.escrituras(),
+                "escrituras por bloques: " + porBloques.escrituras());
+        assertTrue(porBloques.milisegundos() < porId.milisegundos());
+    }
+
+    private Resultado medir(SequenceGeneratorService generador) {
+        Set<Integer> valores = ConcurrentHashMap.newKeySet();
+        long inicio = System.nanoTime();
+
+        Flux.range(0, LLAMADORES)
+                .flatMap(llamador -> Flux.range(0, VALORES_POR_LLAMADOR)
+                        .concatMap(i -> generador.generateSequence("usuarios"))
+                        .doOnNext(valores::add)
+                        .subscribeOn(Schedulers.parallel()), LLAMADORES)
+                .blockLast(ESPERA);
+
+        long milisegundos = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        assertEquals(LLAMADORES * VALORES_POR_LLAMADOR, valores.size(), "valores repetidos");
+        return new Resultado(milisegundos, escrituras.get());
+    }
+
+    private SequenceGeneratorService generador(int tamanioBloque) {
+        return new SequenceGeneratorService(mongoOperations, new MockEnvironment(), tamanioBloque, 0.2);
+    }
+
+    private record Resultado(long milisegundos, int escrituras) {
+    }
+}
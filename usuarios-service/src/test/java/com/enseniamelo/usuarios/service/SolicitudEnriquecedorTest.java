@@ -0,0 +1,96 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.enseniamelo.usuarios.dto.CursoDTO;
+import com.enseniamelo.usuarios.external.CursoSnapshotCache;
+import com.enseniamelo.usuarios.external.MsCursoIntegration;
+import com.enseniamelo.usuarios.mapper.PerfilTutorMapperImpl;
+import com.enseniamelo.usuarios.mapper.UsuarioMapperImpl;
+import com.enseniamelo.usuarios.mapper.VerificarSolicitudMapperImpl;
+import com.enseniamelo.usuarios.model.PerfilTutor;
+import com.enseniamelo.usuarios.model.Usuario;
+import com.enseniamelo.usuarios.model.VerificarSolicitud;
+import com.enseniamelo.usuarios.repository.PerfilTutorRepository;
+import com.enseniamelo.usuarios.repository.UsuarioRepository;
+import com.enseniamelo.usuarios.service.VerificarSolicitudService.VerificarSolicitudCompleta;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Enriquecimiento con el curso tal como lo deserializa Jackson desde la respuesta de cursoservice.
+ */
+class SolicitudEnriquecedorTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(5);
+
+    private CursoSnapshotCache cursoSnapshotCache;
+    private MsCursoIntegration cursoIntegration;
+    private SolicitudEnriquecedor enriquecedor;
+
+    @BeforeEach
+    void setUp() {
+        UsuarioRepository usuarioRepository = mock(UsuarioRepository.class);
+        PerfilTutorRepository perfilTutorRepository = mock(PerfilTutorRepository.class);
+        cursoSnapshotCache = mock(CursoSnapshotCache.class);
+        cursoIntegration = mock(MsCursoIntegration.class);
+
+        Usuario usuario = new Usuario();
+        usuario.setId("u1");
+        usuario.setEmail("ana@test.com");
+        PerfilTutor perfil = new PerfilTutor();
+        perfil.setId("p1");
+        perfil.setIdUsuario("u1");
+        when(usuarioRepository.findAllById(any(Iterable.class))).thenReturn(Flux.just(usuario));
+        when(perfilTutorRepository.findAllById(any(Iterable.class))).thenReturn(Flux.just(perfil));
+
+        enriquecedor = new SolicitudEnriquecedor(usuarioRepository, perfilTutorRepository, cursoIntegration,
+                cursoSnapshotCache, new VerificarSolicitudMapperImpl(), new UsuarioMapperImpl(),
+                new PerfilTutorMapperImpl(), 100, 2, 8);
+    }
+
+    @Test
+    void usaElCursoDeCursoserviceAunqueLaRespuestaNoTraigaElId() throws Exception {
+        CursoDTO curso = new ObjectMapper().readValue("{\"id\":\"c1\",\"nombre\":\"Java desde cero\"}",
+                CursoDTO.class);
+        // id es de solo lectura: Jackson no lo asigna al leer
+        assertNull(curso.getId());
+        when(cursoSnapshotCache.getCurso("c1")).thenReturn(Mono.just(curso));
+
+        VerificarSolicitudCompleta completa = enriquecedor.enriquecer(solicitud("c1")).block(ESPERA);
+
+        assertEquals("Java desde cero", completa.getCurso().getNombre());
+    }
+
+    @Test
+    void sinCursoUsaLosDatosBasicos() {
+        when(cursoSnapshotCache.getCurso("c2")).thenReturn(Mono.error(new IllegalStateException("timeout")));
+        CursoDTO basico = CursoDTO.builder().id("c2").nombre("Curso (información no disponible)").build();
+        when(cursoIntegration.cursoNoDisponible("c2", "PENDIENTE")).thenReturn(basico);
+
+        VerificarSolicitudCompleta completa = enriquecedor.enriquecer(solicitud("c2")).block(ESPERA);
+
+        assertEquals(basico, completa.getCurso());
+    }
+
+    private static VerificarSolicitud solicitud(String idCurso) {
+        VerificarSolicitud solicitud = new VerificarSolicitud();
+        solicitud.setId("s1");
+        solicitud.setIdUsuario("u1");
+        solicitud.setIdPerfilTutor("p1");
+        solicitud.setIdCurso(idCurso);
+        solicitud.setEstado("PENDIENTE");
+        return solicitud;
+    }
+}
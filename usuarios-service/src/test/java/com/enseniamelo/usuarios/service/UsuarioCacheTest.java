@@ -0,0 +1,100 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+
+import com.enseniamelo.usuarios.dto.UsuarioDTO;
+import com.enseniamelo.usuarios.model.Usuario;
+import com.enseniamelo.usuarios.repository.UsuarioRepository;
+import com.enseniamelo.usuarios.util.events.Event;
+import com.enseniamelo.usuarios.util.events.UsuarioInvalidadoEvent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Las invalidaciones se aplican en la instancia local y se difunden al destino {@code usuarios}
+ * para las demás; las que llegan difundidas no se vuelven a publicar.
+ */
+class UsuarioCacheTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(5);
+
+    private UsuarioRepository usuarioRepository;
+    private ApplicationEventPublisher eventPublisher;
+    private StreamBridge streamBridge;
+    private UsuarioCache cache;
+
+    @BeforeEach
+    void setUp() {
+        usuarioRepository = mock(UsuarioRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        streamBridge = mock(StreamBridge.class);
+        when(streamBridge.send(anyString(), any())).thenReturn(true);
+        cache = new UsuarioCache(usuarioRepository, eventPublisher, streamBridge, new SimpleMeterRegistry(),
+                100, Duration.ofMinutes(5), Duration.ofSeconds(30));
+    }
+
+    @Test
+    void invalidarDifundeUnEventoPorEmailSinEventId() {
+        when(usuarioRepository.findById("u1")).thenReturn(Mono.just(usuario("u1", "ana@test.com")));
+        cache.buscarPorId("u1").block(ESPERA);
+
+        cache.invalidar("u1", "nueva@test.com");
+
+        ArgumentCaptor<Message<?>> mensajes = ArgumentCaptor.forClass(Message.class);
+        verify(streamBridge, times(2)).send(eq(UsuarioCache.INVALIDACION), mensajes.capture());
+        List<String> emails = mensajes.getAllValues().stream().map(mensaje -> {
+            Event<?, ?> event = (Event<?, ?>) mensaje.getPayload();
+            assertEquals(Event.Type.INVALIDATE, event.getEventType());
+            assertEquals("u1", event.getKey());
+            assertNull(event.getEventId());
+            return ((UsuarioDTO) event.getData()).getEmail();
+        }).toList();
+        // El nuevo y el que estaba cacheado por id
+        assertEquals(List.of("nueva@test.com", "ana@test.com"), emails);
+        verify(eventPublisher).publishEvent(new UsuarioInvalidadoEvent("u1", "nueva@test.com"));
+
+        cache.buscarPorId("u1").block(ESPERA);
+        verify(usuarioRepository, times(2)).findById("u1");
+    }
+
+    @Test
+    void invalidarLocalNoVuelveAPublicarEnElBroker() {
+        when(usuarioRepository.findByEmail("ana@test.com")).thenReturn(Mono.just(usuario("u1", "ana@test.com")));
+        cache.buscarPorEmail("ana@test.com").block(ESPERA);
+
+        cache.invalidarLocal("u1", "ana@test.com");
+
+        verify(streamBridge, never()).send(anyString(), any());
+        // El ETag de /me se descarta en esta instancia igual que con una invalidación propia
+        verify(eventPublisher).publishEvent(new UsuarioInvalidadoEvent("u1", "ana@test.com"));
+        cache.buscarPorEmail("ana@test.com").block(ESPERA);
+        verify(usuarioRepository, times(2)).findByEmail("ana@test.com");
+    }
+
+    private static Usuario usuario(String id, String email) {
+        Usuario usuario = new Usuario();
+        usuario.setId(id);
+        usuario.setEmail(email);
+        return usuario;
+    }
+}
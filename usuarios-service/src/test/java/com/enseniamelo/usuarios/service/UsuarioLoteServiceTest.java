@@ -0,0 +1,189 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.messaging.Message;
+
+import com.enseniamelo.usuarios.dto.UsuarioDTO;
+import com.enseniamelo.usuarios.mapper.UsuarioMapperImpl;
+import com.enseniamelo.usuarios.model.Usuario;
+import com.enseniamelo.usuarios.util.events.Event;
+import com.enseniamelo.usuarios.util.events.EventosDlq;
+import com.enseniamelo.usuarios.util.events.LoteEventos;
+import com.enseniamelo.usuarios.util.events.RegistroEventosProcesados;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Aplicación por lotes de eventos de usuario con Mongo simulado: una consulta de existencia, un
+ * único bulkWrite y la DLQ para lo que falla de a uno.
+ */
+class UsuarioLoteServiceTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(5);
+
+    private ReactiveMongoOperations mongoOperations;
+    private ReactiveBulkOperations bulk;
+    private StreamBridge streamBridge;
+    private UsuarioCache usuarioCache;
+    private RegistroEventosProcesados registroEventos;
+    private LoteEventos loteEventos;
+    private UsuarioLoteService servicio;
+
+    private final List<Object> insertados = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        mongoOperations = mock(ReactiveMongoOperations.class);
+        bulk = mock(ReactiveBulkOperations.class);
+        streamBridge = mock(StreamBridge.class);
+        usuarioCache = mock(UsuarioCache.class);
+
+        when(mongoOperations.bulkOps(BulkMode.UNORDERED, Usuario.class)).thenReturn(bulk);
+        when(bulk.insert(any(Object.class))).thenAnswer(invocacion -> {
+            insertados.add(invocacion.getArgument(0));
+            return bulk;
+        });
+        when(bulk.updateOne(any(Query.class), any(Update.class))).thenReturn(bulk);
+        when(bulk.remove(any(Query.class))).thenReturn(bulk);
+        when(bulk.execute()).thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+
+        UsuarioMapperImpl mapper = new UsuarioMapperImpl();
+        UsuarioService usuarioService = new UsuarioService(null, mapper, mongoOperations, usuarioCache);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        registroEventos = mock(RegistroEventosProcesados.class);
+        loteEventos = new LoteEventos(new EventosDlq(streamBridge, meterRegistry), meterRegistry, registroEventos);
+        servicio = new UsuarioLoteService(usuarioService, mapper, usuarioCache, mongoOperations, loteEventos);
+    }
+
+    @Test
+    void colapsaPorClaveYAplicaUnSoloBulkWrite() {
+        existentes(usuario("u1", "ana@test.com"), usuario("u2", "beto@test.com"));
+
+        servicio.aplicar(List.of(
+                evento(Event.Type.CREATE, "n1", datos("Nuevo", "nuevo@test.com")),
+                evento(Event.Type.UPDATE, "n1", datos("Nuevo Editado", "nuevo@test.com")),
+                evento(Event.Type.UPDATE, "u1", datos("Ana", "ana@test.com")),
+                evento(Event.Type.UPDATE, "u1", datos("Ana María", "ana@test.com")),
+                evento(Event.Type.DELETE, "u2", null))).block(ESPERA);
+
+        verify(mongoOperations, times(1)).find(any(Query.class), eq(Usuario.class));
+        verify(bulk, times(1)).execute();
+        verify(bulk, times(1)).updateOne(any(Query.class), any(Update.class));
+        verify(bulk, times(1)).remove(any(Query.class));
+        // El UPDATE sobre el CREATE del mismo lote queda como alta con los datos nuevos
+        assertEquals(1, insertados.size());
+        assertEquals("Nuevo Editado", ((Usuario) insertados.get(0)).getNombre());
+        verify(streamBridge, times(0)).send(anyString(), any());
+    }
+
+    @Test
+    void fallosIndividualesVanALaDlq() {
+        existentes(usuario("u1", "ana@test.com"));
+
+        servicio.aplicar(List.of(
+                evento(Event.Type.CREATE, null, datos("Repetido", "ana@test.com")),
+                evento(Event.Type.UPDATE, "inexistente", datos("X", "x@test.com")),
+                evento(Event.Type.UPDATE, "u1", datos("Ana", "ana@test.com")))).block(ESPERA);
+
+        ArgumentCaptor<Message<?>> mensajes = capturarDlq(2);
+        assertEquals("El email ya está registrado", mensajes.getAllValues().get(0).getHeaders().get(EventosDlq.HEADER_ERROR));
+        assertEquals("Usuario no encontrado con id: inexistente",
+                mensajes.getAllValues().get(1).getHeaders().get(EventosDlq.HEADER_ERROR));
+        verify(usuarioCache).invalidar("u1", "ana@test.com", "ana@test.com");
+    }
+
+    @Test
+    void errorDeEscrituraDeUnaOperacionSoloAfectaAEseEvento() {
+        existentes(usuario("u1", "ana@test.com"), usuario("u2", "beto@test.com"));
+        BulkWriteError duplicado = new BulkWriteError(11000, "E11000 email duplicado", new BsonDocument(), 0);
+        when(bulk.execute()).thenReturn(Mono.error(new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(), List.of(duplicado), null, new ServerAddress(), Set.of())));
+
+        servicio.aplicar(List.of(
+                evento(Event.Type.UPDATE, "u1", datos("Ana", "beto@test.com")),
+                evento(Event.Type.DELETE, "u2", null))).block(ESPERA);
+
+        ArgumentCaptor<Message<?>> mensajes = capturarDlq(1);
+        assertEquals("u1", ((Event<?, ?>) mensajes.getValue().getPayload()).getKey());
+        verify(usuarioCache).invalidar("u2", "beto@test.com", null);
+    }
+
+    @Test
+    void siLaDlqNoAceptaUnEventoElLoteFallaParaQueSeReentregue() {
+        existentes(usuario("u1", "ana@test.com"));
+        when(streamBridge.send(anyString(), any())).thenReturn(false);
+        when(registroEventos.reclamarTodos(anyString(), anyCollection())).thenReturn(Mono.just(Set.of()));
+        when(registroEventos.marcarTodos(anyString(), anyCollection())).thenReturn(Mono.empty());
+        when(registroEventos.liberarTodos(anyString(), anyCollection())).thenReturn(Mono.empty());
+        Event<String, UsuarioDTO> inexistente = evento(Event.Type.UPDATE, "inexistente", datos("X", "x@test.com"));
+        Event<String, UsuarioDTO> valido = evento(Event.Type.UPDATE, "u1", datos("Ana", "ana@test.com"));
+
+        Mono<Void> lote = loteEventos.aplicarSinDuplicados("USUARIO", List.of(inexistente, valido), servicio::aplicar);
+
+        assertThrows(IllegalStateException.class, () -> lote.block(ESPERA));
+        // Lo aplicado queda registrado y en la reentrega se descarta; el que no se estacionó se reintenta
+        verify(registroEventos).marcarTodos("USUARIO", List.of(valido.getEventId()));
+        verify(registroEventos).liberarTodos("USUARIO", List.of(inexistente.getEventId()));
+    }
+
+    private ArgumentCaptor<Message<?>> capturarDlq(int cantidad) {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Message<?>> mensajes = ArgumentCaptor.forClass(Message.class);
+        verify(streamBridge, times(cantidad)).send(eq(UsuarioLoteService.DLQ), mensajes.capture());
+        return mensajes;
+    }
+
+    private void existentes(Usuario... usuarios) {
+        when(mongoOperations.find(any(Query.class), eq(Usuario.class))).thenReturn(Flux.just(usuarios));
+    }
+
+    private static Usuario usuario(String id, String email) {
+        Usuario usuario = new Usuario();
+        usuario.setId(id);
+        usuario.setEmail(email);
+        return usuario;
+    }
+
+    private static UsuarioDTO datos(String nombre, String email) {
+        UsuarioDTO dto = new UsuarioDTO();
+        dto.setNombre(nombre);
+        dto.setEmail(email);
+        dto.setRol("ESTUDIANTE");
+        return dto;
+    }
+
+    private static Event<String, UsuarioDTO> evento(Event.Type tipo, String clave, UsuarioDTO datos) {
+        return new Event<>(tipo, clave, datos);
+    }
+}
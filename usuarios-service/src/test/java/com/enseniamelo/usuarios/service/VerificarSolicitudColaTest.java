@@ -0,0 +1,91 @@
+package com.enseniamelo.usuarios.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.enseniamelo.usuarios.dto.ColaVerificacionDTO;
+import com.enseniamelo.usuarios.mapper.VerificarSolicitudMapperImpl;
+import com.enseniamelo.usuarios.model.VerificarSolicitud;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Cola de verificación con Mongo simulado: cursores de solicitudes sin fecha de creación y total
+ * de pendientes solo en la cola de PENDIENTE.
+ */
+class VerificarSolicitudColaTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(5);
+
+    private ReactiveMongoOperations mongoOperations;
+    private SolicitudesPendientesContador pendientesContador;
+    private VerificarSolicitudService servicio;
+
+    @BeforeEach
+    void setUp() {
+        mongoOperations = mock(ReactiveMongoOperations.class);
+        pendientesContador = mock(SolicitudesPendientesContador.class);
+        when(pendientesContador.actual()).thenReturn(7L);
+        servicio = new VerificarSolicitudService(null, null, new VerificarSolicitudMapperImpl(), null, null,
+                mongoOperations, pendientesContador, null, null);
+        ReflectionTestUtils.setField(servicio, "limiteMaximo", 200);
+    }
+
+    @Test
+    void unaSolicitudSinCreadoDaUnCursorSoloConElId() {
+        String sinFecha = new ObjectId().toHexString();
+        when(mongoOperations.find(any(Query.class), eq(VerificarSolicitud.class))).thenReturn(Flux.just(
+                solicitud(new ObjectId().toHexString(), null), solicitud(sinFecha, null),
+                solicitud(new ObjectId().toHexString(), LocalDateTime.now())));
+
+        ColaVerificacionDTO pagina = servicio.obtenerCola("PENDIENTE", null, null, 2).block(ESPERA);
+
+        assertEquals(2, pagina.getCantidad());
+        assertNotNull(pagina.getSiguienteCursor());
+        assertEquals(7L, pagina.getTotalPendientes());
+
+        servicio.obtenerCola("PENDIENTE", null, pagina.getSiguienteCursor(), 2).block(ESPERA);
+        ArgumentCaptor<Query> consultas = ArgumentCaptor.forClass(Query.class);
+        verify(mongoOperations, times(2)).find(consultas.capture(), eq(VerificarSolicitud.class));
+        // Siguen las demás sin creado después del _id y luego todas las que tienen creado
+        Document siguiente = consultas.getAllValues().get(1).getQueryObject();
+        assertEquals(2, siguiente.getList("$or", Document.class).size());
+        assertEquals(new ObjectId(sinFecha),
+                siguiente.getList("$or", Document.class).get(0).get("_id", Document.class).get("$gt"));
+    }
+
+    @Test
+    void elTotalDePendientesSoloSeInformaEnLaColaDePendientes() {
+        when(mongoOperations.find(any(Query.class), eq(VerificarSolicitud.class)))
+                .thenReturn(Flux.just(solicitud(new ObjectId().toHexString(), LocalDateTime.now())));
+
+        assertNull(servicio.obtenerCola("APROBADO", null, null, 10).block(ESPERA).getTotalPendientes());
+    }
+
+    private static VerificarSolicitud solicitud(String id, LocalDateTime creado) {
+        VerificarSolicitud solicitud = new VerificarSolicitud();
+        solicitud.setId(id);
+        solicitud.setEstado("PENDIENTE");
+        solicitud.setCreado(creado);
+        return solicitud;
+    }
+}
@@ -0,0 +1,148 @@
+package com.enseniamelo.usuarios.util.events;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Consumo particionado simulado: los eventos se reparten en particiones por {@code Event.key} con
+ * el selector por defecto de Spring Cloud Stream y cada partición la consume una sola instancia,
+ * cada una con su propio {@link ProcesadorEventos}. Con 1, 2 y 3 instancias comprueba el reparto,
+ * el orden por clave y el paralelismo alcanzado, sin depender de los tiempos de la máquina.
+ */
+class EscaladoParticionesTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EscaladoParticionesTest.class);
+
+    private static final int PARTICIONES = 6;
+    private static final int EVENTOS = 1200;
+    private static final int CLAVES = 120;
+    // Concurrencia por instancia y latencia de escritura: la latencia solo mantiene eventos en vuelo
+    private static final int CONCURRENCIA = 2;
+    private static final Duration LATENCIA_ESCRITURA = Duration.ofMillis(5);
+
+    @Test
+    void cadaParticionLaConsumeUnaInstanciaYElParalelismoCreceConLasInstancias() {
+        for (int instancias : new int[] { 1, 2, 3 }) {
+            Resultado resultado = ejecutar(instancias);
+
+            assertEquals(EVENTOS, resultado.porClave().values().stream().mapToInt(List::size).sum());
+            assertEquals(CLAVES, resultado.porClave().size());
+            // Cada partición y cada clave las procesa una sola instancia, la clave en el orden de publicación
+            assertEquals(PARTICIONES, resultado.instanciasPorParticion().size());
+            resultado.instanciasPorParticion().forEach((particion, cuales) ->
+                    assertEquals(Set.of(particion % instancias), cuales.keySet(), "partición " + particion));
+            resultado.instanciasPorClave().forEach((clave, cuales) -> assertEquals(1, cuales.size(), clave));
+            resultado.porClave().forEach((clave, secuencia) -> {
+                for (int i = 1; i < secuencia.size(); i++) {
+                    assertTrue(secuencia.get(i - 1) < secuencia.get(i), "desorden en " + clave + ": " + secuencia);
+                }
+            });
+
+            // Ninguna instancia pasa de su concurrencia y con varias instancias trabajan a la vez
+            resultado.maximoPorInstancia().forEach((instancia, maximo) ->
+                    assertTrue(maximo <= CONCURRENCIA, "instancia " + instancia + ": " + maximo));
+            assertEquals(instancias, resultado.maximoPorInstancia().size());
+            if (instancias > 1) {
+                assertTrue(resultado.maximoGlobal() > CONCURRENCIA,
+                        instancias + " instancias, máximo en vuelo: " + resultado.maximoGlobal());
+            }
+
+            LOGGER.info("{} instancia(s), {} particiones: máximo {} eventos en vuelo", instancias, PARTICIONES,
+                    resultado.maximoGlobal());
+        }
+    }
+
+    private Resultado ejecutar(int instancias) {
+        Map<String, List<Integer>> porClave = new ConcurrentHashMap<>();
+        Map<String, Map<Integer, Boolean>> instanciasPorClave = new ConcurrentHashMap<>();
+        Map<Integer, Map<Integer, Boolean>> instanciasPorParticion = new ConcurrentHashMap<>();
+        Map<Integer, Integer> maximoPorInstancia = new ConcurrentHashMap<>();
+        AtomicInteger enVueloGlobal = new AtomicInteger();
+        AtomicInteger maximoGlobal = new AtomicInteger();
+
+        List<Sinks.Many<Message<Event<String, Integer>>>> entradas = new ArrayList<>();
+        List<Mono<Void>> consumidores = new ArrayList<>();
+        for (int i = 0; i < instancias; i++) {
+            int instancia = i;
+            AtomicInteger enVuelo = new AtomicInteger();
+            Sinks.Many<Message<Event<String, Integer>>> entrada = Sinks.many().unicast().onBackpressureBuffer();
+            entradas.add(entrada);
+            consumidores.add(procesador().<Integer>crear("SOLICITUD", EventosDlq.SOLICITUDES, event -> Mono.defer(() -> {
+                        maximoPorInstancia.merge(instancia, enVuelo.incrementAndGet(), Math::max);
+                        maximoGlobal.accumulateAndGet(enVueloGlobal.incrementAndGet(), Math::max);
+                        return Mono.delay(LATENCIA_ESCRITURA);
+                    })
+                            .doOnNext(t -> {
+                                porClave.computeIfAbsent(event.getKey(), k -> new ArrayList<>()).add(event.getData());
+                                instanciasPorClave.computeIfAbsent(event.getKey(), k -> new ConcurrentHashMap<>())
+                                        .put(instancia, true);
+                                instanciasPorParticion.computeIfAbsent(particion(event.getKey()),
+                                        p -> new ConcurrentHashMap<>()).put(instancia, true);
+                            })
+                            // Antes de propagar el fin: doFinally corre después de que el procesador pide el siguiente
+                            .doOnTerminate(() -> {
+                                enVuelo.decrementAndGet();
+                                enVueloGlobal.decrementAndGet();
+                            }))
+                    .apply(entrada.asFlux()));
+        }
+
+        // Las particiones ya tienen todos sus eventos cuando arrancan los consumidores
+        for (int i = 0; i < EVENTOS; i++) {
+            String clave = "s" + (i % CLAVES);
+            // Como con instance-count/instance-index: la partición p es de la instancia p % instancias
+            int instancia = particion(clave) % instancias;
+            entradas.get(instancia).tryEmitNext(MessageBuilder.withPayload(
+                    new Event<>(Event.Type.APPROVE_REQUEST, clave, i)).build());
+        }
+        entradas.forEach(Sinks.Many::tryEmitComplete);
+        Flux.merge(consumidores).then().block(Duration.ofSeconds(60));
+
+        return new Resultado(porClave, instanciasPorClave, instanciasPorParticion, maximoPorInstancia,
+                maximoGlobal.get());
+    }
+
+    /**
+     * El selector por defecto de Spring Cloud Stream para {@code partition-key-expression}.
+     */
+    private static int particion(String clave) {
+        int hash = clave.hashCode();
+        return Math.abs(hash == Integer.MIN_VALUE ? 0 : hash) % PARTICIONES;
+    }
+
+    private static ProcesadorEventos procesador() {
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        RegistroEventosProcesados deshabilitado = new RegistroEventosProcesados(mock(ReactiveMongoOperations.class),
+                registro, false, Duration.ofHours(1), Duration.ofMinutes(2), 1, 0.01);
+        return new ProcesadorEventos(registro, deshabilitado, new EventosDlq(mock(StreamBridge.class), registro),
+                CONCURRENCIA, 1, Duration.ofMillis(10), Duration.ofMillis(10), 20, 0.1);
+    }
+
+    private record Resultado(Map<String, List<Integer>> porClave,
+            Map<String, Map<Integer, Boolean>> instanciasPorClave,
+            Map<Integer, Map<Integer, Boolean>> instanciasPorParticion,
+            Map<Integer, Integer> maximoPorInstancia, int maximoGlobal) {
+    }
+}
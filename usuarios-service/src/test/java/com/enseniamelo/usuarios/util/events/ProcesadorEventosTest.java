@@ -0,0 +1,87 @@
+package com.enseniamelo.usuarios.util.events;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.rabbitmq.client.Channel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Un evento que falla y tampoco se puede publicar en la DLQ no se confirma al broker: en Rabbit se
+ * rechaza hacia la DLQ del binding y en Kafka queda sin confirmar para que se reentregue.
+ */
+class ProcesadorEventosTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(5);
+
+    private StreamBridge streamBridge;
+    private ProcesadorEventos procesador;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        streamBridge = mock(StreamBridge.class);
+        when(streamBridge.send(anyString(), any())).thenReturn(false);
+        RegistroEventosProcesados deshabilitado = new RegistroEventosProcesados(mock(ReactiveMongoOperations.class),
+                registro, false, Duration.ofHours(1), Duration.ofMinutes(2), 1, 0.01);
+        procesador = new ProcesadorEventos(registro, deshabilitado, new EventosDlq(streamBridge, registro),
+                1, 1, Duration.ofMillis(10), Duration.ofMillis(10), 20, 0.1);
+    }
+
+    @Test
+    void enRabbitSeRechazaSinReencolarHaciaLaDlqDelBinding() throws IOException {
+        Channel canal = mock(Channel.class);
+
+        procesar(MessageBuilder.withPayload(evento())
+                .setHeader(AmqpHeaders.CHANNEL, canal)
+                .setHeader(AmqpHeaders.DELIVERY_TAG, 7L)
+                .build());
+
+        verify(canal).basicNack(7L, false, false);
+        verify(canal, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void enKafkaNoSeConfirmaUnEventoQueNoSeEstaciono() {
+        Acknowledgment acuse = mock(Acknowledgment.class);
+
+        procesar(MessageBuilder.withPayload(evento())
+                .setHeader(KafkaHeaders.ACKNOWLEDGMENT, acuse)
+                .build());
+
+        verify(acuse, never()).acknowledge();
+    }
+
+    private void procesar(Message<Event<String, String>> mensaje) {
+        procesador.<String>crear("USUARIO", EventosDlq.USUARIOS,
+                        event -> Mono.error(new IllegalStateException("Mongo no disponible")))
+                .apply(Flux.just(mensaje))
+                .block(ESPERA);
+    }
+
+    private static Event<String, String> evento() {
+        return new Event<>(Event.Type.UPDATE, "u1", "datos");
+    }
+}
@@ -0,0 +1,195 @@
+package com.enseniamelo.usuarios.util.events;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.enseniamelo.usuarios.model.EventoProcesado;
+import com.enseniamelo.usuarios.util.events.RegistroEventosProcesados.Reclamo;
+import com.enseniamelo.usuarios.util.exception.EventoEnCursoException;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class RegistroEventosProcesadosTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(5);
+
+    private ReactiveMongoOperations mongoOperations;
+    private SimpleMeterRegistry meterRegistry;
+    private RegistroEventosProcesados registro;
+
+    @BeforeEach
+    void setUp() {
+        mongoOperations = mock(ReactiveMongoOperations.class);
+        meterRegistry = new SimpleMeterRegistry();
+        when(mongoOperations.insert(any(EventoProcesado.class)))
+                .thenAnswer(invocacion -> Mono.just(invocacion.getArgument(0)));
+        when(mongoOperations.updateMulti(any(Query.class), any(Update.class), eq(EventoProcesado.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoOperations.remove(any(Query.class), eq(EventoProcesado.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+        when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(EventoProcesado.class))).thenReturn(Mono.empty());
+        registro = new RegistroEventosProcesados(mongoOperations, meterRegistry, true, Duration.ofHours(1),
+                Duration.ofMinutes(2), 10_000, 0.01);
+    }
+
+    @Test
+    void unEventoNuevoNoLeeMongo() {
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Reclamo.NUEVO, registro.reclamar("USUARIO", UUID.randomUUID().toString()).block(ESPERA));
+        }
+
+        verify(mongoOperations, never()).exists(any(Query.class), eq(EventoProcesado.class));
+        verify(mongoOperations, times(1000)).insert(any(EventoProcesado.class));
+        assertEquals(1000, contador("USUARIO", "nuevo"));
+    }
+
+    @Test
+    void unaRedeliveryEsDuplicada() {
+        when(mongoOperations.exists(any(Query.class), eq(EventoProcesado.class))).thenReturn(Mono.just(true));
+
+        registro.reclamar("USUARIO", "e1").block(ESPERA);
+        registro.marcar("USUARIO", "e1").block(ESPERA);
+
+        assertEquals(Reclamo.DUPLICADO, registro.reclamar("USUARIO", "e1").block(ESPERA));
+        // El mismo evento en otro consumidor no cuenta como aplicado
+        assertEquals(Reclamo.NUEVO, registro.reclamar("TUTOR", "e1").block(ESPERA));
+        assertEquals(1, contador("USUARIO", "duplicado"));
+    }
+
+    @Test
+    void unFalsoPositivoSeConfirmaContraMongo() {
+        when(mongoOperations.exists(any(Query.class), eq(EventoProcesado.class))).thenReturn(Mono.just(false));
+
+        registro.marcar("USUARIO", "e1").block(ESPERA);
+
+        // El filtro dice que puede estar, pero Mongo ya no lo tiene (p. ej. caducó)
+        assertEquals(Reclamo.NUEVO, registro.reclamar("USUARIO", "e1").block(ESPERA));
+        assertEquals(1, contador("USUARIO", "falso-positivo"));
+    }
+
+    @Test
+    void loQueAplicoOtraInstanciaLoDetectaElReclamoAunqueElFiltroNoLoConozca() {
+        when(mongoOperations.insert(any(EventoProcesado.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("USUARIO:e1")));
+        when(mongoOperations.exists(any(Query.class), eq(EventoProcesado.class))).thenReturn(Mono.just(true));
+
+        assertEquals(Reclamo.DUPLICADO, registro.reclamar("USUARIO", "e1").block(ESPERA));
+    }
+
+    @Test
+    void unReclamoConElBloqueoVencidoSeRetoma() {
+        when(mongoOperations.insert(any(EventoProcesado.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("USUARIO:e1")));
+        when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(EventoProcesado.class))).thenReturn(Mono.just(new EventoProcesado()));
+
+        assertEquals(Reclamo.NUEVO, registro.reclamar("USUARIO", "e1").block(ESPERA));
+        assertEquals(1, contador("USUARIO", "retomado"));
+    }
+
+    @Test
+    void unReclamoVigenteDeOtraInstanciaQuedaEnCurso() {
+        when(mongoOperations.insert(any(EventoProcesado.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("USUARIO:e1")));
+        when(mongoOperations.exists(any(Query.class), eq(EventoProcesado.class))).thenReturn(Mono.just(false));
+
+        assertEquals(Reclamo.EN_CURSO, registro.reclamar("USUARIO", "e1").block(ESPERA));
+    }
+
+    @Test
+    void enLoteSoloLosPositivosVanAMongoEnUnaConsulta() {
+        EventoProcesado registrado = new EventoProcesado();
+        registrado.setId("SOLICITUD:e2");
+        when(mongoOperations.find(any(Query.class), eq(EventoProcesado.class))).thenReturn(Flux.just(registrado));
+        ReactiveBulkOperations bulk = lote(Mono.just(BulkWriteResult.unacknowledged()));
+
+        registro.marcar("SOLICITUD", "e2").block(ESPERA);
+        Set<String> duplicados = registro.reclamarTodos("SOLICITUD", List.of("e1", "e2", "e3")).block(ESPERA);
+
+        assertEquals(Set.of("e2"), duplicados);
+        verify(mongoOperations, times(1)).find(any(Query.class), eq(EventoProcesado.class));
+        verify(bulk).insert(argThat((List<EventoProcesado> reclamos) -> reclamos.size() == 2));
+        assertEquals(2, contador("SOLICITUD", "nuevo"));
+        assertEquals(1, contador("SOLICITUD", "duplicado"));
+    }
+
+    @Test
+    void unLoteConUnEventoEnCursoLiberaLosReclamadosYFalla() {
+        BulkWriteError chocado = new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 1);
+        lote(Mono.error(new MongoBulkWriteException(BulkWriteResult.unacknowledged(), List.of(chocado), null,
+                new ServerAddress(), Set.of())));
+        when(mongoOperations.exists(any(Query.class), eq(EventoProcesado.class))).thenReturn(Mono.just(false));
+
+        assertThrows(EventoEnCursoException.class,
+                () -> registro.reclamarTodos("TUTOR", List.of("e1", "e2", "e3")).block(ESPERA));
+        verify(mongoOperations).remove(argThat((Query consulta) -> consulta.getQueryObject()
+                .get("_id", Document.class).getList("$in", String.class).equals(List.of("TUTOR:e1", "TUTOR:e3"))),
+                eq(EventoProcesado.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ReactiveBulkOperations lote(Mono<BulkWriteResult> resultado) {
+        ReactiveBulkOperations bulk = mock(ReactiveBulkOperations.class);
+        when(mongoOperations.bulkOps(BulkMode.UNORDERED, EventoProcesado.class)).thenReturn(bulk);
+        when(bulk.insert(any(List.class))).thenReturn(bulk);
+        when(bulk.execute()).thenReturn(resultado);
+        return bulk;
+    }
+
+    @Test
+    void elFiltroRespetaLaProbabilidadDeFalsoPositivo() {
+        FiltroBloom filtro = new FiltroBloom(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filtro.agregar("dentro-" + i);
+        }
+
+        int falsosPositivos = 0;
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filtro.puedeContener("dentro-" + (i % 10_000)));
+            if (filtro.puedeContener("fuera-" + i)) {
+                falsosPositivos++;
+            }
+        }
+        assertTrue(falsosPositivos < 2_000, "falsos positivos: " + falsosPositivos);
+    }
+
+    private double contador(String consumidor, String resultado) {
+        return meterRegistry.counter("usuarios.eventos.deduplicacion", "consumidor", consumidor,
+                "resultado", resultado).count();
+    }
+}